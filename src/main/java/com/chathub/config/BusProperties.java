@@ -0,0 +1,60 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 跨節點訊息匯流排設定（見 MessagePublisher）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.bus")
+@Getter
+@Setter
+public class BusProperties {
+
+    /**
+     * 匯流排類型（整個叢集須一致；reactive profile 只支援 PUBSUB）
+     */
+    private Type type = Type.PUBSUB;
+
+    /**
+     * 每個 Stream 約略保留的筆數（XADD MAXLEN ~）
+     */
+    private long streamMaxLength = 100_000;
+
+    /**
+     * 每次 XREADGROUP 最多讀取的筆數
+     */
+    private int readBatchSize = 100;
+
+    /**
+     * XREADGROUP 阻塞等待時間
+     */
+    private Duration readTimeout = Duration.ofSeconds(2);
+
+    /**
+     * 節點心跳超過此時間未更新即視為已死亡，由其他節點接手其未確認的訊息（須大於 chathub.node.route-ttl）
+     */
+    private Duration nodeTimeout = Duration.ofMinutes(2);
+
+    /**
+     * 檢查死亡節點的間隔
+     */
+    private Duration reclaimInterval = Duration.ofSeconds(30);
+
+    public enum Type {
+        /**
+         * Redis Pub/Sub：延遲最低，訂閱端不在線時訊息直接遺失
+         */
+        PUBSUB,
+
+        /**
+         * Redis Streams：每個節點一個 consumer group，推送給本機連線後才確認，可重送與接手
+         */
+        STREAMS
+    }
+}
@@ -0,0 +1,38 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 群組對話設定
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.group")
+@Getter
+@Setter
+public class GroupProperties {
+
+    /**
+     * 群組成員上限
+     */
+    private int maxMembers = 5000;
+
+    /**
+     * 成員名單快取最多保留的群組數
+     */
+    private long membershipCacheSize = 10_000;
+
+    /**
+     * 成員名單快取存活時間（失效通知遺失時最晚在此時間後更新）
+     */
+    private Duration membershipCacheTtl = Duration.ofMinutes(10);
+
+    /**
+     * 每個群組的未讀數最多計算到此數（由已讀位置推算，避免長期未讀的大群組掃描過多訊息）
+     */
+    private int unreadCountLimit = 100;
+}
@@ -0,0 +1,44 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * clientMessageId 去重設定
+ * 每個節點以輪替式 Bloom Filter 記住最近看過的 clientMessageId
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.dedup")
+@Getter
+@Setter
+public class IdempotencyProperties {
+
+    /**
+     * 每一代 Bloom Filter 預計容納的 ID 數（超過即輪替）
+     */
+    private int expectedInsertions = 1_000_000;
+
+    /**
+     * 目標誤判率
+     */
+    private double falsePositiveRate = 0.001;
+
+    /**
+     * 保留的世代數（輪替時丟棄最舊的一代）
+     */
+    private int generations = 2;
+
+    /**
+     * 每一代最長使用時間（客戶端重送通常發生在數分鐘內）
+     */
+    private Duration rotationInterval = Duration.ofMinutes(10);
+
+    /**
+     * 啟用 Write-Behind 時在 Redis 佔用 clientMessageId 的時間（應涵蓋客戶端的重送視窗）
+     */
+    private Duration claimTtl = Duration.ofMinutes(10);
+}
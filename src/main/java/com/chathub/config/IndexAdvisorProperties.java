@@ -0,0 +1,28 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 索引檢查設定
+ * 啟動時對每個查詢執行 explain，檢查是否有全表掃描或記憶體排序
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.mongo.index-advisor")
+@Getter
+@Setter
+public class IndexAdvisorProperties {
+
+    /**
+     * OFF：不檢查；WARN：只記錄警告；FAIL：有問題時啟動失敗
+     */
+    private Mode mode = Mode.WARN;
+
+    public enum Mode {
+        OFF,
+        WARN,
+        FAIL
+    }
+}
@@ -1,7 +1,8 @@
 package com.chathub.config;
 
 import com.chathub.security.JwtTokenProvider;
-import io.jsonwebtoken.Claims;
+import com.chathub.security.VerifiedToken;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.server.ServerHttpRequest;
@@ -54,17 +55,16 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
                 return false;
             }
 
-            // 驗證 Token
-            if (!jwtTokenProvider.validateToken(token)) {
+            // 驗證 Token 並提取使用者資訊（只解析一次）
+            VerifiedToken verified;
+            try {
+                verified = jwtTokenProvider.verify(token);
+            } catch (JwtException e) {
                 log.warn("WebSocket 握手失敗：token 無效或過期");
                 return false;
             }
-
-            // 提取使用者資訊
-            Claims claims = jwtTokenProvider.getClaimsFromToken(token);
-            String userIdStr = claims.getSubject();
-            String username = claims.get("username", String.class);
-            UUID userId = UUID.fromString(userIdStr);
+            UUID userId = verified.userId();
+            String username = verified.username();
 
             // 將使用者資訊存入 WebSocket Session 屬性
             attributes.put("userId", userId);
@@ -14,4 +14,5 @@ public class JwtProperties {
     private Long accessTokenExpiration;
     private Long refreshTokenExpiration;
     private Long refreshTokenExpirationShort;
+    private long verifiedCacheSize = 100_000;
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package com.chathub.config;
+
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import com.mongodb.ExplainVerbosity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * MongoDB 索引檢查
+ *
+ * 啟動完成後（索引已自動建立），對 Repository 與 MongoTemplate 使用的每一種查詢
+ * 執行 explain（queryPlanner），找出：
+ * - COLLSCAN：沒有可用的索引，全表掃描
+ * - SORT：索引無法提供排序，需在記憶體中排序（資料量大時會超過記憶體上限而失敗）
+ *
+ * 新增查詢時請一併加入 {@link #queryShapes()}。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexAdvisor {
+
+    private final MongoTemplate mongoTemplate;
+    private final IndexAdvisorProperties properties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyQueryPlans() {
+        if (properties.getMode() == IndexAdvisorProperties.Mode.OFF) {
+            return;
+        }
+
+        List<QueryShape> shapes = queryShapes();
+        List<String> findings = new ArrayList<>();
+        for (QueryShape shape : shapes) {
+            try {
+                List<String> problems = findProblems(explain(shape));
+                if (!problems.isEmpty()) {
+                    findings.add(shape.name() + " → " + String.join(", ", problems));
+                }
+            } catch (Exception e) {
+                log.warn("無法取得查詢計畫：{}", shape.name(), e);
+            }
+        }
+
+        if (findings.isEmpty()) {
+            log.info("索引檢查通過：{} 個查詢皆使用索引", shapes.size());
+            return;
+        }
+
+        findings.forEach(finding -> log.warn("查詢未有效使用索引：{}", finding));
+        if (properties.getMode() == IndexAdvisorProperties.Mode.FAIL) {
+            throw new IllegalStateException("索引檢查失敗：" + findings);
+        }
+    }
+
+    /**
+     * 應用程式中的查詢（值只用來產生查詢計畫，內容不重要）
+     */
+    List<QueryShape> queryShapes() {
+        UUID userId = UUID.randomUUID();
+        String conversationId = Message.generateConversationId(userId, UUID.randomUUID());
+        Instant now = Instant.now();
+
+        return List.of(
+            // MessageRepository
+            new QueryShape("Message.findByConversationIdOrderByTimestampDesc", Message.class,
+                           Query.query(Criteria.where("conversationId").is(conversationId))
+                                .with(Sort.by(Sort.Direction.DESC, "timestamp"))),
+            new QueryShape("Message.findByMessageId", Message.class,
+                           Query.query(Criteria.where("messageId").is("m"))),
+            new QueryShape("Message.findByClientMessageId", Message.class,
+                           Query.query(Criteria.where("clientMessageId").is("c"))),
+            new QueryShape("Message.countByConversationId", Message.class,
+                           Query.query(Criteria.where("conversationId").is(conversationId))),
+            new QueryShape("Message.countByRecipientIdAndIsReadFalse", Message.class,
+                           Query.query(Criteria.where("recipientId").is(userId).and("isRead").is(false))),
+            new QueryShape("Message.countByConversationIdAndRecipientIdAndIsReadFalse", Message.class,
+                           Query.query(Criteria.where("conversationId").is(conversationId)
+                                               .and("recipientId").is(userId)
+                                               .and("isRead").is(false))),
+            // MessageService
+            new QueryShape("MessageService.markAsRead", Message.class,
+                           Query.query(Criteria.where("conversationId").is(conversationId)
+                                               .and("recipientId").is(userId)
+                                               .and("isRead").is(false)
+                                               .and("timestamp").lte(now))),
+            new QueryShape("MessageService.getConversationMessages(before)", Message.class,
+                           Query.query(new Criteria().andOperator(
+                                    Criteria.where("conversationId").is(conversationId),
+                                    Criteria.where("timestamp").lte(now),
+                                    new Criteria().orOperator(Criteria.where("timestamp").lt(now),
+                                                              Criteria.where("messageId").lt("m"))))
+                                .with(Sort.by(Sort.Direction.DESC, "timestamp", "messageId"))
+                                .limit(21)),
+            // ConversationRepository / ConversationService
+            new QueryShape("Conversation.findByConversationId", Conversation.class,
+                           Query.query(Criteria.where("conversationId").is(conversationId))),
+            new QueryShape("Conversation.findByParticipantsContainingOrderByUpdatedAtDesc", Conversation.class,
+                           Query.query(Criteria.where("participants").is(userId))
+                                .with(Sort.by(Sort.Direction.DESC, "updatedAt"))),
+            new QueryShape("ConversationService.getUserConversations(before)", Conversation.class,
+                           Query.query(new Criteria().andOperator(
+                                    Criteria.where("participants").is(userId),
+                                    Criteria.where("updatedAt").lte(now),
+                                    new Criteria().orOperator(Criteria.where("updatedAt").lt(now),
+                                                              Criteria.where("conversationId").lt("c"))))
+                                .with(Sort.by(Sort.Direction.DESC, "updatedAt", "conversationId"))
+                                .limit(21))
+        );
+    }
+
+    private Document explain(QueryShape shape) {
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                                                       .getRequiredPersistentEntity(shape.entityType());
+        Document filter = queryMapper.getMappedObject(shape.query().getQueryObject(), entity);
+        Document sort = queryMapper.getMappedSort(shape.query().getSortObject(), entity);
+
+        var find = mongoTemplate.getCollection(mongoTemplate.getCollectionName(shape.entityType()))
+                                .find(filter)
+                                .sort(sort);
+        if (shape.query().getLimit() > 0) {
+            find = find.limit(shape.query().getLimit());
+        }
+        return find.explain(ExplainVerbosity.QUERY_PLANNER);
+    }
+
+    /**
+     * 檢查 explain 結果中的勝出計畫
+     * @return 問題描述（COLLSCAN / SORT），沒有問題時為空
+     */
+    static List<String> findProblems(Document explain) {
+        List<String> problems = new ArrayList<>();
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        if (queryPlanner == null) {
+            return problems;
+        }
+        collectProblems(queryPlanner.get("winningPlan", Document.class), problems);
+        return problems;
+    }
+
+    private static void collectProblems(Document plan, List<String> problems) {
+        if (plan == null) {
+            return;
+        }
+
+        // 7.0+ 的 SBE 計畫包在 queryPlan 內；分片叢集的計畫在 shards[].winningPlan
+        collectProblems(plan.get("queryPlan", Document.class), problems);
+        for (Document shard : plan.getList("shards", Document.class, List.of())) {
+            collectProblems(shard.get("winningPlan", Document.class), problems);
+        }
+
+        String stage = plan.getString("stage");
+        if ("COLLSCAN".equals(stage)) {
+            problems.add("COLLSCAN");
+        } else if ("SORT".equals(stage)) {
+            problems.add("SORT（記憶體排序）");
+        }
+
+        collectProblems(plan.get("inputStage", Document.class), problems);
+        for (Document input : plan.getList("inputStages", Document.class, List.of())) {
+            collectProblems(input, problems);
+        }
+    }
+
+    record QueryShape(String name, Class<?> entityType, Query query) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * 節點（Pod）設定
+ * 用於跨節點訊息路由：userId → nodeId
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.node")
+@Getter
+@Setter
+public class NodeProperties {
+
+    /**
+     * 節點 ID（未設定時使用 HOSTNAME，K8s 中即 Pod 名稱）
+     */
+    private String id = defaultNodeId();
+
+    /**
+     * 路由資料的存活時間（未續約即視為離線）
+     */
+    private Duration routeTtl = Duration.ofSeconds(90);
+
+    /**
+     * 心跳間隔（續約本節點持有的路由資料）
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(30);
+
+    /**
+     * 查不到路由資料時，是否退回廣播到 user:{userId} 頻道
+     */
+    private boolean fallbackBroadcast = true;
+
+    /**
+     * 本機快取使用者其他節點路由的筆數上限（見 UserRouteCache，項目在一個心跳間隔後過期）
+     */
+    private long routeCacheSize = 100_000;
+
+    private static String defaultNodeId() {
+        String hostname = System.getenv("HOSTNAME");
+        return hostname != null && !hostname.isBlank() ? hostname : UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * WebSocket 送出佇列設定
+ * 每個連線一個有界佇列，由專用的送出執行緒池非同步送出
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.websocket.outbound")
+@Getter
+@Setter
+public class OutboundProperties {
+
+    /**
+     * 每個連線最多暫存的訊息數
+     */
+    private int capacity = 256;
+
+    /**
+     * 佇列滿時的處理策略
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+
+    /**
+     * 送出執行緒數
+     */
+    private int senderThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * 每次排程最多連續送出的訊息數（避免單一連線佔住送出執行緒）
+     */
+    private int drainBatchSize = 64;
+
+    public enum OverflowPolicy {
+        /**
+         * 佇列滿時先丟棄「正在輸入」通知，仍然滿就斷線（由客戶端重連補資料）
+         */
+        DROP_TYPING_FIRST,
+
+        /**
+         * 同一發送者的「正在輸入」通知只保留最新一筆；佇列滿時同 DROP_TYPING_FIRST
+         */
+        COALESCE,
+
+        /**
+         * 佇列滿時直接斷線
+         */
+        DISCONNECT
+    }
+}
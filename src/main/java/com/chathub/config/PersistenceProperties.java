@@ -0,0 +1,54 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 訊息寫入管線設定（Write-Behind）
+ * 訊息先寫入本機 Journal 即回覆送達，再由背景執行緒批次寫入 MongoDB
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.persistence.write-behind")
+@Getter
+@Setter
+public class PersistenceProperties {
+
+    /**
+     * 是否啟用（關閉時維持同步寫入 MongoDB）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 每批最多寫入的訊息數
+     */
+    private int batchSize = 500;
+
+    /**
+     * 湊批最多等待的時間
+     */
+    private Duration maxBatchDelay = Duration.ofMillis(20);
+
+    /**
+     * 記憶體佇列上限（滿了會讓發送端等待，形成背壓）
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Journal 目錄
+     */
+    private String journalDir = "./data/journal";
+
+    /**
+     * 單一 Journal 檔案大小上限（超過即換新檔）
+     */
+    private long journalSegmentBytes = 64L * 1024 * 1024;
+
+    /**
+     * 寫入 Journal 後是否 fsync（關閉時只保證寫入 OS page cache）
+     */
+    private boolean fsync = true;
+}
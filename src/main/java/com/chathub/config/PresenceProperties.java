@@ -0,0 +1,60 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 上線狀態設定
+ * 上線 / 離線由 WebSocket 連線決定（路由表），狀態改變時推送給在線的好友
+ * 批次查詢由各節點複製的在線 bitmap 回答
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.presence")
+@Getter
+@Setter
+public class PresenceProperties {
+
+    /**
+     * 最後一個連線關閉後，延遲多久才通知好友離線（期間重新連線則不通知）
+     */
+    private Duration offlineGrace = Duration.ofSeconds(5);
+
+    /**
+     * 送出待通知狀態的間隔（上線通知的最大延遲）
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * 超過這段時間沒有收到任何 frame（包含 PING）就關閉連線；0 表示不檢查
+     */
+    private Duration idleTimeout = Duration.ofSeconds(90);
+
+    /**
+     * 閒置連線檢查間隔
+     */
+    private Duration idleCheckInterval = Duration.ofSeconds(30);
+
+    /**
+     * 是否以在線 bitmap 回答批次查詢（停用時查詢路由表）
+     */
+    private boolean bitmapEnabled = true;
+
+    /**
+     * 從 Redis 讀取其他節點在線變更的間隔（其他節點上線 / 離線的可見延遲）
+     */
+    private Duration bitmapSyncInterval = Duration.ofSeconds(1);
+
+    /**
+     * 每個節點保留的在線變更筆數（落後超過時改讀整份 bitmap），也是每次每個節點最多讀取的筆數
+     */
+    private int bitmapLogLength = 10_000;
+
+    /**
+     * 超過這段時間沒有成功讀取，改回查詢路由表
+     */
+    private Duration bitmapMaxStaleness = Duration.ofSeconds(5);
+}
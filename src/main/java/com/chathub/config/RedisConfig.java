@@ -1,16 +1,30 @@
 package com.chathub.config;
 
+import com.chathub.service.RedisChannels;
 import com.chathub.service.RedisMessageSubscriber;
+import com.chathub.service.cache.GroupMembershipCache;
+import com.chathub.service.cache.TokenRevocationCache;
+import com.chathub.service.cache.UserProfileCache;
+import com.chathub.service.cache.UserRouteCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Redis 配置類別
@@ -40,6 +54,20 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * Pub/Sub 專用 RedisTemplate（value 為原始 bytes）
+     * WebSocket 訊息已序列化成 JSON bytes，直接 PUBLISH，不再經過 JSON 序列化器包一層
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> pubSubRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        return template;
+    }
+
     /**
      * ObjectMapper（用於 JSON 轉換）
      */
@@ -55,17 +83,81 @@ public class RedisConfig {
     @Bean
     public RedisMessageListenerContainer redisMessageListenerContainer(
         RedisConnectionFactory connectionFactory,
-        RedisMessageSubscriber subscriber) {
+        ObjectProvider<RedisMessageSubscriber> subscriber,
+        UserProfileCache userProfileCache,
+        GroupMembershipCache groupMembershipCache,
+        TokenRevocationCache tokenRevocationCache,
+        UserRouteCache userRouteCache,
+        NodeProperties nodeProperties,
+        BusProperties busProperties,
+        Environment environment) {
 
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
 
-        // 訂閱所有 user:* 頻道（使用萬用字元）
-        // 例如：user:abc-123, user:def-456 都會被監聽
-        container.addMessageListener(subscriber, new PatternTopic("user:*"));
+        // 虛擬執行緒模式：每則訊息一個虛擬執行緒（預設為每則訊息建立一個平台執行緒）
+        if (Threading.VIRTUAL.isActive(environment)) {
+            container.setTaskExecutor(new VirtualThreadTaskExecutor("redis-listener-"));
+        }
+
+        // Servlet WebSocket 連線的訊息（reactive profile 由 ReactiveMessageRelay 訂閱；
+        // streams 匯流排由 RedisStreamSubscriber 讀取，不訂閱這些頻道）
+        if (busProperties.getType() == BusProperties.Type.PUBSUB) {
+            subscriber.ifAvailable(listener -> {
+                // 只訂閱本節點的頻道：node:{nodeId}:*
+                // 發布端依路由表只送到持有該使用者連線的節點
+                container.addMessageListener(listener,
+                                             new PatternTopic(RedisChannels.nodePattern(nodeProperties.getId())));
+
+                // 路由資料缺失時的廣播頻道（例如：user:abc-123）
+                container.addMessageListener(listener, new PatternTopic(RedisChannels.USER_PREFIX + "*"));
+
+                // 群組訊息（例如：conversation:group-abc），每個節點收到一次後展開給本機的成員
+                container.addMessageListener(listener, new PatternTopic(RedisChannels.CONVERSATION_PREFIX + "*"));
+            });
+        }
+
+        // 使用者快取、群組成員快取、路由快取失效通知與 Token 撤銷通知
+        container.addMessageListener(userProfileCache, new ChannelTopic(UserProfileCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(groupMembershipCache,
+                                     new ChannelTopic(GroupMembershipCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(userRouteCache, new ChannelTopic(UserRouteCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(tokenRevocationCache,
+                                     new ChannelTopic(TokenRevocationCache.INVALIDATION_CHANNEL));
+
+        return container;
+    }
+
+    /**
+     * ephemeral 頻道監聽容器（正在輸入）
+     * 獨立的訂閱連線與有界執行緒池：輸入通知再多也不會佔用訊息頻道的連線與監聽執行緒，
+     * 處理不及時直接丟棄（輸入通知可以遺失，伺服器端會自動過期）
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public RedisMessageListenerContainer ephemeralListenerContainer(
+        RedisConnectionFactory connectionFactory,
+        RedisMessageSubscriber subscriber,
+        NodeProperties nodeProperties,
+        TypingProperties typingProperties) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("redis-ephemeral-");
+        executor.setCorePoolSize(typingProperties.getListenerThreads());
+        executor.setMaxPoolSize(typingProperties.getListenerThreads());
+        executor.setQueueCapacity(typingProperties.getListenerQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setDaemon(true);
+        executor.initialize();
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(executor);
 
-        // 如果需要訂閱對話頻道，可以加這行：
-        // container.addMessageListener(subscriber, new PatternTopic("conversation:*"));
+        container.addMessageListener(subscriber, new PatternTopic(
+            RedisChannels.ephemeral(RedisChannels.nodePattern(nodeProperties.getId()))));
+        container.addMessageListener(subscriber, new PatternTopic(
+            RedisChannels.ephemeral(RedisChannels.USER_PREFIX + "*")));
 
         return container;
     }
@@ -0,0 +1,48 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 重連同步設定（SYNC / SYNC_BATCH）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.sync")
+@Getter
+@Setter
+public class SyncProperties {
+
+    /**
+     * 收件匣（Redis Stream）保留時間；游標早於此時間的對話改從 MongoDB 補送
+     */
+    private Duration inboxRetention = Duration.ofMinutes(15);
+
+    /**
+     * 節點與 Redis 時鐘誤差容忍（Stream ID 取自 Redis 時間，訊息時間取自節點）
+     */
+    private Duration clockSkew = Duration.ofSeconds(5);
+
+    /**
+     * 每個 SYNC_BATCH frame 最多訊息數
+     */
+    private int batchSize = 100;
+
+    /**
+     * 每個對話每次同步最多補送的訊息數，超過時該對話的最後一個 frame 標記 hasMore
+     */
+    private int maxMessagesPerConversation = 500;
+
+    /**
+     * 每次同步最多送出的 frame 數（須小於送出佇列容量，超過時結束 frame 標記 hasMore，由客戶端再次 SYNC）
+     */
+    private int maxFramesPerSync = 64;
+
+    /**
+     * 讀取個人收件匣的筆數上限，超過時視為收件匣不完整，一對一對話改從 MongoDB 補送
+     */
+    private int maxInboxEntries = 5000;
+}
@@ -0,0 +1,34 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Token 黑名單近端快取設定
+ * 撤銷事件寫入 Redis Stream 並以 Pub/Sub 推送，各節點在記憶體中回答黑名單查詢
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.cache.token-revocation")
+@Getter
+@Setter
+public class TokenRevocationProperties {
+
+    /**
+     * 是否啟用近端快取（停用時每個請求都查詢 Redis）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 從撤銷 Stream 補讀的間隔（Pub/Sub 通知遺失時，傳播延遲的上限）
+     */
+    private Duration syncInterval = Duration.ofSeconds(1);
+
+    /**
+     * 超過這段時間沒有成功補讀，改回每次查詢 Redis
+     */
+    private Duration maxStaleness = Duration.ofSeconds(5);
+}
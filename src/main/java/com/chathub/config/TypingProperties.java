@@ -0,0 +1,40 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 「正在輸入」通知設定
+ * 通知走獨立的 ephemeral 頻道與監聽執行緒，不會延遲 NEW_MESSAGE
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.typing")
+@Getter
+@Setter
+public class TypingProperties {
+
+    /**
+     * 合併視窗：停止輸入延後這段時間才送出，期間又開始輸入則兩者都不送
+     */
+    private Duration coalesceWindow = Duration.ofMillis(500);
+
+    /**
+     * 伺服器端過期時間：超過這段時間沒有再收到開始輸入，自動送出停止輸入
+     * 持續輸入時每半個過期時間重送一次開始輸入，讓接收端的顯示不會逾時
+     */
+    private Duration ttl = Duration.ofSeconds(6);
+
+    /**
+     * ephemeral 頻道的監聽執行緒數
+     */
+    private int listenerThreads = 2;
+
+    /**
+     * ephemeral 頻道監聽佇列上限（滿了直接丟棄，輸入通知可以遺失）
+     */
+    private int listenerQueueCapacity = 10_000;
+}
@@ -0,0 +1,39 @@
+package com.chathub.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 使用者資料快取設定
+ * L1：節點內 Caffeine；L2（選用）：Redis，多節點共用
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chathub.cache.user-profile")
+@Getter
+@Setter
+public class UserProfileCacheProperties {
+
+    /**
+     * L1 最多保留的使用者數
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * L1 寫入後的存活時間
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * 是否啟用 Redis L2
+     */
+    private boolean redisEnabled = false;
+
+    /**
+     * L2 存活時間
+     */
+    private Duration redisTtl = Duration.ofHours(1);
+}
@@ -0,0 +1,89 @@
+package com.chathub.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 虛擬執行緒 pinning 監控（只在虛擬執行緒模式啟用）
+ *
+ * 虛擬執行緒在 synchronized 區塊或 native 呼叫內阻塞時會佔住 carrier 執行緒（pinned），
+ * 太多就會退化成平台執行緒池的上限。這裡用 JFR 串流接收 jdk.VirtualThreadPinned 事件，
+ * 記錄指標並印出發生位置，方便找出需要改成 ReentrantLock 的程式碼。
+ *
+ * 指標：chathub.virtual-threads.pinned
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final Duration THRESHOLD = Duration.ofMillis(20);
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Counter pinnedCounter;
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        this.pinnedCounter = Counter.builder("chathub.virtual-threads.pinned")
+                                    .description("Virtual threads that blocked while pinned to their carrier")
+                                    .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(THRESHOLD).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("虛擬執行緒 pinning 監控已啟動（門檻 {} ms）", THRESHOLD.toMillis());
+    }
+
+    @Override
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        log.warn("虛擬執行緒被 pinned {} ms：{}", event.getDuration().toMillis(), describe(event.getStackTrace()));
+    }
+
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "（無堆疊）";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(LOGGED_FRAMES, frames.size()); i++) {
+            RecordedFrame frame = frames.get(i);
+            sb.append("\n\tat ")
+              .append(frame.getMethod().getType().getName())
+              .append('.')
+              .append(frame.getMethod().getName())
+              .append(':')
+              .append(frame.getLineNumber());
+        }
+        return sb.toString();
+    }
+}
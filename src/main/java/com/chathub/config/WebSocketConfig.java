@@ -1,28 +1,38 @@
 package com.chathub.config;
 
 import com.chathub.handler.ChatWebSocketHandler;
+import com.chathub.handler.codec.WireCodecs;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 /**
- * WebSocket 配置
+ * WebSocket 配置（Servlet；reactive profile 改用 ReactiveChatConfig）
  */
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @EnableWebSocket
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ChatWebSocketHandler chatWebSocketHandler;
     private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    private final WireCodecs wireCodecs;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // 子協定協商（Sec-WebSocket-Protocol）：客戶端要求 chathub.v1+binary 才使用二進位格式
+        DefaultHandshakeHandler handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(wireCodecs.supportedProtocols());
+
         registry
             // 註冊 WebSocket 端點
             .addHandler(chatWebSocketHandler, "/ws/chat")
+            .setHandshakeHandler(handshakeHandler)
 
             // 新增握手攔截器（JWT 驗證）
             .addInterceptors(jwtHandshakeInterceptor)
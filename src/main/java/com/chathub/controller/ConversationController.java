@@ -1,14 +1,18 @@
 package com.chathub.controller;
 
 import com.chathub.dto.ApiResponse;
+import com.chathub.dto.CursorPage;
+import com.chathub.dto.group.CreateGroupRequest;
+import com.chathub.dto.group.GroupMembersRequest;
 import com.chathub.entity.Conversation;
 import com.chathub.entity.Message;
 import com.chathub.service.ConversationService;
+import com.chathub.service.GroupService;
 import com.chathub.service.MessageService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -28,39 +32,62 @@ public class ConversationController {
 
     private final ConversationService conversationService;
     private final MessageService messageService;
+    private final GroupService groupService;
 
     /**
      * 查詢使用者的對話列表
-     * GET /api/v1/conversations?page=0&size=20
+     * GET /api/v1/conversations?size=20&before={cursor}
+     *
+     * 預設使用游標分頁（回傳 CursorPage，不計算總數；需要時加上 includeTotal=true）
+     * 舊版參數 page 仍可使用（回傳 Page，每次都會 count）
      */
     @GetMapping
-    public ResponseEntity<ApiResponse<Page<Conversation>>> getConversations(
+    public ResponseEntity<ApiResponse<?>> getConversations(
         @AuthenticationPrincipal UserDetails userDetails,
-        @RequestParam(defaultValue = "0") int page,
-        @RequestParam(defaultValue = "20") int size
+        @RequestParam(required = false) Integer page,
+        @RequestParam(defaultValue = "20") int size,
+        @RequestParam(required = false) String before,
+        @RequestParam(required = false) String after,
+        @RequestParam(defaultValue = "false") boolean includeTotal
     ) {
         UUID userId = UUID.fromString(userDetails.getUsername());
-        Pageable pageable = PageRequest.of(page, size);
 
-        Page<Conversation> conversations = conversationService
-            .getUserConversations(userId, pageable);
+        if (page != null) {
+            Page<Conversation> conversations = conversationService
+                .getUserConversations(userId, PageRequest.of(page, size));
+            return ResponseEntity.ok(ApiResponse.success("查詢成功", conversations));
+        }
+
+        CursorPage<Conversation> conversations = conversationService
+            .getUserConversations(userId, before, after, size, includeTotal);
 
         return ResponseEntity.ok(ApiResponse.success("查詢成功", conversations));
     }
 
     /**
      * 查詢對話的歷史訊息
-     * GET /api/v1/conversations/{conversationId}/messages?page=0&size=20
+     * GET /api/v1/conversations/{conversationId}/messages?size=20&before={cursor}
+     *
+     * before：往前翻（較舊的訊息）；after：取得較新的訊息；兩者皆無時從最新開始
+     * 舊版參數 page 仍可使用
      */
     @GetMapping("/{conversationId}/messages")
-    public ResponseEntity<ApiResponse<Page<Message>>> getMessages(
+    public ResponseEntity<ApiResponse<?>> getMessages(
         @PathVariable String conversationId,
-        @RequestParam(defaultValue = "0") int page,
-        @RequestParam(defaultValue = "20") int size
+        @RequestParam(required = false) Integer page,
+        @RequestParam(defaultValue = "20") int size,
+        @RequestParam(required = false) String before,
+        @RequestParam(required = false) String after,
+        @RequestParam(defaultValue = "false") boolean includeTotal
     ) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<Message> messages = messageService
-            .getConversationMessages(conversationId, pageable);
+        if (page != null) {
+            Page<Message> messages = messageService
+                .getConversationMessages(conversationId, PageRequest.of(page, size));
+            return ResponseEntity.ok(ApiResponse.success(messages));
+        }
+
+        CursorPage<Message> messages = messageService
+            .getConversationMessages(conversationId, before, after, size, includeTotal);
 
         return ResponseEntity.ok(ApiResponse.success(messages));
     }
@@ -80,6 +107,53 @@ public class ConversationController {
         return ResponseEntity.ok(ApiResponse.success("訊息已標記為已讀",null));
     }
 
+    /**
+     * 建立群組對話
+     * POST /api/v1/conversations/groups
+     */
+    @PostMapping("/groups")
+    public ResponseEntity<ApiResponse<Conversation>> createGroup(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @Valid @RequestBody CreateGroupRequest request
+    ) {
+        UUID userId = UUID.fromString(userDetails.getUsername());
+        Conversation group = groupService.createGroup(userId, request.getName(), request.getMemberIds());
+
+        return ResponseEntity.ok(ApiResponse.success("群組已建立", group));
+    }
+
+    /**
+     * 加入群組成員（操作者必須是成員）
+     * POST /api/v1/conversations/{conversationId}/members
+     */
+    @PostMapping("/{conversationId}/members")
+    public ResponseEntity<ApiResponse<Void>> addMembers(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable String conversationId,
+        @Valid @RequestBody GroupMembersRequest request
+    ) {
+        UUID userId = UUID.fromString(userDetails.getUsername());
+        groupService.addMembers(conversationId, userId, request.getMemberIds());
+
+        return ResponseEntity.ok(ApiResponse.success("成員已加入", null));
+    }
+
+    /**
+     * 移除群組成員（自行退出，或建立者移除其他成員）
+     * DELETE /api/v1/conversations/{conversationId}/members/{memberId}
+     */
+    @DeleteMapping("/{conversationId}/members/{memberId}")
+    public ResponseEntity<ApiResponse<Void>> removeMember(
+        @AuthenticationPrincipal UserDetails userDetails,
+        @PathVariable String conversationId,
+        @PathVariable UUID memberId
+    ) {
+        UUID userId = UUID.fromString(userDetails.getUsername());
+        groupService.removeMember(conversationId, userId, memberId);
+
+        return ResponseEntity.ok(ApiResponse.success("成員已移除", null));
+    }
+
     /**
      * 查詢使用者的未讀訊息總數
      * GET /api/v1/conversations/unread-count
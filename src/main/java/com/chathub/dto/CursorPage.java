@@ -0,0 +1,41 @@
+package com.chathub.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游標分頁結果（Keyset Pagination）
+ * 不計算總筆數；nextCursor 為不透明字串，原樣帶回即可取得下一頁
+ */
+@Data
+@Builder
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> content;
+
+    /**
+     * 本頁筆數
+     */
+    private int size;
+
+    /**
+     * 同方向是否還有資料
+     */
+    private boolean hasNext;
+
+    /**
+     * 下一頁的游標（沒有下一頁時為 null）
+     */
+    private String nextCursor;
+
+    /**
+     * 總筆數（只有 includeTotal=true 時才計算）
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalElements;
+}
@@ -1,24 +1,27 @@
 package com.chathub.dto;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.Instant;
-import java.util.Map;
 import java.util.UUID;
 
 /**
  * WebSocket 訊息 DTO
  * 用於客戶端與伺服器之間的通訊
+ *
+ * JSON 格式由 WebSocketMessageJson 以串流方式讀寫（不經過反射資料綁定），null 欄位不序列化
  */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@JsonInclude(JsonInclude.Include.NON_NULL)  // null 欄位不序列化
+@JsonSerialize(using = WebSocketMessageJson.Serializer.class)
+@JsonDeserialize(using = WebSocketMessageJson.Deserializer.class)
 public class WebSocketMessage {
 
     /**
@@ -27,9 +30,9 @@ public class WebSocketMessage {
     private MessageType type;
 
     /**
-     * 訊息內容（根據 type 不同而不同）
+     * 訊息內容（根據 type 不同而不同，見 WebSocketPayload）
      */
-    private Map<String, Object> payload;
+    private WebSocketPayload payload;
 
     /**
      * 時間戳記
@@ -46,6 +49,7 @@ public class WebSocketMessage {
         TYPING_STOP,       // 停止輸入
         MESSAGE_READ,      // 標記已讀
         PING,              // 心跳
+        SYNC,              // 重新連線後同步（帶各對話最後看到的訊息）
 
         // ===== 伺服器 → 客戶端 =====
         CONNECTION_ESTABLISHED,  // 連線成功
@@ -54,7 +58,17 @@ public class WebSocketMessage {
         USER_TYPING,           // 對方正在輸入
         MESSAGE_READ_RECEIPT,  // 已讀回執
         PONG,                  // 心跳回應
-        ERROR                  // 錯誤訊息
+        ERROR,                 // 錯誤訊息
+        SYNC_BATCH,            // 同步結果（一批漏掉的訊息）
+        PRESENCE               // 好友上線 / 離線
+    }
+
+    /**
+     * 建立訊息（檢查 payload 與類型是否相符）
+     */
+    public static WebSocketMessage of(MessageType type, WebSocketPayload payload) {
+        WebSocketPayload.checkType(type, payload);
+        return new WebSocketMessage(type, payload, null);
     }
 
     /**
@@ -63,10 +77,7 @@ public class WebSocketMessage {
     public static WebSocketMessage connectionEstablished(UUID userId) {
         return WebSocketMessage.builder()
                                .type(MessageType.CONNECTION_ESTABLISHED)
-                               .payload(Map.of(
-                                   "userId", userId.toString(),
-                                   "message", "WebSocket 連線成功"
-                               ))
+                               .payload(new WebSocketPayload.ConnectionEstablished(userId, "WebSocket 連線成功"))
                                .timestamp(Instant.now())
                                .build();
     }
@@ -84,14 +95,8 @@ public class WebSocketMessage {
     ) {
         return WebSocketMessage.builder()
                                .type(MessageType.NEW_MESSAGE)
-                               .payload(Map.of(
-                                   "messageId", messageId,
-                                   "conversationId", conversationId,
-                                   "senderId", senderId.toString(),
-                                   "senderUsername", senderUsername,
-                                   "content", content,
-                                   "timestamp", timestamp.toString()
-                               ))
+                               .payload(new WebSocketPayload.NewMessage(
+                                   messageId, conversationId, senderId, senderUsername, content, timestamp))
                                .timestamp(Instant.now())
                                .build();
     }
@@ -105,10 +110,7 @@ public class WebSocketMessage {
     ) {
         return WebSocketMessage.builder()
                                .type(MessageType.MESSAGE_DELIVERED)
-                               .payload(Map.of(
-                                   "messageId", messageId,
-                                   "clientMessageId", clientMessageId
-                               ))
+                               .payload(new WebSocketPayload.Delivered(messageId, clientMessageId))
                                .timestamp(Instant.now())
                                .build();
     }
@@ -123,11 +125,7 @@ public class WebSocketMessage {
     ) {
         return WebSocketMessage.builder()
                                .type(MessageType.USER_TYPING)
-                               .payload(Map.of(
-                                   "userId", userId.toString(),
-                                   "username", username,
-                                   "isTyping", isTyping
-                               ))
+                               .payload(new WebSocketPayload.UserTyping(userId, isTyping, username))
                                .timestamp(Instant.now())
                                .build();
     }
@@ -142,12 +140,7 @@ public class WebSocketMessage {
     ) {
         return WebSocketMessage.builder()
                                .type(MessageType.MESSAGE_READ_RECEIPT)
-                               .payload(Map.of(
-                                   "conversationId", conversationId,
-                                   "messageId", messageId,
-                                   "readBy", readBy.toString(),
-                                   "readAt", Instant.now().toString()
-                               ))
+                               .payload(new WebSocketPayload.ReadReceipt(conversationId, messageId, readBy, Instant.now()))
                                .timestamp(Instant.now())
                                .build();
     }
@@ -158,7 +151,7 @@ public class WebSocketMessage {
     public static WebSocketMessage pong() {
         return WebSocketMessage.builder()
                                .type(MessageType.PONG)
-                               .payload(Map.of("message", "pong"))
+                               .payload(new WebSocketPayload.Pong("pong"))
                                .timestamp(Instant.now())
                                .build();
     }
@@ -169,11 +162,8 @@ public class WebSocketMessage {
     public static WebSocketMessage error(String code, String message) {
         return WebSocketMessage.builder()
                                .type(MessageType.ERROR)
-                               .payload(Map.of(
-                                   "code", code,
-                                   "message", message
-                               ))
+                               .payload(new WebSocketPayload.ErrorDetail(code, message))
                                .timestamp(Instant.now())
                                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,444 @@
+package com.chathub.dto;
+
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload.ConnectionEstablished;
+import com.chathub.dto.WebSocketPayload.Delivered;
+import com.chathub.dto.WebSocketPayload.ErrorDetail;
+import com.chathub.dto.WebSocketPayload.MessageRead;
+import com.chathub.dto.WebSocketPayload.NewMessage;
+import com.chathub.dto.WebSocketPayload.Ping;
+import com.chathub.dto.WebSocketPayload.Pong;
+import com.chathub.dto.WebSocketPayload.Presence;
+import com.chathub.dto.WebSocketPayload.ReadReceipt;
+import com.chathub.dto.WebSocketPayload.SendMessage;
+import com.chathub.dto.WebSocketPayload.Sync;
+import com.chathub.dto.WebSocketPayload.SyncBatch;
+import com.chathub.dto.WebSocketPayload.SyncCursor;
+import com.chathub.dto.WebSocketPayload.Typing;
+import com.chathub.dto.WebSocketPayload.UserTyping;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WebSocketMessage 的 JSON 串流編解碼（JsonParser / JsonGenerator）
+ *
+ * 逐一讀寫已知欄位，不經過反射資料綁定；欄位順序不限，未知欄位略過。
+ * 解碼完成時會建立對應類型的 WebSocketPayload，欄位檢查（UUID 格式、必填）只做這一次。
+ *
+ * 格式與先前 Map payload 的 JSON 相同：
+ * {"type":"NEW_MESSAGE","payload":{"messageId":"...",...},"timestamp":"2025-01-01T00:00:00Z"}
+ */
+public final class WebSocketMessageJson {
+
+    private WebSocketMessageJson() {
+    }
+
+    // ===== 寫入 =====
+
+    public static void write(JsonGenerator gen, WebSocketMessage message) throws IOException {
+        gen.writeStartObject();
+        if (message.getType() != null) {
+            gen.writeStringField("type", message.getType().name());
+        }
+        if (message.getPayload() != null) {
+            gen.writeFieldName("payload");
+            writePayload(gen, message.getPayload());
+        }
+        writeInstant(gen, "timestamp", message.getTimestamp());
+        gen.writeEndObject();
+    }
+
+    private static void writePayload(JsonGenerator gen, WebSocketPayload payload) throws IOException {
+        gen.writeStartObject();
+        if (payload instanceof SendMessage p) {
+            writeUuid(gen, "recipientId", p.recipientId());
+            writeString(gen, "content", p.content());
+            writeString(gen, "clientMessageId", p.clientMessageId());
+            writeString(gen, "conversationId", p.conversationId());
+        } else if (payload instanceof Typing p) {
+            writeUuid(gen, "recipientId", p.recipientId());
+        } else if (payload instanceof MessageRead p) {
+            writeString(gen, "conversationId", p.conversationId());
+            writeString(gen, "messageId", p.messageId());
+        } else if (payload instanceof Sync p) {
+            gen.writeArrayFieldStart("conversations");
+            for (SyncCursor cursor : p.conversations()) {
+                gen.writeStartObject();
+                writeString(gen, "conversationId", cursor.conversationId());
+                writeString(gen, "messageId", cursor.messageId());
+                writeInstant(gen, "timestamp", cursor.timestamp());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        } else if (payload instanceof ConnectionEstablished p) {
+            writeUuid(gen, "userId", p.userId());
+            writeString(gen, "message", p.message());
+        } else if (payload instanceof NewMessage p) {
+            writeString(gen, "messageId", p.messageId());
+            writeString(gen, "conversationId", p.conversationId());
+            writeUuid(gen, "senderId", p.senderId());
+            writeString(gen, "senderUsername", p.senderUsername());
+            writeString(gen, "content", p.content());
+            writeInstant(gen, "timestamp", p.timestamp());
+        } else if (payload instanceof Delivered p) {
+            writeString(gen, "messageId", p.messageId());
+            writeString(gen, "clientMessageId", p.clientMessageId());
+        } else if (payload instanceof UserTyping p) {
+            writeUuid(gen, "userId", p.userId());
+            gen.writeBooleanField("isTyping", p.isTyping());
+            writeString(gen, "username", p.username());
+        } else if (payload instanceof ReadReceipt p) {
+            writeString(gen, "conversationId", p.conversationId());
+            writeString(gen, "messageId", p.messageId());
+            writeUuid(gen, "readBy", p.readBy());
+            writeInstant(gen, "readAt", p.readAt());
+        } else if (payload instanceof SyncBatch p) {
+            writeString(gen, "conversationId", p.conversationId());
+            gen.writeArrayFieldStart("messages");
+            for (NewMessage message : p.messages()) {
+                writePayload(gen, message);
+            }
+            gen.writeEndArray();
+            gen.writeBooleanField("hasMore", p.hasMore());
+            gen.writeBooleanField("complete", p.complete());
+        } else if (payload instanceof Presence p) {
+            writeUuid(gen, "userId", p.userId());
+            gen.writeBooleanField("online", p.online());
+        } else if (payload instanceof Pong p) {
+            writeString(gen, "message", p.message());
+        } else if (payload instanceof ErrorDetail p) {
+            writeString(gen, "code", p.code());
+            writeString(gen, "message", p.message());
+        }
+        // Ping 沒有欄位
+        gen.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator gen, String name, String value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(name, value);
+        }
+    }
+
+    private static void writeUuid(JsonGenerator gen, String name, UUID value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(name, value.toString());
+        }
+    }
+
+    private static void writeInstant(JsonGenerator gen, String name, Instant value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(name, value.toString());
+        }
+    }
+
+    // ===== 讀取 =====
+
+    /**
+     * 讀取一個 WebSocketMessage 物件（parser 位於 START_OBJECT 或尚未開始讀取）
+     * @throws IllegalArgumentException 欄位型別或內容不合法
+     */
+    public static WebSocketMessage read(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("WebSocket 訊息必須是 JSON 物件");
+        }
+
+        MessageType type = null;
+        PayloadFields fields = null;
+        Instant timestamp = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "type" -> type = parseType(scalar(parser, value, name));
+                case "payload" -> fields = value == JsonToken.VALUE_NULL ? null : PayloadFields.read(parser);
+                case "timestamp" -> timestamp = readTimestamp(parser, value);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (type == null) {
+            throw new IllegalArgumentException("type 為必填欄位");
+        }
+        WebSocketPayload payload;
+        if (fields != null) {
+            payload = fields.toPayload(type);
+        } else if (type == MessageType.PING) {
+            payload = new Ping();
+        } else {
+            throw new IllegalArgumentException(type + " 缺少 payload");
+        }
+        return new WebSocketMessage(type, payload, timestamp);
+    }
+
+    private static MessageType parseType(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("type 為必填欄位");
+        }
+        try {
+            return MessageType.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("未知的訊息類型：" + value);
+        }
+    }
+
+    /**
+     * 時間可以是 ISO-8601 字串或 epoch 毫秒
+     */
+    private static Instant readTimestamp(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return Instant.ofEpochMilli(parser.getLongValue());
+        }
+        return parseInstant("timestamp", scalar(parser, value, "timestamp"));
+    }
+
+    private static String scalar(JsonParser parser, JsonToken value, String name) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!value.isScalarValue()) {
+            throw new IllegalArgumentException(name + " 必須是字串");
+        }
+        return parser.getText();
+    }
+
+    private static UUID parseUuid(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(name + " 不是合法的 UUID：" + value);
+        }
+    }
+
+    private static Instant parseInstant(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+        Instant instant = parseUtcInstant(value);
+        if (instant != null) {
+            return instant;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(name + " 不是合法的時間：" + value);
+        }
+    }
+
+    /**
+     * 解析 Instant.toString() 產生的 UTC 時間（yyyy-MM-ddTHH:mm:ss[.fraction]Z）
+     * Instant.parse 走通用的 DateTimeFormatter，成本高出許多
+     * @return 不是這個格式時回傳 null（由呼叫端退回 Instant.parse）
+     */
+    static Instant parseUtcInstant(String value) {
+        int length = value.length();
+        if (length < 20 || length == 21 || length > 30
+            || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+            || value.charAt(13) != ':' || value.charAt(16) != ':' || value.charAt(length - 1) != 'Z'
+            || (length > 20 && value.charAt(19) != '.')) {
+            return null;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        int hour = digits(value, 11, 13);
+        int minute = digits(value, 14, 16);
+        int second = digits(value, 17, 19);
+        int nanos = 0;
+        if (length > 20) {
+            nanos = digits(value, 20, length - 1);
+            for (int i = length - 21; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        if ((year | month | day | hour | minute | second | nanos) < 0 || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        long epochDay;
+        try {
+            epochDay = LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return null;
+        }
+        return Instant.ofEpochSecond(epochDay * 86_400 + hour * 3_600L + minute * 60L + second, nanos);
+    }
+
+    /**
+     * 解析固定位置的十進位數字；含非數字時回傳 -1
+     */
+    private static int digits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * payload 欄位暫存：payload 可能出現在 type 之前，先收集欄位，讀完整個物件後再依類型建立
+     */
+    private static final class PayloadFields {
+
+        private String recipientId;
+        private String content;
+        private String clientMessageId;
+        private String conversationId;
+        private String messageId;
+        private String userId;
+        private String message;
+        private String senderId;
+        private String senderUsername;
+        private String timestamp;
+        private Boolean isTyping;
+        private String username;
+        private String readBy;
+        private String readAt;
+        private String code;
+        private List<SyncCursor> conversations;
+        private List<NewMessage> messages;
+        private Boolean hasMore;
+        private Boolean complete;
+        private Boolean online;
+
+        static PayloadFields read(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("payload 必須是 JSON 物件");
+            }
+            PayloadFields fields = new PayloadFields();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "recipientId" -> fields.recipientId = scalar(parser, value, name);
+                    case "content" -> fields.content = scalar(parser, value, name);
+                    case "clientMessageId" -> fields.clientMessageId = scalar(parser, value, name);
+                    case "conversationId" -> fields.conversationId = scalar(parser, value, name);
+                    case "messageId" -> fields.messageId = scalar(parser, value, name);
+                    case "userId" -> fields.userId = scalar(parser, value, name);
+                    case "message" -> fields.message = scalar(parser, value, name);
+                    case "senderId" -> fields.senderId = scalar(parser, value, name);
+                    case "senderUsername" -> fields.senderUsername = scalar(parser, value, name);
+                    case "timestamp" -> fields.timestamp = scalar(parser, value, name);
+                    case "isTyping" -> fields.isTyping = value == JsonToken.VALUE_TRUE ? Boolean.TRUE
+                        : value == JsonToken.VALUE_FALSE ? Boolean.FALSE : null;
+                    case "username" -> fields.username = scalar(parser, value, name);
+                    case "readBy" -> fields.readBy = scalar(parser, value, name);
+                    case "readAt" -> fields.readAt = scalar(parser, value, name);
+                    case "code" -> fields.code = scalar(parser, value, name);
+                    case "conversations" -> fields.conversations = readArray(parser, value, name, element -> {
+                        PayloadFields cursor = read(element);
+                        return new SyncCursor(cursor.conversationId, cursor.messageId,
+                                              parseInstant("timestamp", cursor.timestamp));
+                    });
+                    case "messages" -> fields.messages = readArray(parser, value, name,
+                        element -> (NewMessage) read(element).toPayload(MessageType.NEW_MESSAGE));
+                    case "hasMore" -> fields.hasMore = value == JsonToken.VALUE_TRUE;
+                    case "complete" -> fields.complete = value == JsonToken.VALUE_TRUE;
+                    case "online" -> fields.online = value == JsonToken.VALUE_TRUE;
+                    default -> parser.skipChildren();
+                }
+            }
+            return fields;
+        }
+
+        WebSocketPayload toPayload(MessageType type) {
+            return switch (type) {
+                case SEND_MESSAGE -> new SendMessage(parseUuid("recipientId", recipientId), content, clientMessageId,
+                                                     conversationId);
+                case TYPING_START, TYPING_STOP -> new Typing(parseUuid("recipientId", recipientId));
+                case MESSAGE_READ -> new MessageRead(conversationId, messageId);
+                case PING -> new Ping();
+                case CONNECTION_ESTABLISHED -> new ConnectionEstablished(parseUuid("userId", userId), message);
+                case NEW_MESSAGE -> new NewMessage(messageId, conversationId, parseUuid("senderId", senderId),
+                                                   senderUsername, content, parseInstant("timestamp", timestamp));
+                case MESSAGE_DELIVERED -> new Delivered(messageId, clientMessageId);
+                case USER_TYPING -> new UserTyping(parseUuid("userId", userId), Boolean.TRUE.equals(isTyping), username);
+                case MESSAGE_READ_RECEIPT -> new ReadReceipt(conversationId, messageId, parseUuid("readBy", readBy),
+                                                             parseInstant("readAt", readAt));
+                case PONG -> new Pong(message);
+                case ERROR -> new ErrorDetail(code, message);
+                case SYNC -> new Sync(conversations);
+                case SYNC_BATCH -> new SyncBatch(conversationId, messages, Boolean.TRUE.equals(hasMore),
+                                                 Boolean.TRUE.equals(complete));
+                case PRESENCE -> new Presence(parseUuid("userId", userId), Boolean.TRUE.equals(online));
+            };
+        }
+
+        /**
+         * 讀取物件陣列（每個元素由 elementReader 讀完整個物件）
+         */
+        private static <T> List<T> readArray(JsonParser parser, JsonToken value, String name,
+                                             ElementReader<T> elementReader) throws IOException {
+            if (value == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (value != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException(name + " 必須是陣列");
+            }
+            List<T> elements = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (elements.size() >= WebSocketPayload.MAX_SYNC_CONVERSATIONS) {
+                    throw new IllegalArgumentException(name + " 超過上限 " + WebSocketPayload.MAX_SYNC_CONVERSATIONS);
+                }
+                elements.add(elementReader.read(parser));
+            }
+            return elements;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    // ===== Jackson 整合（ObjectMapper.writeValueAsString / readValue 也走同一份程式） =====
+
+    public static class Serializer extends StdSerializer<WebSocketMessage> {
+
+        public Serializer() {
+            super(WebSocketMessage.class);
+        }
+
+        @Override
+        public void serialize(WebSocketMessage value, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+            write(gen, value);
+        }
+    }
+
+    public static class Deserializer extends StdDeserializer<WebSocketMessage> {
+
+        public Deserializer() {
+            super(WebSocketMessage.class);
+        }
+
+        @Override
+        public WebSocketMessage deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return read(parser);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.chathub.dto;
+
+import com.chathub.dto.WebSocketMessage.MessageType;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WebSocket 訊息內容（依 MessageType 區分的強型別 payload）
+ *
+ * 欄位在解碼時就完成型別轉換與檢查（UUID、必填、長度），
+ * 處理器拿到的一定是合法的物件，不需要再轉型或解析字串。
+ */
+public sealed interface WebSocketPayload {
+
+    /**
+     * 訊息內容長度上限（字元數）
+     */
+    int MAX_CONTENT_LENGTH = 4096;
+
+    /**
+     * clientMessageId 長度上限
+     */
+    int MAX_CLIENT_MESSAGE_ID_LENGTH = 128;
+
+    /**
+     * SYNC 一次最多帶的對話數
+     */
+    int MAX_SYNC_CONVERSATIONS = 1000;
+
+    /**
+     * 此 payload 是否可搭配該訊息類型
+     */
+    boolean supports(MessageType type);
+
+    // ===== 客戶端 → 伺服器 =====
+
+    /**
+     * SEND_MESSAGE：發送訊息
+     * 一對一對話填 recipientId；群組對話填 conversationId（兩者擇一）
+     */
+    record SendMessage(UUID recipientId, String content, String clientMessageId, String conversationId)
+        implements WebSocketPayload {
+        public SendMessage {
+            if ((recipientId == null) == (conversationId == null)) {
+                throw new IllegalArgumentException("recipientId 與 conversationId 必須擇一填寫");
+            }
+            require(content, "content");
+            if (content.isBlank()) {
+                throw new IllegalArgumentException("content 不可為空白");
+            }
+            if (content.length() > MAX_CONTENT_LENGTH) {
+                throw new IllegalArgumentException("content 超過長度上限 " + MAX_CONTENT_LENGTH);
+            }
+            if (clientMessageId != null && clientMessageId.length() > MAX_CLIENT_MESSAGE_ID_LENGTH) {
+                throw new IllegalArgumentException("clientMessageId 超過長度上限 " + MAX_CLIENT_MESSAGE_ID_LENGTH);
+            }
+        }
+
+        /**
+         * 一對一訊息
+         */
+        public SendMessage(UUID recipientId, String content, String clientMessageId) {
+            this(recipientId, content, clientMessageId, null);
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.SEND_MESSAGE;
+        }
+    }
+
+    /**
+     * TYPING_START / TYPING_STOP：開始 / 停止輸入
+     */
+    record Typing(UUID recipientId) implements WebSocketPayload {
+        public Typing {
+            require(recipientId, "recipientId");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.TYPING_START || type == MessageType.TYPING_STOP;
+        }
+    }
+
+    /**
+     * MESSAGE_READ：標記已讀（messageId 為空代表讀到最新）
+     */
+    record MessageRead(String conversationId, String messageId) implements WebSocketPayload {
+        public MessageRead {
+            require(conversationId, "conversationId");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.MESSAGE_READ;
+        }
+    }
+
+    /**
+     * SYNC：重新連線後同步，帶各對話最後看到的訊息（沒有列出的一對一對話從收件匣開頭補送）
+     */
+    record Sync(List<SyncCursor> conversations) implements WebSocketPayload {
+        public Sync {
+            conversations = conversations == null ? List.of() : List.copyOf(conversations);
+            if (conversations.size() > MAX_SYNC_CONVERSATIONS) {
+                throw new IllegalArgumentException("conversations 超過上限 " + MAX_SYNC_CONVERSATIONS);
+            }
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.SYNC;
+        }
+    }
+
+    /**
+     * 同步游標：對話中最後看到的訊息（NEW_MESSAGE 的 messageId 與 timestamp）
+     */
+    record SyncCursor(String conversationId, String messageId, Instant timestamp) {
+        public SyncCursor {
+            require(conversationId, "conversationId");
+            require(messageId, "messageId");
+            require(timestamp, "timestamp");
+        }
+    }
+
+    /**
+     * PING：心跳（無欄位）
+     */
+    record Ping() implements WebSocketPayload {
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.PING;
+        }
+    }
+
+    // ===== 伺服器 → 客戶端 =====
+
+    /**
+     * CONNECTION_ESTABLISHED：連線成功
+     */
+    record ConnectionEstablished(UUID userId, String message) implements WebSocketPayload {
+        public ConnectionEstablished {
+            require(userId, "userId");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.CONNECTION_ESTABLISHED;
+        }
+    }
+
+    /**
+     * NEW_MESSAGE：新訊息
+     */
+    record NewMessage(String messageId, String conversationId, UUID senderId, String senderUsername,
+                      String content, Instant timestamp) implements WebSocketPayload {
+        public NewMessage {
+            require(messageId, "messageId");
+            require(conversationId, "conversationId");
+            require(senderId, "senderId");
+            require(content, "content");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.NEW_MESSAGE;
+        }
+    }
+
+    /**
+     * MESSAGE_DELIVERED：訊息送達確認
+     */
+    record Delivered(String messageId, String clientMessageId) implements WebSocketPayload {
+        public Delivered {
+            require(messageId, "messageId");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.MESSAGE_DELIVERED;
+        }
+    }
+
+    /**
+     * USER_TYPING：對方正在輸入
+     */
+    record UserTyping(UUID userId, boolean isTyping, String username) implements WebSocketPayload {
+        public UserTyping {
+            require(userId, "userId");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.USER_TYPING;
+        }
+    }
+
+    /**
+     * MESSAGE_READ_RECEIPT：已讀回執
+     */
+    record ReadReceipt(String conversationId, String messageId, UUID readBy, Instant readAt)
+        implements WebSocketPayload {
+        public ReadReceipt {
+            require(conversationId, "conversationId");
+            require(readBy, "readBy");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.MESSAGE_READ_RECEIPT;
+        }
+    }
+
+    /**
+     * SYNC_BATCH：同步結果，一個對話的一批訊息（由舊到新）
+     * hasMore：超過同步上限，其餘請以 REST 游標分頁取得；complete：本次同步的最後一個 frame
+     */
+    record SyncBatch(String conversationId, List<NewMessage> messages, boolean hasMore, boolean complete)
+        implements WebSocketPayload {
+        public SyncBatch {
+            messages = messages == null ? List.of() : List.copyOf(messages);
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.SYNC_BATCH;
+        }
+    }
+
+    /**
+     * PRESENCE：好友上線 / 離線（所有裝置都離線，且超過寬限時間才會送出離線）
+     */
+    record Presence(UUID userId, boolean online) implements WebSocketPayload {
+        public Presence {
+            require(userId, "userId");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.PRESENCE;
+        }
+    }
+
+    /**
+     * PONG：心跳回應
+     */
+    record Pong(String message) implements WebSocketPayload {
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.PONG;
+        }
+    }
+
+    /**
+     * ERROR：錯誤訊息
+     */
+    record ErrorDetail(String code, String message) implements WebSocketPayload {
+        public ErrorDetail {
+            require(message, "message");
+        }
+
+        @Override
+        public boolean supports(MessageType type) {
+            return type == MessageType.ERROR;
+        }
+    }
+
+    private static void require(Object value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException(field + " 為必填欄位");
+        }
+    }
+
+    /**
+     * 確認 payload 與訊息類型相符
+     */
+    static void checkType(MessageType type, WebSocketPayload payload) {
+        if (type == null) {
+            throw new IllegalArgumentException("type 為必填欄位");
+        }
+        if (payload != null && !payload.supports(type)) {
+            throw new IllegalArgumentException(type + " 不能搭配 " + payload.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chathub.dto.group;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 建立群組
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateGroupRequest {
+
+    @NotBlank(message = "群組名稱不能為空")
+    @Size(max = 100, message = "群組名稱不能超過 100 字元")
+    private String name;
+
+    /**
+     * 初始成員（不含建立者，建立者會自動加入）
+     */
+    @NotNull(message = "成員名單不能為空")
+    private List<UUID> memberIds;
+}
@@ -0,0 +1,21 @@
+package com.chathub.dto.group;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 加入群組成員
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupMembersRequest {
+
+    @NotEmpty(message = "成員名單不能為空")
+    private List<UUID> memberIds;
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -16,15 +17,29 @@ import java.util.UUID;
 
 /**
  * 對話實體類（MongoDB）
- * 儲存兩個使用者之間的對話元資料
+ * 儲存一對一對話或群組對話的元資料
+ *
+ * 一對一：conversationId = {smaller-uuid}_{larger-uuid}，每則訊息累加接收者的 unreadCounts
+ * 群組：conversationId = group-{uuid}，成員名單在 participants；
+ * 訊息只存一份，不逐一累加成員的未讀數：查詢時由 readMarkers 推算（見 ConversationService.getGroupUnreadCount），
+ * lastMessage 不晚於已讀位置的群組不必查詢訊息
  */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "conversations")
+@CompoundIndex(
+    name = "participants_updated_idx",
+    def = "{'participants': 1, 'updatedAt': -1, 'conversationId': -1}"
+)
 public class Conversation {
 
+    /**
+     * 群組對話 ID 前綴（一對一對話 ID 由兩個 UUID 組成，不會以此開頭）
+     */
+    public static final String GROUP_PREFIX = "group-";
+
     /**
      * MongoDB 內部 ID
      */
@@ -38,9 +53,23 @@ public class Conversation {
     private String conversationId;
 
     /**
-     * 參與者 ID 列表（固定 2 人）
+     * 對話類型（舊資料沒有此欄位，視為一對一）
+     */
+    private Type type;
+
+    /**
+     * 群組名稱（一對一對話為 null）
+     */
+    private String name;
+
+    /**
+     * 群組建立者（可移除其他成員；一對一對話為 null）
+     */
+    private UUID ownerId;
+
+    /**
+     * 參與者 ID 列表（一對一固定 2 人；群組為成員名單）
      */
-    @Indexed
     private List<UUID> participants;
 
     /**
@@ -55,6 +84,13 @@ public class Conversation {
     @Builder.Default
     private Map<String, Integer> unreadCounts = new HashMap<>();
 
+    /**
+     * 各使用者的已讀位置（讀到哪一則訊息）
+     * key: userId
+     */
+    @Builder.Default
+    private Map<String, ReadMarker> readMarkers = new HashMap<>();
+
     /**
      * 對話建立時間
      */
@@ -63,9 +99,30 @@ public class Conversation {
     /**
      * 最後更新時間
      */
-    @Indexed
     private Instant updatedAt;
 
+    /**
+     * 產生新的群組對話 ID
+     */
+    public static String newGroupId() {
+        return GROUP_PREFIX + UUID.randomUUID();
+    }
+
+    /**
+     * 是否為群組對話 ID
+     */
+    public static boolean isGroup(String conversationId) {
+        return conversationId != null && conversationId.startsWith(GROUP_PREFIX);
+    }
+
+    /**
+     * 對話類型
+     */
+    public enum Type {
+        DIRECT,
+        GROUP
+    }
+
     /**
      * 最後一則訊息的內嵌類別
      */
@@ -79,4 +136,18 @@ public class Conversation {
         private UUID senderId;
         private Instant timestamp;
     }
-}
\ No newline at end of file
+
+    /**
+     * 已讀位置的內嵌類別
+     * timestamp 之前（含）送給該使用者的訊息都視為已讀
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReadMarker {
+        private String messageId;
+        private Instant timestamp;
+        private Instant readAt;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -21,10 +22,19 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "messages")
-@CompoundIndex(
-    name = "conversation_timestamp_idx",
-    def = "{'conversationId': 1, 'timestamp': -1}"
-)
+@CompoundIndexes({
+    // 對話歷史（游標分頁）：範圍查詢 + 排序都走索引
+    @CompoundIndex(
+        name = "conversation_timestamp_message_idx",
+        def = "{'conversationId': 1, 'timestamp': -1, 'messageId': -1}"
+    ),
+    // 未讀訊息：只索引未讀的訊息（已讀後自動移出索引，索引大小與未讀數成正比）
+    @CompoundIndex(
+        name = "unread_recipient_conversation_idx",
+        def = "{'recipientId': 1, 'conversationId': 1, 'timestamp': 1}",
+        partialFilter = "{'isRead': false}"
+    )
+})
 public class Message {
 
     /**
@@ -41,9 +51,8 @@ public class Message {
 
     /**
      * 對話 ID（由兩個使用者 ID 組成，較小的在前）
-     * 格式：{smaller-uuid}_{larger-uuid}
+     * 格式：{smaller-uuid}_{larger-uuid}；群組對話為 group-{uuid}
      */
-    @Indexed
     private String conversationId;
 
     /**
@@ -58,9 +67,8 @@ public class Message {
     private String senderUsername;
 
     /**
-     * 接收者 ID
+     * 接收者 ID（群組訊息為 null，成員以對話的 participants 為準）
      */
-    @Indexed
     private UUID recipientId;
 
     /**
@@ -71,7 +79,6 @@ public class Message {
     /**
      * 訊息時間戳記
      */
-    @Indexed
     private Instant timestamp;
 
     /**
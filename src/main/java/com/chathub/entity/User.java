@@ -1,5 +1,6 @@
 package com.chathub.entity;
 
+import com.chathub.service.cache.UserProfileCacheListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
@@ -11,6 +12,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserProfileCacheListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
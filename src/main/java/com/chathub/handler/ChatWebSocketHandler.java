@@ -1,33 +1,63 @@
 package com.chathub.handler;
 
 import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.entity.Conversation;
 import com.chathub.entity.Message;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.handler.codec.WireCodecs;
+import com.chathub.service.DeliveryRouter;
+import com.chathub.service.MessagePublisher;
 import com.chathub.service.MessageService;
-import com.chathub.service.RedisMessagePublisher;
+import com.chathub.service.PresenceRoutingService;
 import com.chathub.service.WebSocketSessionManager;
+import com.chathub.service.cache.GroupMembershipCache;
+import com.chathub.service.cache.UserProfileCache;
+import com.chathub.service.presence.PresenceService;
+import com.chathub.service.sync.SyncService;
+import com.chathub.service.typing.TypingCoalescer;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.AbstractWebSocketMessage;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
-import java.util.Map;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
  * WebSocket 訊息處理器（整合 Redis Pub/Sub）
+ *
+ * 同時接受 JSON 文字 frame 與 chathub.v1+binary 二進位 frame（見 WireCodecs）；
+ * 送出一律先產生 JSON，由連線的送出佇列依協商的協定轉換。
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class ChatWebSocketHandler extends TextWebSocketHandler {
+public class ChatWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final String OUTBOUND_QUEUE_ATTRIBUTE = "outboundQueue";
 
     private final MessageService messageService;
     private final WebSocketSessionManager sessionManager;
-    private final RedisMessagePublisher redisPublisher;
+    private final MessagePublisher redisPublisher;
+    private final DeliveryRouter deliveryRouter;
+    private final PresenceRoutingService routingService;
+    private final PresenceService presenceService;
+    private final OutboundDispatcher outboundDispatcher;
+    private final UserProfileCache userProfileCache;
+    private final GroupMembershipCache groupMembershipCache;
+    private final WireCodecs wireCodecs;
+    private final TypingCoalescer typingCoalescer;
+    private final SyncService syncService;
     private final ObjectMapper objectMapper;
 
     /**
@@ -36,185 +66,226 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         // 從 session 屬性取得 userId（在攔截器設定）
-        String userIdStr = (String) session.getAttributes().get("userId");
-
-        if (userIdStr != null) {
-            UUID userId = UUID.fromString(userIdStr);
-
-            // 註冊連線到管理器
-            sessionManager.addSession(userId, session);
+        UUID userId = getUserId(session);
+
+        if (userId != null) {
+            // 以 JWT 內的使用者名稱預熱快取，之後發訊息不必再查詢資料庫
+            userProfileCache.warm(userId, (String) session.getAttributes().get("username"));
+
+            // 所有送出都經過連線專屬的非同步佇列（依握手協商的協定編碼）
+            OutboundMessageQueue outbound = outboundDispatcher.wrap(session, wireCodecs.forSession(session));
+            session.getAttributes().put(OUTBOUND_QUEUE_ATTRIBUTE, outbound);
+            presenceService.touch(session);
+
+            // 註冊連線到管理器（同一使用者可有多個裝置）
+            // 本節點的第一個裝置才需要寫入路由表與通知好友上線
+            if (sessionManager.addSession(userId, outbound)) {
+                routingService.register(userId);
+                presenceService.userConnected(userId);
+            }
             log.info("User {} connected", userId);
 
             // 發送連線成功訊息
-            WebSocketMessage connectMsg = WebSocketMessage.builder()
-                                                          .type(WebSocketMessage.MessageType.CONNECTION_ESTABLISHED)
-                                                          .payload(Map.of("userId", userIdStr))
-                                                          .build();
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(connectMsg)));
+            WebSocketMessage connectMsg = WebSocketMessage.of(
+                MessageType.CONNECTION_ESTABLISHED, new WebSocketPayload.ConnectionEstablished(userId, null));
+            outbound.sendMessage(EncodedFrame.encode(objectMapper, connectMsg));
         }
     }
 
     /**
-     * 收到訊息時（關鍵修改！）
+     * 收到 JSON 文字訊息時
      */
     @Override
-    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String userIdStr = (String) session.getAttributes().get("userId");
-        UUID userId = UUID.fromString(userIdStr);
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        handleFrame(session, message);
+    }
+
+    /**
+     * 收到二進位訊息時（chathub.v1+binary）
+     */
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        handleFrame(session, message);
+    }
+
+    /**
+     * 收到訊息時（關鍵修改！）
+     */
+    private void handleFrame(WebSocketSession session, AbstractWebSocketMessage<?> frame) {
+        UUID userId = getUserId(session);
+        // 任何 frame 都代表連線仍然存活（閒置偵測）
+        presenceService.touch(session);
 
         try {
-            // 解析訊息
-            WebSocketMessage wsMessage = objectMapper.readValue(message.getPayload(), WebSocketMessage.class);
+            // 解析訊息（解碼時已完成欄位檢查，payload 型別與 type 一定相符）
+            WebSocketMessage wsMessage = wireCodecs.forFrame(frame).decode(frame);
 
             switch (wsMessage.getType()) {
                 case SEND_MESSAGE:
-                    handleSendMessage(userId, wsMessage);
+                    handleSendMessage(userId, (WebSocketPayload.SendMessage) wsMessage.getPayload());
                     break;
                 case TYPING_START:
-                    handleTypingStart(userId, wsMessage);
+                    handleTyping(userId, (WebSocketPayload.Typing) wsMessage.getPayload(), true);
                     break;
                 case TYPING_STOP:
-                    handleTypingStop(userId, wsMessage);
+                    handleTyping(userId, (WebSocketPayload.Typing) wsMessage.getPayload(), false);
                     break;
                 case MESSAGE_READ:
-                    handleMessageRead(userId, wsMessage);
+                    handleMessageRead(userId, (WebSocketPayload.MessageRead) wsMessage.getPayload());
+                    break;
+                case SYNC:
+                    handleSync(userId, getOutbound(session), (WebSocketPayload.Sync) wsMessage.getPayload());
+                    break;
+                case PING:
+                    handlePing(getOutbound(session));
                     break;
                 default:
                     log.warn("Unknown message type: {}", wsMessage.getType());
             }
 
+        } catch (IllegalArgumentException e) {
+            // 格式或欄位不合法（解碼時檢查）
+            log.warn("Invalid WebSocket message from {}: {}", userId, e.getMessage());
+            sendErrorMessage(getOutbound(session), "訊息格式錯誤：" + e.getMessage());
         } catch (Exception e) {
             log.error("Error handling WebSocket message", e);
-            sendErrorMessage(session, "處理訊息時發生錯誤");
+            sendErrorMessage(getOutbound(session), "處理訊息時發生錯誤");
         }
     }
 
     /**
      * 處理發送訊息（核心修改！）
      */
-    private void handleSendMessage(UUID senderId, WebSocketMessage wsMessage) {
+    private void handleSendMessage(UUID senderId, WebSocketPayload.SendMessage request) {
         try {
-            Map<String, Object> payload = wsMessage.getPayload();
-            String recipientIdStr = (String) payload.get("recipientId");
-            UUID recipientId = UUID.fromString(recipientIdStr);
-            String content = (String) payload.get("content");
-            String clientMessageId = (String) payload.get("clientMessageId");
-
-            // 1. 儲存訊息到 MongoDB
-            Message savedMessage = messageService.saveMessage(
-                senderId, recipientId, content, clientMessageId);
+            // 1. 儲存訊息到 MongoDB（群組訊息只存一份）
+            boolean group = request.conversationId() != null;
+            Message savedMessage = group
+                ? messageService.saveGroupMessage(
+                    senderId, request.conversationId(), request.content(), request.clientMessageId())
+                : messageService.saveMessage(
+                    senderId, request.recipientId(), request.content(), request.clientMessageId());
 
             // 2. 建立要推送的訊息
-            Map<String, Object> messagePayload = Map.of(
-                "messageId", savedMessage.getMessageId(),
-                "conversationId", savedMessage.getConversationId(),
-                "senderId", savedMessage.getSenderId().toString(),
-                "senderUsername", savedMessage.getSenderUsername(),
-                "content", savedMessage.getContent(),
-                "timestamp", savedMessage.getTimestamp().toString()
-            );
-
-            WebSocketMessage notification = WebSocketMessage.builder()
-                                                            .type(WebSocketMessage.MessageType.NEW_MESSAGE)
-                                                            .payload(messagePayload)
-                                                            .build();
-
-            // 3. 【關鍵】透過 Redis 發布訊息（讓所有 Pod 都收到）
-            redisPublisher.publishToUser(recipientId, notification);
+            WebSocketMessage notification = WebSocketMessage.of(
+                MessageType.NEW_MESSAGE,
+                new WebSocketPayload.NewMessage(
+                    savedMessage.getMessageId(),
+                    savedMessage.getConversationId(),
+                    savedMessage.getSenderId(),
+                    savedMessage.getSenderUsername(),
+                    savedMessage.getContent(),
+                    savedMessage.getTimestamp()
+                ));
+
+            // 3. 【關鍵】推送給收件者：連在本 Pod 時直接推送，其他節點的裝置才透過 Redis 發布
+            // 群組：發布到對話頻道一次，各節點展開給本機成員（發送者的其他裝置也會收到）
+            if (group) {
+                redisPublisher.publishToConversation(savedMessage.getConversationId(), notification);
+            } else {
+                deliveryRouter.deliverToUser(request.recipientId(), notification);
+            }
 
             // 4. 發送送達確認給發送者
-            WebSocketMessage deliveredMsg = WebSocketMessage.builder()
-                                                            .type(WebSocketMessage.MessageType.MESSAGE_DELIVERED)
-                                                            .payload(Map.of(
-                                                                "messageId", savedMessage.getMessageId(),
-                                                                "clientMessageId", clientMessageId
-                                                            ))
-                                                            .build();
-
-            // 發送者在本 Pod，直接推送
-            WebSocketSession senderSession = sessionManager.getSession(senderId);
-            if (senderSession != null && senderSession.isOpen()) {
-                senderSession.sendMessage(new TextMessage(objectMapper.writeValueAsString(deliveredMsg)));
-            }
+            WebSocketMessage deliveredMsg = WebSocketMessage.of(
+                MessageType.MESSAGE_DELIVERED,
+                new WebSocketPayload.Delivered(savedMessage.getMessageId(), request.clientMessageId()));
+
+            // 發送者在本 Pod，直接推送給發送者的所有裝置
+            sessionManager.sendToUser(senderId, EncodedFrame.encode(objectMapper, deliveredMsg));
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected message from {}: {}", senderId, e.getMessage());
         } catch (Exception e) {
             log.error("Error sending message", e);
         }
     }
 
     /**
-     * 處理「正在輸入」
+     * 處理「開始 / 停止輸入」
      */
-    private void handleTypingStart(UUID userId, WebSocketMessage wsMessage) {
+    private void handleTyping(UUID userId, WebSocketPayload.Typing request, boolean isTyping) {
         try {
-            String recipientIdStr = (String) wsMessage.getPayload().get("recipientId");
-            UUID recipientId = UUID.fromString(recipientIdStr);
-
-            WebSocketMessage typingMsg = WebSocketMessage.builder()
-                                                         .type(WebSocketMessage.MessageType.USER_TYPING)
-                                                         .payload(Map.of("userId", userId.toString(), "isTyping", true))
-                                                         .build();
-
-            // 透過 Redis 發布
-            redisPublisher.publishToUser(recipientId, typingMsg);
+            // 合併重複的開始 / 停止，再走 ephemeral 頻道發布
+            typingCoalescer.onTyping(userId, request.recipientId(), isTyping);
 
         } catch (Exception e) {
-            log.error("Error handling typing start", e);
+            log.error("Error handling typing {}", isTyping ? "start" : "stop", e);
         }
     }
 
     /**
-     * 處理「停止輸入」
+     * 處理訊息已讀
      */
-    private void handleTypingStop(UUID userId, WebSocketMessage wsMessage) {
+    private void handleMessageRead(UUID userId, WebSocketPayload.MessageRead request) {
         try {
-            String recipientIdStr = (String) wsMessage.getPayload().get("recipientId");
-            UUID recipientId = UUID.fromString(recipientIdStr);
+            String conversationId = request.conversationId();
+            String messageId = request.messageId();
+
+            // 群組：只推進自己的已讀位置，不對所有成員廣播已讀回執
+            if (Conversation.isGroup(conversationId)) {
+                if (!groupMembershipCache.isMember(conversationId, userId)) {
+                    log.warn("使用者 {} 不屬於群組 {}，忽略已讀回報", userId, conversationId);
+                    return;
+                }
+                messageService.markAsRead(conversationId, userId, messageId);
+                return;
+            }
+
+            // 對話 ID 格式：userId1_userId2，讀者必須是其中之一
+            String[] participants = conversationId.split("_");
+            if (participants.length != 2 || !Arrays.asList(participants).contains(userId.toString())) {
+                log.warn("使用者 {} 不屬於對話 {}，忽略已讀回報", userId, conversationId);
+                return;
+            }
+            String otherUserIdStr = participants[0].equals(userId.toString()) ? participants[1] : participants[0];
+            UUID otherUserId = UUID.fromString(otherUserIdStr);
 
-            WebSocketMessage typingMsg = WebSocketMessage.builder()
-                                                         .type(WebSocketMessage.MessageType.USER_TYPING)
-                                                         .payload(Map.of("userId", userId.toString(), "isTyping", false))
-                                                         .build();
+            // 推進已讀位置並批次更新訊息狀態
+            messageService.markAsRead(conversationId, userId, messageId);
 
-            // 透過 Redis 發布
-            redisPublisher.publishToUser(recipientId, typingMsg);
+            // 通知發送者（在本 Pod 時直接推送，否則透過 Redis）
+            WebSocketMessage readReceipt = WebSocketMessage.of(
+                MessageType.MESSAGE_READ_RECEIPT,
+                new WebSocketPayload.ReadReceipt(conversationId, messageId, userId, null));
+
+            deliveryRouter.deliverToUser(otherUserId, readReceipt);
 
         } catch (Exception e) {
-            log.error("Error handling typing stop", e);
+            log.error("Error handling message read", e);
         }
     }
 
     /**
-     * 處理訊息已讀
+     * 處理重連同步：依客戶端的游標補送離線期間的訊息（SYNC_BATCH，最後一個 complete=true）
      */
-    private void handleMessageRead(UUID userId, WebSocketMessage wsMessage) {
+    private void handleSync(UUID userId, OutboundMessageQueue outbound, WebSocketPayload.Sync request) {
+        if (outbound == null) {
+            return;
+        }
         try {
-            String conversationId = (String) wsMessage.getPayload().get("conversationId");
-            String messageId = (String) wsMessage.getPayload().get("messageId");
-
-            // 標記為已讀（需要在 MessageService 新增此方法）
-            // messageService.markAsRead(conversationId, messageId);
-
-            // 通知發送者（透過 Redis）
-            // 需要從對話中找出另一個使用者
-            // 簡化版：假設 conversationId = userId1_userId2
-            String[] participants = conversationId.split("_");
-            String otherUserIdStr = participants[0].equals(userId.toString()) ? participants[1] : participants[0];
-            UUID otherUserId = UUID.fromString(otherUserIdStr);
-
-            WebSocketMessage readReceipt = WebSocketMessage.builder()
-                                                           .type(WebSocketMessage.MessageType.MESSAGE_READ_RECEIPT)
-                                                           .payload(Map.of(
-                                                               "conversationId", conversationId,
-                                                               "messageId", messageId,
-                                                               "readBy", userId.toString()
-                                                           ))
-                                                           .build();
-
-            redisPublisher.publishToUser(otherUserId, readReceipt);
-
+            int synced = syncService.sync(userId, request.conversations(), batch -> {
+                try {
+                    outbound.sendMessage(EncodedFrame.encode(
+                        objectMapper, WebSocketMessage.of(MessageType.SYNC_BATCH, batch)));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("無法序列化 SYNC_BATCH", e);
+                }
+            });
+            log.info("User {} synced {} messages across {} conversations", userId, synced,
+                     request.conversations().size());
         } catch (Exception e) {
-            log.error("Error handling message read", e);
+            log.error("Error handling sync", e);
+            sendErrorMessage(outbound, "同步失敗，請稍後再試");
+        }
+    }
+
+    /**
+     * 處理心跳：回覆 PONG（最後活動時間已在 handleFrame 更新）
+     */
+    private void handlePing(OutboundMessageQueue outbound) throws IOException {
+        if (outbound != null) {
+            outbound.sendMessage(EncodedFrame.encode(objectMapper, WebSocketMessage.pong()));
         }
     }
 
@@ -223,25 +294,46 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        String userIdStr = (String) session.getAttributes().get("userId");
+        UUID userId = getUserId(session);
+
+        OutboundMessageQueue outbound = getOutbound(session);
 
-        if (userIdStr != null) {
-            UUID userId = UUID.fromString(userIdStr);
-            sessionManager.removeSession(userId);
+        if (userId != null && outbound != null) {
+            if (sessionManager.removeSession(userId, outbound)) {
+                routingService.unregister(userId);
+                presenceService.userDisconnected(userId);
+            }
+            outbound.discard();
             log.info("User {} disconnected", userId);
         }
     }
 
+    /**
+     * 從 session 屬性取得 userId（JwtHandshakeInterceptor 存入的是 UUID）
+     */
+    private UUID getUserId(WebSocketSession session) {
+        Object userId = session.getAttributes().get("userId");
+        return userId instanceof UUID ? (UUID) userId : null;
+    }
+
+    /**
+     * 取得連線的送出佇列（連線建立時放入 session 屬性）
+     */
+    private OutboundMessageQueue getOutbound(WebSocketSession session) {
+        return (OutboundMessageQueue) session.getAttributes().get(OUTBOUND_QUEUE_ATTRIBUTE);
+    }
+
     /**
      * 發送錯誤訊息
      */
     private void sendErrorMessage(WebSocketSession session, String errorMsg) {
+        if (session == null) {
+            return;
+        }
         try {
-            WebSocketMessage error = WebSocketMessage.builder()
-                                                     .type(WebSocketMessage.MessageType.ERROR)
-                                                     .payload(Map.of("message", errorMsg))
-                                                     .build();
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(error)));
+            WebSocketMessage error = WebSocketMessage.of(
+                MessageType.ERROR, new WebSocketPayload.ErrorDetail(null, errorMsg));
+            session.sendMessage(EncodedFrame.encode(objectMapper, error).textMessage());
         } catch (Exception e) {
             log.error("Error sending error message", e);
         }
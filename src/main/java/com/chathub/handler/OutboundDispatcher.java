@@ -0,0 +1,123 @@
+package com.chathub.handler;
+
+import com.chathub.config.OutboundProperties;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.handler.codec.WireCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 送出佇列的工廠與共用資源
+ * 功能：建立每個連線的 OutboundMessageQueue、提供送出執行緒池與監控指標
+ *
+ * 指標：
+ * - chathub.websocket.outbound.queue.depth{lane}：所有連線佇列中的訊息總數
+ * - chathub.websocket.outbound.dropped{type,reason}：被丟棄 / 合併的訊息數
+ */
+@Component
+public class OutboundDispatcher {
+
+    private final OutboundProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Executor senderExecutor;
+
+    private final AtomicLong priorityDepth = new AtomicLong();
+    private final AtomicLong ephemeralDepth = new AtomicLong();
+    private final Map<String, Counter> droppedCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OutboundDispatcher(OutboundProperties properties, MeterRegistry meterRegistry, Environment environment) {
+        this(properties, meterRegistry, senderExecutor(properties, environment));
+    }
+
+    OutboundDispatcher(OutboundProperties properties, MeterRegistry meterRegistry, Executor senderExecutor) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.senderExecutor = senderExecutor;
+
+        Gauge.builder("chathub.websocket.outbound.queue.depth", priorityDepth, AtomicLong::get)
+             .tag("lane", "priority")
+             .description("Messages waiting in per-session outbound queues")
+             .register(meterRegistry);
+        Gauge.builder("chathub.websocket.outbound.queue.depth", ephemeralDepth, AtomicLong::get)
+             .tag("lane", "ephemeral")
+             .description("Messages waiting in per-session outbound queues")
+             .register(meterRegistry);
+    }
+
+    /**
+     * 為連線建立送出佇列（JSON 原樣送出）
+     */
+    public OutboundMessageQueue wrap(WebSocketSession session) {
+        return wrap(session, null);
+    }
+
+    /**
+     * 為連線建立送出佇列
+     * @param codec 連線協商的編解碼器；送出前由送出執行緒把 JSON frame 轉成該格式
+     */
+    public OutboundMessageQueue wrap(WebSocketSession session, WireCodec codec) {
+        return new OutboundMessageQueue(
+            session,
+            codec,
+            this,
+            senderExecutor,
+            properties.getCapacity(),
+            properties.getDrainBatchSize(),
+            properties.getOverflowPolicy()
+        );
+    }
+
+    /**
+     * 送出執行緒：虛擬執行緒模式（Java 21 + spring.threads.virtual.enabled）每次送出一個虛擬執行緒，
+     * 否則使用固定大小的平台執行緒池
+     */
+    private static Executor senderExecutor(OutboundProperties properties, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return new VirtualThreadTaskExecutor("ws-sender-");
+        }
+        return Executors.newFixedThreadPool(properties.getSenderThreads(), new CustomizableThreadFactory("ws-sender-"));
+    }
+
+    void onEnqueued(boolean ephemeral) {
+        (ephemeral ? ephemeralDepth : priorityDepth).incrementAndGet();
+    }
+
+    void onDequeued(boolean ephemeral) {
+        (ephemeral ? ephemeralDepth : priorityDepth).decrementAndGet();
+    }
+
+    void recordDropped(MessageType type, String reason) {
+        String typeTag = type != null ? type.name() : "UNKNOWN";
+        droppedCounters.computeIfAbsent(typeTag + ":" + reason, key ->
+            Counter.builder("chathub.websocket.outbound.dropped")
+                   .tag("type", typeTag)
+                   .tag("reason", reason)
+                   .description("Outbound messages dropped or coalesced before reaching the socket")
+                   .register(meterRegistry)
+        ).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (senderExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.chathub.handler;
+
+import com.chathub.config.OutboundProperties.OverflowPolicy;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.handler.codec.WireCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 連線的非同步送出佇列（WebSocketSession 裝飾器）
+ *
+ * sendMessage 只把訊息放進佇列就返回，由送出執行緒池依序寫到 socket，
+ * 慢速客戶端不會卡住 Redis 監聽執行緒或 Tomcat 執行緒。
+ *
+ * 佇列分兩條：
+ * - 一般（NEW_MESSAGE、MESSAGE_DELIVERED…）：優先送出，不合併
+ * - 暫態（USER_TYPING）：較低優先，可依發送者合併，佇列滿時先丟棄
+ *
+ * 佇列中一律是 JSON frame（EncodedFrame 或 TextMessage，判斷類型、合併都依 JSON），
+ * 協商二進位協定的連線在送出執行緒上才轉換格式。
+ */
+@Slf4j
+public class OutboundMessageQueue extends WebSocketSessionDecorator implements EncodedFrame.Receiver {
+
+    private final WireCodec codec;
+    private final OutboundDispatcher dispatcher;
+    private final Executor senderExecutor;
+    private final int capacity;
+    private final int drainBatchSize;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<WebSocketMessage<?>> priorityQueue = new ArrayDeque<>();
+    private final LinkedHashMap<Object, WebSocketMessage<?>> ephemeralQueue = new LinkedHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    OutboundMessageQueue(WebSocketSession delegate, WireCodec codec, OutboundDispatcher dispatcher,
+                         Executor senderExecutor, int capacity, int drainBatchSize, OverflowPolicy overflowPolicy) {
+        super(delegate);
+        this.codec = codec;
+        this.dispatcher = dispatcher;
+        this.senderExecutor = senderExecutor;
+        this.capacity = capacity;
+        this.drainBatchSize = drainBatchSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * 放入佇列（不會阻塞呼叫端）
+     */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        if (closed) {
+            return;
+        }
+
+        MessageType type = sniffType(message);
+        boolean ephemeral = type == MessageType.USER_TYPING;
+        boolean overflow = false;
+
+        lock.lock();
+        try {
+            if (ephemeral && overflowPolicy == OverflowPolicy.COALESCE) {
+                String coalesceKey = sniffTypingSender(message);
+                if (coalesceKey != null && ephemeralQueue.containsKey(coalesceKey)) {
+                    // 同一發送者的輸入狀態只保留最新一筆
+                    ephemeralQueue.put(coalesceKey, message);
+                    dispatcher.recordDropped(type, "coalesced");
+                    return;
+                }
+            }
+
+            if (size() >= capacity) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    overflow = true;
+                } else if (!ephemeralQueue.isEmpty()) {
+                    // 先犧牲最舊的「正在輸入」通知
+                    Iterator<WebSocketMessage<?>> eldest = ephemeralQueue.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    dispatcher.onDequeued(true);
+                    dispatcher.recordDropped(MessageType.USER_TYPING, "overflow");
+                } else if (ephemeral) {
+                    dispatcher.recordDropped(type, "overflow");
+                    return;
+                } else {
+                    overflow = true;
+                }
+            }
+
+            if (!overflow) {
+                if (ephemeral) {
+                    String coalesceKey = overflowPolicy == OverflowPolicy.COALESCE ? sniffTypingSender(message) : null;
+                    ephemeralQueue.put(coalesceKey != null ? coalesceKey : new Object(), message);
+                } else {
+                    priorityQueue.addLast(message);
+                }
+                dispatcher.onEnqueued(ephemeral);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (overflow) {
+            dispatcher.recordDropped(type, "disconnect");
+            log.warn("Outbound queue overflow, closing session: {}", getId());
+            closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+
+        scheduleDrain();
+    }
+
+    /**
+     * 目前佇列中的訊息數
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return priorityQueue.size() + ephemeralQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 連線關閉時清空佇列
+     */
+    public void discard() {
+        closed = true;
+        lock.lock();
+        try {
+            for (int i = 0; i < priorityQueue.size(); i++) {
+                dispatcher.onDequeued(false);
+            }
+            for (int i = 0; i < ephemeralQueue.size(); i++) {
+                dispatcher.onDequeued(true);
+            }
+            priorityQueue.clear();
+            ephemeralQueue.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            senderExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * 由送出執行緒執行：每次最多送出 drainBatchSize 筆，其餘重新排程，
+     * 讓同一個執行緒池公平地服務所有連線
+     */
+    private void drain() {
+        int sent = 0;
+        while (sent < drainBatchSize) {
+            WebSocketMessage<?> next = poll();
+            if (next == null) {
+                draining.set(false);
+                // 避免與 sendMessage 競爭時遺漏剛放入的訊息
+                if (size() > 0 && draining.compareAndSet(false, true)) {
+                    continue;
+                }
+                return;
+            }
+
+            WebSocketMessage<?> frame;
+            try {
+                if (codec != null) {
+                    frame = codec.adapt(next);
+                } else {
+                    frame = next instanceof EncodedFrame encoded ? encoded.textMessage() : next;
+                }
+            } catch (Exception e) {
+                // 單則訊息無法轉換不影響連線
+                log.warn("Failed to encode outbound message as {}, dropped: {}", codec.subprotocol(), getId(), e);
+                dispatcher.recordDropped(sniffType(next), "encode");
+                sent++;
+                continue;
+            }
+
+            try {
+                getDelegate().sendMessage(frame);
+                sent++;
+            } catch (Exception e) {
+                log.warn("Failed to send outbound message, closing session: {}", getId(), e);
+                discard();
+                closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+                draining.set(false);
+                return;
+            }
+        }
+        senderExecutor.execute(this::drain);
+    }
+
+    private WebSocketMessage<?> poll() {
+        lock.lock();
+        try {
+            WebSocketMessage<?> next = priorityQueue.pollFirst();
+            if (next != null) {
+                dispatcher.onDequeued(false);
+                return next;
+            }
+            Iterator<Map.Entry<Object, WebSocketMessage<?>>> iterator = ephemeralQueue.entrySet().iterator();
+            if (iterator.hasNext()) {
+                next = iterator.next().getValue();
+                iterator.remove();
+                dispatcher.onDequeued(true);
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            getDelegate().close(status);
+        } catch (Exception e) {
+            log.debug("Error closing session: {}", getId(), e);
+        }
+    }
+
+    /**
+     * 不做完整 JSON 解析，只從文字開頭找出 "type" 欄位的值
+     * （EncodedFrame 建立時已取得類型；其他文字 frame 可能帶跳脫字元）
+     */
+    static MessageType sniffType(WebSocketMessage<?> message) {
+        if (message instanceof EncodedFrame encoded) {
+            return encoded.type();
+        }
+        if (!(message instanceof TextMessage textMessage)) {
+            return null;
+        }
+        String payload = textMessage.getPayload();
+        int index = payload.indexOf("type");
+        if (index < 0) {
+            return null;
+        }
+        int start = index + 4;
+        int length = payload.length();
+        while (start < length && !isTypeChar(payload.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < length && isTypeChar(payload.charAt(end))) {
+            end++;
+        }
+        try {
+            return MessageType.valueOf(payload.substring(start, end));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 取出 USER_TYPING 的發送者 userId（作為合併 key）
+     */
+    static String sniffTypingSender(WebSocketMessage<?> message) {
+        if (message instanceof EncodedFrame encoded) {
+            return encoded.typingSender();
+        }
+        String payload = ((TextMessage) message).getPayload();
+        int index = payload.indexOf("userId");
+        if (index < 0) {
+            return null;
+        }
+        int start = index + 6;
+        int length = payload.length();
+        while (start < length && Character.digit(payload.charAt(start), 16) < 0) {
+            start++;
+        }
+        return start + 36 <= length ? payload.substring(start, start + 36) : null;
+    }
+
+    private static boolean isTypeChar(char c) {
+        return (c >= 'A' && c <= 'Z') || c == '_';
+    }
+}
@@ -0,0 +1,539 @@
+package com.chathub.handler.codec;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.dto.WebSocketPayload.ConnectionEstablished;
+import com.chathub.dto.WebSocketPayload.Delivered;
+import com.chathub.dto.WebSocketPayload.ErrorDetail;
+import com.chathub.dto.WebSocketPayload.MessageRead;
+import com.chathub.dto.WebSocketPayload.NewMessage;
+import com.chathub.dto.WebSocketPayload.Ping;
+import com.chathub.dto.WebSocketPayload.Pong;
+import com.chathub.dto.WebSocketPayload.Presence;
+import com.chathub.dto.WebSocketPayload.ReadReceipt;
+import com.chathub.dto.WebSocketPayload.SendMessage;
+import com.chathub.dto.WebSocketPayload.Sync;
+import com.chathub.dto.WebSocketPayload.SyncBatch;
+import com.chathub.dto.WebSocketPayload.SyncCursor;
+import com.chathub.dto.WebSocketPayload.Typing;
+import com.chathub.dto.WebSocketPayload.UserTyping;
+import org.springframework.web.socket.AbstractWebSocketMessage;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 二進位編解碼器（子協定 chathub.v1+binary）
+ *
+ * Frame 格式：
+ * <pre>
+ * [版本 1 byte][類型 tag 1 byte][欄位存在位元 varint][欄位值...][timestamp（有設定時）]
+ * </pre>
+ * 每種訊息類型的欄位與順序固定（見 writePayload / readPayload），欄位名稱不上線路：
+ * - UUID：16 bytes（高位、低位各 8 bytes，big-endian）
+ * - 字串：varint 長度 + UTF-8
+ * - 時間：zigzag varint 秒數 + varint 奈秒
+ * - 對話 ID：一對一對話為 2 個 UUID（32 bytes），其他格式退回字串
+ * - 清單：varint 筆數 + 各元素（巢狀訊息各自帶存在位元，不帶 timestamp）
+ * 第 i 個欄位有值時存在位元的第 i 位為 1；timestamp 佔最後一位（位置 = 欄位數）。
+ *
+ * 類型 tag 與欄位順序一經發布就不能更動，新增欄位只能加在最後。
+ */
+public class BinaryWireCodec implements WireCodec {
+
+    public static final String SUBPROTOCOL = "chathub.v1+binary";
+
+    static final byte VERSION = 1;
+
+    /**
+     * 類型 tag（陣列索引即 tag，不使用 enum ordinal，避免調整 enum 順序時改到線上格式）
+     */
+    private static final MessageType[] TYPES_BY_TAG = {
+        MessageType.SEND_MESSAGE,
+        MessageType.TYPING_START,
+        MessageType.TYPING_STOP,
+        MessageType.MESSAGE_READ,
+        MessageType.PING,
+        MessageType.CONNECTION_ESTABLISHED,
+        MessageType.NEW_MESSAGE,
+        MessageType.MESSAGE_DELIVERED,
+        MessageType.USER_TYPING,
+        MessageType.MESSAGE_READ_RECEIPT,
+        MessageType.PONG,
+        MessageType.ERROR,
+        MessageType.SYNC,
+        MessageType.SYNC_BATCH,
+        MessageType.PRESENCE
+    };
+
+    private static final Map<MessageType, Byte> TAGS = new EnumMap<>(MessageType.class);
+
+    static {
+        for (int tag = 0; tag < TYPES_BY_TAG.length; tag++) {
+            TAGS.put(TYPES_BY_TAG[tag], (byte) tag);
+        }
+    }
+
+    private final JsonWireCodec jsonCodec;
+
+    public BinaryWireCodec(JsonWireCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+    }
+
+    @Override
+    public String subprotocol() {
+        return SUBPROTOCOL;
+    }
+
+    @Override
+    public WebSocketMessage decode(AbstractWebSocketMessage<?> frame) {
+        if (!(frame instanceof BinaryMessage binaryMessage)) {
+            throw new IllegalArgumentException("二進位協定只接受二進位 frame");
+        }
+        return decode(binaryMessage.getPayload());
+    }
+
+    /**
+     * 解析二進位 frame，欄位檢查在建立 payload 時完成
+     * @throws IllegalArgumentException frame 格式或欄位內容不合法
+     */
+    public WebSocketMessage decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.slice();
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("不支援的二進位協定版本：" + version);
+            }
+            int tag = in.get() & 0xFF;
+            if (tag >= TYPES_BY_TAG.length) {
+                throw new IllegalArgumentException("未知的訊息類型 tag：" + tag);
+            }
+            MessageType type = TYPES_BY_TAG[tag];
+
+            FrameReader reader = new FrameReader(in, readVarint(in));
+            WebSocketPayload payload = readPayload(type, reader);
+            Instant timestamp = reader.present() ? readInstant(in) : null;
+
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("二進位 frame 結尾有多餘的 " + in.remaining() + " bytes");
+            }
+            return new WebSocketMessage(type, payload, timestamp);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("二進位 frame 長度不足", e);
+        }
+    }
+
+    @Override
+    public BinaryMessage encode(WebSocketMessage message) {
+        return new BinaryMessage(encodeToBytes(message));
+    }
+
+    /**
+     * 序列化成二進位 frame
+     */
+    public byte[] encodeToBytes(WebSocketMessage message) {
+        MessageType type = message.getType();
+        WebSocketPayload payload = message.getPayload() != null ? message.getPayload() : new Ping();
+        if (type == null || !payload.supports(type)) {
+            throw new IllegalArgumentException(type + " 不能搭配 " + payload.getClass().getSimpleName());
+        }
+
+        FrameWriter out = new FrameWriter(64);
+        out.writeByte(VERSION);
+        out.writeByte(TAGS.get(type));
+        writePayload(out, payload, message.getTimestamp());
+        if (message.getTimestamp() != null) {
+            out.writeInstant(message.getTimestamp());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * JSON frame 在送出前轉成二進位
+     * EncodedFrame 的轉換結果由所有連線共用，每則訊息只轉換一次
+     */
+    @Override
+    public org.springframework.web.socket.WebSocketMessage<?> adapt(
+        org.springframework.web.socket.WebSocketMessage<?> frame) throws IOException {
+        if (frame instanceof EncodedFrame encoded) {
+            return new BinaryMessage(encoded.binary(this));
+        }
+        if (frame instanceof TextMessage textMessage) {
+            return encode(jsonCodec.decode(textMessage.getPayload()));
+        }
+        return frame;
+    }
+
+    WebSocketMessage decodeJson(byte[] json) throws IOException {
+        return jsonCodec.decode(json);
+    }
+
+    // ===== 各類型的欄位順序 =====
+
+    private static void writePayload(FrameWriter out, WebSocketPayload payload, Instant timestamp) {
+        if (payload instanceof SendMessage p) {
+            out.writeVarint(bit(0, p.recipientId()) | bit(1, p.content()) | bit(2, p.clientMessageId())
+                            | bit(3, p.conversationId()) | bit(4, timestamp));
+            if (p.recipientId() != null) {
+                out.writeUuid(p.recipientId());
+            }
+            out.writeString(p.content());
+            out.writeOptionalString(p.clientMessageId());
+            if (p.conversationId() != null) {
+                writeConversationId(out, p.conversationId());
+            }
+        } else if (payload instanceof Typing p) {
+            out.writeVarint(bit(0, p.recipientId()) | bit(1, timestamp));
+            out.writeUuid(p.recipientId());
+        } else if (payload instanceof MessageRead p) {
+            out.writeVarint(bit(0, p.conversationId()) | bit(1, p.messageId()) | bit(2, timestamp));
+            writeConversationId(out, p.conversationId());
+            out.writeOptionalString(p.messageId());
+        } else if (payload instanceof Ping) {
+            out.writeVarint(bit(0, timestamp));
+        } else if (payload instanceof ConnectionEstablished p) {
+            out.writeVarint(bit(0, p.userId()) | bit(1, p.message()) | bit(2, timestamp));
+            out.writeUuid(p.userId());
+            out.writeOptionalString(p.message());
+        } else if (payload instanceof NewMessage p) {
+            out.writeVarint(bit(0, p.messageId()) | bit(1, p.conversationId()) | bit(2, p.senderId())
+                            | bit(3, p.senderUsername()) | bit(4, p.content()) | bit(5, p.timestamp())
+                            | bit(6, timestamp));
+            writeUuid(out, "messageId", p.messageId());
+            writeConversationId(out, p.conversationId());
+            out.writeUuid(p.senderId());
+            out.writeOptionalString(p.senderUsername());
+            out.writeString(p.content());
+            if (p.timestamp() != null) {
+                out.writeInstant(p.timestamp());
+            }
+        } else if (payload instanceof Delivered p) {
+            out.writeVarint(bit(0, p.messageId()) | bit(1, p.clientMessageId()) | bit(2, timestamp));
+            writeUuid(out, "messageId", p.messageId());
+            out.writeOptionalString(p.clientMessageId());
+        } else if (payload instanceof UserTyping p) {
+            out.writeVarint(bit(0, p.userId()) | bit(1, Boolean.TRUE) | bit(2, p.username()) | bit(3, timestamp));
+            out.writeUuid(p.userId());
+            out.writeByte((byte) (p.isTyping() ? 1 : 0));
+            out.writeOptionalString(p.username());
+        } else if (payload instanceof ReadReceipt p) {
+            out.writeVarint(bit(0, p.conversationId()) | bit(1, p.messageId()) | bit(2, p.readBy())
+                            | bit(3, p.readAt()) | bit(4, timestamp));
+            writeConversationId(out, p.conversationId());
+            out.writeOptionalString(p.messageId());
+            out.writeUuid(p.readBy());
+            if (p.readAt() != null) {
+                out.writeInstant(p.readAt());
+            }
+        } else if (payload instanceof Presence p) {
+            out.writeVarint(bit(0, p.userId()) | bit(1, Boolean.TRUE) | bit(2, timestamp));
+            out.writeUuid(p.userId());
+            out.writeByte((byte) (p.online() ? 1 : 0));
+        } else if (payload instanceof Pong p) {
+            out.writeVarint(bit(0, p.message()) | bit(1, timestamp));
+            out.writeOptionalString(p.message());
+        } else if (payload instanceof ErrorDetail p) {
+            out.writeVarint(bit(0, p.code()) | bit(1, p.message()) | bit(2, timestamp));
+            out.writeOptionalString(p.code());
+            out.writeString(p.message());
+        } else if (payload instanceof Sync p) {
+            out.writeVarint(bit(0, p.conversations()) | bit(1, timestamp));
+            out.writeVarint(p.conversations().size());
+            for (SyncCursor cursor : p.conversations()) {
+                writeConversationId(out, cursor.conversationId());
+                out.writeString(cursor.messageId());
+                out.writeInstant(cursor.timestamp());
+            }
+        } else if (payload instanceof SyncBatch p) {
+            out.writeVarint(bit(0, p.conversationId()) | bit(1, p.messages()) | bit(2, Boolean.TRUE)
+                            | bit(3, Boolean.TRUE) | bit(4, timestamp));
+            if (p.conversationId() != null) {
+                writeConversationId(out, p.conversationId());
+            }
+            out.writeVarint(p.messages().size());
+            for (NewMessage message : p.messages()) {
+                writePayload(out, message, null);
+            }
+            out.writeByte((byte) (p.hasMore() ? 1 : 0));
+            out.writeByte((byte) (p.complete() ? 1 : 0));
+        }
+    }
+
+    private static WebSocketPayload readPayload(MessageType type, FrameReader r) {
+        return switch (type) {
+            case SEND_MESSAGE -> new SendMessage(r.uuid(), r.string(), r.string(), r.conversationId());
+            case TYPING_START, TYPING_STOP -> new Typing(r.uuid());
+            case MESSAGE_READ -> new MessageRead(r.conversationId(), r.string());
+            case PING -> new Ping();
+            case CONNECTION_ESTABLISHED -> new ConnectionEstablished(r.uuid(), r.string());
+            case NEW_MESSAGE -> new NewMessage(r.uuidString(), r.conversationId(), r.uuid(), r.string(), r.string(),
+                                               r.instant());
+            case MESSAGE_DELIVERED -> new Delivered(r.uuidString(), r.string());
+            case USER_TYPING -> new UserTyping(r.uuid(), r.bool(), r.string());
+            case MESSAGE_READ_RECEIPT -> new ReadReceipt(r.conversationId(), r.string(), r.uuid(), r.instant());
+            case PONG -> new Pong(r.string());
+            case ERROR -> new ErrorDetail(r.string(), r.string());
+            case SYNC -> new Sync(r.syncCursors());
+            case SYNC_BATCH -> new SyncBatch(r.conversationId(), r.newMessages(), r.bool(), r.bool());
+            case PRESENCE -> new Presence(r.uuid(), r.bool());
+        };
+    }
+
+    private static long bit(int index, Object value) {
+        return value != null ? 1L << index : 0;
+    }
+
+    private static void writeUuid(FrameWriter out, String field, String value) {
+        if (!out.writeCanonicalUuid(value, 0)) {
+            throw new IllegalArgumentException(field + " 不是標準格式的 UUID：" + value);
+        }
+    }
+
+    /**
+     * 一對一對話 ID（userId1_userId2）：前綴 2 + 兩個 UUID；其他格式：前綴 0 + 字串
+     */
+    private static void writeConversationId(FrameWriter out, String conversationId) {
+        if (conversationId.length() == 73 && conversationId.charAt(36) == '_') {
+            int mark = out.size;
+            out.writeByte((byte) 2);
+            if (out.writeCanonicalUuid(conversationId, 0) && out.writeCanonicalUuid(conversationId, 37)) {
+                return;
+            }
+            out.size = mark;
+        }
+        out.writeByte((byte) 0);
+        out.writeString(conversationId);
+    }
+
+    private static String readConversationId(ByteBuffer in) {
+        byte form = in.get();
+        return switch (form) {
+            case 2 -> new UUID(in.getLong(), in.getLong()) + "_" + new UUID(in.getLong(), in.getLong());
+            case 0 -> readString(in);
+            default -> throw new IllegalArgumentException("未知的對話 ID 格式：" + form);
+        };
+    }
+
+    private static String readString(ByteBuffer in) {
+        long length = readVarint(in);
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("字串長度超出 frame 範圍：" + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Instant readInstant(ByteBuffer in) {
+        long zigzag = readVarint(in);
+        long seconds = (zigzag >>> 1) ^ -(zigzag & 1);
+        return Instant.ofEpochSecond(seconds, readVarint(in));
+    }
+
+    static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint 過長");
+    }
+
+    /**
+     * 依欄位順序讀取；存在位元為 0 的欄位回傳 null（不讀取任何 byte）
+     * 建構子參數由左至右求值，呼叫順序即欄位順序
+     */
+    private static final class FrameReader {
+
+        private final ByteBuffer in;
+        private final long presence;
+        private int index;
+
+        private FrameReader(ByteBuffer in, long presence) {
+            this.in = in;
+            this.presence = presence;
+        }
+
+        boolean present() {
+            return (presence & (1L << index++)) != 0;
+        }
+
+        UUID uuid() {
+            return present() ? new UUID(in.getLong(), in.getLong()) : null;
+        }
+
+        String uuidString() {
+            UUID uuid = uuid();
+            return uuid != null ? uuid.toString() : null;
+        }
+
+        String string() {
+            return present() ? readString(in) : null;
+        }
+
+        boolean bool() {
+            return present() && in.get() != 0;
+        }
+
+        Instant instant() {
+            return present() ? readInstant(in) : null;
+        }
+
+        String conversationId() {
+            return present() ? readConversationId(in) : null;
+        }
+
+        List<SyncCursor> syncCursors() {
+            if (!present()) {
+                return null;
+            }
+            int count = readCount(WebSocketPayload.MAX_SYNC_CONVERSATIONS);
+            List<SyncCursor> cursors = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                cursors.add(new SyncCursor(readConversationId(in), readString(in), readInstant(in)));
+            }
+            return cursors;
+        }
+
+        List<NewMessage> newMessages() {
+            if (!present()) {
+                return null;
+            }
+            // 每則巢狀訊息至少佔 1 byte（存在位元），筆數不可能超過剩餘長度
+            int count = readCount(in.remaining());
+            List<NewMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                messages.add((NewMessage) readPayload(MessageType.NEW_MESSAGE, new FrameReader(in, readVarint(in))));
+            }
+            return messages;
+        }
+
+        private int readCount(int max) {
+            long count = readVarint(in);
+            if (count > max) {
+                throw new IllegalArgumentException("清單筆數超過上限：" + count);
+            }
+            return (int) count;
+        }
+    }
+
+    /**
+     * 可自動擴充的位元組緩衝
+     */
+    private static final class FrameWriter {
+
+        private byte[] bytes;
+        private int size;
+
+        private FrameWriter(int initialCapacity) {
+            this.bytes = new byte[initialCapacity];
+        }
+
+        void writeByte(byte value) {
+            ensureCapacity(1);
+            bytes[size++] = value;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeUuid(UUID uuid) {
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+        }
+
+        /**
+         * 直接從小寫標準格式（8-4-4-4-12）解析 UUID 寫入，不建立中間物件
+         * @return 格式不符時回傳 false（不寫入任何內容）
+         */
+        boolean writeCanonicalUuid(String value, int offset) {
+            if (value.length() < offset + 36) {
+                return false;
+            }
+            long msb = 0;
+            long lsb = 0;
+            int digits = 0;
+            for (int i = offset; i < offset + 36; i++) {
+                char c = value.charAt(i);
+                int position = i - offset;
+                if (position == 8 || position == 13 || position == 18 || position == 23) {
+                    if (c != '-') {
+                        return false;
+                    }
+                    continue;
+                }
+                int nibble = c >= '0' && c <= '9' ? c - '0' : c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+                if (nibble < 0) {
+                    return false;
+                }
+                if (digits < 16) {
+                    msb = (msb << 4) | nibble;
+                } else {
+                    lsb = (lsb << 4) | nibble;
+                }
+                digits++;
+            }
+            writeLong(msb);
+            writeLong(lsb);
+            return true;
+        }
+
+        void writeOptionalString(String value) {
+            if (value != null) {
+                writeString(value);
+            }
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        void writeInstant(Instant instant) {
+            long seconds = instant.getEpochSecond();
+            writeVarint((seconds << 1) ^ (seconds >> 63));
+            writeVarint(instant.getNano());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.chathub.handler.codec;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 已序列化好的送出訊息（只序列化一次，之後都傳遞同一份 bytes）
+ *
+ * 發送端：WebSocketMessage → UTF-8 JSON bytes → 原樣 PUBLISH 到 Redis
+ * 接收端：Redis 收到的 bytes 直接包成 EncodedFrame → 所有裝置共用
+ * - JSON 連線共用同一個 TextMessage（整個 frame 只做一次 UTF-8 解碼）
+ * - 二進位連線共用同一份二進位 bytes（第一次需要時才轉換）
+ *
+ * 訊息類型與 USER_TYPING 的發送者在建立時就取得，送出佇列不需要再從字串裡找。
+ */
+public final class EncodedFrame implements org.springframework.web.socket.WebSocketMessage<byte[]> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final byte[] json;
+    private final MessageType type;
+    private final String typingSender;
+
+    private volatile WebSocketMessage message;
+    private volatile TextMessage textMessage;
+    private volatile byte[] binary;
+
+    private EncodedFrame(byte[] json, MessageType type, String typingSender, WebSocketMessage message) {
+        this.json = json;
+        this.type = type;
+        this.typingSender = typingSender;
+        this.message = message;
+    }
+
+    /**
+     * 序列化訊息（ObjectMapper 會使用 WebSocketMessageJson 串流寫入）
+     */
+    public static EncodedFrame encode(ObjectMapper objectMapper, WebSocketMessage message)
+        throws JsonProcessingException {
+        String typingSender = message.getPayload() instanceof WebSocketPayload.UserTyping typing
+            ? typing.userId().toString() : null;
+        return new EncodedFrame(objectMapper.writeValueAsBytes(message), message.getType(), typingSender, message);
+    }
+
+    /**
+     * 包裝已序列化的 JSON bytes（例如 Redis 收到的訊息）
+     * 只讀取開頭的 type（與 USER_TYPING 的 userId），不做完整解析
+     */
+    public static EncodedFrame wrap(byte[] json) {
+        MessageType type = null;
+        String typingSender = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING) {
+                // 舊版節點送出的「JSON 字串的 JSON」，拆掉外層
+                return wrap(parser.getText().getBytes(StandardCharsets.UTF_8));
+            }
+            while (token == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if ("type".equals(name)) {
+                    type = parseType(parser.getValueAsString());
+                } else if ("payload".equals(name) && type == MessageType.USER_TYPING) {
+                    typingSender = findField(parser, "userId");
+                } else {
+                    parser.skipChildren();
+                }
+                if (type != null && (type != MessageType.USER_TYPING || typingSender != null)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // 不是合法 JSON：類型未知，仍照原樣送出
+        }
+        return new EncodedFrame(json, type, typingSender, null);
+    }
+
+    /**
+     * JSON bytes（發布到 Redis 的內容）
+     */
+    public byte[] json() {
+        return json;
+    }
+
+    /**
+     * 訊息類型（無法判斷時為 null）
+     */
+    public MessageType type() {
+        return type;
+    }
+
+    /**
+     * USER_TYPING 的發送者 userId（送出佇列的合併 key）
+     */
+    public String typingSender() {
+        return typingSender;
+    }
+
+    /**
+     * JSON 連線使用的 frame（所有連線共用同一個實例）
+     */
+    public TextMessage textMessage() {
+        TextMessage result = textMessage;
+        if (result == null) {
+            result = new TextMessage(json);
+            textMessage = result;
+        }
+        return result;
+    }
+
+    /**
+     * 二進位連線使用的 bytes（第一次需要時才轉換，之後共用）
+     * BinaryMessage 內的 ByteBuffer 送出時會被讀取，不能共用，只共用底層 bytes
+     */
+    byte[] binary(BinaryWireCodec codec) throws IOException {
+        byte[] result = binary;
+        if (result == null) {
+            WebSocketMessage decoded = message;
+            if (decoded == null) {
+                decoded = codec.decodeJson(json);
+                message = decoded;
+            }
+            result = codec.encodeToBytes(decoded);
+            binary = result;
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] getPayload() {
+        return json;
+    }
+
+    @Override
+    public int getPayloadLength() {
+        return json.length;
+    }
+
+    @Override
+    public boolean isLast() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedFrame[type=" + type + ", length=" + json.length + "]";
+    }
+
+    private static MessageType parseType(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return MessageType.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String findField(JsonParser parser, String field) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            if (field.equals(name)) {
+                return parser.getValueAsString();
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    /**
+     * 可以直接接收 EncodedFrame 的連線（送出前自行轉成協商的格式）
+     * 其他連線一律收到 textMessage()
+     */
+    public interface Receiver {
+    }
+}
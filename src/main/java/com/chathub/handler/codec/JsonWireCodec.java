@@ -0,0 +1,86 @@
+package com.chathub.handler.codec;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessageJson;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.web.socket.AbstractWebSocketMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * JSON 編解碼器（預設格式）
+ * 直接使用 JsonParser / JsonGenerator 串流讀寫（見 WebSocketMessageJson），不經過 ObjectMapper 資料綁定
+ */
+public class JsonWireCodec implements WireCodec {
+
+    public static final String SUBPROTOCOL = "chathub.v1+json";
+
+    private final JsonFactory jsonFactory;
+
+    public JsonWireCodec(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    public String subprotocol() {
+        return SUBPROTOCOL;
+    }
+
+    @Override
+    public WebSocketMessage decode(AbstractWebSocketMessage<?> frame) throws IOException {
+        if (!(frame instanceof TextMessage textMessage)) {
+            throw new IllegalArgumentException("JSON 協定只接受文字 frame");
+        }
+        return decode(textMessage.getPayload());
+    }
+
+    /**
+     * 解析 JSON 字串
+     * Redis 轉送的內容可能是「JSON 字串的 JSON」（序列化兩次），需要先拆一層
+     */
+    public WebSocketMessage decode(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                return decode(parser.getText());
+            }
+            return WebSocketMessageJson.read(parser);
+        }
+    }
+
+    /**
+     * 解析 UTF-8 JSON bytes（Redis 收到的內容）
+     */
+    public WebSocketMessage decode(byte[] json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                return decode(parser.getText());
+            }
+            return WebSocketMessageJson.read(parser);
+        }
+    }
+
+    @Override
+    public TextMessage encode(WebSocketMessage message) throws IOException {
+        return new TextMessage(encodeToString(message));
+    }
+
+    public String encodeToString(WebSocketMessage message) throws IOException {
+        // 只使用 JsonFactory 的公開 API；產生器內部的緩衝區仍由 JsonFactory 回收
+        StringWriter writer = new StringWriter(256);
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            WebSocketMessageJson.write(generator, message);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public org.springframework.web.socket.WebSocketMessage<?> adapt(
+        org.springframework.web.socket.WebSocketMessage<?> frame) {
+        return frame instanceof EncodedFrame encoded ? encoded.textMessage() : frame;
+    }
+}
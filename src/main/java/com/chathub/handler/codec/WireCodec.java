@@ -0,0 +1,38 @@
+package com.chathub.handler.codec;
+
+import com.chathub.dto.WebSocketMessage;
+import org.springframework.web.socket.AbstractWebSocketMessage;
+
+import java.io.IOException;
+
+/**
+ * WebSocket 線上格式（Wire Protocol）編解碼器
+ *
+ * 每個連線在握手時以 Sec-WebSocket-Protocol 協商格式：
+ * - 未指定或 chathub.v1+json：JSON 文字 frame（預設）
+ * - chathub.v1+binary：固定欄位順序的二進位 frame
+ */
+public interface WireCodec {
+
+    /**
+     * 對應的子協定名稱
+     */
+    String subprotocol();
+
+    /**
+     * 解析客戶端送來的 frame
+     */
+    WebSocketMessage decode(AbstractWebSocketMessage<?> frame) throws IOException;
+
+    /**
+     * 序列化要送給客戶端的訊息
+     */
+    AbstractWebSocketMessage<?> encode(WebSocketMessage message) throws IOException;
+
+    /**
+     * 把已序列化成 JSON 的 frame（Redis 轉送、處理器產生）轉成本格式
+     * 已經是本格式的 frame 原樣返回
+     */
+    org.springframework.web.socket.WebSocketMessage<?> adapt(org.springframework.web.socket.WebSocketMessage<?> frame)
+        throws IOException;
+}
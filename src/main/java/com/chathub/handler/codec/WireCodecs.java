@@ -0,0 +1,50 @@
+package com.chathub.handler.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.AbstractWebSocketMessage;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 依連線協商結果選擇編解碼器
+ */
+@Component
+public class WireCodecs {
+
+    private final JsonWireCodec jsonCodec;
+    private final BinaryWireCodec binaryCodec;
+
+    public WireCodecs(ObjectMapper objectMapper) {
+        this.jsonCodec = new JsonWireCodec(objectMapper.getFactory());
+        this.binaryCodec = new BinaryWireCodec(jsonCodec);
+    }
+
+    /**
+     * 握手時可接受的子協定（客戶端未指定時使用 JSON）
+     */
+    public String[] supportedProtocols() {
+        return new String[] { BinaryWireCodec.SUBPROTOCOL, JsonWireCodec.SUBPROTOCOL };
+    }
+
+    /**
+     * 連線送出訊息時使用的編解碼器
+     */
+    public WireCodec forSession(WebSocketSession session) {
+        return forProtocol(session.getAcceptedProtocol());
+    }
+
+    /**
+     * 依握手接受的子協定選擇編解碼器（未指定時為 JSON）
+     */
+    public WireCodec forProtocol(String acceptedProtocol) {
+        return BinaryWireCodec.SUBPROTOCOL.equals(acceptedProtocol) ? binaryCodec : jsonCodec;
+    }
+
+    /**
+     * 解析收到的 frame：依 frame 種類判斷，文字一律是 JSON
+     */
+    public WireCodec forFrame(AbstractWebSocketMessage<?> frame) {
+        return frame instanceof BinaryMessage ? binaryCodec : jsonCodec;
+    }
+}
@@ -0,0 +1,53 @@
+package com.chathub.reactive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+/**
+ * WebSocket 與 Redis Pub/Sub 配置（reactive profile，取代 WebSocketConfig 與 RedisConfig 的監聽容器）
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveChatConfig {
+
+    /**
+     * 註冊 WebSocket 端點（與 Servlet 版相同路徑，子協定由 handler 的 getSubProtocols 協商）
+     */
+    @Bean
+    public HandlerMapping chatWebSocketMapping(ReactiveChatWebSocketHandler handler) {
+        // 優先於 RequestMapping，避免 /ws/chat 被當成一般 HTTP 請求
+        return new SimpleUrlHandlerMapping(Map.of("/ws/chat", handler), -1);
+    }
+
+    /**
+     * 反應式訂閱容器（整個節點共用一條 Pub/Sub 連線）
+     */
+    @Bean(destroyMethod = "destroy")
+    public ReactiveRedisMessageListenerContainer reactiveRedisMessageListenerContainer(
+        ReactiveRedisConnectionFactory connectionFactory) {
+        return new ReactiveRedisMessageListenerContainer(connectionFactory);
+    }
+
+    /**
+     * 發布用 Template：value 直接是 EncodedFrame 的 JSON bytes，不再序列化
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> reactivePubSubTemplate(ReactiveRedisConnectionFactory connectionFactory) {
+        RedisSerializationContext<String, byte[]> context = RedisSerializationContext
+            .<String, byte[]>newSerializationContext(RedisSerializer.string())
+            .value(SerializationPair.byteArray())
+            .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+}
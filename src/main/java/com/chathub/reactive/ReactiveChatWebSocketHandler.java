@@ -0,0 +1,313 @@
+package com.chathub.reactive;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.handler.codec.WireCodec;
+import com.chathub.handler.codec.WireCodecs;
+import com.chathub.repository.ReactiveConversationRepository;
+import com.chathub.security.JwtTokenProvider;
+import com.chathub.security.VerifiedToken;
+import com.chathub.service.MessageService;
+import com.chathub.service.cache.GroupMembershipCache;
+import com.chathub.service.sync.SyncService;
+import com.chathub.service.typing.TypingCoalescer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.socket.AbstractWebSocketMessage;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WebSocket 訊息處理器（反應式，reactive profile）
+ *
+ * 與 ChatWebSocketHandler 相同的協定（JSON / chathub.v1+binary）與 Redis 頻道，差別在：
+ * - 閒置連線不佔執行緒；收到的 frame 依序處理（concatMap），處理完才讀下一個，
+ *   客戶端送太快時由 TCP 視窗擋住
+ * - 送出走連線自己的有界 sink，socket 可寫入時才取下一筆（見 ReactiveOutbound）
+ * - 發送訊息全程反應式（Reactive MongoDB + Lettuce）；已讀回報、正在輸入與重連同步仍呼叫阻塞式服務，
+ *   在 boundedElastic 上執行
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveChatWebSocketHandler implements WebSocketHandler {
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final ReactiveSessionRegistry sessionRegistry;
+    private final ReactiveMessageRelay relay;
+    private final ReactiveMessageService reactiveMessageService;
+    private final ReactiveConversationRepository conversationRepository;
+    private final MessageService messageService;
+    private final TypingCoalescer typingCoalescer;
+    private final GroupMembershipCache groupMembershipCache;
+    private final SyncService syncService;
+    private final WireCodecs wireCodecs;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public List<String> getSubProtocols() {
+        return Arrays.asList(wireCodecs.supportedProtocols());
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        ChatUser user = authenticate(session.getHandshakeInfo().getUri());
+        if (user == null) {
+            return session.close(CloseStatus.POLICY_VIOLATION);
+        }
+
+        WireCodec codec = wireCodecs.forProtocol(session.getHandshakeInfo().getSubProtocol());
+        ReactiveOutbound outbound = sessionRegistry.open(user.id());
+        log.info("User {} connected", user.id());
+
+        send(outbound, WebSocketMessage.of(
+            MessageType.CONNECTION_ESTABLISHED, new WebSocketPayload.ConnectionEstablished(user.id(), null)));
+
+        Mono<Void> output = session.send(outbound.frames().mapNotNull(frame -> toSocketMessage(session, codec, frame)));
+        Mono<Void> input = session.receive()
+                                  .concatMap(frame -> handleFrame(user, outbound, frame))
+                                  .then()
+                                  .doFinally(signal -> outbound.complete());
+
+        return Mono.zip(input, output)
+                   .then()
+                   .doFinally(signal -> {
+                       sessionRegistry.close(user.id(), outbound);
+                       log.info("User {} disconnected", user.id());
+                   });
+    }
+
+    /**
+     * 處理收到的 frame（錯誤只回覆給發送者，不中斷連線）
+     */
+    private Mono<Void> handleFrame(ChatUser user, ReactiveOutbound outbound,
+                                   org.springframework.web.reactive.socket.WebSocketMessage frame) {
+        WebSocketMessage wsMessage;
+        try {
+            AbstractWebSocketMessage<?> decodable = toDecodable(frame);
+            wsMessage = wireCodecs.forFrame(decodable).decode(decodable);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid WebSocket message from {}: {}", user.id(), e.getMessage());
+            sendError(outbound, "訊息格式錯誤：" + e.getMessage());
+            return Mono.empty();
+        } catch (Exception e) {
+            log.error("Error decoding WebSocket message", e);
+            sendError(outbound, "處理訊息時發生錯誤");
+            return Mono.empty();
+        }
+
+        Mono<Void> handling = switch (wsMessage.getType()) {
+            case SEND_MESSAGE -> handleSendMessage(user, (WebSocketPayload.SendMessage) wsMessage.getPayload());
+            case TYPING_START -> handleTyping(user.id(), (WebSocketPayload.Typing) wsMessage.getPayload(), true);
+            case TYPING_STOP -> handleTyping(user.id(), (WebSocketPayload.Typing) wsMessage.getPayload(), false);
+            case MESSAGE_READ -> handleMessageRead(user.id(), (WebSocketPayload.MessageRead) wsMessage.getPayload());
+            case PING -> Mono.fromRunnable(() -> send(outbound, WebSocketMessage.pong()));
+            case SYNC -> handleSync(user.id(), outbound, (WebSocketPayload.Sync) wsMessage.getPayload());
+            default -> {
+                log.warn("Unknown message type: {}", wsMessage.getType());
+                yield Mono.empty();
+            }
+        };
+        return handling.onErrorResume(e -> {
+            log.error("Error handling WebSocket message", e);
+            sendError(outbound, "處理訊息時發生錯誤");
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * 發送訊息：儲存 → 發布給接收者 → 回覆送達確認給發送者的所有裝置
+     */
+    private Mono<Void> handleSendMessage(ChatUser sender, WebSocketPayload.SendMessage request) {
+        boolean group = request.conversationId() != null;
+        Mono<Message> saving = group
+            ? reactiveMessageService.saveGroupMessage(sender.id(), sender.username(), request.conversationId(),
+                                                      request.content(), request.clientMessageId())
+            : reactiveMessageService.saveMessage(sender.id(), sender.username(), request.recipientId(),
+                                                 request.content(), request.clientMessageId());
+        return saving
+            .flatMap(saved -> {
+                EncodedFrame notification = encode(WebSocketMessage.of(
+                    MessageType.NEW_MESSAGE,
+                    new WebSocketPayload.NewMessage(
+                        saved.getMessageId(),
+                        saved.getConversationId(),
+                        saved.getSenderId(),
+                        saved.getSenderUsername(),
+                        saved.getContent(),
+                        saved.getTimestamp()
+                    )));
+                EncodedFrame delivered = encode(WebSocketMessage.of(
+                    MessageType.MESSAGE_DELIVERED,
+                    new WebSocketPayload.Delivered(saved.getMessageId(), request.clientMessageId())));
+
+                Mono<Void> publishing = group
+                    ? relay.publishToConversation(saved.getConversationId(), notification)
+                    : relay.publishToUser(request.recipientId(), notification, false);
+                return publishing.then(Mono.<Void>fromRunnable(() -> sessionRegistry.deliver(sender.id(), delivered)));
+            })
+            .onErrorResume(IllegalArgumentException.class, e -> {
+                log.warn("Rejected message from {}: {}", sender.id(), e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * 開始 / 停止輸入（合併後走 ephemeral 頻道）
+     */
+    private Mono<Void> handleTyping(UUID userId, WebSocketPayload.Typing request, boolean isTyping) {
+        return Mono.<Void>fromRunnable(() -> typingCoalescer.onTyping(userId, request.recipientId(), isTyping))
+                   .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 已讀回報：與 Servlet 版相同的檢查，推進已讀位置後通知對方
+     */
+    private Mono<Void> handleMessageRead(UUID userId, WebSocketPayload.MessageRead request) {
+        String conversationId = request.conversationId();
+        if (Conversation.isGroup(conversationId)) {
+            return handleGroupRead(userId, conversationId, request.messageId());
+        }
+        String[] participants = conversationId.split("_");
+        if (participants.length != 2 || !Arrays.asList(participants).contains(userId.toString())) {
+            log.warn("使用者 {} 不屬於對話 {}，忽略已讀回報", userId, conversationId);
+            return Mono.empty();
+        }
+        UUID otherUserId = UUID.fromString(participants[0].equals(userId.toString()) ? participants[1] : participants[0]);
+
+        EncodedFrame readReceipt = encode(WebSocketMessage.of(
+            MessageType.MESSAGE_READ_RECEIPT,
+            new WebSocketPayload.ReadReceipt(conversationId, request.messageId(), userId, null)));
+
+        return conversationRepository.existsByConversationId(conversationId)
+                                     .filter(Boolean::booleanValue)
+                                     .flatMap(exists -> Mono.fromRunnable(
+                                                                () -> messageService.markAsRead(conversationId, userId, request.messageId()))
+                                                            .subscribeOn(Schedulers.boundedElastic()))
+                                     .then(relay.publishToUser(otherUserId, readReceipt, false));
+    }
+
+    /**
+     * 群組已讀：只推進自己的已讀位置，不對所有成員廣播已讀回執
+     */
+    private Mono<Void> handleGroupRead(UUID userId, String conversationId, String messageId) {
+        return Mono.fromRunnable(() -> {
+                       if (!groupMembershipCache.isMember(conversationId, userId)) {
+                           log.warn("使用者 {} 不屬於群組 {}，忽略已讀回報", userId, conversationId);
+                           return;
+                       }
+                       messageService.markAsRead(conversationId, userId, messageId);
+                   })
+                   .subscribeOn(Schedulers.boundedElastic())
+                   .then();
+    }
+
+    /**
+     * 重連同步：補送的 SYNC_BATCH 放入連線的送出佇列（frame 數由 SyncService 控制在佇列容量內）
+     */
+    private Mono<Void> handleSync(UUID userId, ReactiveOutbound outbound, WebSocketPayload.Sync request) {
+        return Mono.fromRunnable(() -> {
+                       int synced = syncService.sync(userId, request.conversations(),
+                                                     batch -> send(outbound, WebSocketMessage.of(MessageType.SYNC_BATCH, batch)));
+                       log.info("User {} synced {} messages across {} conversations", userId, synced,
+                                request.conversations().size());
+                   })
+                   .subscribeOn(Schedulers.boundedElastic())
+                   .then();
+    }
+
+    /**
+     * 從握手 URL 的 token 參數驗證使用者（格式：ws://host/ws/chat?token=xxx）
+     */
+    private ChatUser authenticate(URI uri) {
+        try {
+            String token = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("token");
+            if (token == null || token.isEmpty()) {
+                log.warn("WebSocket 握手失敗：token 缺少");
+                return null;
+            }
+            VerifiedToken verified = jwtTokenProvider.verify(token);
+            return new ChatUser(verified.userId(), verified.username());
+        } catch (JwtException e) {
+            log.warn("WebSocket 握手失敗：token 無效或過期");
+            return null;
+        } catch (Exception e) {
+            log.error("WebSocket 握手異常：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 轉成既有編解碼器可解析的 frame（文字一律是 JSON，二進位是 chathub.v1+binary）
+     */
+    private static AbstractWebSocketMessage<?> toDecodable(org.springframework.web.reactive.socket.WebSocketMessage frame) {
+        if (frame.getType() == org.springframework.web.reactive.socket.WebSocketMessage.Type.BINARY) {
+            DataBuffer payload = frame.getPayload();
+            byte[] bytes = new byte[payload.readableByteCount()];
+            payload.read(bytes);
+            return new BinaryMessage(bytes);
+        }
+        return new TextMessage(frame.getPayloadAsText());
+    }
+
+    /**
+     * EncodedFrame → 連線協商的格式；JSON 直接包住共用的 bytes，不複製
+     */
+    private org.springframework.web.reactive.socket.WebSocketMessage toSocketMessage(
+        WebSocketSession session, WireCodec codec, EncodedFrame frame) {
+        try {
+            org.springframework.web.socket.WebSocketMessage<?> adapted = codec.adapt(frame);
+            if (adapted instanceof BinaryMessage binary) {
+                return new org.springframework.web.reactive.socket.WebSocketMessage(
+                    org.springframework.web.reactive.socket.WebSocketMessage.Type.BINARY,
+                    session.bufferFactory().wrap(binary.getPayload()));
+            }
+            return new org.springframework.web.reactive.socket.WebSocketMessage(
+                org.springframework.web.reactive.socket.WebSocketMessage.Type.TEXT,
+                session.bufferFactory().wrap(((TextMessage) adapted).asBytes()));
+        } catch (Exception e) {
+            log.warn("Failed to encode {} for session {}", frame, session.getId(), e);
+            return null;
+        }
+    }
+
+    private void send(ReactiveOutbound outbound, WebSocketMessage message) {
+        outbound.offer(encode(message));
+    }
+
+    private void sendError(ReactiveOutbound outbound, String errorMsg) {
+        send(outbound, WebSocketMessage.of(MessageType.ERROR, new WebSocketPayload.ErrorDetail(null, errorMsg)));
+    }
+
+    private EncodedFrame encode(WebSocketMessage message) {
+        try {
+            return EncodedFrame.encode(objectMapper, message);
+        } catch (Exception e) {
+            throw new IllegalStateException("無法序列化訊息：" + message.getType(), e);
+        }
+    }
+
+    private record ChatUser(UUID id, String username) {
+    }
+}
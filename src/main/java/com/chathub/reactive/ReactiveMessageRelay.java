@@ -0,0 +1,167 @@
+package com.chathub.reactive;
+
+import com.chathub.config.BusProperties;
+import com.chathub.config.NodeProperties;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.service.PresenceRoutingService;
+import com.chathub.service.RedisChannels;
+import com.chathub.service.cache.GroupMembershipCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 反應式 Redis Pub/Sub（reactive profile 的 RedisMessagePublisher + RedisMessageSubscriber）
+ *
+ * 頻道與 Servlet 版相同（見 RedisChannels），兩種節點可以混合部署；群組訊息同樣在本節點依成員名單展開。
+ * 只支援 Pub/Sub 匯流排（chathub.bus.type=pubsub）。
+ * 訂閱：整個節點共用一條訂閱連線；收到的 bytes 包成 EncodedFrame 放入連線的有界佇列，
+ * 不在訂閱執行緒上等待任何一個 socket，單一慢連線不會讓 Lettuce 停止讀取。
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveMessageRelay implements SmartLifecycle {
+
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+    private final ReactiveRedisTemplate<String, byte[]> reactivePubSubTemplate;
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final ReactiveSessionRegistry sessionRegistry;
+    private final NodeProperties nodeProperties;
+    private final GroupMembershipCache membershipCache;
+    private final BusProperties busProperties;
+
+    private volatile Disposable subscription;
+
+    /**
+     * 發布到使用者所在的節點（查無路由時依設定廣播）
+     * @param ephemeral true 走 ephemeral 頻道（正在輸入）
+     */
+    public Mono<Void> publishToUser(UUID userId, EncodedFrame frame, boolean ephemeral) {
+        String user = userId.toString();
+        return reactiveStringRedisTemplate.<String, String>opsForHash()
+                                          .entries(PresenceRoutingService.routeKey(user))
+                                          .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                                          .map(PresenceRoutingService::liveNodes)
+                                          .onErrorResume(e -> {
+                                              log.warn("Route lookup failed for user {}, falling back", user, e);
+                                              return Mono.just(Set.of());
+                                          })
+                                          .flatMapMany(nodes -> channels(user, nodes))
+                                          .map(channel -> ephemeral ? RedisChannels.ephemeral(channel) : channel)
+                                          .flatMap(channel -> reactivePubSubTemplate.convertAndSend(channel, frame.json()))
+                                          .then()
+                                          .onErrorResume(e -> {
+                                              log.error("Failed to publish message to user: {}", user, e);
+                                              return Mono.empty();
+                                          });
+    }
+
+    /**
+     * 發布群組訊息到對話頻道（只發布一次，各節點依成員名單展開）
+     */
+    public Mono<Void> publishToConversation(String conversationId, EncodedFrame frame) {
+        return reactivePubSubTemplate.convertAndSend(RedisChannels.conversation(conversationId), frame.json())
+                                     .then()
+                                     .onErrorResume(e -> {
+                                         log.error("Failed to publish message to conversation: {}", conversationId, e);
+                                         return Mono.empty();
+                                     });
+    }
+
+    private Flux<String> channels(String userId, Set<String> nodes) {
+        if (nodes.isEmpty()) {
+            return nodeProperties.isFallbackBroadcast() ? Flux.just(RedisChannels.user(userId)) : Flux.empty();
+        }
+        return Flux.fromIterable(nodes).map(nodeId -> RedisChannels.nodeUser(nodeId, userId));
+    }
+
+    @Override
+    public void start() {
+        if (busProperties.getType() != BusProperties.Type.PUBSUB) {
+            log.warn("Reactive relay only supports the pubsub bus, ignoring chathub.bus.type={}",
+                     busProperties.getType());
+        }
+        String nodePattern = RedisChannels.nodePattern(nodeProperties.getId());
+        String userPattern = RedisChannels.USER_PREFIX + "*";
+        List<PatternTopic> topics = List.of(
+            new PatternTopic(nodePattern),
+            new PatternTopic(userPattern),
+            new PatternTopic(RedisChannels.ephemeral(nodePattern)),
+            new PatternTopic(RedisChannels.ephemeral(userPattern)),
+            new PatternTopic(RedisChannels.CONVERSATION_PREFIX + "*")
+        );
+
+        subscription = listenerContainer
+            .receive(topics, SerializationPair.fromSerializer(RedisSerializer.string()), SerializationPair.byteArray())
+            .doOnError(e -> log.error("Redis subscription failed, resubscribing", e))
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+            .subscribe(message -> deliver(message.getChannel(), message.getMessage()));
+        log.info("Reactive relay subscribed on node {}", nodeProperties.getId());
+    }
+
+    private void deliver(String channel, byte[] body) {
+        String conversationId = RedisChannels.extractConversationId(channel);
+        if (conversationId != null) {
+            deliverToGroup(conversationId, EncodedFrame.wrap(body));
+            return;
+        }
+        String userId = RedisChannels.extractUserId(channel);
+        if (userId == null) {
+            log.warn("Cannot extract userId from channel: {}", channel);
+            return;
+        }
+        try {
+            int delivered = sessionRegistry.deliver(UUID.fromString(userId), EncodedFrame.wrap(body));
+            log.debug("Message from {} delivered to {} sessions", channel, delivered);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid userId in channel: {}", channel);
+        }
+    }
+
+    /**
+     * 成員名單快取未命中時會查詢 MongoDB，不在訂閱執行緒上執行
+     */
+    private void deliverToGroup(String conversationId, EncodedFrame frame) {
+        Mono.fromCallable(() -> membershipCache.members(conversationId))
+            .subscribeOn(Schedulers.boundedElastic())
+            .subscribe(members -> {
+                int delivered = sessionRegistry.deliverToUsers(members, frame);
+                log.debug("Group message {} delivered to {} local sessions", conversationId, delivered);
+            }, e -> log.error("Failed to expand group message: {}", conversationId, e));
+    }
+
+    @Override
+    public void stop() {
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+            subscription = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null;
+    }
+}
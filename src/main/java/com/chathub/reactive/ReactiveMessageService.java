@@ -0,0 +1,157 @@
+package com.chathub.reactive;
+
+import com.chathub.config.SyncProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import com.chathub.repository.ReactiveMessageRepository;
+import com.chathub.service.UnreadCounterService;
+import com.chathub.service.cache.GroupMembershipCache;
+import com.chathub.service.dedup.ClientMessageDeduplicator;
+import com.chathub.service.persistence.ConversationDelta;
+import com.chathub.service.sync.MessageInbox;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 訊息服務（反應式，reactive profile 的 MessageService.saveMessage）
+ *
+ * 與 Servlet 版相同的寫入順序：去重 → 寫入訊息 → 寫入同步收件匣 → upsert 對話 → 增加未讀計數器，
+ * 全程不阻塞執行緒。發送者名稱取自 JWT（連線時已驗證），不查詢使用者資料。
+ * Write-Behind 管線是阻塞式的 Journal，反應式路徑不使用。
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveMessageService {
+
+    private final ReactiveMessageRepository messageRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final ClientMessageDeduplicator deduplicator;
+    private final GroupMembershipCache membershipCache;
+    private final SyncProperties syncProperties;
+
+    /**
+     * 儲存新訊息
+     * @return 實際儲存的訊息（重複時為先前那一筆）
+     */
+    public Mono<Message> saveMessage(UUID senderId, String senderUsername, UUID recipientId,
+                                     String content, String clientMessageId) {
+        return save(senderId, senderUsername, Message.generateConversationId(senderId, recipientId), recipientId,
+                    content, clientMessageId);
+    }
+
+    /**
+     * 儲存群組訊息（只存一份）；成員名單快取未命中時會查詢 MongoDB，放在 boundedElastic 上
+     * @return 發送者不是群組成員時以 IllegalArgumentException 結束
+     */
+    public Mono<Message> saveGroupMessage(UUID senderId, String senderUsername, String conversationId,
+                                          String content, String clientMessageId) {
+        return Mono.fromCallable(() -> membershipCache.isMember(conversationId, senderId))
+                   .subscribeOn(Schedulers.boundedElastic())
+                   .flatMap(member -> member
+                       ? save(senderId, senderUsername, conversationId, null, content, clientMessageId)
+                       : Mono.error(new IllegalArgumentException("不是群組成員：" + conversationId)));
+    }
+
+    private Mono<Message> save(UUID senderId, String senderUsername, String conversationId, UUID recipientId,
+                               String content, String clientMessageId) {
+        Mono<Message> duplicate = clientMessageId == null
+            ? Mono.empty()
+            : deduplicator.findDuplicate(clientMessageId, messageRepository::findByClientMessageId)
+                          .doOnNext(existing -> log.warn("重複訊息，已忽略：{}", clientMessageId));
+
+        return duplicate.switchIfEmpty(Mono.defer(() -> insert(Message.builder()
+                                                                      .messageId(UUID.randomUUID().toString())
+                                                                      .conversationId(conversationId)
+                                                                      .senderId(senderId)
+                                                                      .senderUsername(senderUsername)
+                                                                      .recipientId(recipientId)
+                                                                      .content(content)
+                                                                      .timestamp(Instant.now())
+                                                                      .isRead(false)
+                                                                      .clientMessageId(clientMessageId)
+                                                                      .createdAt(Instant.now())
+                                                                      .build())));
+    }
+
+    private Mono<Message> insert(Message message) {
+        String clientMessageId = message.getClientMessageId();
+        return messageRepository.save(message)
+                                .flatMap(saved -> {
+                                    if (clientMessageId != null) {
+                                        deduplicator.record(clientMessageId);
+                                    }
+                                    log.info("訊息已儲存：{} → {}", saved.getSenderUsername(), saved.getRecipientId());
+                                    return appendToInbox(saved).then(updateConversation(saved)).thenReturn(saved);
+                                })
+                                // clientMessageId 唯一索引為最後把關（對話 upsert 的衝突已在內部處理）
+                                .onErrorResume(DuplicateKeyException.class, e -> {
+                                    log.warn("重複訊息（唯一索引），已忽略：{}", clientMessageId);
+                                    deduplicator.recordConflict();
+                                    return messageRepository.findByClientMessageId(clientMessageId)
+                                                            .switchIfEmpty(Mono.error(new IllegalStateException(
+                                                                "重複的 clientMessageId 查無訊息：" + clientMessageId)));
+                                });
+    }
+
+    /**
+     * 同 ConversationService.updateConversation：單一 upsert 加上未讀計數器
+     */
+    private Mono<Void> updateConversation(Message message) {
+        Query query = Query.query(Criteria.where("conversationId").is(message.getConversationId()));
+        Update update = ConversationDelta.of(message).toUpdate();
+
+        return reactiveMongoTemplate.upsert(query, update, Conversation.class)
+                                    // 兩個 upsert 同時建立同一個對話：另一方已建立，改為更新即可
+                                    .onErrorResume(DuplicateKeyException.class,
+                                                   e -> reactiveMongoTemplate.upsert(query, update, Conversation.class))
+                                    .then(message.getRecipientId() != null
+                                              ? incrementUnread(message.getRecipientId())
+                                              : Mono.empty());
+    }
+
+    /**
+     * 同 MessageInbox.append：失敗不影響發送
+     */
+    private Mono<Void> appendToInbox(Message message) {
+        List<String> args = MessageInbox.appendArgs(message, syncProperties);
+        return Flux.fromIterable(MessageInbox.keys(message))
+                   .concatMap(key -> reactiveStringRedisTemplate.execute(MessageInbox.APPEND_SCRIPT, List.of(key), args)
+                                                                .then()
+                                                                .onErrorResume(e -> {
+                                                                    log.warn("寫入同步收件匣失敗：{} → {}",
+                                                                             message.getMessageId(), key, e);
+                                                                    return Mono.empty();
+                                                                }))
+                   .then();
+    }
+
+    private Mono<Void> incrementUnread(UUID userId) {
+        String key = UnreadCounterService.key(userId);
+        return reactiveStringRedisTemplate.execute(UnreadCounterService.INCREMENT_SCRIPT, List.of(key), List.of("1"))
+                                          .then()
+                                          .onErrorResume(e -> {
+                                              log.warn("更新未讀計數器失敗，刪除後由 MongoDB 重新加總：{}", userId, e);
+                                              return reactiveStringRedisTemplate.delete(key)
+                                                                                .then()
+                                                                                .onErrorResume(ignored -> Mono.empty());
+                                          });
+    }
+}
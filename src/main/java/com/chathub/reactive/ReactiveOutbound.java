@@ -0,0 +1,82 @@
+package com.chathub.reactive;
+
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.handler.codec.EncodedFrame;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 反應式連線的送出佇列
+ *
+ * 有界的 unicast sink：WebSocketSession.send 依 socket 可寫入的速度向 sink 要資料，
+ * 慢的連線只會把自己的佇列塞滿，不會拖慢共用的 Redis 訂閱連線。
+ * 佇列滿時與 Servlet 版相同：先丟棄「正在輸入」，其他訊息則讓連線失敗關閉（由客戶端重連補資料）。
+ */
+final class ReactiveOutbound {
+
+    private final Sinks.Many<EncodedFrame> sink;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final BiConsumer<MessageType, String> onDropped;
+
+    /**
+     * @param capacity 佇列容量（Reactor 會進位到 2 的次方，最小 8）
+     */
+    ReactiveOutbound(int capacity, BiConsumer<MessageType, String> onDropped) {
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<EncodedFrame>get(capacity).get());
+        this.onDropped = onDropped;
+    }
+
+    /**
+     * 放入佇列（不阻塞）
+     * Redis 訂閱執行緒與連線的接收執行緒都會呼叫，以鎖確保 sink 只有一個生產者
+     */
+    void offer(EncodedFrame frame) {
+        Sinks.EmitResult result;
+        lock.lock();
+        try {
+            result = sink.tryEmitNext(frame);
+        } finally {
+            lock.unlock();
+        }
+
+        // socket 尚未訂閱時佇列滿了回傳的是 FAIL_ZERO_SUBSCRIBER，同樣視為溢出
+        if (result != Sinks.EmitResult.FAIL_OVERFLOW && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            // 成功，或連線已關閉（FAIL_CANCELLED / FAIL_TERMINATED）
+            return;
+        }
+        if (frame.type() == MessageType.USER_TYPING) {
+            onDropped.accept(frame.type(), "overflow");
+            return;
+        }
+        onDropped.accept(frame.type(), "disconnect");
+        lock.lock();
+        try {
+            sink.tryEmitError(new IllegalStateException("送出佇列已滿，關閉連線"));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 送出的 frame（只能訂閱一次）
+     */
+    Flux<EncodedFrame> frames() {
+        return sink.asFlux();
+    }
+
+    /**
+     * 連線的接收端結束時呼叫，讓送出端一起結束
+     */
+    void complete() {
+        lock.lock();
+        try {
+            sink.tryEmitComplete();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
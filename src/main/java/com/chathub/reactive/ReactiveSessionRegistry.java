@@ -0,0 +1,161 @@
+package com.chathub.reactive;
+
+import com.chathub.config.OutboundProperties;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.service.PresenceRoutingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 反應式連線管理器（reactive profile 的 WebSocketSessionManager）
+ *
+ * 每個連線只佔一個 ReactiveOutbound（有界 sink），閒置連線不佔任何執行緒。
+ * 路由表的登記 / 移除交給 boundedElastic 執行（PresenceRoutingService 是阻塞式），
+ * 心跳由排程執行緒以本管理器的在線名單續約。
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSessionRegistry {
+
+    private final Map<UUID, Set<ReactiveOutbound>> sessionsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final PresenceRoutingService routingService;
+    private final OutboundProperties outboundProperties;
+    private final MeterRegistry meterRegistry;
+
+    public ReactiveSessionRegistry(PresenceRoutingService routingService, OutboundProperties outboundProperties,
+                                   MeterRegistry meterRegistry) {
+        this.routingService = routingService;
+        this.outboundProperties = outboundProperties;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("chathub.websocket.sessions", sessionCount, AtomicInteger::get)
+             .description("Open reactive WebSocket sessions on this node")
+             .register(meterRegistry);
+    }
+
+    /**
+     * 註冊連線，本節點的第一個裝置才寫入路由表
+     */
+    public ReactiveOutbound open(UUID userId) {
+        ReactiveOutbound outbound = new ReactiveOutbound(outboundProperties.getCapacity(), this::recordDropped);
+        boolean[] firstSession = new boolean[1];
+        sessionsByUser.compute(userId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = new CopyOnWriteArraySet<>();
+                firstSession[0] = true;
+            }
+            sessions.add(outbound);
+            return sessions;
+        });
+        sessionCount.incrementAndGet();
+
+        if (firstSession[0]) {
+            Mono.fromRunnable(() -> routingService.register(userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe();
+        }
+        return outbound;
+    }
+
+    /**
+     * 移除連線，本節點已沒有該使用者的連線時移除路由
+     */
+    public void close(UUID userId, ReactiveOutbound outbound) {
+        boolean[] lastSession = new boolean[1];
+        sessionsByUser.computeIfPresent(userId, (id, sessions) -> {
+            if (sessions.remove(outbound)) {
+                sessionCount.decrementAndGet();
+            }
+            if (sessions.isEmpty()) {
+                lastSession[0] = true;
+                return null;
+            }
+            return sessions;
+        });
+
+        if (lastSession[0]) {
+            Mono.fromRunnable(() -> routingService.unregister(userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe();
+        }
+    }
+
+    /**
+     * 推送給使用者在本節點的所有連線（只放入佇列，不等待送出）
+     * @return 收到的連線數
+     */
+    public int deliver(UUID userId, EncodedFrame frame) {
+        Set<ReactiveOutbound> sessions = sessionsByUser.get(userId);
+        if (sessions == null) {
+            return 0;
+        }
+        for (ReactiveOutbound outbound : sessions) {
+            outbound.offer(frame);
+        }
+        return sessions.size();
+    }
+
+    /**
+     * 推送給一群使用者在本節點的所有連線（群組訊息展開，走訪成員與在線使用者中較少的一方）
+     * @return 收到的連線數
+     */
+    public int deliverToUsers(Set<UUID> userIds, EncodedFrame frame) {
+        int delivered = 0;
+        if (userIds.size() <= sessionsByUser.size()) {
+            for (UUID userId : userIds) {
+                delivered += deliver(userId, frame);
+            }
+            return delivered;
+        }
+        for (UUID userId : sessionsByUser.keySet()) {
+            if (userIds.contains(userId)) {
+                delivered += deliver(userId, frame);
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * 本節點的在線使用者
+     */
+    public List<UUID> getOnlineUserIds() {
+        return new ArrayList<>(sessionsByUser.keySet());
+    }
+
+    /**
+     * 路由心跳（Servlet 版由 PresenceRoutingService.heartbeat 以 WebSocketSessionManager 續約）
+     */
+    @Scheduled(fixedDelayString = "#{@nodeProperties.heartbeatInterval.toMillis()}")
+    public void heartbeat() {
+        routingService.refresh(getOnlineUserIds());
+    }
+
+    private void recordDropped(MessageType type, String reason) {
+        Counter.builder("chathub.websocket.outbound.dropped")
+               .tag("type", type != null ? type.name() : "UNKNOWN")
+               .tag("reason", reason)
+               .description("Outbound messages dropped or coalesced before reaching the socket")
+               .register(meterRegistry)
+               .increment();
+        log.debug("Outbound {} dropped: {}", type, reason);
+    }
+}
@@ -22,6 +22,12 @@ public interface FriendshipRepository extends JpaRepository<Friendship, UUID> {
         "ORDER BY f.createdAt DESC")
     List<Friendship> findFriendsByUserId(UUID userId);
 
+    /**
+     * 查詢使用者所有好友的 ID（不載入 User，上線狀態通知用）
+     */
+    @Query("SELECT f.friend.userId FROM Friendship f WHERE f.user.userId = :userId")
+    List<UUID> findFriendIdsByUserId(UUID userId);
+
     /**
      * 檢查兩個使用者是否為好友
      */
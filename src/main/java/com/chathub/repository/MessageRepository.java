@@ -6,7 +6,6 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -24,6 +23,16 @@ public interface MessageRepository extends MongoRepository<Message, String> {
         Pageable pageable
     );
 
+    /**
+     * 查詢對話的訊息總數
+     */
+    long countByConversationId(String conversationId);
+
+    /**
+     * 根據訊息 ID 查詢
+     */
+    Optional<Message> findByMessageId(String messageId);
+
     /**
      * 根據客戶端訊息 ID 查詢（去重用）
      */
@@ -41,12 +50,4 @@ public interface MessageRepository extends MongoRepository<Message, String> {
         String conversationId,
         UUID recipientId
     );
-
-    /**
-     * 查詢特定對話的所有未讀訊息
-     */
-    List<Message> findByConversationIdAndRecipientIdAndIsReadFalse(
-        String conversationId,
-        UUID recipientId
-    );
 }
\ No newline at end of file
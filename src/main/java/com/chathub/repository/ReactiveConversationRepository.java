@@ -0,0 +1,18 @@
+package com.chathub.repository;
+
+import com.chathub.entity.Conversation;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * 對話 Repository（反應式，reactive profile 使用）
+ */
+@Repository
+public interface ReactiveConversationRepository extends ReactiveMongoRepository<Conversation, String> {
+
+    /**
+     * 檢查對話是否存在
+     */
+    Mono<Boolean> existsByConversationId(String conversationId);
+}
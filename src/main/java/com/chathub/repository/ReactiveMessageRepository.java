@@ -0,0 +1,23 @@
+package com.chathub.repository;
+
+import com.chathub.entity.Message;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * 訊息 Repository（反應式，reactive profile 使用）
+ */
+@Repository
+public interface ReactiveMessageRepository extends ReactiveMongoRepository<Message, String> {
+
+    /**
+     * 根據訊息 ID 查詢
+     */
+    Mono<Message> findByMessageId(String messageId);
+
+    /**
+     * 根據客戶端訊息 ID 查詢（去重用）
+     */
+    Mono<Message> findByClientMessageId(String clientMessageId);
+}
@@ -1,7 +1,6 @@
 package com.chathub.security;
 
-import com.chathub.service.RedisService;
-import io.jsonwebtoken.Claims;
+import com.chathub.service.cache.TokenRevocationCache;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.security.SignatureException;
@@ -38,7 +37,7 @@ import java.util.ArrayList;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final RedisService redisService;
+    private final TokenRevocationCache tokenRevocationCache;
 
     @Override
     protected void doFilterInternal(
@@ -56,29 +55,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
 
-            // 2. 驗證 Token 格式與簽章
-            if (!jwtTokenProvider.validateToken(token)) {
-                log.warn("無效的 JWT Token");
-                filterChain.doFilter(request, response);
-                return;
-            }
+            // 2. 驗證 Token 格式與簽章（只解析一次，最近驗證過的 Token 直接由快取取得）
+            VerifiedToken verified = jwtTokenProvider.verify(token);
 
             // 3. 提取 Token 資訊
-            Claims claims = jwtTokenProvider.getClaimsFromToken(token);
-            String userId = claims.getSubject();
-            String username = claims.get("username", String.class);
-            String tokenType = claims.get("type", String.class);
+            String userId = verified.userId().toString();
+            String username = verified.username();
+            String tokenType = verified.type();
 
             // 4. 檢查 Token 類型（必須是 Access Token）
-            if (!"access".equals(tokenType)) {
+            if (!verified.isAccessToken()) {
                 log.warn("Token 類型錯誤: {}", tokenType);
                 filterChain.doFilter(request, response);
                 return;
             }
 
-            // 5. 檢查 Token 黑名單（可選，登出功能會用到）
-            String jti = claims.getId(); // JWT ID
-            if (jti != null && redisService.isTokenBlacklisted(jti)) {
+            // 5. 檢查 Token 黑名單（登出功能會用到；由本機的撤銷快取回答）
+            String jti = verified.jti(); // JWT ID
+            if (jti != null && tokenRevocationCache.isRevoked(jti)) {
                 log.warn("Token 已被列入黑名單: {}", jti);
                 filterChain.doFilter(request, response);
                 return;
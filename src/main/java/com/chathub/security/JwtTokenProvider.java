@@ -1,26 +1,58 @@
 package com.chathub.security;
 
 import com.chathub.config.JwtProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.UUID;
 
+/**
+ * JWT 簽發與驗證
+ *
+ * 簽章金鑰與 JwtParser 只在啟動時建立一次（JwtParser 不可變、可跨執行緒共用）。
+ * verify() 一次解析就回傳 VerifiedToken；最近驗證過的 Token 以 SHA-256 雜湊為 key 快取到 exp 為止，
+ * 同一個 Token 重複呼叫 REST API 時不必每次重新 Base64 解碼、驗 HMAC、解析 JSON。
+ * 快取只代表「簽章與期限有效」，登出黑名單仍由呼叫端每次檢查。
+ *
+ * 指標：cache.gets{cache=verifiedToken,result=hit|miss}
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class JwtTokenProvider {
 
     private final JwtProperties jwtProperties;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8));
+    public JwtTokenProvider(JwtProperties jwtProperties, MeterRegistry meterRegistry) {
+        this.jwtProperties = jwtProperties;
+        this.signingKey = Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                          .setSigningKey(signingKey)
+                          .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                                      .maximumSize(jwtProperties.getVerifiedCacheSize())
+                                      .expireAfter(new ExpireAtTokenExpiry())
+                                      .recordStats()
+                                      .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedToken");
     }
 
     // 生成 Access Token
@@ -35,17 +67,45 @@ public class JwtTokenProvider {
                    .setIssuedAt(now)
                    .setExpiration(expiryDate)
                    .setId(UUID.randomUUID().toString())
-                   .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                   .signWith(signingKey, SignatureAlgorithm.HS512)
                    .compact();
     }
 
+    /**
+     * 驗證 Token 並取出內容（只解析一次；最近驗證過的 Token 直接由快取回傳）
+     * @return 已驗證的 Token 內容
+     * @throws JwtException 簽章無效、格式錯誤或已過期
+     * @throws IllegalArgumentException Token 為空
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("JWT Token 為空");
+        }
+
+        ByteBuffer key = hash(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && !cached.isExpired(Instant.now())) {
+            return cached;
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            throw new MalformedJwtException("JWT Token 缺少 sub 或 exp");
+        }
+        VerifiedToken verified;
+        try {
+            verified = VerifiedToken.from(claims);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJwtException("JWT Token 的 sub 不是合法的使用者 ID", e);
+        }
+        verifiedTokens.put(key, verified);
+        return verified;
+    }
+
     // 驗證 Token
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
+            verify(token);
             return true;
         } catch (ExpiredJwtException e) {
             log.warn("JWT Token 已過期");
@@ -64,46 +124,70 @@ public class JwtTokenProvider {
 
     // 從 Token 取得 userId
     public UUID getUserIdFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                            .setSigningKey(getSigningKey())
-                            .build()
-                            .parseClaimsJws(token)
-                            .getBody();
-        return UUID.fromString(claims.getSubject());
+        return verify(token).userId();
     }
 
     /**
      * 從 Token 提取使用者名稱
      */
     public String getUsernameFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        return claims.get("username", String.class);
+        return verify(token).username();
     }
 
     public String generateRefreshToken() {
         return UUID.randomUUID().toString();
     }
     /**
-     * 從 Token 提取 Claims
+     * 從 Token 提取 Claims（需要自訂 claim 時使用；一般驗證請用 verify）
      */
     public Claims getClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                   .setSigningKey(getSigningKey())
-                   .build()
-                   .parseClaimsJws(token)
-                   .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
   /** 檢查 Token 是否即將過期（剩餘時間少於 5 分鐘） */
   public boolean isTokenExpiringSoon(String token) {
         try {
-          Claims claims = getClaimsFromToken(token);
-          Date expiration = claims.getExpiration();
-          long remainingTime = expiration.getTime() - System.currentTimeMillis();
+          Instant expiration = verify(token).expiresAt();
+          long remainingTime = expiration.toEpochMilli() - System.currentTimeMillis();
           return remainingTime < 5 * 60 * 1000; // 5 分鐘
         } catch (Exception e) {
           return true;
         }
   }
 
-}
\ No newline at end of file
+    /**
+     * 快取 key：Token 的 SHA-256（不在記憶體中保留原始 Token）
+     */
+    private static ByteBuffer hash(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                                                .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 快取項目在 Token 的 exp 到期
+     */
+    private static final class ExpireAtTokenExpiry implements Expiry<ByteBuffer, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, VerifiedToken value, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), value.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, VerifiedToken value, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, VerifiedToken value, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.chathub.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 已驗證簽章與有效期限的 Access Token 內容（不可變，可安全快取與跨執行緒共用）
+ *
+ * @param userId    使用者 ID（sub）
+ * @param username  使用者名稱
+ * @param type      Token 類型（access）
+ * @param jti       JWT ID（登出黑名單用）
+ * @param issuedAt  簽發時間
+ * @param expiresAt 到期時間
+ */
+public record VerifiedToken(UUID userId, String username, String type, String jti,
+                            Instant issuedAt, Instant expiresAt) {
+
+    public static final String ACCESS_TYPE = "access";
+
+    static VerifiedToken from(Claims claims) {
+        return new VerifiedToken(
+            UUID.fromString(claims.getSubject()),
+            claims.get("username", String.class),
+            claims.get("type", String.class),
+            claims.getId(),
+            claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+            claims.getExpiration().toInstant());
+    }
+
+    public boolean isAccessToken() {
+        return ACCESS_TYPE.equals(type);
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
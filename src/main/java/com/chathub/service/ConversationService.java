@@ -1,16 +1,27 @@
 package com.chathub.service;
 
+import com.chathub.config.GroupProperties;
+import com.chathub.dto.CursorPage;
 import com.chathub.entity.Conversation;
 import com.chathub.entity.Message;
 import com.chathub.repository.ConversationRepository;
+import com.chathub.service.persistence.ConversationDelta;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
 import java.util.*;
 
 /**
@@ -22,88 +33,124 @@ import java.util.*;
 public class ConversationService {
 
     private final ConversationRepository conversationRepository;
+    private final MongoTemplate mongoTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final GroupProperties groupProperties;
 
     /**
      * 更新對話（新訊息時呼叫）
+     * 單一 upsert：$set 最後訊息、$inc 接收者未讀數、$setOnInsert 參與者，
+     * 同一對話同時有多則訊息時不會遺失未讀數
      */
-    @Transactional
     public void updateConversation(Message message) {
-        String conversationId = message.getConversationId();
-
-        // 查詢對話是否存在
-        Optional<Conversation> existingConv = conversationRepository
-            .findByConversationId(conversationId);
-
-        if (existingConv.isPresent()) {
-            // 更新現有對話
-            Conversation conversation = existingConv.get();
-
-            // 更新最後一則訊息
-            Conversation.LastMessage lastMessage = Conversation.LastMessage.builder()
-                                                                           .messageId(message.getMessageId())
-                                                                           .content(message.getContent())
-                                                                           .senderId(message.getSenderId())
-                                                                           .timestamp(message.getTimestamp())
-                                                                           .build();
-            conversation.setLastMessage(lastMessage);
-
-            // 增加接收者的未讀數
-            String recipientIdStr = message.getRecipientId().toString();
-            int currentUnread = conversation.getUnreadCounts()
-                                            .getOrDefault(recipientIdStr, 0);
-            conversation.getUnreadCounts().put(recipientIdStr, currentUnread + 1);
-
-            // 更新時間
-            conversation.setUpdatedAt(Instant.now());
-
-            conversationRepository.save(conversation);
-            log.debug("對話已更新：{}", conversationId);
-
-        } else {
-            // 建立新對話
-            Conversation.LastMessage lastMessage = Conversation.LastMessage.builder()
-                                                                           .messageId(message.getMessageId())
-                                                                           .content(message.getContent())
-                                                                           .senderId(message.getSenderId())
-                                                                           .timestamp(message.getTimestamp())
-                                                                           .build();
-
-            Map<String, Integer> unreadCounts = new HashMap<>();
-            unreadCounts.put(message.getSenderId().toString(), 0);
-            unreadCounts.put(message.getRecipientId().toString(), 1);
-
-            Conversation conversation = Conversation.builder()
-                                                    .conversationId(conversationId)
-                                                    .participants(Arrays.asList(message.getSenderId(), message.getRecipientId()))
-                                                    .lastMessage(lastMessage)
-                                                    .unreadCounts(unreadCounts)
-                                                    .createdAt(Instant.now())
-                                                    .updatedAt(Instant.now())
-                                                    .build();
-
-            conversationRepository.save(conversation);
-            log.info("新對話已建立：{}", conversationId);
+        Query query = Query.query(Criteria.where("conversationId").is(message.getConversationId()));
+        Update update = ConversationDelta.of(message).toUpdate();
+
+        try {
+            mongoTemplate.upsert(query, update, Conversation.class);
+        } catch (DuplicateKeyException e) {
+            // 兩個 upsert 同時建立同一個對話：另一方已建立，改為更新即可
+            mongoTemplate.upsert(query, update, Conversation.class);
         }
+        if (message.getRecipientId() != null) {
+            unreadCounterService.increment(message.getRecipientId(), 1);
+        }
+        log.debug("對話已更新：{}", message.getConversationId());
     }
 
     /**
      * 重置未讀數（標記已讀時呼叫）
      */
-    @Transactional
     public void resetUnreadCount(String conversationId, UUID userId) {
-        Optional<Conversation> convOpt = conversationRepository
-            .findByConversationId(conversationId);
-
-        if (convOpt.isPresent()) {
-            Conversation conversation = convOpt.get();
-            conversation.getUnreadCounts().put(userId.toString(), 0);
-            conversationRepository.save(conversation);
+        String unreadField = "unreadCounts." + userId;
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId));
+        query.fields().include(unreadField);
+
+        // 取回重置前的未讀數，從使用者總未讀數扣除
+        Conversation before = mongoTemplate.findAndModify(
+            query,
+            new Update().set(unreadField, 0),
+            FindAndModifyOptions.options().returnNew(false),
+            Conversation.class
+        );
+
+        if (before != null) {
+            int previous = before.getUnreadCounts() != null
+                ? before.getUnreadCounts().getOrDefault(userId.toString(), 0)
+                : 0;
+            unreadCounterService.decrement(userId, previous);
             log.debug("未讀數已重置：對話 {}，使用者 {}", conversationId, userId);
         }
     }
 
     /**
-     * 查詢使用者的對話列表
+     * 推進使用者的已讀位置（只會往後移，不會被較舊的已讀回報蓋掉）
+     * @param readCount 本次新標記為已讀的訊息數，從未讀數扣除
+     */
+    public void advanceReadMarker(String conversationId, UUID userId,
+                                  Conversation.ReadMarker marker, long readCount) {
+        String markerField = "readMarkers." + userId;
+        mongoTemplate.updateFirst(
+            Query.query(Criteria.where("conversationId").is(conversationId)
+                                .orOperator(Criteria.where(markerField + ".timestamp").exists(false),
+                                            Criteria.where(markerField + ".timestamp").lt(marker.getTimestamp()))),
+            new Update().set(markerField, marker),
+            Conversation.class
+        );
+
+        if (readCount > 0) {
+            // 扣除但不低於 0：與 resetUnreadCount（先歸零）同時執行時不會變成負數
+            String unreadField = "unreadCounts." + userId;
+            Query query = Query.query(Criteria.where("conversationId").is(conversationId));
+            query.fields().include(unreadField);
+            Conversation before = mongoTemplate.findAndModify(
+                query,
+                AggregationUpdate.update().set(unreadField).toValue(
+                    ConditionalOperators.when(ComparisonOperators.valueOf(unreadField).greaterThanValue(readCount))
+                                        .thenValueOf(ArithmeticOperators.valueOf(unreadField).subtract(readCount))
+                                        .otherwise(0)),
+                FindAndModifyOptions.options().returnNew(false),
+                Conversation.class
+            );
+
+            // 總未讀數只扣除實際扣掉的數量
+            if (before != null && before.getUnreadCounts() != null) {
+                int previous = before.getUnreadCounts().getOrDefault(userId.toString(), 0);
+                unreadCounterService.decrement(userId, Math.min(previous, readCount));
+            }
+        }
+        log.debug("已讀位置已更新：對話 {}，使用者 {}，{}", conversationId, userId, marker.getTimestamp());
+    }
+
+    /**
+     * 查詢使用者的對話列表（游標分頁，依更新時間由新到舊）
+     * 依 {participants, updatedAt, conversationId} 索引做範圍查詢
+     */
+    public CursorPage<Conversation> getUserConversations(
+        UUID userId,
+        String before,
+        String after,
+        int size,
+        boolean includeTotal
+    ) {
+        Criteria filter = Criteria.where("participants").is(userId);
+        return KeysetPager.find(
+            mongoTemplate,
+            Conversation.class,
+            filter,
+            "updatedAt",
+            "conversationId",
+            PageCursor.decode(before),
+            PageCursor.decode(after),
+            size,
+            conversation -> new PageCursor(conversation.getUpdatedAt(), conversation.getConversationId()),
+            includeTotal ? () -> mongoTemplate.count(Query.query(filter), Conversation.class) : null
+        );
+    }
+
+    /**
+     * 查詢使用者的對話列表（舊版 page 參數，每次都會 count；其餘呼叫請用游標分頁
+     * {@link #getUserConversations(UUID, String, String, int, boolean)}）
      */
     public Page<Conversation> getUserConversations(UUID userId, Pageable pageable) {
         return conversationRepository
@@ -119,17 +166,58 @@ public class ConversationService {
 
     /**
      * 取得使用者的總未讀數
+     * 一對一對話由 Redis 計數器回答（O(1)）；群組由已讀位置推算，只查詢有新訊息的群組
      */
     public int getTotalUnreadCount(UUID userId) {
-        Page<Conversation> conversations = conversationRepository
-            .findByParticipantsContainingOrderByUpdatedAtDesc(
-                userId,
-                Pageable.unpaged()
-            );
+        return Math.toIntExact(unreadCounterService.getTotal(userId) + getGroupUnreadTotal(userId));
+    }
 
-        return conversations.stream()
-                            .mapToInt(conv -> conv.getUnreadCounts()
-                                                  .getOrDefault(userId.toString(), 0))
-                            .sum();
+    /**
+     * 群組對話的未讀數：已讀位置之後其他成員送出的訊息數（最多計算到 chathub.group.unread-count-limit）
+     * 不是成員時為 0
+     */
+    public long getGroupUnreadCount(String conversationId, UUID userId) {
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId)
+                                          .and("type").is(Conversation.Type.GROUP)
+                                          .and("participants").is(userId));
+        query.fields().include("conversationId").include("readMarkers." + userId);
+        Conversation group = mongoTemplate.findOne(query, Conversation.class);
+        return group != null ? countGroupUnread(group, userId) : 0;
+    }
+
+    /**
+     * 使用者所有群組的未讀數總和
+     * 以 $expr 比較 lastMessage 與自己的已讀位置，只對最後一則訊息較新的群組計算訊息數
+     */
+    long getGroupUnreadTotal(UUID userId) {
+        String markerField = "readMarkers." + userId;
+        Query query = Query.query(Criteria.where("participants").is(userId)
+                                          .and("type").is(Conversation.Type.GROUP)
+                                          .and("lastMessage.timestamp").exists(true)
+                                          .andOperator(Criteria.expr(
+                                              ComparisonOperators.valueOf("lastMessage.timestamp").greaterThan(
+                                                  ConditionalOperators.ifNull(markerField + ".timestamp")
+                                                                      .then(new Date(0))))));
+        query.fields().include("conversationId").include(markerField);
+
+        long total = 0;
+        for (Conversation group : mongoTemplate.find(query, Conversation.class)) {
+            total += countGroupUnread(group, userId);
+        }
+        return total;
+    }
+
+    /**
+     * 依 {conversationId, timestamp} 索引計算已讀位置之後他人送出的訊息（從未讀過時從第一則算起）
+     */
+    private long countGroupUnread(Conversation group, UUID userId) {
+        Criteria criteria = Criteria.where("conversationId").is(group.getConversationId()).and("senderId").ne(userId);
+        Conversation.ReadMarker marker = group.getReadMarkers() != null
+            ? group.getReadMarkers().get(userId.toString())
+            : null;
+        if (marker != null && marker.getTimestamp() != null) {
+            criteria = criteria.and("timestamp").gt(marker.getTimestamp());
+        }
+        return mongoTemplate.count(Query.query(criteria).limit(groupProperties.getUnreadCountLimit()), Message.class);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package com.chathub.service;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.service.cache.UserRouteCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 一對一訊息投遞路由：收件者連在本節點時直接推送，只有遠端或不明的收件者才經過 Redis
+ *
+ * - local ：收件者只連在本節點，直接交給本機連線的送出佇列，不 PUBLISH、不經過監聽執行緒
+ * - mixed ：本機有連線、其他節點也有裝置，本機直接推送，其他節點以 publishToNodes 發布（不含本節點）
+ * - remote：本機沒有連線，或路由查詢失敗，照舊交給 MessagePublisher
+ * 其他節點的路由由 UserRouteCache 回答（路由變更時由 Redis 通知失效），快取命中時完全不碰 Redis。
+ *
+ * 順序：同一連線送出的訊息由 handler 依序處理，本機推送與經過 Redis 的推送都進同一個送出佇列；
+ * 本節點不會再從 Redis 收到同一則訊息，因此不會重複或插隊。
+ * 群組訊息仍發布到對話頻道一次，由各節點展開（見 RedisMessageSubscriber）。
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class DeliveryRouter {
+
+    private final WebSocketSessionManager sessionManager;
+    private final UserRouteCache routeCache;
+    private final MessagePublisher publisher;
+    private final ObjectMapper objectMapper;
+    private final Counter localDeliveries;
+    private final Counter mixedDeliveries;
+    private final Counter remoteDeliveries;
+
+    public DeliveryRouter(WebSocketSessionManager sessionManager, UserRouteCache routeCache,
+                          MessagePublisher publisher, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.sessionManager = sessionManager;
+        this.routeCache = routeCache;
+        this.publisher = publisher;
+        this.objectMapper = objectMapper;
+        this.localDeliveries = Counter.builder("chathub.delivery.routed")
+                                      .tag("path", "local")
+                                      .description("Messages delivered to local sessions without the Redis bus")
+                                      .register(meterRegistry);
+        this.mixedDeliveries = Counter.builder("chathub.delivery.routed")
+                                      .tag("path", "mixed")
+                                      .description("Messages delivered locally and published to the recipient's other nodes")
+                                      .register(meterRegistry);
+        this.remoteDeliveries = Counter.builder("chathub.delivery.routed")
+                                       .tag("path", "remote")
+                                       .description("Messages handed to the Redis bus only")
+                                       .register(meterRegistry);
+
+        Gauge.builder("chathub.delivery.local.ratio", this, DeliveryRouter::localRatio)
+             .description("Share of one-to-one deliveries that were not published to the Redis bus")
+             .register(meterRegistry);
+    }
+
+    /**
+     * 投遞訊息給使用者的所有裝置
+     * @param userId 收件者
+     * @param message 要推送的訊息（只序列化一次，本機與 Redis 共用同一個 frame）
+     */
+    public void deliverToUser(UUID userId, WebSocketMessage message) throws JsonProcessingException {
+        EncodedFrame frame = EncodedFrame.encode(objectMapper, message);
+        String userIdStr = userId.toString();
+
+        if (!sessionManager.isUserOnline(userId)) {
+            remoteDeliveries.increment();
+            publisher.publishToUser(userIdStr, frame);
+            return;
+        }
+
+        Set<String> remoteNodes;
+        try {
+            remoteNodes = routeCache.remoteNodes(userId);
+        } catch (Exception e) {
+            // 不知道其他裝置在哪裡：交給發布端（查無路由時會廣播，本節點也會收到，所以不先在本機推送）
+            log.warn("Route lookup failed for user {}, delivering through the bus", userId, e);
+            remoteDeliveries.increment();
+            publisher.publishToUser(userIdStr, frame);
+            return;
+        }
+
+        int delivered = sessionManager.sendToUser(userId, frame);
+        if (remoteNodes.isEmpty()) {
+            localDeliveries.increment();
+        } else {
+            mixedDeliveries.increment();
+            publisher.publishToNodes(userIdStr, remoteNodes, frame);
+        }
+        log.debug("Delivered message to user {} locally ({} devices), remote nodes: {}",
+                  userId, delivered, remoteNodes);
+    }
+
+    private double localRatio() {
+        double local = localDeliveries.count();
+        double total = local + mixedDeliveries.count() + remoteDeliveries.count();
+        return total == 0 ? 0 : local / total;
+    }
+}
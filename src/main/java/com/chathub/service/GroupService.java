@@ -0,0 +1,133 @@
+package com.chathub.service;
+
+import com.chathub.config.GroupProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.User;
+import com.chathub.repository.UserRepository;
+import com.chathub.service.cache.GroupMembershipCache;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 群組對話服務
+ * 成員名單存在 Conversation.participants；異動後通知各節點的 GroupMembershipCache
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupService {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+    private final GroupMembershipCache membershipCache;
+    private final GroupProperties groupProperties;
+
+    /**
+     * 建立群組（建立者自動成為成員）
+     */
+    public Conversation createGroup(UUID ownerId, String name, Collection<UUID> memberIds) {
+        Set<UUID> members = new LinkedHashSet<>();
+        members.add(ownerId);
+        members.addAll(memberIds);
+        checkMemberLimit(members.size());
+        checkUsersExist(members);
+
+        Instant now = Instant.now();
+        Conversation group = Conversation.builder()
+                                         .conversationId(Conversation.newGroupId())
+                                         .type(Conversation.Type.GROUP)
+                                         .name(name)
+                                         .ownerId(ownerId)
+                                         .participants(new ArrayList<>(members))
+                                         .unreadCounts(new HashMap<>())
+                                         .readMarkers(new HashMap<>())
+                                         .createdAt(now)
+                                         .updatedAt(now)
+                                         .build();
+        Conversation saved = mongoTemplate.insert(group);
+        log.info("群組已建立：{}（{} 位成員）", saved.getConversationId(), members.size());
+        return saved;
+    }
+
+    /**
+     * 加入成員（操作者必須是成員）
+     * 人數上限在同一個 update 的條件中檢查：第 (上限 - 新增人數) 個位置必須是空的
+     */
+    public void addMembers(String conversationId, UUID actorId, Collection<UUID> memberIds) {
+        Set<UUID> members = new LinkedHashSet<>(memberIds);
+        if (members.isEmpty()) {
+            return;
+        }
+        checkMemberLimit(members.size());
+        checkUsersExist(members);
+
+        int lastFreeIndex = groupProperties.getMaxMembers() - members.size();
+        UpdateResult result = mongoTemplate.updateFirst(
+            Query.query(groupCriteria(conversationId)
+                            .and("participants").is(actorId)
+                            .and("participants." + lastFreeIndex).exists(false)),
+            new Update().addToSet("participants").each(members.toArray()).set("updatedAt", Instant.now()),
+            Conversation.class
+        );
+        if (result.getMatchedCount() == 0) {
+            throw new IllegalArgumentException("無法加入成員：群組不存在、不是群組成員，或超過人數上限 "
+                                               + groupProperties.getMaxMembers());
+        }
+        membershipCache.invalidate(conversationId);
+        log.info("群組 {} 加入 {} 位成員", conversationId, members.size());
+    }
+
+    /**
+     * 移除成員（成員可以自行退出；建立者可以移除其他成員）
+     */
+    public void removeMember(String conversationId, UUID actorId, UUID memberId) {
+        Criteria criteria = groupCriteria(conversationId);
+        if (!actorId.equals(memberId)) {
+            criteria = criteria.and("ownerId").is(actorId);
+        }
+        UpdateResult result = mongoTemplate.updateFirst(
+            Query.query(criteria.and("participants").is(memberId)),
+            new Update().pull("participants", memberId)
+                        .unset("readMarkers." + memberId)
+                        .set("updatedAt", Instant.now()),
+            Conversation.class
+        );
+        if (result.getMatchedCount() == 0) {
+            throw new IllegalArgumentException("無法移除成員：群組不存在、不是群組成員，或沒有權限");
+        }
+        membershipCache.invalidate(conversationId);
+        log.info("群組 {} 移除成員 {}", conversationId, memberId);
+    }
+
+    private static Criteria groupCriteria(String conversationId) {
+        return Criteria.where("conversationId").is(conversationId).and("type").is(Conversation.Type.GROUP);
+    }
+
+    private void checkMemberLimit(int size) {
+        if (size > groupProperties.getMaxMembers()) {
+            throw new IllegalArgumentException("群組成員超過上限 " + groupProperties.getMaxMembers());
+        }
+    }
+
+    private void checkUsersExist(Set<UUID> userIds) {
+        List<User> users = userRepository.findAllById(userIds);
+        if (users.size() != userIds.size()) {
+            throw new IllegalArgumentException("部分使用者不存在");
+        }
+    }
+}
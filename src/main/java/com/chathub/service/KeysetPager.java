@@ -0,0 +1,95 @@
+package com.chathub.service;
+
+import com.chathub.dto.CursorPage;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Keyset 分頁查詢
+ *
+ * 以 (時間, ID) 為排序鍵做範圍查詢，不使用 skip：
+ * - before：比游標舊的資料（時間由新到舊）
+ * - after ：比游標新的資料（結果一樣由新到舊排列）
+ * 多查一筆判斷是否還有下一頁，因此不需要 count。
+ */
+final class KeysetPager {
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    private KeysetPager() {
+    }
+
+    static <T> CursorPage<T> find(
+        MongoTemplate mongoTemplate,
+        Class<T> type,
+        Criteria filter,
+        String timeField,
+        String idField,
+        PageCursor before,
+        PageCursor after,
+        int size,
+        Function<T, PageCursor> cursorOf,
+        LongSupplier totalCounter
+    ) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("before 與 after 不可同時指定");
+        }
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        boolean forward = after != null;
+
+        // 時間欄位用單一範圍條件（索引邊界），同一時間的 ID 比較留在 $or 當作過濾條件，
+        // 避免查詢計畫拆成多段 OR 而需要在記憶體中排序
+        Criteria criteria = filter;
+        if (before != null) {
+            criteria = new Criteria().andOperator(
+                filter,
+                Criteria.where(timeField).lte(before.timestamp()),
+                new Criteria().orOperator(Criteria.where(timeField).lt(before.timestamp()),
+                                          Criteria.where(idField).lt(before.id()))
+            );
+        } else if (after != null) {
+            criteria = new Criteria().andOperator(
+                filter,
+                Criteria.where(timeField).gte(after.timestamp()),
+                new Criteria().orOperator(Criteria.where(timeField).gt(after.timestamp()),
+                                          Criteria.where(idField).gt(after.id()))
+            );
+        }
+
+        Sort.Direction direction = forward ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Query query = Query.query(criteria)
+                           .with(Sort.by(direction, timeField).and(Sort.by(direction, idField)))
+                           .limit(limit + 1);
+
+        List<T> results = new ArrayList<>(mongoTemplate.find(query, type));
+        boolean hasNext = results.size() > limit;
+        if (hasNext) {
+            results.remove(limit);
+        }
+
+        // 游標指向本方向的最後一筆；往新的方向（after）即使暫無更多資料也回傳，供之後輪詢新訊息
+        String nextCursor = (hasNext || forward) && !results.isEmpty()
+            ? cursorOf.apply(results.get(results.size() - 1)).encode()
+            : null;
+
+        if (forward) {
+            Collections.reverse(results);
+        }
+
+        return CursorPage.<T>builder()
+                         .content(results)
+                         .size(results.size())
+                         .hasNext(hasNext)
+                         .nextCursor(nextCursor)
+                         .totalElements(totalCounter != null ? totalCounter.getAsLong() : null)
+                         .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.chathub.service;
+
+import com.chathub.handler.codec.EncodedFrame;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 跨節點訊息發布
+ *
+ * 實作依 chathub.bus.type 切換（整個叢集須一致）：
+ * - pubsub ：RedisMessagePublisher，Redis Pub/Sub，送出即忘（預設）
+ * - streams：RedisStreamPublisher，Redis Streams，節點重啟或訂閱連線中斷期間的訊息可重送
+ * 接收端都交給 RedisMessageSubscriber 依頻道名稱推送給本機連線。
+ */
+public interface MessagePublisher {
+
+    /**
+     * 發布訊息到使用者所在的節點（UUID 版本）
+     * @param message 訊息物件（會自動轉 JSON）
+     */
+    default void publishToUser(UUID userId, Object message) {
+        publishToUser(userId.toString(), message);
+    }
+
+    /**
+     * 發布訊息到使用者所在的節點
+     * @param message 訊息物件（會自動轉 JSON）
+     */
+    void publishToUser(String userId, Object message);
+
+    /**
+     * 發布已序列化的訊息（呼叫端可以把同一個 frame 再交給本機連線，不必重新序列化）
+     */
+    void publishToUser(String userId, EncodedFrame frame);
+
+    /**
+     * 發布到指定節點，不再查詢路由（呼叫端已查好路由，例如本機已直接推送、只需通知其他節點）
+     */
+    void publishToNodes(String userId, Set<String> nodeIds, EncodedFrame frame);
+
+    /**
+     * 發布可遺失的即時事件（正在輸入），不論哪種實作都走 ephemeral Pub/Sub 頻道
+     */
+    void publishEphemeral(String userId, EncodedFrame frame);
+
+    /**
+     * 發布群組訊息（整個叢集只發布一次，各節點依成員名單展開）
+     */
+    void publishToConversation(String conversationId, Object message);
+}
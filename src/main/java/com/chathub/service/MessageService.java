@@ -1,18 +1,30 @@
 package com.chathub.service;
 
+import com.chathub.dto.CursorPage;
+import com.chathub.entity.Conversation;
 import com.chathub.entity.Message;
-import com.chathub.entity.User;
 import com.chathub.repository.MessageRepository;
-import com.chathub.repository.UserRepository;
+import com.chathub.service.cache.GroupMembershipCache;
+import com.chathub.service.cache.UserProfile;
+import com.chathub.service.cache.UserProfileCache;
+import com.chathub.service.dedup.ClientMessageDeduplicator;
+import com.chathub.service.persistence.MessagePersistencePipeline;
+import com.chathub.service.sync.MessageInbox;
+import com.mongodb.client.result.UpdateResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -25,11 +37,18 @@ import java.util.UUID;
 public class MessageService {
 
     private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
+    private final UserProfileCache userProfileCache;
+    private final GroupMembershipCache groupMembershipCache;
+    private final ClientMessageDeduplicator deduplicator;
     private final ConversationService conversationService;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectProvider<MessagePersistencePipeline> persistencePipeline;
+    private final MessageInbox messageInbox;
 
     /**
      * 儲存新訊息
+     * 啟用 Write-Behind 時，寫入 Journal 即返回，MongoDB 由背景批次寫入
+     * 儲存後同時寫入重連同步收件匣（見 MessageInbox），離線的接收者重連時從收件匣補送
      */
     @Transactional
     public Message saveMessage(
@@ -38,28 +57,69 @@ public class MessageService {
         String content,
         String clientMessageId
     ) {
+        return save(senderId, Message.generateConversationId(senderId, recipientId), recipientId,
+                    content, clientMessageId);
+    }
+
+    /**
+     * 儲存群組訊息（只存一份，不依成員複製）
+     * @throws IllegalArgumentException 發送者不是群組成員
+     */
+    @Transactional
+    public Message saveGroupMessage(
+        UUID senderId,
+        String conversationId,
+        String content,
+        String clientMessageId
+    ) {
+        if (!groupMembershipCache.isMember(conversationId, senderId)) {
+            throw new IllegalArgumentException("不是群組成員：" + conversationId);
+        }
+        return save(senderId, conversationId, null, content, clientMessageId);
+    }
+
+    /**
+     * @param recipientId 接收者（群組訊息為 null）
+     */
+    private Message save(
+        UUID senderId,
+        String conversationId,
+        UUID recipientId,
+        String content,
+        String clientMessageId
+    ) {
+        MessagePersistencePipeline pipeline = persistencePipeline.getIfAvailable();
+
         // 檢查是否重複訊息（去重）
         if (clientMessageId != null) {
-            Optional<Message> existing = messageRepository.findByClientMessageId(clientMessageId);
+            if (pipeline != null) {
+                Message inFlight = pipeline.findInFlight(clientMessageId);
+                if (inFlight != null) {
+                    log.warn("重複訊息，已忽略：{}", clientMessageId);
+                    return inFlight;
+                }
+            }
+            // Bloom Filter 判斷一定沒看過時，不查詢 MongoDB；
+            // 寫入管線在回覆後才寫入，唯一索引來不及把關，改由 Redis 佔用判斷是否需要查詢 MongoDB
+            Optional<Message> existing = pipeline != null
+                ? deduplicator.findPersisted(clientMessageId)
+                : deduplicator.findDuplicate(clientMessageId);
             if (existing.isPresent()) {
                 log.warn("重複訊息，已忽略：{}", clientMessageId);
                 return existing.get();
             }
         }
 
-        // 取得發送者資訊
-        User sender = userRepository.findById(senderId)
-                                    .orElseThrow(() -> new RuntimeException("發送者不存在"));
-
-        // 生成對話 ID
-        String conversationId = Message.generateConversationId(senderId, recipientId);
+        // 取得發送者資訊（快取）
+        UserProfile sender = userProfileCache.get(senderId)
+                                             .orElseThrow(() -> new RuntimeException("發送者不存在"));
 
         // 建立訊息
         Message message = Message.builder()
                                  .messageId(UUID.randomUUID().toString())
                                  .conversationId(conversationId)
                                  .senderId(senderId)
-                                 .senderUsername(sender.getUsername())
+                                 .senderUsername(sender.username())
                                  .recipientId(recipientId)
                                  .content(content)
                                  .timestamp(Instant.now())
@@ -68,9 +128,25 @@ public class MessageService {
                                  .createdAt(Instant.now())
                                  .build();
 
-        // 儲存訊息
-        Message savedMessage = messageRepository.save(message);
-        log.info("訊息已儲存：{} → {}", sender.getUsername(), recipientId);
+        if (pipeline != null) {
+            Message accepted = pipeline.submit(message);
+            recordClientMessageId(clientMessageId);
+            messageInbox.append(accepted);
+            log.info("訊息已寫入 Journal：{} → {}", sender.username(), conversationId);
+            return accepted;
+        }
+
+        // 儲存訊息（clientMessageId 唯一索引為最後把關）
+        Message savedMessage;
+        try {
+            savedMessage = messageRepository.save(message);
+        } catch (DuplicateKeyException e) {
+            log.warn("重複訊息（唯一索引），已忽略：{}", clientMessageId);
+            return deduplicator.resolveConflict(clientMessageId);
+        }
+        recordClientMessageId(clientMessageId);
+        messageInbox.append(savedMessage);
+        log.info("訊息已儲存：{} → {}", sender.username(), conversationId);
 
         // 更新對話資訊
         conversationService.updateConversation(savedMessage);
@@ -78,51 +154,129 @@ public class MessageService {
         return savedMessage;
     }
 
+    private void recordClientMessageId(String clientMessageId) {
+        if (clientMessageId != null) {
+            deduplicator.record(clientMessageId);
+        }
+    }
+
     /**
-     * 查詢對話歷史訊息（分頁）
+     * 查詢對話歷史訊息（游標分頁）
+     * 依 {conversationId, timestamp, messageId} 索引做範圍查詢，深翻頁也不會變慢
+     *
+     * @param before       取得比此游標舊的訊息（null 表示從最新開始）
+     * @param after        取得比此游標新的訊息
+     * @param includeTotal 是否計算總筆數（需要額外 count 查詢）
+     */
+    public CursorPage<Message> getConversationMessages(
+        String conversationId,
+        String before,
+        String after,
+        int size,
+        boolean includeTotal
+    ) {
+        return KeysetPager.find(
+            mongoTemplate,
+            Message.class,
+            Criteria.where("conversationId").is(conversationId),
+            "timestamp",
+            "messageId",
+            PageCursor.decode(before),
+            PageCursor.decode(after),
+            size,
+            message -> new PageCursor(message.getTimestamp(), message.getMessageId()),
+            includeTotal ? () -> messageRepository.countByConversationId(conversationId) : null
+        );
+    }
+
+    /**
+     * 查詢對話歷史訊息（舊版 page 參數，每次都會 count；其餘呼叫請用游標分頁
+     * {@link #getConversationMessages(String, String, String, int, boolean)}）
      */
     public Page<Message> getConversationMessages(String conversationId, Pageable pageable) {
         return messageRepository.findByConversationIdOrderByTimestampDesc(conversationId, pageable);
     }
 
     /**
-     * 標記訊息為已讀
+     * 標記訊息為已讀（讀到最新）
      */
-    @Transactional
     public void markMessagesAsRead(String conversationId, UUID recipientId) {
-        List<Message> unreadMessages = messageRepository
-            .findByConversationIdAndRecipientIdAndIsReadFalse(conversationId, recipientId);
-
-        if (unreadMessages.isEmpty()) {
-            return;
-        }
+        markAsRead(conversationId, recipientId, null);
+    }
 
+    /**
+     * 標記已讀到指定訊息（含）為止
+     * 已讀位置記錄在 Conversation.readMarkers；訊息上的 isRead 以單一 updateMany 更新，
+     * 不把未讀訊息載入記憶體
+     *
+     * @param upToMessageId 讀到的訊息 ID，null 表示讀到最新
+     * @return 本次新標記為已讀的訊息數
+     * @throws IllegalArgumentException 訊息不存在或不屬於此對話（不變更已讀位置）
+     */
+    public long markAsRead(String conversationId, UUID readerId, String upToMessageId) {
         Instant now = Instant.now();
-        unreadMessages.forEach(msg -> {
-            msg.setIsRead(true);
-            msg.setReadAt(now);
-        });
 
-        messageRepository.saveAll(unreadMessages);
+        Instant readUpTo = upToMessageId == null ? now : readPosition(conversationId, upToMessageId);
+
+        UpdateResult result = mongoTemplate.updateMulti(
+            Query.query(Criteria.where("conversationId").is(conversationId)
+                                .and("recipientId").is(readerId)
+                                .and("isRead").is(false)
+                                .and("timestamp").lte(readUpTo)),
+            new Update().set("isRead", true).set("readAt", now),
+            Message.class
+        );
+        long readCount = result.getModifiedCount();
 
-        // 更新對話未讀數
-        conversationService.resetUnreadCount(conversationId, recipientId);
+        Conversation.ReadMarker marker = Conversation.ReadMarker.builder()
+                                                                .messageId(upToMessageId)
+                                                                .timestamp(readUpTo)
+                                                                .readAt(now)
+                                                                .build();
+        if (upToMessageId == null) {
+            // 讀到最新：未讀數直接歸零
+            conversationService.advanceReadMarker(conversationId, readerId, marker, 0);
+            conversationService.resetUnreadCount(conversationId, readerId);
+        } else {
+            conversationService.advanceReadMarker(conversationId, readerId, marker, readCount);
+        }
+
+        if (readCount > 0) {
+            log.info("已標記 {} 則訊息為已讀（對話 {}，使用者 {}）", readCount, conversationId, readerId);
+        }
+        return readCount;
+    }
 
-        log.info("已標記 {} 則訊息為已讀（對話 {}，使用者 {}）",
-                 unreadMessages.size(), conversationId, recipientId);
+    /**
+     * 已讀位置：讀到的訊息的時間（仍在寫入管線中、尚未寫入 MongoDB 的訊息也可以）
+     * @throws IllegalArgumentException 訊息不存在或不屬於此對話
+     */
+    private Instant readPosition(String conversationId, String messageId) {
+        MessagePersistencePipeline pipeline = persistencePipeline.getIfAvailable();
+        Message message = pipeline != null ? pipeline.findInFlightByMessageId(messageId) : null;
+        if (message == null) {
+            message = messageRepository.findByMessageId(messageId).orElse(null);
+        }
+        if (message == null || !conversationId.equals(message.getConversationId())) {
+            throw new IllegalArgumentException("訊息 " + messageId + " 不屬於對話 " + conversationId);
+        }
+        return message.getTimestamp();
     }
 
     /**
-     * 查詢使用者的未讀訊息總數
+     * 查詢使用者的未讀訊息總數（Redis 計數器，不掃描訊息集合）
      */
     public long getUnreadCount(UUID userId) {
-        return messageRepository.countByRecipientIdAndIsReadFalse(userId);
+        return conversationService.getTotalUnreadCount(userId);
     }
 
     /**
-     * 查詢特定對話的未讀訊息數
+     * 查詢特定對話的未讀訊息數（群組由已讀位置推算）
      */
     public long getConversationUnreadCount(String conversationId, UUID userId) {
+        if (Conversation.isGroup(conversationId)) {
+            return conversationService.getGroupUnreadCount(conversationId, userId);
+        }
         return messageRepository.countByConversationIdAndRecipientIdAndIsReadFalse(
             conversationId, userId);
     }
@@ -0,0 +1,36 @@
+package com.chathub.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * 分頁游標：排序欄位（時間）+ 唯一 ID（同一時間的排序依據）
+ * 對外以 Base64URL 編碼，客戶端不需要也不應解析內容
+ */
+public record PageCursor(Instant timestamp, String id) {
+
+    public String encode() {
+        String raw = timestamp.toEpochMilli() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游標
+     * @return null 表示未提供
+     * @throws IllegalArgumentException 游標格式錯誤
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new PageCursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))),
+                                  raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("無效的分頁游標");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.chathub.service;
+
+import com.chathub.config.NodeProperties;
+import com.chathub.service.cache.UserRouteCache;
+import com.chathub.service.presence.OnlineUsersIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 使用者路由表（userId → nodeId）
+ *
+ * 每個使用者一個 Redis Hash：route:user:{userId}
+ *   field = nodeId，value = 該筆路由的到期時間（epoch millis）
+ * 節點定期心跳續約自己持有的使用者；節點掛掉後路由自然過期，
+ * 查詢時會過濾掉已過期的 field，不需要其他節點清理。
+ * 登記 / 移除 / 心跳同時更新本節點的在線 bitmap（OnlineUsersIndex）。
+ * 登記 / 移除後通知各節點的 UserRouteCache 失效（心跳續約不改變節點集合，不通知）。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenceRoutingService {
+
+    private static final String ROUTE_KEY_PREFIX = "route:user:";
+    private static final int HEARTBEAT_BATCH_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final WebSocketSessionManager sessionManager;
+    private final NodeProperties nodeProperties;
+    private final OnlineUsersIndex onlineUsersIndex;
+
+    /**
+     * 使用者在本節點建立第一個連線時呼叫
+     */
+    public void register(UUID userId) {
+        onlineUsersIndex.add(userId);
+        try {
+            String key = routeKey(userId.toString());
+            stringRedisTemplate.opsForHash().put(key, nodeProperties.getId(), String.valueOf(nextExpiry()));
+            stringRedisTemplate.expire(key, nodeProperties.getRouteTtl());
+            stringRedisTemplate.convertAndSend(UserRouteCache.INVALIDATION_CHANNEL, userId.toString());
+            log.debug("Route registered: {} → {}", userId, nodeProperties.getId());
+        } catch (Exception e) {
+            log.error("Failed to register route for user: {}", userId, e);
+        }
+    }
+
+    /**
+     * 使用者在本節點的最後一個連線關閉時呼叫
+     */
+    public void unregister(UUID userId) {
+        onlineUsersIndex.remove(userId);
+        try {
+            stringRedisTemplate.opsForHash().delete(routeKey(userId.toString()), nodeProperties.getId());
+            stringRedisTemplate.convertAndSend(UserRouteCache.INVALIDATION_CHANNEL, userId.toString());
+            log.debug("Route removed: {} → {}", userId, nodeProperties.getId());
+        } catch (Exception e) {
+            log.error("Failed to remove route for user: {}", userId, e);
+        }
+    }
+
+    /**
+     * 查詢持有該使用者連線的節點
+     * @param userId 使用者 ID
+     * @return 節點 ID 集合（空集合代表查無路由資料）
+     */
+    public Set<String> findNodes(String userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(routeKey(userId));
+        if (entries.isEmpty()) {
+            return Set.of();
+        }
+
+        return liveNodes(entries);
+    }
+
+    /**
+     * 批次查詢多個使用者的節點（Pipeline，一次往返）
+     * @param userIds 使用者 ID
+     * @return 有路由的使用者 → 節點 ID 集合（查無路由的使用者不在結果中）
+     */
+    public Map<UUID, Set<String>> findNodes(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        List<UUID> ordered = List.copyOf(userIds);
+        Map<UUID, Set<String>> routes = new HashMap<>();
+        for (int from = 0; from < ordered.size(); from += HEARTBEAT_BATCH_SIZE) {
+            List<UUID> batch = ordered.subList(from, Math.min(from + HEARTBEAT_BATCH_SIZE, ordered.size()));
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (UUID userId : batch) {
+                    connection.hashCommands().hGetAll(routeKey(userId.toString()).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                if (results.get(i) instanceof Map<?, ?> entries && !entries.isEmpty()) {
+                    Set<String> nodes = liveNodes(entries);
+                    if (!nodes.isEmpty()) {
+                        routes.put(batch.get(i), nodes);
+                    }
+                }
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * 過濾掉已過期的路由（反應式路徑共用）
+     * @param entries 路由 Hash 的內容（nodeId → 到期時間）
+     */
+    public static Set<String> liveNodes(Map<?, ?> entries) {
+        long now = System.currentTimeMillis();
+        Set<String> nodes = new HashSet<>();
+        entries.forEach((nodeId, expiresAt) -> {
+            if (Long.parseLong(expiresAt.toString()) > now) {
+                nodes.add(nodeId.toString());
+            }
+        });
+        return nodes;
+    }
+
+    /**
+     * 心跳：續約本節點持有的所有使用者路由（Pipeline 批次寫入）
+     */
+    @Scheduled(fixedDelayString = "#{@nodeProperties.heartbeatInterval.toMillis()}")
+    public void heartbeat() {
+        refresh(sessionManager.getOnlineUserIds());
+    }
+
+    /**
+     * 續約指定使用者在本節點的路由（反應式路徑以自己的連線表呼叫）
+     */
+    public void refresh(List<UUID> userIds) {
+        onlineUsersIndex.publish();
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        byte[] field = nodeProperties.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] value = String.valueOf(nextExpiry()).getBytes(StandardCharsets.UTF_8);
+        long ttlSeconds = nodeProperties.getRouteTtl().toSeconds();
+
+        try {
+            for (int from = 0; from < userIds.size(); from += HEARTBEAT_BATCH_SIZE) {
+                List<UUID> batch = userIds.subList(from, Math.min(from + HEARTBEAT_BATCH_SIZE, userIds.size()));
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (UUID userId : batch) {
+                        byte[] key = routeKey(userId.toString()).getBytes(StandardCharsets.UTF_8);
+                        connection.hashCommands().hSet(key, field, value);
+                        connection.keyCommands().expire(key, ttlSeconds);
+                    }
+                    return null;
+                });
+            }
+            log.debug("Route heartbeat refreshed {} users on node {}", userIds.size(), nodeProperties.getId());
+        } catch (Exception e) {
+            log.error("Route heartbeat failed on node {}", nodeProperties.getId(), e);
+        }
+    }
+
+    private long nextExpiry() {
+        return System.currentTimeMillis() + nodeProperties.getRouteTtl().toMillis();
+    }
+
+    public static String routeKey(String userId) {
+        return ROUTE_KEY_PREFIX + userId;
+    }
+}
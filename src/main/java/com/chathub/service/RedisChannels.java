@@ -0,0 +1,75 @@
+package com.chathub.service;
+
+/**
+ * Redis Pub/Sub 頻道命名規則
+ *
+ * node:{nodeId}:user:{userId} → 只送到持有該使用者連線的節點
+ * user:{userId}               → 路由資料缺失時的廣播頻道（所有節點都訂閱）
+ * conversation:{conversationId} → 群組訊息（所有節點都訂閱，各自展開給本機的成員連線）
+ * ephemeral:{上述頻道}          → 可遺失的即時事件（正在輸入），由獨立的監聽容器處理
+ */
+public final class RedisChannels {
+
+    public static final String USER_PREFIX = "user:";
+    public static final String NODE_PREFIX = "node:";
+    public static final String CONVERSATION_PREFIX = "conversation:";
+    public static final String EPHEMERAL_PREFIX = "ephemeral:";
+
+    private RedisChannels() {
+    }
+
+    public static String user(String userId) {
+        return USER_PREFIX + userId;
+    }
+
+    public static String nodeUser(String nodeId, String userId) {
+        return NODE_PREFIX + nodeId + ":" + USER_PREFIX + userId;
+    }
+
+    /**
+     * 本節點的訂閱模式，例如：node:pod-1:*
+     */
+    public static String nodePattern(String nodeId) {
+        return NODE_PREFIX + nodeId + ":*";
+    }
+
+    /**
+     * 對應的 ephemeral 頻道，例如：node:pod-1:user:abc-123 → ephemeral:node:pod-1:user:abc-123
+     */
+    public static String ephemeral(String channel) {
+        return EPHEMERAL_PREFIX + channel;
+    }
+
+    public static String conversation(String conversationId) {
+        return CONVERSATION_PREFIX + conversationId;
+    }
+
+    /**
+     * 從頻道名稱提取對話 ID，例如：conversation:group-abc → group-abc
+     * @return 對話 ID（不是對話頻道時為 null）
+     */
+    public static String extractConversationId(String channel) {
+        return channel.startsWith(CONVERSATION_PREFIX) ? channel.substring(CONVERSATION_PREFIX.length()) : null;
+    }
+
+    /**
+     * 從頻道名稱提取使用者 ID
+     * 例如：user:abc-123 → abc-123、node:pod-1:user:abc-123 → abc-123（ephemeral 頻道相同）
+     * @return 使用者 ID（不是使用者頻道時為 null）
+     */
+    public static String extractUserId(String channel) {
+        if (channel.startsWith(EPHEMERAL_PREFIX)) {
+            channel = channel.substring(EPHEMERAL_PREFIX.length());
+        }
+        if (channel.startsWith(USER_PREFIX)) {
+            return channel.substring(USER_PREFIX.length());
+        }
+        if (channel.startsWith(NODE_PREFIX)) {
+            int index = channel.lastIndexOf(":" + USER_PREFIX);
+            if (index >= 0) {
+                return channel.substring(index + 1 + USER_PREFIX.length());
+            }
+        }
+        return null;
+    }
+}
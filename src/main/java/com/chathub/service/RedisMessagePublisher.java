@@ -1,32 +1,57 @@
 package com.chathub.service;
 
+import com.chathub.config.NodeProperties;
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.handler.codec.EncodedFrame;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
+import java.util.Set;
 
 /**
  * Redis 訊息發布者
- * 功能：將 WebSocket 訊息發布到 Redis 頻道，讓所有 Pod 都能收到
+ * 功能：將 WebSocket 訊息發布到持有目標使用者連線的節點頻道
+ *
+ * 先查路由表（userId → nodeId），只發布到 node:{nodeId}:user:{userId}；
+ * 查無路由資料（或查詢失敗）時，退回廣播到 user:{userId}，讓所有節點都收到。
+ *
+ * 訊息只序列化一次（EncodedFrame），同一份 JSON bytes 原樣 PUBLISH 到每個頻道。
+ * Pub/Sub 不保留訊息：PUBLISH 回傳 0（目標節點重啟中或訂閱連線中斷）時訊息即遺失，
+ * 計入 chathub.bus.undelivered{bus=pubsub}，離線補送由重連同步負責。
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class RedisMessagePublisher {
+@ConditionalOnProperty(prefix = "chathub.bus", name = "type", havingValue = "pubsub", matchIfMissing = true)
+public class RedisMessagePublisher implements MessagePublisher {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, byte[]> pubSubRedisTemplate;
     private final ObjectMapper objectMapper;
+    private final PresenceRoutingService routingService;
+    private final NodeProperties nodeProperties;
+    private final Counter published;
+    private final Counter undelivered;
 
-    /**
-     * 發布訊息到使用者專屬頻道（UUID 版本）
-     * @param userId 目標使用者 ID（UUID）
-     * @param message 訊息物件（會自動轉 JSON）
-     */
-    public void publishToUser(UUID userId, Object message) {
-        publishToUser(userId.toString(), message);
+    public RedisMessagePublisher(RedisTemplate<String, byte[]> pubSubRedisTemplate, ObjectMapper objectMapper,
+                                 PresenceRoutingService routingService, NodeProperties nodeProperties,
+                                 MeterRegistry meterRegistry) {
+        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.routingService = routingService;
+        this.nodeProperties = nodeProperties;
+        this.published = Counter.builder("chathub.bus.published")
+                                .tag("bus", "pubsub")
+                                .description("Messages published to the cross-node bus")
+                                .register(meterRegistry);
+        this.undelivered = Counter.builder("chathub.bus.undelivered")
+                                  .tag("bus", "pubsub")
+                                  .description("Pub/Sub messages no node was subscribed to receive")
+                                  .register(meterRegistry);
     }
 
     /**
@@ -34,30 +59,134 @@ public class RedisMessagePublisher {
      * @param userId 目標使用者 ID（String）
      * @param message 訊息物件（會自動轉 JSON）
      */
+    @Override
     public void publishToUser(String userId, Object message) {
         try {
-            String channel = "user:" + userId;
-            String jsonMessage = objectMapper.writeValueAsString(message);
+            publishToUser(userId, encode(message));
+        } catch (Exception e) {
+            log.error("Failed to publish message to user: {}", userId, e);
+        }
+    }
 
-            redisTemplate.convertAndSend(channel, jsonMessage);
-            log.debug("Published message to channel: {}", channel);
+    /**
+     * 發布已序列化的訊息（呼叫端可以把同一個 frame 再交給本機連線，不必重新序列化）
+     * @param userId 目標使用者 ID（String）
+     * @param frame 已序列化的訊息
+     */
+    @Override
+    public void publishToUser(String userId, EncodedFrame frame) {
+        publish(userId, frame, false);
+    }
+
+    /**
+     * 發布到指定節點的使用者頻道（node:{nodeId}:user:{userId}），不查詢路由
+     * @param userId 目標使用者 ID（String）
+     * @param nodeIds 目標節點
+     * @param frame 已序列化的訊息
+     */
+    @Override
+    public void publishToNodes(String userId, Set<String> nodeIds, EncodedFrame frame) {
+        try {
+            sendToNodes(userId, nodeIds, frame, false);
+        } catch (Exception e) {
+            log.error("Failed to publish message to user: {}", userId, e);
+        }
+    }
+
+    /**
+     * 發布可遺失的即時事件（正在輸入）到 ephemeral 頻道
+     * 由獨立的監聽容器與執行緒處理，不會排在 NEW_MESSAGE 後面，也不會拖慢它
+     * @param userId 目標使用者 ID（String）
+     * @param frame 已序列化的訊息
+     */
+    @Override
+    public void publishEphemeral(String userId, EncodedFrame frame) {
+        publish(userId, frame, true);
+    }
+
+    private void publish(String userId, EncodedFrame frame, boolean ephemeral) {
+        try {
+            Set<String> nodes = findNodes(userId);
+            if (nodes.isEmpty()) {
+                if (nodeProperties.isFallbackBroadcast()) {
+                    String channel = channel(RedisChannels.user(userId), ephemeral);
+                    send(channel, frame, ephemeral);
+                    log.debug("No route for user {}, broadcast to channel: {}", userId, channel);
+                }
+                return;
+            }
+
+            sendToNodes(userId, nodes, frame, ephemeral);
 
         } catch (Exception e) {
             log.error("Failed to publish message to user: {}", userId, e);
         }
     }
 
+    private void sendToNodes(String userId, Set<String> nodes, EncodedFrame frame, boolean ephemeral) {
+        for (String nodeId : nodes) {
+            String channel = channel(RedisChannels.nodeUser(nodeId, userId), ephemeral);
+            send(channel, frame, ephemeral);
+            log.debug("Published message to channel: {}", channel);
+        }
+    }
+
+    /**
+     * PUBLISH；ephemeral 事件可以遺失，不計入指標
+     */
+    private void send(String channel, EncodedFrame frame, boolean ephemeral) {
+        Long receivers = pubSubRedisTemplate.convertAndSend(channel, frame.json());
+        if (ephemeral) {
+            return;
+        }
+        published.increment();
+        if (receivers != null && receivers == 0) {
+            undelivered.increment();
+            log.debug("No subscriber received message on channel: {}", channel);
+        }
+    }
+
+    private static String channel(String channel, boolean ephemeral) {
+        return ephemeral ? RedisChannels.ephemeral(channel) : channel;
+    }
+
+    /**
+     * 序列化成 EncodedFrame（已是 EncodedFrame 時直接使用）
+     */
+    public EncodedFrame encode(Object message) throws JsonProcessingException {
+        if (message instanceof EncodedFrame frame) {
+            return frame;
+        }
+        if (message instanceof WebSocketMessage webSocketMessage) {
+            return EncodedFrame.encode(objectMapper, webSocketMessage);
+        }
+        return EncodedFrame.wrap(objectMapper.writeValueAsBytes(message));
+    }
+
+    /**
+     * 查詢路由；Redis 查詢失敗時視為查無路由（走廣播）
+     */
+    private Set<String> findNodes(String userId) {
+        try {
+            return routingService.findNodes(userId);
+        } catch (Exception e) {
+            log.warn("Route lookup failed for user {}, falling back to broadcast", userId, e);
+            return Set.of();
+        }
+    }
+
     /**
-     * 發布訊息到對話頻道
+     * 發布訊息到對話頻道（群組訊息）
+     * 不論成員多少都只 PUBLISH 一次，由各節點依成員名單展開（見 RedisMessageSubscriber）
      * @param conversationId 對話 ID
      * @param message 訊息物件
      */
+    @Override
     public void publishToConversation(String conversationId, Object message) {
         try {
-            String channel = "conversation:" + conversationId;
-            String jsonMessage = objectMapper.writeValueAsString(message);
+            String channel = RedisChannels.conversation(conversationId);
 
-            redisTemplate.convertAndSend(channel, jsonMessage);
+            send(channel, encode(message), false);
             log.debug("Published message to channel: {}", channel);
 
         } catch (Exception e) {
@@ -1,59 +1,52 @@
 package com.chathub.service;
 
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.service.cache.GroupMembershipCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.socket.TextMessage;
-import org.springframework.web.socket.WebSocketSession;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Redis 訊息訂閱者
  * 功能：監聽 Redis 頻道，收到訊息後推送給對應的 WebSocket 連線
+ *
+ * 訊息內容是發布端序列化好的 JSON bytes，直接包成 EncodedFrame 交給連線，
+ * 不轉成字串、不重新序列化；同一使用者的所有裝置共用同一個 frame。
+ * 群組訊息（conversation:{id}）以本機快取的成員名單展開，所有成員連線共用同一個 frame。
+ * （reactive profile 由 ReactiveMessageRelay 訂閱）
  */
 @Slf4j
 @Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 public class RedisMessageSubscriber implements MessageListener {
 
     private final WebSocketSessionManager sessionManager;
+    private final GroupMembershipCache membershipCache;
     private final ObjectMapper objectMapper;
 
     /**
      * 當 Redis 收到訊息時觸發
      * @param message Redis 訊息
-     * @param pattern 訂閱模式（例如：user:*）
+     * @param pattern 訂閱模式（例如：node:pod-1:* 或 user:*）
      */
     @Override
     public void onMessage(Message message, byte[] pattern) {
         try {
-            // 1. 解析頻道名稱（例如：user:abc-123）
-            String channel = new String(message.getChannel());
-            String messageBody = new String(message.getBody());
+            // 1. 解析頻道名稱（例如：node:pod-1:user:abc-123 或 user:abc-123）
+            String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
 
             log.debug("Received message from channel: {}", channel);
 
-            // 2. 提取使用者 ID
-            String userId = extractUserIdFromChannel(channel);
-            if (userId == null) {
-                log.warn("Cannot extract userId from channel: {}", channel);
-                return;
-            }
-
-            // 3. 找到該使用者的 WebSocket 連線
-            WebSocketSession session = sessionManager.getSession(userId);
-            if (session == null || !session.isOpen()) {
-                log.debug("User {} is not connected or session closed", userId);
-                return;
-            }
-
-            // 4. 推送訊息給使用者
-            session.sendMessage(new TextMessage(messageBody));
-            log.debug("Message sent to user: {}", userId);
+            deliver(channel, EncodedFrame.wrap(message.getBody()));
 
         } catch (Exception e) {
             log.error("Error processing Redis message", e);
@@ -61,13 +54,41 @@ public class RedisMessageSubscriber implements MessageListener {
     }
 
     /**
-     * 從頻道名稱提取使用者 ID
-     * 例如：user:abc-123 → abc-123
+     * 依頻道名稱推送給本機連線（Pub/Sub 與 Streams 匯流排共用，Streams 的每筆記錄帶有原本的頻道名稱）
+     * @return 收到的連線數
      */
-    private String extractUserIdFromChannel(String channel) {
-        if (channel.startsWith("user:")) {
-            return channel.substring(5);
+    public int deliver(String channel, EncodedFrame frame) {
+        // 群組訊息：整個叢集只發布一次，各節點依成員名單展開給本機連線
+        String conversationId = RedisChannels.extractConversationId(channel);
+        if (conversationId != null) {
+            return deliverToGroup(conversationId, frame);
+        }
+
+        // 2. 提取使用者 ID
+        String userId = RedisChannels.extractUserId(channel);
+        if (userId == null) {
+            log.warn("Cannot extract userId from channel: {}", channel);
+            return 0;
+        }
+
+        // 3. 推送訊息給使用者在本節點的所有裝置
+        int delivered = sessionManager.sendToUser(UUID.fromString(userId), frame);
+        if (delivered == 0) {
+            log.debug("User {} is not connected, message kept in sync inbox until reconnect", userId);
+            return 0;
+        }
+        log.debug("Message sent to user: {} ({} devices)", userId, delivered);
+        return delivered;
+    }
+
+    private int deliverToGroup(String conversationId, EncodedFrame frame) {
+        Set<UUID> members = membershipCache.members(conversationId);
+        if (members.isEmpty()) {
+            log.warn("Unknown group conversation: {}", conversationId);
+            return 0;
         }
-        return null;
+        int delivered = sessionManager.sendToUsers(members, frame);
+        log.debug("Group message {} delivered to {} local sessions", conversationId, delivered);
+        return delivered;
     }
-}
\ No newline at end of file
+}
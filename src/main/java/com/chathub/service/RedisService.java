@@ -5,7 +5,6 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -13,18 +12,6 @@ public class RedisService {
 
     private final RedisTemplate<String, Object> redisTemplate;
 
-    // 設定使用者線上狀態
-    public void setUserOnline(UUID userId) {
-        String key = "user:online:" + userId;
-        redisTemplate.opsForValue().set(key, "true", Duration.ofHours(1));
-    }
-
-    // 移除使用者線上狀態
-    public void removeUserOnline(UUID userId) {
-        String key = "user:online:" + userId;
-        redisTemplate.delete(key);
-    }
-
     // 增加登入失敗次數
     public void incrementLoginAttempts(String username) {
         String key = "login:attempt:" + username;
@@ -66,12 +53,4 @@ public class RedisService {
         String key = "token:blacklist:" + jti;
         return Boolean.TRUE.equals(redisTemplate.hasKey(key));
     }
-
-    /**
-     * 檢查使用者是否線上
-     */
-    public boolean isUserOnline(UUID userId) {
-        String key = "user:online:" + userId;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
-    }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.chathub.service;
+
+import com.chathub.config.BusProperties;
+import com.chathub.config.NodeProperties;
+import com.chathub.handler.codec.EncodedFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis Streams 訊息發布者（chathub.bus.type=streams）
+ *
+ * Stream：
+ * - bus:node:{nodeId}：送給該節點的使用者訊息（依路由表，同 Pub/Sub 的 node:{nodeId}:user:{userId}）
+ * - bus:broadcast   ：群組訊息與查無路由時的廣播，每個節點各有一個 consumer group，都會收到每一筆
+ * 每筆記錄帶原本的 Pub/Sub 頻道名稱（ch）與 JSON bytes（b），接收端沿用 RedisMessageSubscriber 的推送邏輯。
+ * XADD 以 MAXLEN ~ 約略修剪；讀取、確認與接手死亡節點見 RedisStreamSubscriber。
+ * 正在輸入可以遺失，仍走 ephemeral Pub/Sub 頻道。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "chathub.bus", name = "type", havingValue = "streams")
+public class RedisStreamPublisher implements MessagePublisher {
+
+    public static final String BROADCAST_STREAM = "bus:broadcast";
+    public static final String NODES_KEY = "bus:nodes";
+    static final byte[] FIELD_CHANNEL = "ch".getBytes(StandardCharsets.UTF_8);
+    static final byte[] FIELD_BODY = "b".getBytes(StandardCharsets.UTF_8);
+
+    private static final String NODE_STREAM_PREFIX = "bus:node:";
+
+    private final RedisTemplate<String, byte[]> pubSubRedisTemplate;
+    private final PresenceRoutingService routingService;
+    private final NodeProperties nodeProperties;
+    private final BusProperties busProperties;
+    private final RedisMessagePublisher ephemeralPublisher;
+    private final Counter published;
+    private final Counter failed;
+
+    public RedisStreamPublisher(RedisTemplate<String, byte[]> pubSubRedisTemplate, ObjectMapper objectMapper,
+                                PresenceRoutingService routingService, NodeProperties nodeProperties,
+                                BusProperties busProperties, MeterRegistry meterRegistry) {
+        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.routingService = routingService;
+        this.nodeProperties = nodeProperties;
+        this.busProperties = busProperties;
+        this.ephemeralPublisher = new RedisMessagePublisher(pubSubRedisTemplate, objectMapper, routingService,
+                                                            nodeProperties, meterRegistry);
+        this.published = Counter.builder("chathub.bus.published")
+                                .tag("bus", "streams")
+                                .description("Messages published to the cross-node bus")
+                                .register(meterRegistry);
+        this.failed = Counter.builder("chathub.bus.publish.failed")
+                             .tag("bus", "streams")
+                             .description("Messages that could not be appended to the cross-node bus")
+                             .register(meterRegistry);
+    }
+
+    public static String nodeStream(String nodeId) {
+        return NODE_STREAM_PREFIX + nodeId;
+    }
+
+    /**
+     * 節點的 consumer group（bus:node:{nodeId} 與 bus:broadcast 都用同一個名稱）
+     */
+    public static String group(String nodeId) {
+        return RedisChannels.NODE_PREFIX + nodeId;
+    }
+
+    @Override
+    public void publishToUser(String userId, Object message) {
+        try {
+            publishToUser(userId, ephemeralPublisher.encode(message));
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Failed to publish message to user: {}", userId, e);
+        }
+    }
+
+    @Override
+    public void publishToUser(String userId, EncodedFrame frame) {
+        try {
+            Set<String> nodes = findNodes(userId);
+            if (nodes.isEmpty()) {
+                if (nodeProperties.isFallbackBroadcast()) {
+                    append(BROADCAST_STREAM, RedisChannels.user(userId), frame);
+                    log.debug("No route for user {}, appended to {}", userId, BROADCAST_STREAM);
+                }
+                return;
+            }
+            appendToNodes(userId, nodes, frame);
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Failed to publish message to user: {}", userId, e);
+        }
+    }
+
+    @Override
+    public void publishToNodes(String userId, Set<String> nodeIds, EncodedFrame frame) {
+        try {
+            appendToNodes(userId, nodeIds, frame);
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Failed to publish message to user: {}", userId, e);
+        }
+    }
+
+    private void appendToNodes(String userId, Set<String> nodeIds, EncodedFrame frame) {
+        for (String nodeId : nodeIds) {
+            append(nodeStream(nodeId), RedisChannels.nodeUser(nodeId, userId), frame);
+        }
+    }
+
+    @Override
+    public void publishEphemeral(String userId, EncodedFrame frame) {
+        ephemeralPublisher.publishEphemeral(userId, frame);
+    }
+
+    @Override
+    public void publishToConversation(String conversationId, Object message) {
+        try {
+            append(BROADCAST_STREAM, RedisChannels.conversation(conversationId), ephemeralPublisher.encode(message));
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Failed to publish message to conversation: {}", conversationId, e);
+        }
+    }
+
+    private void append(String stream, String channel, EncodedFrame frame) {
+        byte[] key = stream.getBytes(StandardCharsets.UTF_8);
+        Map<byte[], byte[]> fields = Map.of(FIELD_CHANNEL, channel.getBytes(StandardCharsets.UTF_8),
+                                            FIELD_BODY, frame.json());
+        XAddOptions options = XAddOptions.maxlen(busProperties.getStreamMaxLength()).approximateTrimming(true);
+        RecordId id = pubSubRedisTemplate.execute((RedisCallback<RecordId>) connection ->
+            connection.streamCommands().xAdd(StreamRecords.rawBytes(fields).withStreamKey(key), options));
+        published.increment();
+        log.debug("Appended message {} to stream {} ({})", id, stream, channel);
+    }
+
+    /**
+     * 查詢路由；Redis 查詢失敗時視為查無路由（走廣播）
+     */
+    private Set<String> findNodes(String userId) {
+        try {
+            return routingService.findNodes(userId);
+        } catch (Exception e) {
+            log.warn("Route lookup failed for user {}, falling back to broadcast", userId, e);
+            return Set.of();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.chathub.service;
+
+import com.chathub.config.BusProperties;
+import com.chathub.config.NodeProperties;
+import com.chathub.handler.codec.EncodedFrame;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis Streams 訊息訂閱者（chathub.bus.type=streams，Servlet）
+ *
+ * 讀取：專屬執行緒以 XREADGROUP 批次讀取 bus:node:{nodeId} 與 bus:broadcast（consumer group = node:{nodeId}），
+ * 交給 RedisMessageSubscriber 推送給本機連線後，整批 XACK。
+ * 「推送」是放入連線的送出佇列；節點在寫入 socket 前掛掉時，訊息由重連同步（收件匣）補送。
+ * 啟動時先以 ID 0 重送同一節點 ID 上次未確認的訊息，再讀新訊息（客戶端依 messageId 去重）。
+ *
+ * 接手死亡節點：每個節點定期在 bus:nodes 更新心跳；心跳逾時的節點由搶到鎖的節點接手：
+ * 認領（XCLAIM）其未確認與尚未讀取的訊息，依目前的路由表重新發布，再刪除其 Stream 與 broadcast 上的 consumer group。
+ * 每批認領前與刪除前都重新檢查心跳，只是暫停（GC、網路中斷）而恢復心跳的節點不會被清除；
+ * 檢查與刪除之間仍有極短的空窗，被清除的節點讀取時收到 NOGROUP 會重建 consumer group 並從頭重讀自己的 Stream。
+ *
+ * 指標：chathub.bus.delivered、chathub.bus.delivery.lag（XADD 到推送的延遲）、chathub.bus.reclaimed
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "chathub.bus", name = "type", havingValue = "streams")
+public class RedisStreamSubscriber implements SmartLifecycle {
+
+    private static final String RECLAIM_LOCK_PREFIX = "bus:reclaim:";
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageSubscriber subscriber;
+    private final MessagePublisher publisher;
+    private final NodeProperties nodeProperties;
+    private final BusProperties busProperties;
+    private final Counter delivered;
+    private final Counter reclaimed;
+    private final Timer lag;
+
+    private volatile boolean running;
+    private Thread reader;
+
+    public RedisStreamSubscriber(RedisConnectionFactory connectionFactory, StringRedisTemplate stringRedisTemplate,
+                                 RedisMessageSubscriber subscriber, MessagePublisher publisher,
+                                 NodeProperties nodeProperties, BusProperties busProperties,
+                                 MeterRegistry meterRegistry) {
+        this.connectionFactory = connectionFactory;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.subscriber = subscriber;
+        this.publisher = publisher;
+        this.nodeProperties = nodeProperties;
+        this.busProperties = busProperties;
+        this.delivered = Counter.builder("chathub.bus.delivered")
+                                .tag("bus", "streams")
+                                .description("Bus records handed to local sessions")
+                                .register(meterRegistry);
+        this.reclaimed = Counter.builder("chathub.bus.reclaimed")
+                                .tag("bus", "streams")
+                                .description("Records taken over from dead nodes and re-published")
+                                .register(meterRegistry);
+        this.lag = Timer.builder("chathub.bus.delivery.lag")
+                        .tag("bus", "streams")
+                        .description("Time from XADD to local delivery")
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        String nodeId = nodeProperties.getId();
+        createGroups();
+        heartbeat();
+
+        running = true;
+        reader = new Thread(this::readLoop, "redis-stream-bus");
+        reader.setDaemon(true);
+        reader.start();
+        log.info("Stream bus consumer started on node {}", nodeId);
+    }
+
+    private void createGroups() {
+        String nodeId = nodeProperties.getId();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            // 自己的 Stream 從頭讀（啟動前已寫入的訊息也要送）；broadcast 只讀之後的
+            createGroup(connection, RedisStreamPublisher.nodeStream(nodeId), ReadOffset.from("0"));
+            createGroup(connection, RedisStreamPublisher.BROADCAST_STREAM, ReadOffset.latest());
+        }
+    }
+
+    private void createGroup(RedisConnection connection, String stream, ReadOffset offset) {
+        try {
+            connection.streamCommands().xGroupCreate(bytes(stream), RedisStreamPublisher.group(nodeProperties.getId()),
+                                                     offset, true);
+        } catch (Exception e) {
+            // BUSYGROUP：節點重啟，group 已存在
+            log.debug("Consumer group already exists on {}: {}", stream, e.getMessage());
+        }
+    }
+
+    private void readLoop() {
+        String nodeId = nodeProperties.getId();
+        Consumer consumer = Consumer.from(RedisStreamPublisher.group(nodeId), nodeId);
+        StreamReadOptions options = StreamReadOptions.empty()
+                                                     .count(busProperties.getReadBatchSize())
+                                                     .block(busProperties.getReadTimeout());
+        boolean recovering = true;
+
+        while (running) {
+            // 阻塞讀取佔用一條專屬連線，整個迴圈共用同一個 RedisConnection
+            try (RedisConnection connection = connectionFactory.getConnection()) {
+                while (running) {
+                    ReadOffset offset = recovering ? ReadOffset.from("0") : ReadOffset.lastConsumed();
+                    List<ByteRecord> records = readGroup(connection.streamCommands(), consumer, options, offset,
+                                                         bytes(RedisStreamPublisher.nodeStream(nodeId)),
+                                                         bytes(RedisStreamPublisher.BROADCAST_STREAM));
+                    if (records == null || records.isEmpty()) {
+                        recovering = false;
+                        continue;
+                    }
+                    deliverAndAck(connection.streamCommands(), records);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                if (isNoGroup(e)) {
+                    // 暫停期間被其他節點當成死亡節點接手：重建 consumer group，重新登記心跳
+                    log.warn("Stream bus consumer group missing on node {}, recreating", nodeId);
+                    try {
+                        createGroups();
+                        heartbeat();
+                        recovering = true;
+                        continue;
+                    } catch (Exception recreateFailed) {
+                        log.error("Failed to recreate stream bus consumer groups on node {}", nodeId, recreateFailed);
+                    }
+                } else {
+                    log.error("Stream bus read failed on node {}, retrying", nodeId, e);
+                }
+                sleep(RETRY_DELAY);
+            }
+        }
+    }
+
+    private static boolean isNoGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 推送整批後依 Stream 一次確認；單筆推送失敗也確認，避免同一筆一直重送
+     */
+    private void deliverAndAck(RedisStreamCommands commands, List<ByteRecord> records) {
+        Map<String, List<RecordId>> acks = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (ByteRecord record : records) {
+            try {
+                String channel = new String(field(record, RedisStreamPublisher.FIELD_CHANNEL), StandardCharsets.UTF_8);
+                subscriber.deliver(channel, EncodedFrame.wrap(field(record, RedisStreamPublisher.FIELD_BODY)));
+                delivered.increment();
+                lag.record(Math.max(0, now - record.getId().getTimestamp()), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.error("Error delivering stream record {}", record.getId(), e);
+            }
+            acks.computeIfAbsent(new String(record.getStream(), StandardCharsets.UTF_8), stream -> new ArrayList<>())
+                .add(record.getId());
+        }
+        String group = RedisStreamPublisher.group(nodeProperties.getId());
+        acks.forEach((stream, ids) -> commands.xAck(bytes(stream), group, ids.toArray(RecordId[]::new)));
+    }
+
+    /**
+     * 節點心跳（判斷節點是否死亡）
+     */
+    @Scheduled(fixedDelayString = "#{@nodeProperties.heartbeatInterval.toMillis()}")
+    public void heartbeat() {
+        try {
+            stringRedisTemplate.opsForZSet().add(RedisStreamPublisher.NODES_KEY, nodeProperties.getId(),
+                                                 System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Stream bus heartbeat failed on node {}", nodeProperties.getId(), e);
+        }
+    }
+
+    /**
+     * 接手心跳逾時的節點（同一個死亡節點只由搶到鎖的節點處理）
+     */
+    @Scheduled(fixedDelayString = "#{@busProperties.reclaimInterval.toMillis()}")
+    public void reclaimDeadNodes() {
+        long deadline = System.currentTimeMillis() - busProperties.getNodeTimeout().toMillis();
+        try {
+            Set<String> deadNodes = stringRedisTemplate.opsForZSet()
+                                                       .rangeByScore(RedisStreamPublisher.NODES_KEY, 0, deadline);
+            if (deadNodes == null) {
+                return;
+            }
+            for (String deadNode : deadNodes) {
+                if (deadNode.equals(nodeProperties.getId())) {
+                    continue;
+                }
+                String lock = RECLAIM_LOCK_PREFIX + deadNode;
+                if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(
+                    lock, nodeProperties.getId(), busProperties.getNodeTimeout()))) {
+                    try {
+                        reclaim(deadNode, deadline);
+                    } finally {
+                        stringRedisTemplate.delete(lock);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Stream bus reclaim failed on node {}", nodeProperties.getId(), e);
+        }
+    }
+
+    /**
+     * 認領死亡節點未確認（XPENDING + XCLAIM）與尚未讀取（XREADGROUP）的訊息，依目前的路由重新發布
+     * @param deadline 心跳早於此時間才視為死亡；節點中途恢復心跳時停止認領，不清除其 Stream 與 consumer group
+     */
+    void reclaim(String deadNode, long deadline) {
+        if (!isDead(deadNode, deadline)) {
+            return;
+        }
+        byte[] stream = bytes(RedisStreamPublisher.nodeStream(deadNode));
+        String group = RedisStreamPublisher.group(deadNode);
+        String nodeId = nodeProperties.getId();
+        int batchSize = busProperties.getReadBatchSize();
+        long total = 0;
+
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            RedisStreamCommands commands = connection.streamCommands();
+            try {
+                while (isDead(deadNode, deadline)) {
+                    List<RecordId> ids = new ArrayList<>();
+                    List<ByteRecord> records;
+                    PendingMessages pending = commands.xPending(stream, group, Range.unbounded(), (long) batchSize);
+                    if (pending != null && !pending.isEmpty()) {
+                        for (PendingMessage message : pending) {
+                            ids.add(message.getId());
+                        }
+                        records = commands.xClaim(stream, group, nodeId,
+                                                  XClaimOptions.minIdle(Duration.ZERO).ids(ids));
+                    } else {
+                        records = readGroup(commands, Consumer.from(group, nodeId),
+                                            StreamReadOptions.empty().count(batchSize), ReadOffset.lastConsumed(),
+                                            stream);
+                        if (records == null || records.isEmpty()) {
+                            break;
+                        }
+                        records.forEach(record -> ids.add(record.getId()));
+                    }
+
+                    for (ByteRecord record : records != null ? records : List.<ByteRecord>of()) {
+                        String channel = new String(field(record, RedisStreamPublisher.FIELD_CHANNEL),
+                                                    StandardCharsets.UTF_8);
+                        String userId = RedisChannels.extractUserId(channel);
+                        if (userId != null) {
+                            publisher.publishToUser(userId,
+                                                    EncodedFrame.wrap(field(record, RedisStreamPublisher.FIELD_BODY)));
+                        }
+                    }
+                    // 以 XPENDING 的 ID 確認：已被修剪的記錄 XCLAIM 不會回傳，也要移出待確認清單
+                    commands.xAck(stream, group, ids.toArray(RecordId[]::new));
+                    total += ids.size();
+                }
+            } catch (Exception e) {
+                // NOGROUP：死亡節點從未建立 Stream（或已被其他節點清除）
+                log.debug("Nothing to reclaim from node {}: {}", deadNode, e.getMessage());
+            }
+
+            if (!isDead(deadNode, deadline)) {
+                reclaimed.increment(total);
+                log.info("Node {} resumed its heartbeat, re-published {} records and kept its stream", deadNode, total);
+                return;
+            }
+            connection.keyCommands().del(stream);
+            try {
+                commands.xGroupDestroy(bytes(RedisStreamPublisher.BROADCAST_STREAM), group);
+            } catch (Exception e) {
+                log.debug("No broadcast group for node {}: {}", deadNode, e.getMessage());
+            }
+        }
+        stringRedisTemplate.opsForZSet().remove(RedisStreamPublisher.NODES_KEY, deadNode);
+        reclaimed.increment(total);
+        log.info("Reclaimed {} stream records from dead node {}", total, deadNode);
+    }
+
+    /**
+     * 節點的心跳仍早於 deadline（已被其他節點清除時也回傳 false）
+     */
+    private boolean isDead(String node, long deadline) {
+        Double score = stringRedisTemplate.opsForZSet().score(RedisStreamPublisher.NODES_KEY, node);
+        return score != null && score <= deadline;
+    }
+
+    /**
+     * 以同一個 offset 從多個 Stream 讀取
+     * xReadGroup 只有泛型 varargs 版本；陣列只在這裡建立並直接傳入，不會造成 heap pollution
+     */
+    @SuppressWarnings("unchecked")
+    private static List<ByteRecord> readGroup(RedisStreamCommands commands, Consumer consumer,
+                                              StreamReadOptions options, ReadOffset offset, byte[]... streams) {
+        StreamOffset<byte[]>[] offsets = new StreamOffset[streams.length];
+        for (int i = 0; i < streams.length; i++) {
+            offsets[i] = StreamOffset.create(streams[i], offset);
+        }
+        return commands.xReadGroup(consumer, options, offsets);
+    }
+
+    private static byte[] field(ByteRecord record, byte[] name) {
+        for (Map.Entry<byte[], byte[]> entry : record.getValue().entrySet()) {
+            if (Arrays.equals(entry.getKey(), name)) {
+                return entry.getValue();
+            }
+        }
+        throw new IllegalArgumentException("Stream 記錄缺少欄位：" + new String(name, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = reader;
+        if (current != null) {
+            try {
+                current.join(busProperties.getReadTimeout().multipliedBy(2).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reader = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,235 @@
+package com.chathub.service;
+
+import com.chathub.entity.Conversation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 使用者一對一對話的總未讀數（Redis 計數器；群組未讀數由 ConversationService 依已讀位置推算，不進計數器）
+ *
+ * Key：unread:counter:{userId}（Hash）
+ * - n：總未讀數（從 MongoDB 加總完成前不存在）
+ * - v：版本，每次增減都加一
+ * 對話的未讀數（Conversation.unreadCounts）變動時同步增減，查詢時 O(1)。
+ * 計數器不存在時從 MongoDB 重新加總；定期對本節點在線使用者做校正，修正 Redis 失敗造成的誤差。
+ *
+ * 重新加總以版本做 compare-and-set：先記下版本再查詢 MongoDB，寫回時版本不同代表期間有增減，放棄寫回。
+ * 增減一律在 MongoDB 更新之後才更新 Redis，因此 MongoDB 加總漏掉的增減一定會改變版本，
+ * 不會用過時的加總蓋掉併發的增減。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UnreadCounterService {
+
+    private static final String KEY_PREFIX = "unread:counter:";
+
+    /**
+     * 計數器存在時才增加並遞增版本（不存在時由下次查詢從 MongoDB 重新加總；加總中只遞增版本）
+     * 反應式路徑以 ReactiveStringRedisTemplate 執行同一支腳本
+     * @return 增加後的未讀數，計數器不存在或加總中時為 -1
+     */
+    public static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+        "redis.call('HINCRBY', KEYS[1], 'v', 1) " +
+        "if redis.call('HEXISTS', KEYS[1], 'n') == 0 then return -1 end " +
+        "return redis.call('HINCRBY', KEYS[1], 'n', ARGV[1])",
+        Long.class
+    );
+
+    /**
+     * 扣除未讀數並遞增版本，不低於 0
+     */
+    private static final RedisScript<Long> DECREMENT_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+        "redis.call('HINCRBY', KEYS[1], 'v', 1) " +
+        "local value = redis.call('HGET', KEYS[1], 'n') " +
+        "if not value then return -1 end " +
+        "value = math.max(0, tonumber(value) - tonumber(ARGV[1])) " +
+        "redis.call('HSET', KEYS[1], 'n', value) " +
+        "return value",
+        Long.class
+    );
+
+    /**
+     * 開始重新加總：計數器不存在時建立（版本 0、尚無未讀數）
+     * @return [未讀數（尚無時為 -1）, 版本]
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SNAPSHOT_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('HSETNX', KEYS[1], 'v', 0) " +
+        "local counter = redis.call('HMGET', KEYS[1], 'n', 'v') " +
+        "return {tonumber(counter[1]) or -1, tonumber(counter[2])}",
+        List.class
+    );
+
+    /**
+     * 版本未變時寫入重新加總的結果
+     * @return 1 已寫入，0 期間有增減（或計數器已被刪除），放棄寫入
+     */
+    private static final RedisScript<Long> COMPARE_AND_SET_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('HGET', KEYS[1], 'v') ~= ARGV[1] then return 0 end " +
+        "redis.call('HSET', KEYS[1], 'n', ARGV[2]) " +
+        "return 1",
+        Long.class
+    );
+
+    private final StringRedisTemplate redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final WebSocketSessionManager sessionManager;
+
+    /**
+     * 增加未讀數（新訊息）
+     */
+    public void increment(UUID userId, long delta) {
+        if (delta <= 0) {
+            return;
+        }
+        try {
+            redisTemplate.execute(INCREMENT_SCRIPT, List.of(key(userId)), String.valueOf(delta));
+        } catch (Exception e) {
+            invalidate(userId, e);
+        }
+    }
+
+    /**
+     * 依對話的未讀增量批次更新（寫入管線使用）
+     */
+    public void incrementAll(Map<String, Integer> incrementsByUserId) {
+        incrementsByUserId.forEach((userId, delta) -> increment(UUID.fromString(userId), delta));
+    }
+
+    /**
+     * 扣除未讀數（已讀）
+     */
+    public void decrement(UUID userId, long delta) {
+        if (delta <= 0) {
+            return;
+        }
+        try {
+            redisTemplate.execute(DECREMENT_SCRIPT, List.of(key(userId)), String.valueOf(delta));
+        } catch (Exception e) {
+            invalidate(userId, e);
+        }
+    }
+
+    /**
+     * 取得使用者的總未讀數
+     * 計數器尚無未讀數時從 MongoDB 加總，版本未變才寫回（期間有增減時下次查詢再加總）
+     */
+    public long getTotal(UUID userId) {
+        long[] snapshot;
+        try {
+            snapshot = snapshot(userId);
+            if (snapshot[0] >= 0) {
+                return snapshot[0];
+            }
+        } catch (Exception e) {
+            log.warn("讀取未讀計數器失敗，改從 MongoDB 加總：{}", userId, e);
+            return recompute(userId);
+        }
+
+        long total = recompute(userId);
+        try {
+            compareAndSet(userId, snapshot[1], total);
+        } catch (Exception e) {
+            log.warn("寫入未讀計數器失敗：{}", userId, e);
+        }
+        return total;
+    }
+
+    /**
+     * @return [未讀數（尚無時為 -1）, 版本]
+     */
+    long[] snapshot(UUID userId) {
+        List<?> counter = redisTemplate.execute(SNAPSHOT_SCRIPT, List.of(key(userId)));
+        return new long[]{((Number) counter.get(0)).longValue(), ((Number) counter.get(1)).longValue()};
+    }
+
+    /**
+     * 版本仍為 version 時寫入未讀數
+     * @return false 表示期間有增減，沒有寫入
+     */
+    boolean compareAndSet(UUID userId, long version, long total) {
+        Long result = redisTemplate.execute(COMPARE_AND_SET_SCRIPT, List.of(key(userId)),
+                                            String.valueOf(version), String.valueOf(total));
+        return result != null && result == 1;
+    }
+
+    /**
+     * 從 MongoDB 加總各對話的未讀數（群組沒有 unreadCounts，不影響加總）
+     */
+    public long recompute(UUID userId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("participants").is(userId)),
+            Aggregation.group().sum("unreadCounts." + userId).as("total")
+        );
+        Document result = mongoTemplate.aggregate(aggregation, Conversation.class, Document.class)
+                                       .getUniqueMappedResult();
+        if (result == null || result.get("total") == null) {
+            return 0;
+        }
+        return Math.max(0, ((Number) result.get("total")).longValue());
+    }
+
+    /**
+     * 校正本節點在線使用者的計數器（只有在線的使用者會看到徽章數字）
+     * 加總期間有增減的使用者這次不校正，留給下一輪
+     */
+    @Scheduled(fixedDelayString = "${chathub.unread.reconcile-interval:PT10M}",
+               initialDelayString = "${chathub.unread.reconcile-interval:PT10M}")
+    public void reconcile() {
+        List<UUID> userIds = sessionManager.getOnlineUserIds();
+        int corrected = 0;
+        for (UUID userId : userIds) {
+            try {
+                if (reconcile(userId)) {
+                    corrected++;
+                }
+            } catch (Exception e) {
+                log.warn("校正未讀計數器失敗：{}", userId, e);
+            }
+        }
+        if (corrected > 0) {
+            log.info("未讀計數器校正完成：{} / {} 位使用者已修正", corrected, userIds.size());
+        }
+    }
+
+    /**
+     * @return true 表示計數器已修正
+     */
+    boolean reconcile(UUID userId) {
+        long[] snapshot = snapshot(userId);
+        long expected = recompute(userId);
+        if (snapshot[0] == expected) {
+            return false;
+        }
+        return compareAndSet(userId, snapshot[1], expected);
+    }
+
+    private void invalidate(UUID userId, Exception cause) {
+        log.warn("更新未讀計數器失敗，刪除後由 MongoDB 重新加總：{}", userId, cause);
+        try {
+            redisTemplate.delete(key(userId));
+        } catch (Exception ignored) {
+            // Redis 無法使用時由定期校正修正
+        }
+    }
+
+    public static String key(UUID userId) {
+        return KEY_PREFIX + userId;
+    }
+}
@@ -1,85 +1,232 @@
 package com.chathub.service;
 
+import com.chathub.handler.codec.EncodedFrame;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * WebSocket 連線管理器
- * 功能：儲存 userId → WebSocketSession 的映射關係
+ * 功能：儲存 userId → 多個 WebSocketSession（多裝置）的映射關係
+ *
+ * 依 userId 雜湊分片（shard），每個分片有獨立的 Map 與計數器，
+ * 大量連線 / 斷線時不會集中競爭同一個計數器。
  */
 @Slf4j
 @Service
 public class WebSocketSessionManager {
 
-    // 儲存 userId → WebSocketSession（使用 String 作為 Key，方便查詢）
-    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Shard[] shards;
+    private final int shardMask;
+
+    public WebSocketSessionManager(@Value("${chathub.websocket.session-shards:64}") int shardCount) {
+        // 分片數取 2 的次方，方便用位元運算取餘數
+        int size = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        this.shardMask = size - 1;
+    }
 
     /**
      * 註冊連線
      * @param userId 使用者 ID（UUID）
      * @param session WebSocket Session
+     * @return true 如果這是該使用者在本節點的第一個連線
      */
-    public void addSession(UUID userId, WebSocketSession session) {
-        sessions.put(userId.toString(), session);
-        log.info("WebSocket session added for user: {}, total sessions: {}", userId, sessions.size());
+    public boolean addSession(UUID userId, WebSocketSession session) {
+        Shard shard = shardFor(userId);
+        boolean[] firstSession = new boolean[1];
+
+        shard.sessionsByUser.compute(userId, (id, userSessions) -> {
+            if (userSessions == null) {
+                userSessions = new CopyOnWriteArraySet<>();
+                firstSession[0] = true;
+                shard.userCount.incrementAndGet();
+            }
+            if (userSessions.add(session)) {
+                shard.sessionCount.incrementAndGet();
+            }
+            return userSessions;
+        });
+
+        log.info("WebSocket session added for user: {}, devices: {}, total sessions: {}",
+                 userId, getSessions(userId).size(), getActiveSessionCount());
+        return firstSession[0];
     }
 
     /**
      * 移除連線
      * @param userId 使用者 ID（UUID）
+     * @param session 要移除的 WebSocket Session
+     * @return true 如果該使用者在本節點已沒有任何連線
      */
-    public void removeSession(UUID userId) {
-        WebSocketSession removed = sessions.remove(userId.toString());
-        if (removed != null) {
-            log.info("WebSocket session removed for user: {}, total sessions: {}", userId, sessions.size());
+    public boolean removeSession(UUID userId, WebSocketSession session) {
+        Shard shard = shardFor(userId);
+        boolean[] lastSession = new boolean[1];
+
+        shard.sessionsByUser.computeIfPresent(userId, (id, userSessions) -> {
+            if (userSessions.remove(session)) {
+                shard.sessionCount.decrementAndGet();
+            }
+            if (userSessions.isEmpty()) {
+                lastSession[0] = true;
+                shard.userCount.decrementAndGet();
+                return null;
+            }
+            return userSessions;
+        });
+
+        if (lastSession[0]) {
+            log.info("WebSocket session removed for user: {} (no devices left), total sessions: {}",
+                     userId, getActiveSessionCount());
         }
+        return lastSession[0];
+    }
+
+    /**
+     * 取得使用者在本節點的所有 WebSocket Session
+     * @param userId 使用者 ID（UUID）
+     * @return Session 集合（不會為 null）
+     */
+    public Collection<WebSocketSession> getSessions(UUID userId) {
+        Set<WebSocketSession> userSessions = shardFor(userId).sessionsByUser.get(userId);
+        return userSessions != null ? userSessions : List.of();
     }
 
     /**
-     * 取得使用者的 WebSocket Session（UUID 版本）
+     * 推送訊息給使用者的所有在線裝置
+     * 單一裝置發送失敗不影響其他裝置
      * @param userId 使用者 ID（UUID）
-     * @return WebSocketSession（可能為 null）
+     * @param message 要推送的訊息
+     * @return 成功推送的裝置數
      */
-    public WebSocketSession getSession(UUID userId) {
-        return sessions.get(userId.toString());
+    public int sendToUser(UUID userId, WebSocketMessage<?> message) {
+        int delivered = 0;
+        for (WebSocketSession session : getSessions(userId)) {
+            if (!session.isOpen()) {
+                continue;
+            }
+            try {
+                // EncodedFrame 交給送出佇列依協定轉換；其他連線直接送共用的 TextMessage
+                if (message instanceof EncodedFrame frame && !(session instanceof EncodedFrame.Receiver)) {
+                    session.sendMessage(frame.textMessage());
+                } else {
+                    session.sendMessage(message);
+                }
+                delivered++;
+            } catch (Exception e) {
+                log.error("Failed to send message to user: {}, session: {}", userId, session.getId(), e);
+            }
+        }
+        return delivered;
     }
 
     /**
-     * 取得使用者的 WebSocket Session（String 版本）
-     * @param userId 使用者 ID（String）
-     * @return WebSocketSession（可能為 null）
+     * 推送訊息給一群使用者在本節點的所有裝置（群組訊息展開）
+     * 成員數多於本節點在線人數時改為走訪在線使用者，成本不超過兩者中較小的一方
+     * @param userIds 目標使用者（需支援快速 contains，例如 Set）
+     * @param message 要推送的訊息（所有連線共用）
+     * @return 成功推送的裝置數
      */
-    public WebSocketSession getSession(String userId) {
-        return sessions.get(userId);
+    public int sendToUsers(Set<UUID> userIds, WebSocketMessage<?> message) {
+        int delivered = 0;
+        if (userIds.size() <= getOnlineUserCount()) {
+            for (UUID userId : userIds) {
+                delivered += sendToUser(userId, message);
+            }
+            return delivered;
+        }
+        for (Shard shard : shards) {
+            for (UUID userId : shard.sessionsByUser.keySet()) {
+                if (userIds.contains(userId)) {
+                    delivered += sendToUser(userId, message);
+                }
+            }
+        }
+        return delivered;
     }
 
     /**
-     * 檢查使用者是否在線
+     * 檢查使用者是否在線（任一裝置連線開啟中）
      * @param userId 使用者 ID（UUID）
-     * @return true 如果連線存在且開啟中
      */
     public boolean isUserOnline(UUID userId) {
-        WebSocketSession session = sessions.get(userId.toString());
-        return session != null && session.isOpen();
+        for (WebSocketSession session : getSessions(userId)) {
+            if (session.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 取得目前所有連線數量（各分片加總）
+     */
+    public int getActiveSessionCount() {
+        int total = 0;
+        for (Shard shard : shards) {
+            total += shard.sessionCount.get();
+        }
+        return total;
     }
 
     /**
-     * 檢查使用者是否在線（String 版本）
+     * 取得目前在線使用者數量（各分片加總）
      */
-    public boolean isUserOnline(String userId) {
-        WebSocketSession session = sessions.get(userId);
-        return session != null && session.isOpen();
+    public int getOnlineUserCount() {
+        int total = 0;
+        for (Shard shard : shards) {
+            total += shard.userCount.get();
+        }
+        return total;
     }
 
     /**
-     * 取得目前所有在線使用者數量
+     * 取得本節點所有在線使用者 ID（快照）
      */
-    public int getActiveSessionCount() {
-        return sessions.size();
+    public List<UUID> getOnlineUserIds() {
+        List<UUID> userIds = new ArrayList<>(getOnlineUserCount());
+        for (Shard shard : shards) {
+            userIds.addAll(shard.sessionsByUser.keySet());
+        }
+        return userIds;
+    }
+
+    /**
+     * 取得各分片的連線數（觀察連線分佈用）
+     */
+    public int[] getShardSessionCounts() {
+        int[] counts = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            counts[i] = shards[i].sessionCount.get();
+        }
+        return counts;
+    }
+
+    private Shard shardFor(UUID userId) {
+        int h = userId.hashCode();
+        return shards[(h ^ (h >>> 16)) & shardMask];
+    }
+
+    /**
+     * 分片：userId → 該使用者的所有連線
+     */
+    private static final class Shard {
+        private final ConcurrentHashMap<UUID, Set<WebSocketSession>> sessionsByUser = new ConcurrentHashMap<>();
+        private final AtomicInteger sessionCount = new AtomicInteger();
+        private final AtomicInteger userCount = new AtomicInteger();
     }
-}
\ No newline at end of file
+}
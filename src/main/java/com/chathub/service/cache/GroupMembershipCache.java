@@ -0,0 +1,96 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.GroupProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.repository.ConversationRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 群組成員名單快取
+ * 功能：群組訊息在各節點展開成本機連線時取得成員，不必每則訊息都查詢 MongoDB
+ *
+ * 查詢順序：L1（Caffeine）→ ConversationRepository
+ * 失效：成員異動時刪除 L1，並透過 Redis 通知其他節點刪除
+ *
+ * 指標：cache.gets{cache=groupMembership,result=hit|miss}
+ */
+@Slf4j
+@Service
+public class GroupMembershipCache implements MessageListener {
+
+    /**
+     * 失效通知頻道（不可用 conversation: 開頭，避免被 conversation:* 訂閱收到）
+     */
+    public static final String INVALIDATION_CHANNEL = "cache:group-members:invalidate";
+
+    private final StringRedisTemplate redisTemplate;
+    private final LoadingCache<String, Set<UUID>> localCache;
+
+    public GroupMembershipCache(ConversationRepository conversationRepository, StringRedisTemplate redisTemplate,
+                                GroupProperties properties, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.localCache = Caffeine.newBuilder()
+                                  .maximumSize(properties.getMembershipCacheSize())
+                                  .expireAfterWrite(properties.getMembershipCacheTtl())
+                                  .recordStats()
+                                  .build(conversationId -> conversationRepository
+                                      .findByConversationId(conversationId)
+                                      .filter(conversation -> conversation.getType() == Conversation.Type.GROUP)
+                                      .map(conversation -> Set.copyOf(conversation.getParticipants()))
+                                      .orElse(Set.of()));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "groupMembership");
+    }
+
+    /**
+     * 取得群組成員（不是群組或不存在時為空集合）
+     */
+    public Set<UUID> members(String conversationId) {
+        if (!Conversation.isGroup(conversationId)) {
+            return Set.of();
+        }
+        return localCache.get(conversationId);
+    }
+
+    /**
+     * 是否為群組成員
+     */
+    public boolean isMember(String conversationId, UUID userId) {
+        return members(conversationId).contains(userId);
+    }
+
+    /**
+     * 成員異動：刪除本節點的快取，並通知其他節點
+     */
+    public void invalidate(String conversationId) {
+        localCache.invalidate(conversationId);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, conversationId);
+        } catch (Exception e) {
+            // 通知失敗時其他節點最晚在 TTL 到期後更新
+            log.warn("群組成員快取失效通知失敗：{}", conversationId, e);
+        }
+    }
+
+    /**
+     * 收到其他節點的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String conversationId = new String(message.getBody(), StandardCharsets.UTF_8);
+        localCache.invalidate(conversationId);
+        log.debug("群組成員快取已失效：{}", conversationId);
+    }
+}
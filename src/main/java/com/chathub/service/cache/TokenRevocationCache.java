@@ -0,0 +1,230 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.JwtProperties;
+import com.chathub.config.TokenRevocationProperties;
+import com.chathub.service.RedisService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token 黑名單近端快取
+ * 功能：登出撤銷很少發生，但每個已驗證的 REST 請求都要檢查黑名單；改由記憶體回答，不必每次 EXISTS
+ *
+ * 撤銷（登出）：
+ * - 照舊寫入 token:blacklist:{jti}（停用或快取過舊時的查詢來源）
+ * - XADD 到 token:revocations（以 MINID 修剪掉 Access Token 已過期的撤銷），並 PUBLISH 通知所有節點
+ * 各節點：
+ * - Pub/Sub 通知立即加入本機集合
+ * - 每 sync-interval 從 Stream 補讀上次讀到的位置之後的撤銷（通知遺失、訂閱中斷時的保證）
+ * - 啟動時從頭讀取整個 Stream；第一次補讀成功前、或超過 max-staleness 沒有補讀成功時，改查 Redis
+ * 本機集合是 jti → Token 到期時間的精確集合（不會誤判），Token 到期後移除。
+ *
+ * 指標：
+ * - chathub.auth.revocation.checks{source=memory|redis}：黑名單查詢由哪裡回答
+ * - chathub.auth.revocation.propagation：撤銷寫入 Redis 到本節點得知的時間
+ * - chathub.auth.revocation.staleness：距離上次成功補讀的秒數
+ */
+@Slf4j
+@Service
+public class TokenRevocationCache implements MessageListener {
+
+    /**
+     * 撤銷通知頻道（不可用 user: 開頭，避免被 user:* 訂閱收到）
+     */
+    public static final String INVALIDATION_CHANNEL = "cache:token-revocation";
+
+    public static final String STREAM_KEY = "token:revocations";
+
+    /**
+     * 寫入撤銷 Stream 並通知（一次往返）
+     * ARGV：jti、Token 到期時間（毫秒）、最小保留的 Stream ID（毫秒）、通知頻道
+     * 通知內容：{streamId} {jti} {到期時間}
+     */
+    static final RedisScript<String> REVOKE_SCRIPT = new DefaultRedisScript<>(
+        "local id = redis.call('XADD', KEYS[1], 'MINID', '~', ARGV[3], '*', 'j', ARGV[1], 'e', ARGV[2]) " +
+        "redis.call('PUBLISH', ARGV[4], id .. ' ' .. ARGV[1] .. ' ' .. ARGV[2]) " +
+        "return id",
+        String.class
+    );
+
+    private static final int SYNC_BATCH_SIZE = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisService redisService;
+    private final JwtProperties jwtProperties;
+    private final TokenRevocationProperties properties;
+
+    /**
+     * jti → Token 到期時間（epoch millis）
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile String lastId = "0-0";
+    private volatile long lastSyncMillis;
+
+    private final Counter memoryChecks;
+    private final Counter redisChecks;
+    private final Timer propagation;
+
+    public TokenRevocationCache(StringRedisTemplate redisTemplate, RedisService redisService,
+                                JwtProperties jwtProperties, TokenRevocationProperties properties,
+                                MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.redisService = redisService;
+        this.jwtProperties = jwtProperties;
+        this.properties = properties;
+
+        this.memoryChecks = Counter.builder("chathub.auth.revocation.checks")
+                                   .tag("source", "memory")
+                                   .description("Blacklist checks answered from the node-local revocation set")
+                                   .register(meterRegistry);
+        this.redisChecks = Counter.builder("chathub.auth.revocation.checks")
+                                  .tag("source", "redis")
+                                  .description("Blacklist checks that queried Redis")
+                                  .register(meterRegistry);
+        this.propagation = Timer.builder("chathub.auth.revocation.propagation")
+                                .description("Time from a revocation being written to Redis until this node applied it")
+                                .publishPercentiles(0.5, 0.99)
+                                .register(meterRegistry);
+        Gauge.builder("chathub.auth.revocation.staleness", this, TokenRevocationCache::stalenessSeconds)
+             .baseUnit("seconds")
+             .description("Seconds since the revocation stream was last read successfully")
+             .register(meterRegistry);
+        Gauge.builder("chathub.auth.revocation.size", revoked, Map::size)
+             .description("Revoked token ids held in memory")
+             .register(meterRegistry);
+    }
+
+    /**
+     * Token 是否已撤銷（登出）
+     * @param jti JWT ID
+     */
+    public boolean isRevoked(String jti) {
+        if (!properties.isEnabled() || isStale()) {
+            redisChecks.increment();
+            return redisService.isTokenBlacklisted(jti);
+        }
+        memoryChecks.increment();
+        return revoked.containsKey(jti);
+    }
+
+    /**
+     * 撤銷 Token：寫入黑名單、撤銷 Stream，並通知所有節點
+     * @param jti JWT ID
+     * @param expiresAt Token 到期時間（之後不必再記住）
+     */
+    public void revoke(String jti, Instant expiresAt) {
+        long remainingSeconds = Duration.between(Instant.now(), expiresAt).toSeconds();
+        if (remainingSeconds <= 0) {
+            return;
+        }
+        redisService.addTokenToBlacklist(jti, remainingSeconds);
+        revoked.put(jti, expiresAt.toEpochMilli());
+
+        try {
+            long minId = System.currentTimeMillis() - jwtProperties.getAccessTokenExpiration();
+            redisTemplate.execute(REVOKE_SCRIPT, List.of(STREAM_KEY), jti, String.valueOf(expiresAt.toEpochMilli()),
+                                  String.valueOf(Math.max(0, minId)), INVALIDATION_CHANNEL);
+        } catch (Exception e) {
+            // 黑名單已寫入：其他節點最晚在 max-staleness 後改查 Redis
+            log.error("寫入 Token 撤銷 Stream 失敗：{}", jti, e);
+        }
+    }
+
+    /**
+     * 收到其他節點的撤銷通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split(" ");
+        try {
+            apply(parts[0], parts[1], Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            log.warn("無效的 Token 撤銷通知：{}", body);
+        }
+    }
+
+    /**
+     * 從撤銷 Stream 補讀（啟動時從頭讀取），並移除已到期的 Token
+     */
+    @Scheduled(fixedDelayString = "#{@tokenRevocationProperties.syncInterval.toMillis()}")
+    public void sync() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            List<MapRecord<String, Object, Object>> records;
+            do {
+                records = readBatch();
+                if (records == null) {
+                    break;
+                }
+                for (MapRecord<String, Object, Object> record : records) {
+                    Map<Object, Object> fields = record.getValue();
+                    apply(record.getId().getValue(), String.valueOf(fields.get("j")),
+                          Long.parseLong(String.valueOf(fields.get("e"))));
+                    lastId = record.getId().getValue();
+                }
+            } while (records.size() == SYNC_BATCH_SIZE);
+
+            long now = System.currentTimeMillis();
+            revoked.values().removeIf(expiresAt -> expiresAt <= now);
+            lastSyncMillis = now;
+        } catch (Exception e) {
+            log.warn("讀取 Token 撤銷 Stream 失敗（上次成功：{} 秒前）", stalenessSeconds(), e);
+        }
+    }
+
+    /**
+     * 從 lastId 之後讀一批撤銷記錄
+     * StreamOperations.read 只有泛型 varargs 版本；只傳一個 StreamOffset，不會造成 heap pollution
+     */
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> readBatch() {
+        return redisTemplate.opsForStream().read(StreamReadOptions.empty().count(SYNC_BATCH_SIZE),
+                                                 StreamOffset.create(STREAM_KEY, ReadOffset.from(lastId)));
+    }
+
+    private void apply(String streamId, String jti, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis() || revoked.putIfAbsent(jti, expiresAt) != null) {
+            return;
+        }
+        // 啟動時讀到的舊撤銷不計入傳播延遲
+        if (lastSyncMillis > 0) {
+            long revokedAt = Long.parseLong(streamId.substring(0, streamId.indexOf('-')));
+            propagation.record(Math.max(0, System.currentTimeMillis() - revokedAt), TimeUnit.MILLISECONDS);
+        }
+        log.debug("Token 已撤銷：{}", jti);
+    }
+
+    private boolean isStale() {
+        return System.currentTimeMillis() - lastSyncMillis > properties.getMaxStaleness().toMillis();
+    }
+
+    private double stalenessSeconds() {
+        return lastSyncMillis == 0 ? Double.NaN : (System.currentTimeMillis() - lastSyncMillis) / 1000.0;
+    }
+}
@@ -0,0 +1,15 @@
+package com.chathub.service.cache;
+
+import com.chathub.entity.User;
+
+import java.util.UUID;
+
+/**
+ * 快取用的使用者資料（只保留發送訊息需要的欄位）
+ */
+public record UserProfile(UUID userId, String username) {
+
+    public static UserProfile from(User user) {
+        return new UserProfile(user.getUserId(), user.getUsername());
+    }
+}
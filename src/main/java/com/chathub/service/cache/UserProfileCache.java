@@ -0,0 +1,170 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.UserProfileCacheProperties;
+import com.chathub.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 使用者資料快取
+ * 功能：發送訊息時取得發送者名稱，不必每則訊息都查詢 PostgreSQL
+ *
+ * 查詢順序：L1（Caffeine）→ L2（Redis，選用）→ UserRepository
+ * 預熱：WebSocket 握手時 JWT 已帶有 username，連線建立即寫入 L1
+ * 失效：使用者資料變更時刪除 L1 / L2，並透過 Redis 通知其他節點刪除 L1
+ *
+ * 指標：
+ * - cache.gets{cache=userProfile,result=hit|miss}：L1 命中率
+ * - chathub.cache.user-profile.l2{result=hit|miss}：L2 命中率
+ */
+@Slf4j
+@Service
+public class UserProfileCache implements MessageListener {
+
+    /**
+     * 失效通知頻道（不可用 user: 開頭，避免被 user:* 訂閱收到）
+     */
+    public static final String INVALIDATION_CHANNEL = "cache:user-profile:invalidate";
+
+    private static final String REDIS_KEY_PREFIX = "cache:user-profile:";
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final UserProfileCacheProperties properties;
+    private final Cache<UUID, UserProfile> localCache;
+
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    public UserProfileCache(UserRepository userRepository, StringRedisTemplate redisTemplate,
+                            ObjectMapper objectMapper, UserProfileCacheProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.localCache = Caffeine.newBuilder()
+                                  .maximumSize(properties.getMaximumSize())
+                                  .expireAfterWrite(properties.getTtl())
+                                  .recordStats()
+                                  .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "userProfile");
+        this.redisHits = Counter.builder("chathub.cache.user-profile.l2")
+                                .tag("result", "hit")
+                                .register(meterRegistry);
+        this.redisMisses = Counter.builder("chathub.cache.user-profile.l2")
+                                  .tag("result", "miss")
+                                  .register(meterRegistry);
+    }
+
+    /**
+     * 取得使用者資料
+     */
+    public Optional<UserProfile> get(UUID userId) {
+        UserProfile cached = localCache.getIfPresent(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        UserProfile profile = loadFromRedis(userId);
+        if (profile == null) {
+            profile = userRepository.findById(userId).map(UserProfile::from).orElse(null);
+            if (profile == null) {
+                return Optional.empty();
+            }
+            storeInRedis(profile);
+        }
+
+        localCache.put(userId, profile);
+        return Optional.of(profile);
+    }
+
+    /**
+     * 以 JWT 內的資料預熱（WebSocket 連線建立時呼叫）
+     */
+    public void warm(UUID userId, String username) {
+        if (userId == null || username == null) {
+            return;
+        }
+        localCache.asMap().putIfAbsent(userId, new UserProfile(userId, username));
+    }
+
+    /**
+     * 使用者資料變更：刪除本節點與 Redis 的快取，並通知其他節點
+     */
+    public void invalidate(UUID userId) {
+        localCache.invalidate(userId);
+        try {
+            if (properties.isRedisEnabled()) {
+                redisTemplate.delete(REDIS_KEY_PREFIX + userId);
+            }
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, userId.toString());
+        } catch (Exception e) {
+            // 通知失敗時其他節點最晚在 TTL 到期後更新
+            log.warn("使用者快取失效通知失敗：{}", userId, e);
+        }
+    }
+
+    /**
+     * 收到其他節點的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            localCache.invalidate(UUID.fromString(userId));
+            log.debug("使用者快取已失效：{}", userId);
+        } catch (IllegalArgumentException e) {
+            log.warn("無效的快取失效通知：{}", userId);
+        }
+    }
+
+    private UserProfile loadFromRedis(UUID userId) {
+        if (!properties.isRedisEnabled()) {
+            return null;
+        }
+        try {
+            String json = redisTemplate.opsForValue().get(REDIS_KEY_PREFIX + userId);
+            if (json == null) {
+                redisMisses.increment();
+                return null;
+            }
+            redisHits.increment();
+            return objectMapper.readValue(json, UserProfile.class);
+        } catch (Exception e) {
+            log.warn("讀取 Redis 使用者快取失敗：{}", userId, e);
+            return null;
+        }
+    }
+
+    private void storeInRedis(UserProfile profile) {
+        if (!properties.isRedisEnabled()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(REDIS_KEY_PREFIX + profile.userId(),
+                                            objectMapper.writeValueAsString(profile),
+                                            properties.getRedisTtl());
+        } catch (JsonProcessingException e) {
+            log.warn("序列化使用者快取失敗：{}", profile.userId(), e);
+        } catch (Exception e) {
+            log.warn("寫入 Redis 使用者快取失敗：{}", profile.userId(), e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.chathub.service.cache;
+
+import com.chathub.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * User 實體監聽器：資料變更時讓使用者快取失效
+ * 在交易提交後才失效，避免其他節點在提交前又讀回舊資料
+ */
+@Component
+public class UserProfileCacheListener {
+
+    private final ObjectProvider<UserProfileCache> userProfileCache;
+
+    public UserProfileCacheListener(ObjectProvider<UserProfileCache> userProfileCache) {
+        this.userProfileCache = userProfileCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        UserProfileCache cache = userProfileCache.getIfAvailable();
+        if (cache == null || user.getUserId() == null) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(user.getUserId());
+                }
+            });
+        } else {
+            cache.invalidate(user.getUserId());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.NodeProperties;
+import com.chathub.service.PresenceRoutingService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 使用者在其他節點的路由快取（userId → 其他節點 ID，不含本節點）
+ * 功能：本機投遞（DeliveryRouter）判斷收件者是否還有其他節點的裝置，不必每則訊息都 HGETALL 路由表
+ *
+ * 失效：PresenceRoutingService 登記 / 移除路由後透過 Redis 通知各節點刪除該使用者的項目；
+ * 項目在一個心跳間隔後過期，通知遺失或節點掛掉（路由自然過期、沒有通知）時最晚在此時更新。
+ * 通知送達前的短暫空窗內，剛在其他節點連線的裝置可能收不到本機投遞的訊息，由重連同步補送。
+ *
+ * 指標：cache.gets{cache=userRoute,result=hit|miss}（miss 即查詢 Redis 路由表的次數）
+ */
+@Slf4j
+@Service
+public class UserRouteCache implements MessageListener {
+
+    /**
+     * 失效通知頻道（不可用 user: 開頭，避免被 user:* 訂閱收到）
+     */
+    public static final String INVALIDATION_CHANNEL = "cache:user-route:invalidate";
+
+    private final PresenceRoutingService routingService;
+    private final NodeProperties nodeProperties;
+    private final Cache<UUID, Set<String>> remoteNodes;
+
+    public UserRouteCache(PresenceRoutingService routingService, NodeProperties nodeProperties,
+                          MeterRegistry meterRegistry) {
+        this.routingService = routingService;
+        this.nodeProperties = nodeProperties;
+        this.remoteNodes = Caffeine.newBuilder()
+                                   .maximumSize(nodeProperties.getRouteCacheSize())
+                                   .expireAfterWrite(nodeProperties.getHeartbeatInterval())
+                                   .recordStats()
+                                   .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, remoteNodes, "userRoute");
+    }
+
+    /**
+     * 持有該使用者連線的其他節點（不含本節點）
+     * @throws RuntimeException 快取沒有資料且路由查詢失敗（不快取失敗的結果）
+     */
+    public Set<String> remoteNodes(UUID userId) {
+        return remoteNodes.get(userId, this::load);
+    }
+
+    private Set<String> load(UUID userId) {
+        Set<String> nodes = new HashSet<>(routingService.findNodes(userId.toString()));
+        nodes.remove(nodeProperties.getId());
+        return Set.copyOf(nodes);
+    }
+
+    /**
+     * 收到路由變更通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            remoteNodes.invalidate(UUID.fromString(userId));
+        } catch (IllegalArgumentException e) {
+            log.warn("無效的路由快取失效通知：{}", userId);
+        }
+    }
+}
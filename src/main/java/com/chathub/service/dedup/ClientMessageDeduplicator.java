@@ -0,0 +1,214 @@
+package com.chathub.service.dedup;
+
+import com.chathub.config.IdempotencyProperties;
+import com.chathub.entity.Message;
+import com.chathub.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * clientMessageId 去重
+ *
+ * 絕大多數訊息都是第一次送出，因此先查本機 Bloom Filter：
+ * - 一定沒看過 → 直接寫入，不查 MongoDB
+ * - 可能看過   → 才查 MongoDB 確認
+ * Bloom Filter 只涵蓋本節點最近看過的 ID；客戶端換節點重送時，
+ * 由 clientMessageId 的唯一索引（DuplicateKeyException）做最後把關。
+ * 啟用 Write-Behind 時寫入 MongoDB 發生在回覆客戶端之後，唯一索引來不及把關，
+ * 改用 {@link #findPersisted(String)}：先在 Redis 以 SET NX 佔用這個 clientMessageId，
+ * 佔用成功代表叢集內近期沒人送過，不查 MongoDB；已被佔用才查 MongoDB 確認。
+ *
+ * 指標：
+ * - chathub.dedup.lookups{result=skipped|checked|claimed|verified}：略過 / 實際查詢 MongoDB /
+ *   Redis 佔用成功而略過 / 已被佔用（或 Redis 失敗）而查詢 MongoDB 的次數
+ * - chathub.dedup.duplicates：確認為重複的訊息數
+ * - chathub.dedup.false.positive.rate：Bloom Filter 誤判率（查了 MongoDB 卻不是重複）
+ * - chathub.dedup.mongo.lookup：MongoDB 查詢耗時
+ * - chathub.dedup.latency.saved：略過（含 Redis 佔用成功）次數 × 平均查詢耗時（估計省下的時間，秒）
+ */
+@Slf4j
+@Service
+public class ClientMessageDeduplicator {
+
+    private static final String CLAIM_KEY_PREFIX = "dedup:client:";
+
+    private final MessageRepository messageRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RotatingBloomFilter recentIds;
+    private final Duration claimTtl;
+
+    private final Counter skippedLookups;
+    private final Counter checkedLookups;
+    private final Counter claimedLookups;
+    private final Counter verifiedLookups;
+    private final Counter falsePositives;
+    private final Counter duplicates;
+    private final Timer mongoLookupTimer;
+
+    public ClientMessageDeduplicator(MessageRepository messageRepository, StringRedisTemplate redisTemplate,
+                                     IdempotencyProperties properties, MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.redisTemplate = redisTemplate;
+        this.claimTtl = properties.getClaimTtl();
+        this.recentIds = new RotatingBloomFilter(
+            properties.getExpectedInsertions(),
+            properties.getFalsePositiveRate(),
+            properties.getGenerations(),
+            properties.getRotationInterval()
+        );
+
+        this.skippedLookups = Counter.builder("chathub.dedup.lookups")
+                                     .tag("result", "skipped")
+                                     .description("clientMessageId checks answered by the bloom filter alone")
+                                     .register(meterRegistry);
+        this.checkedLookups = Counter.builder("chathub.dedup.lookups")
+                                     .tag("result", "checked")
+                                     .description("clientMessageId checks that had to query MongoDB")
+                                     .register(meterRegistry);
+        this.claimedLookups = Counter.builder("chathub.dedup.lookups")
+                                     .tag("result", "claimed")
+                                     .description("clientMessageIds first claimed in Redis, no MongoDB lookup (write-behind)")
+                                     .register(meterRegistry);
+        this.verifiedLookups = Counter.builder("chathub.dedup.lookups")
+                                      .tag("result", "verified")
+                                      .description("Already claimed clientMessageIds checked against MongoDB (write-behind)")
+                                      .register(meterRegistry);
+        this.falsePositives = Counter.builder("chathub.dedup.false.positives")
+                                     .description("Bloom filter hits that turned out not to be duplicates")
+                                     .register(meterRegistry);
+        this.duplicates = Counter.builder("chathub.dedup.duplicates")
+                                 .description("Messages rejected as duplicates")
+                                 .register(meterRegistry);
+        this.mongoLookupTimer = Timer.builder("chathub.dedup.mongo.lookup")
+                                     .description("Time spent looking up clientMessageId in MongoDB")
+                                     .register(meterRegistry);
+
+        Gauge.builder("chathub.dedup.false.positive.rate", this, ClientMessageDeduplicator::falsePositiveRate)
+             .description("Share of new clientMessageIds the bloom filter reported as possibly seen")
+             .register(meterRegistry);
+        FunctionCounter.builder("chathub.dedup.latency.saved", this, ClientMessageDeduplicator::latencySavedSeconds)
+                       .baseUnit("seconds")
+                       .description("Estimated MongoDB lookup time avoided by the bloom filter and Redis claims")
+                       .register(meterRegistry);
+    }
+
+    /**
+     * 查詢是否為重複訊息
+     * @return 已存在的訊息（不是重複時為 empty）
+     */
+    public Optional<Message> findDuplicate(String clientMessageId) {
+        if (!recentIds.mightContain(clientMessageId)) {
+            skippedLookups.increment();
+            return Optional.empty();
+        }
+
+        checkedLookups.increment();
+        Optional<Message> existing = mongoLookupTimer.record(
+            () -> messageRepository.findByClientMessageId(clientMessageId));
+        if (existing.isPresent()) {
+            duplicates.increment();
+        } else {
+            falsePositives.increment();
+        }
+        return existing;
+    }
+
+    /**
+     * 查詢是否為重複訊息（寫入管線用）
+     * 寫入管線在回覆客戶端後才寫入 MongoDB，唯一索引無法在回覆前把關；
+     * 本機 Bloom Filter 又看不到其他節點或重啟前接受的 ID，因此改在 Redis 佔用 clientMessageId：
+     * - 佔用成功 → claimTtl 內叢集沒有人送過，不查 MongoDB
+     * - 已被佔用 → 可能是重送，查 MongoDB 確認
+     * - Redis 失敗 → 退回查詢 MongoDB
+     * 超過 claimTtl 才重送的訊息不會被擋下，會寫入時撞到唯一索引而不重複儲存，
+     * 但客戶端已收到新的 messageId。
+     * @return 已存在的訊息（不是重複時為 empty）
+     */
+    public Optional<Message> findPersisted(String clientMessageId) {
+        if (claim(clientMessageId)) {
+            claimedLookups.increment();
+            return Optional.empty();
+        }
+
+        verifiedLookups.increment();
+        Optional<Message> existing = mongoLookupTimer.record(
+            () -> messageRepository.findByClientMessageId(clientMessageId));
+        existing.ifPresent(message -> duplicates.increment());
+        return existing;
+    }
+
+    /**
+     * 查詢是否為重複訊息（反應式版本）
+     * @param lookup Bloom Filter 判斷可能看過時才呼叫的查詢
+     * @return 已存在的訊息（不是重複時為 empty）
+     */
+    public Mono<Message> findDuplicate(String clientMessageId, Function<String, Mono<Message>> lookup) {
+        if (!recentIds.mightContain(clientMessageId)) {
+            skippedLookups.increment();
+            return Mono.empty();
+        }
+
+        checkedLookups.increment();
+        return lookup.apply(clientMessageId)
+                     .doOnNext(existing -> duplicates.increment())
+                     .switchIfEmpty(Mono.fromRunnable(falsePositives::increment));
+    }
+
+    /**
+     * 寫入時撞到唯一索引（反應式路徑自行取回先前那一筆）
+     */
+    public void recordConflict() {
+        duplicates.increment();
+    }
+
+    /**
+     * 寫入時撞到唯一索引（例如客戶端換節點重送），取回先前那一筆
+     */
+    public Message resolveConflict(String clientMessageId) {
+        duplicates.increment();
+        return messageRepository.findByClientMessageId(clientMessageId)
+                                .orElseThrow(() -> new IllegalStateException("重複的 clientMessageId 查無訊息：" + clientMessageId));
+    }
+
+    /**
+     * 記錄已接受的 clientMessageId
+     */
+    public void record(String clientMessageId) {
+        recentIds.put(clientMessageId);
+    }
+
+    /**
+     * 在 Redis 佔用 clientMessageId（SET NX，claimTtl 後過期）
+     * @return 佔用成功（叢集內近期沒人送過）
+     */
+    private boolean claim(String clientMessageId) {
+        try {
+            return Boolean.TRUE.equals(
+                redisTemplate.opsForValue().setIfAbsent(CLAIM_KEY_PREFIX + clientMessageId, "1", claimTtl));
+        } catch (Exception e) {
+            log.warn("Failed to claim clientMessageId {} in Redis, falling back to MongoDB", clientMessageId, e);
+            return false;
+        }
+    }
+
+    private double falsePositiveRate() {
+        double negatives = skippedLookups.count() + falsePositives.count();
+        return negatives == 0 ? 0 : falsePositives.count() / negatives;
+    }
+
+    private double latencySavedSeconds() {
+        return (skippedLookups.count() + claimedLookups.count()) * mongoLookupTimer.mean(TimeUnit.SECONDS);
+    }
+}
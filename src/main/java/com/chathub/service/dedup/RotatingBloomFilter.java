@@ -0,0 +1,183 @@
+package com.chathub.service.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 輪替式 Bloom Filter
+ *
+ * 由多代 Filter 組成，寫入最新一代、查詢所有世代；
+ * 最新一代寫滿或使用超過時間上限時，丟棄最舊的一代並建立新的一代。
+ * 因此「最近」寫入的 key 不會被誤判為不存在（沒有 false negative），
+ * 而記憶體用量固定：世代數 × 每代大小。
+ */
+public class RotatingBloomFilter {
+
+    private final int expectedInsertions;
+    private final long bitCount;
+    private final int hashCount;
+    private final long rotationIntervalMillis;
+    private final Clock clock;
+    private final ReentrantLock rotationLock = new ReentrantLock();
+
+    /**
+     * 索引 0 為最新一代
+     */
+    private volatile Generation[] generations;
+
+    public RotatingBloomFilter(int expectedInsertions, double falsePositiveRate, int generationCount,
+                               Duration rotationInterval) {
+        this(expectedInsertions, falsePositiveRate, generationCount, rotationInterval, Clock.systemUTC());
+    }
+
+    RotatingBloomFilter(int expectedInsertions, double falsePositiveRate, int generationCount,
+                        Duration rotationInterval, Clock clock) {
+        if (expectedInsertions <= 0 || generationCount <= 0) {
+            throw new IllegalArgumentException("expectedInsertions 與 generationCount 必須大於 0");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate 必須介於 0 與 1 之間");
+        }
+        this.expectedInsertions = expectedInsertions;
+        this.bitCount = optimalBitCount(expectedInsertions, falsePositiveRate);
+        this.hashCount = optimalHashCount(expectedInsertions, bitCount);
+        this.rotationIntervalMillis = rotationInterval.toMillis();
+        this.clock = clock;
+
+        this.generations = new Generation[generationCount];
+        for (int i = 0; i < generationCount; i++) {
+            generations[i] = new Generation(bitCount, clock.millis());
+        }
+    }
+
+    /**
+     * 是否可能看過（false：一定沒看過；true：可能看過）
+     */
+    public boolean mightContain(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1);
+        for (Generation generation : generations) {
+            if (generation.mightContain(hash1, hash2, hashCount, bitCount)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 記錄 key
+     */
+    public void put(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1);
+        Generation current = currentGeneration();
+        current.put(hash1, hash2, hashCount, bitCount);
+    }
+
+    /**
+     * 每一代的位元數
+     */
+    public long bitSize() {
+        return bitCount;
+    }
+
+    public int hashFunctions() {
+        return hashCount;
+    }
+
+    private Generation currentGeneration() {
+        Generation current = generations[0];
+        if (current.insertions.get() < expectedInsertions
+            && clock.millis() - current.createdAtMillis < rotationIntervalMillis) {
+            return current;
+        }
+
+        rotationLock.lock();
+        try {
+            current = generations[0];
+            if (current.insertions.get() >= expectedInsertions
+                || clock.millis() - current.createdAtMillis >= rotationIntervalMillis) {
+                Generation[] rotated = new Generation[generations.length];
+                rotated[0] = new Generation(bitCount, clock.millis());
+                System.arraycopy(generations, 0, rotated, 1, generations.length - 1);
+                generations = rotated;
+            }
+            return generations[0];
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    static long optimalBitCount(long insertions, double falsePositiveRate) {
+        long bits = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        // 對齊到 64 位元
+        return Math.max(64, (bits + 63) / 64 * 64);
+    }
+
+    static int optimalHashCount(long insertions, long bitCount) {
+        return Math.max(1, (int) Math.round((double) bitCount / insertions * Math.log(2)));
+    }
+
+    /**
+     * FNV-1a 64-bit
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * SplitMix64 finalizer（產生第二個獨立雜湊，用於 double hashing）
+     */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Generation {
+        private final AtomicLongArray words;
+        private final AtomicInteger insertions = new AtomicInteger();
+        private final long createdAtMillis;
+
+        private Generation(long bitCount, long createdAtMillis) {
+            this.words = new AtomicLongArray((int) (bitCount / 64));
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        private boolean mightContain(long hash1, long hash2, int hashCount, long bitCount) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void put(long hash1, long hash2, int hashCount, long bitCount) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(index);
+                    if ((word & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(index, word, word | mask));
+            }
+            insertions.incrementAndGet();
+        }
+    }
+}
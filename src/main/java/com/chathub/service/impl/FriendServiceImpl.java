@@ -9,7 +9,7 @@ import com.chathub.repository.FriendRequestRepository;
 import com.chathub.repository.FriendshipRepository;
 import com.chathub.repository.UserRepository;
 import com.chathub.service.FriendService;
-import com.chathub.service.RedisService;
+import com.chathub.service.presence.PresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -18,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -29,7 +30,7 @@ public class FriendServiceImpl implements FriendService {
     private final UserRepository userRepository;
     private final FriendRequestRepository friendRequestRepository;
     private final FriendshipRepository friendshipRepository;
-    private final RedisService redisService;
+    private final PresenceService presenceService;
 
     /**
      * 發送好友請求
@@ -79,7 +80,8 @@ public class FriendServiceImpl implements FriendService {
                                        .fromUserId(fromUserId)
                                        .fromUsername(fromUser.getUsername())
                                        .status("PENDING")
-                                       .createdAt(savedRequest.getCreatedAt())
+                                       .createdAt(savedRequest.getCreatedAt()
+                                                              .format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss")))
                                        .build();
     }
 
@@ -188,6 +190,10 @@ public class FriendServiceImpl implements FriendService {
         // 1. 查詢所有好友關係
         List<Friendship> friendships = friendshipRepository.findFriendsByUserId(userId);
 
+        // 一次查詢所有好友的線上狀態（路由表，一次往返）
+        Set<UUID> onlineFriends = presenceService.onlineAmong(
+            friendships.stream().map(friendship -> friendship.getFriend().getUserId()).toList());
+
         // 定義日期格式化器
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
@@ -195,9 +201,7 @@ public class FriendServiceImpl implements FriendService {
         return friendships.stream()
                           .map(friendship -> {
                               User friend = friendship.getFriend();
-
-                              // 從 Redis 查詢線上狀態
-                              boolean isOnline = redisService.isUserOnline(friend.getUserId());
+                              boolean isOnline = onlineFriends.contains(friend.getUserId());
 
                               // 格式化日期為字串
                               String friendsSinceStr = friendship.getCreatedAt().format(formatter);
@@ -5,6 +5,7 @@ import com.chathub.entity.RefreshToken;
 import com.chathub.exception.UsernameAlreadyExistsException;
 import com.chathub.repository.RefreshTokenRepository;
 import com.chathub.security.JwtTokenProvider;
+import com.chathub.security.VerifiedToken;
 import com.chathub.config.JwtProperties;
 import com.chathub.dto.LoginResponse;
 import com.chathub.dto.RegisterRequest;
@@ -14,14 +15,14 @@ import com.chathub.exception.AuthenticationException;
 import com.chathub.repository.UserRepository;
 import com.chathub.service.RedisService;
 import com.chathub.service.UserService;
-import io.jsonwebtoken.Claims;
+import com.chathub.service.cache.TokenRevocationCache;
+import io.jsonwebtoken.JwtException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Base64;
-import java.util.Date;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -40,6 +41,7 @@ public class UserServiceImpl implements UserService {
     private final JwtTokenProvider jwtTokenProvider;
     private final RefreshTokenRepository refreshTokenRepository;
     private final RedisService redisService;
+    private final TokenRevocationCache tokenRevocationCache;
     private final JwtProperties jwtProperties;
 
     @Override
@@ -91,9 +93,6 @@ public class UserServiceImpl implements UserService {
         user.setLastLoginAt(LocalDateTime.now());
         userRepository.save(user);
 
-        // 7. 設定 Redis 線上狀態
-        redisService.setUserOnline(user.getUserId());
-
         return LoginResponse.builder()
                             .accessToken(accessToken)
                             .refreshToken(refreshToken)
@@ -209,10 +208,7 @@ public class UserServiceImpl implements UserService {
             refreshTokenRepository.save(newToken);
         }
 
-        // 8. 更新 Redis 線上狀態（延長 TTL）
-        redisService.setUserOnline(user.getUserId());
-
-        // 9. 回傳結果
+        // 8. 回傳結果
         return LoginResponse.builder()
                             .userId(user.getUserId().toString())  // UUID 轉 String
                             .username(user.getUsername())
@@ -251,38 +247,29 @@ public class UserServiceImpl implements UserService {
      *
      * 流程：
      * 1. 從 Token 提取資訊（JTI、userId）
-     * 2. 將 Token 加入黑名單
+     * 2. 將 Token 加入黑名單並通知所有節點
      * 3. 撤銷對應的 Refresh Token
-     * 4. 清除線上狀態
      */
     @Override
     @Transactional
     public void logout(String accessToken) {
         // 1. 驗證並提取 Token 資訊
-        if (!jwtTokenProvider.validateToken(accessToken)) {
+        VerifiedToken verified;
+        try {
+            verified = jwtTokenProvider.verify(accessToken);
+        } catch (JwtException | IllegalArgumentException e) {
             throw new AuthenticationException("無效的 Token");
         }
+        String jti = verified.jti();
+        UUID userId = verified.userId();
 
-        Claims claims = jwtTokenProvider.getClaimsFromToken(accessToken);
-        String jti = claims.getId();
-        UUID userId = UUID.fromString(claims.getSubject());
-        Date expiration = claims.getExpiration();
-
-        // 2. 計算 Token 剩餘有效時間（秒）
-        long expirationSeconds = (expiration.getTime() - System.currentTimeMillis()) / 1000;
+        // 2. 將 Token 加入黑名單（只需保存到過期時間），並通知所有節點的撤銷快取
+        tokenRevocationCache.revoke(jti, verified.expiresAt());
 
-        if (expirationSeconds > 0) {
-            // 3. 將 Token 加入黑名單（只需保存到過期時間）
-            redisService.addTokenToBlacklist(jti, expirationSeconds);
-        }
-
-        // 4. 撤銷所有 Refresh Token（使用者無法再刷新）
+        // 3. 撤銷所有 Refresh Token（使用者無法再刷新）
         LocalDateTime now = LocalDateTime.now();
         refreshTokenRepository.revokeAllTokensByUserId(userId, now);
 
-        // 5. 清除 Redis 線上狀態
-        redisService.removeUserOnline(userId);
-
         log.info("使用者登出成功 - UserId: {}", userId);
     }
 }
@@ -0,0 +1,95 @@
+package com.chathub.service.persistence;
+
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 一個對話在一批訊息中的累積變更
+ * 多則訊息合併成一次 upsert：最後一則訊息、各接收者的未讀增量
+ */
+public class ConversationDelta {
+
+    private final String conversationId;
+    private final List<UUID> participants = new ArrayList<>();
+    private final Map<String, Integer> unreadIncrements = new LinkedHashMap<>();
+    private Message lastMessage;
+
+    public ConversationDelta(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public static ConversationDelta of(Message message) {
+        ConversationDelta delta = new ConversationDelta(message.getConversationId());
+        delta.add(message);
+        return delta;
+    }
+
+    /**
+     * 加入一則訊息（需依送出順序呼叫）
+     * 群組訊息沒有接收者：只更新最後一則訊息，成員名單與未讀數不在這裡維護
+     */
+    public void add(Message message) {
+        lastMessage = message;
+        if (message.getRecipientId() == null) {
+            return;
+        }
+        addParticipant(message.getSenderId());
+        addParticipant(message.getRecipientId());
+        unreadIncrements.merge(message.getRecipientId().toString(), 1, Integer::sum);
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public Map<String, Integer> getUnreadIncrements() {
+        return unreadIncrements;
+    }
+
+    /**
+     * 轉成 MongoDB Update（搭配 upsert 使用）
+     * $set 最後訊息、$inc 未讀數、$setOnInsert 建立對話時的欄位
+     */
+    public Update toUpdate() {
+        Instant now = Instant.now();
+        Update update = new Update()
+            .set("lastMessage", Conversation.LastMessage.builder()
+                                                        .messageId(lastMessage.getMessageId())
+                                                        .content(lastMessage.getContent())
+                                                        .senderId(lastMessage.getSenderId())
+                                                        .timestamp(lastMessage.getTimestamp())
+                                                        .build())
+            .set("updatedAt", now)
+            .setOnInsert("conversationId", conversationId)
+            .setOnInsert("createdAt", now);
+
+        if (!participants.isEmpty()) {
+            update.setOnInsert("participants", participants);
+        }
+
+        unreadIncrements.forEach((userId, count) -> update.inc("unreadCounts." + userId, count));
+
+        // 新對話時其他參與者的未讀數從 0 開始（同一欄位不能同時 $inc 與 $setOnInsert）
+        for (UUID participant : participants) {
+            String userId = participant.toString();
+            if (!unreadIncrements.containsKey(userId)) {
+                update.setOnInsert("unreadCounts." + userId, 0);
+            }
+        }
+        return update;
+    }
+
+    private void addParticipant(UUID userId) {
+        if (!participants.contains(userId)) {
+            participants.add(userId);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.chathub.service.persistence;
+
+import com.chathub.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 本機 Append-Only Journal（訊息寫入 MongoDB 前的持久化保證）
+ *
+ * 格式：每行一筆 JSON（{"seq":1,"message":{...}}），依序號遞增。
+ * 檔案依大小切段：messages-{第一筆序號}.journal；
+ * 一段內的所有訊息都寫進 MongoDB 後即可刪除。
+ * 已寫入 MongoDB 的最大序號記在 flushed.seq，重播時略過（同一段中已寫入的訊息不會再處理一次）。
+ *
+ * 寫入由單一 Journal 執行緒負責（Group Commit）：
+ * 一次取出所有待寫入的訊息、寫檔、fsync 一次，再通知所有等待中的呼叫端。
+ * 落盤後依序號順序交給 appendListener（寫入管線的佇列），佇列順序與序號順序一致。
+ */
+@Slf4j
+public class MessageJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "messages-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "flushed.seq";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final Consumer<Entry> appendListener;
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private final BlockingQueue<PendingAppend> pendingAppends = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedDeque<Segment> closedSegments = new ConcurrentLinkedDeque<>();
+
+    private Segment activeSegment;
+    private FileChannel activeChannel;
+    private long nextSeq = 1;
+    private long flushedSeq;
+    private Thread writerThread;
+    private volatile boolean running = false;
+
+    public MessageJournal(Path directory, long segmentBytes, boolean fsync) {
+        this(directory, segmentBytes, fsync, entry -> { });
+    }
+
+    /**
+     * @param appendListener 每筆紀錄落盤後、通知呼叫端前，依序號順序在 Journal 執行緒呼叫
+     */
+    public MessageJournal(Path directory, long segmentBytes, boolean fsync, Consumer<Entry> appendListener) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        this.appendListener = appendListener;
+    }
+
+    /**
+     * 開啟 Journal：讀回上次未寫入 MongoDB 的紀錄（供重播），並開始接受寫入
+     * @return 依序號排序、序號大於 flushed.seq 的既有紀錄
+     */
+    public List<Entry> open() throws IOException {
+        Files.createDirectories(directory);
+        flushedSeq = readCheckpoint();
+        nextSeq = flushedSeq + 1;
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                          .sorted(Comparator.comparingLong(MessageJournal::firstSeqOf))
+                          .toList();
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            long lastSeq = readSegment(file, entries);
+            if (lastSeq > flushedSeq) {
+                closedSegments.addLast(new Segment(file, lastSeq));
+                nextSeq = Math.max(nextSeq, lastSeq + 1);
+            } else {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        openNewSegment();
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "message-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        if (!entries.isEmpty()) {
+            log.info("Journal 重播：{} 筆尚未寫入 MongoDB 的訊息", entries.size());
+        }
+        return entries;
+    }
+
+    /**
+     * 寫入一筆訊息；Future 完成代表已寫入檔案（fsync 開啟時已落盤）
+     * @return 完成時回傳序號
+     */
+    public CompletableFuture<Long> append(Message message) {
+        PendingAppend pending = new PendingAppend(message, new CompletableFuture<>());
+        if (!running) {
+            pending.future().completeExceptionally(new IllegalStateException("Journal 已關閉"));
+            return pending.future();
+        }
+        pendingAppends.add(pending);
+        return pending.future();
+    }
+
+    /**
+     * 標記序號（含）之前的訊息都已寫入 MongoDB：更新 flushed.seq，刪除可回收的檔案
+     */
+    public void markFlushed(long seq) {
+        if (seq > flushedSeq) {
+            try {
+                writeCheckpoint(seq);
+                flushedSeq = seq;
+            } catch (IOException e) {
+                // 檢查點沒有更新時，重播會再處理一次這些訊息（寫入管線以 messageId 判斷是否已寫入）
+                log.warn("無法更新 Journal 檢查點 {}", seq, e);
+            }
+        }
+        Segment oldest;
+        while ((oldest = closedSegments.peekFirst()) != null && oldest.lastSeq <= seq) {
+            closedSegments.pollFirst();
+            try {
+                Files.deleteIfExists(oldest.path);
+                log.debug("Journal 檔案已回收：{}", oldest.path.getFileName());
+            } catch (IOException e) {
+                log.warn("無法刪除 Journal 檔案：{}", oldest.path, e);
+            }
+        }
+    }
+
+    /**
+     * 目前保留中的 Journal 檔案數（含寫入中的檔案）
+     */
+    public int segmentCount() {
+        return closedSegments.size() + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 不使用 interrupt：FileChannel 被中斷會直接關閉，寫到一半的批次會失敗
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (activeChannel != null && activeChannel.isOpen()) {
+            activeChannel.force(false);
+            activeChannel.close();
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>();
+        while (running || !pendingAppends.isEmpty()) {
+            try {
+                PendingAppend first = pendingAppends.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pendingAppends.drainTo(batch);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 寫入失敗時截斷回批次開始前的位置並退回序號，失敗的訊息不會留在檔案中被重播，
+     * 也不會有寫到一半的紀錄夾在之後的紀錄之前
+     */
+    private void writeBatch(List<PendingAppend> batch) {
+        long[] seqs = new long[batch.size()];
+        long startBytes = activeSegment.bytes;
+        long startLastSeq = activeSegment.lastSeq;
+        long startSeq = nextSeq;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                long seq = nextSeq++;
+                byte[] json = objectMapper.writeValueAsBytes(new Entry(seq, batch.get(i).message()));
+                ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+                while (buffer.hasRemaining()) {
+                    activeSegment.bytes += activeChannel.write(buffer);
+                }
+                activeSegment.lastSeq = seq;
+                seqs[i] = seq;
+            }
+            if (fsync) {
+                activeChannel.force(false);
+            }
+        } catch (IOException e) {
+            log.error("Journal 寫入失敗", e);
+            discardBatch(startBytes, startLastSeq, startSeq);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+            return;
+        }
+
+        // 已落盤：換檔失敗不影響這一批（下一批寫入失敗時改寫到新檔）
+        if (activeSegment.bytes >= segmentBytes) {
+            try {
+                rollSegment();
+            } catch (IOException e) {
+                log.error("Journal 換檔失敗", e);
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            appendListener.accept(new Entry(seqs[i], batch.get(i).message()));
+            batch.get(i).future().complete(seqs[i]);
+        }
+    }
+
+    /**
+     * 捨棄失敗批次已寫入的部分；無法截斷時（例如通道已關閉）改寫到新檔，
+     * 舊檔中寫到一半的紀錄在重播時略過（此時序號不退回，避免與舊檔中已完整寫入的紀錄重複）
+     */
+    private void discardBatch(long startBytes, long startLastSeq, long startSeq) {
+        try {
+            activeChannel.truncate(startBytes);
+            if (fsync) {
+                activeChannel.force(false);
+            }
+            activeSegment.bytes = startBytes;
+            activeSegment.lastSeq = startLastSeq;
+            nextSeq = startSeq;
+        } catch (IOException e) {
+            log.error("無法截斷 Journal {}，改寫到新檔", activeSegment.path.getFileName(), e);
+            try {
+                if (activeChannel.isOpen()) {
+                    activeChannel.close();
+                }
+                activeSegment.lastSeq = nextSeq - 1;
+                if (!closedSegments.contains(activeSegment)) {
+                    closedSegments.addLast(activeSegment);
+                }
+                openNewSegment();
+            } catch (IOException ex) {
+                log.error("無法開啟新的 Journal 檔案", ex);
+            }
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        closedSegments.addLast(activeSegment);
+        openNewSegment();
+    }
+
+    private void openNewSegment() throws IOException {
+        Path file = directory.resolve(SEGMENT_PREFIX + nextSeq + SEGMENT_SUFFIX);
+        activeChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                         StandardOpenOption.APPEND);
+        activeSegment = new Segment(file, 0);
+        activeSegment.bytes = activeChannel.size();
+    }
+
+    /**
+     * 讀取單一檔案（序號不大於 flushed.seq 的紀錄不重播）；不完整的紀錄（當機時寫到一半）會被略過
+     * @return 檔案中最後一筆的序號（空檔案為 0）
+     */
+    private long readSegment(Path file, List<Entry> entries) throws IOException {
+        long lastSeq = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Entry entry = objectMapper.readValue(line, Entry.class);
+                    if (entry.seq() > flushedSeq) {
+                        entries.add(entry);
+                    }
+                    lastSeq = entry.seq();
+                } catch (IOException e) {
+                    // 當機或寫入失敗留下的不完整紀錄：只略過這一行，之後的紀錄照常重播
+                    log.warn("Journal {} 有不完整的紀錄，已略過", file.getFileName());
+                }
+            }
+        }
+        return lastSeq;
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(file, StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            log.warn("Journal 檢查點格式錯誤，重播所有紀錄：{}", file);
+            return 0;
+        }
+    }
+
+    /**
+     * 先寫暫存檔再換名，當機時不會留下寫到一半的檢查點
+     */
+    private void writeCheckpoint(long seq) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(Long.toString(seq).getBytes(StandardCharsets.UTF_8)));
+            if (fsync) {
+                channel.force(false);
+            }
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long firstSeqOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Journal 紀錄
+     */
+    public record Entry(long seq, Message message) {
+    }
+
+    private record PendingAppend(Message message, CompletableFuture<Long> future) {
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private volatile long lastSeq;
+        private long bytes;
+
+        private Segment(Path path, long lastSeq) {
+            this.path = path;
+            this.lastSeq = lastSeq;
+        }
+    }
+}
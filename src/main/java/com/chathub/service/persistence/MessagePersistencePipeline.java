@@ -0,0 +1,416 @@
+package com.chathub.service.persistence;
+
+import com.chathub.config.PersistenceProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import com.chathub.service.UnreadCounterService;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 訊息寫入管線（Write-Behind）
+ *
+ * 1. submit：寫入本機 Journal（fsync）後立即返回，發送端即可回覆 MESSAGE_DELIVERED
+ * 2. 背景執行緒依「筆數 / 等待時間」湊批，一次 insertMany 訊息、一次 bulkWrite 更新對話
+ * 3. 批次成功後回收 Journal；啟動時重播 Journal 中尚未回收的訊息
+ *
+ * 順序：Journal 執行緒落盤後依序號把訊息放進佇列，單一背景執行緒依序寫入，
+ *       同一對話的最後訊息與未讀數不會亂序；回收 Journal 時只使用「之前所有序號都已寫入」的低水位。
+ * 關機時某批寫入失敗就停止後續批次，失敗的訊息與其後的訊息都留在 Journal 待下次重播。
+ * 冪等：messageId / clientMessageId 有唯一索引；Journal 檢查點之前的訊息不重播，
+ *       重試或重播時 messageId 已存在的訊息仍會更新對話，clientMessageId 衝突的副本才略過。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "chathub.persistence.write-behind", name = "enabled", havingValue = "true")
+public class MessagePersistencePipeline implements SmartLifecycle {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final PersistenceProperties properties;
+    private final MessageJournal journal;
+    private final BlockingQueue<PendingMessage> queue;
+    private final Map<String, Message> inFlightByClientMessageId = new ConcurrentHashMap<>();
+    private final Map<String, Message> inFlightByMessageId = new ConcurrentHashMap<>();
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter duplicateCounter;
+    private final Counter retryCounter;
+
+    private Thread flusherThread;
+    private volatile boolean running = false;
+
+    /**
+     * 低水位：此序號（含）之前的訊息都已寫入 MongoDB（只由背景執行緒更新）
+     */
+    private long flushedThrough;
+
+    public MessagePersistencePipeline(MongoTemplate mongoTemplate, UnreadCounterService unreadCounterService,
+                                      PersistenceProperties properties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.unreadCounterService = unreadCounterService;
+        this.properties = properties;
+        this.journal = new MessageJournal(Path.of(properties.getJournalDir()), properties.getJournalSegmentBytes(),
+                                          properties.isFsync(), this::enqueue);
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        this.flushTimer = Timer.builder("chathub.persistence.flush")
+                               .description("Time to write one batch of messages and conversation updates")
+                               .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("chathub.persistence.batch.size")
+                                             .description("Messages per write-behind batch")
+                                             .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("chathub.persistence.duplicates")
+                                       .description("Messages skipped because they were already stored")
+                                       .register(meterRegistry);
+        this.retryCounter = Counter.builder("chathub.persistence.retries")
+                                   .description("Batch write attempts that failed and were retried")
+                                   .register(meterRegistry);
+        Gauge.builder("chathub.persistence.queue.depth", queue, BlockingQueue::size)
+             .description("Messages journaled but not yet written to MongoDB")
+             .register(meterRegistry);
+    }
+
+    /**
+     * 提交訊息：寫入 Journal（並依序號進入佇列）後返回
+     * @return 實際被接受的訊息（相同 clientMessageId 仍在管線中時，回傳先前那一筆）
+     */
+    public Message submit(Message message) {
+        String clientMessageId = message.getClientMessageId();
+        if (clientMessageId != null) {
+            Message existing = inFlightByClientMessageId.putIfAbsent(clientMessageId, message);
+            if (existing != null) {
+                log.warn("重複訊息（管線中），已忽略：{}", clientMessageId);
+                return existing;
+            }
+        }
+
+        inFlightByMessageId.put(message.getMessageId(), message);
+
+        try {
+            journal.append(message).get(5, TimeUnit.SECONDS);
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseInFlight(message);
+            throw new IllegalStateException("訊息寫入管線被中斷", e);
+        } catch (Exception e) {
+            releaseInFlight(message);
+            throw new IllegalStateException("訊息寫入 Journal 失敗", e);
+        }
+    }
+
+    /**
+     * Journal 落盤後依序號順序呼叫（Journal 執行緒）；佇列滿時等待，形成背壓
+     */
+    private void enqueue(MessageJournal.Entry entry) {
+        try {
+            queue.put(new PendingMessage(entry.seq(), entry.message()));
+        } catch (InterruptedException e) {
+            // 訊息已在 Journal 中，下次啟動時重播
+            Thread.currentThread().interrupt();
+            log.error("訊息 {} 無法進入寫入佇列，待下次啟動重播", entry.seq());
+        }
+    }
+
+    /**
+     * 查詢仍在管線中（尚未寫入 MongoDB）的訊息
+     */
+    public Message findInFlight(String clientMessageId) {
+        return inFlightByClientMessageId.get(clientMessageId);
+    }
+
+    /**
+     * 以 messageId 查詢仍在管線中的訊息（例如已讀回報指向剛送出、尚未寫入的訊息）
+     */
+    public Message findInFlightByMessageId(String messageId) {
+        return inFlightByMessageId.get(messageId);
+    }
+
+    @Override
+    public void start() {
+        List<MessageJournal.Entry> replay;
+        try {
+            replay = journal.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("無法開啟訊息 Journal：" + properties.getJournalDir(), e);
+        }
+
+        flushedThrough = replay.isEmpty() ? 0 : replay.get(0).seq() - 1;
+        running = true;
+        flusherThread = new Thread(this::flushLoop, "message-flusher");
+        flusherThread.start();
+
+        // 重播上次未寫入的訊息（序號都小於新訊息，在接受新訊息之前放入佇列）
+        for (MessageJournal.Entry entry : replay) {
+            Message message = entry.message();
+            if (message.getClientMessageId() != null) {
+                inFlightByClientMessageId.putIfAbsent(message.getClientMessageId(), message);
+            }
+            inFlightByMessageId.put(message.getMessageId(), message);
+            enqueue(entry);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (flusherThread != null) {
+            try {
+                flusherThread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.error("關閉訊息 Journal 失敗", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 比 Web Server 早啟動、晚停止：關機時先停止收訊息，再把佇列寫完
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1024;
+    }
+
+    private void flushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(properties.getBatchSize());
+        long maxDelayNanos = properties.getMaxBatchDelay().toNanos();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 湊批：直到筆數上限或等待時間到
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < properties.getBatchSize()) {
+                    queue.drainTo(batch, properties.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= properties.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                if (!flushWithRetry(batch)) {
+                    // 關機中寫入失敗：不再寫入後面的批次，否則回收 Journal 時會刪掉失敗的訊息
+                    log.error("停止寫入，佇列中剩餘 {} 筆訊息保留在 Journal 待下次重播", queue.size());
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 依序寫入訊息、更新對話，兩個步驟各自重試（不跳過，保持順序）：
+     * 對話更新失敗時只重試對話更新，不會再寫一次訊息，也不會因此把本批訊息當成重複而漏掉未讀數
+     * @return false 如果關機中寫入失敗而放棄
+     */
+    private boolean flushWithRetry(List<PendingMessage> batch) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message());
+        }
+
+        Set<Integer> duplicates = retry("寫入訊息", batch.size(), () -> insertMessages(messages));
+        if (duplicates == null) {
+            return false;
+        }
+
+        // 依訊息順序合併每個對話的變更，重複（其他副本已寫入）的訊息不累加未讀數
+        Map<String, ConversationDelta> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            if (duplicates.contains(i)) {
+                continue;
+            }
+            Message message = messages.get(i);
+            deltas.computeIfAbsent(message.getConversationId(), ConversationDelta::new).add(message);
+        }
+        List<ConversationDelta> remaining = new ArrayList<>(deltas.values());
+        if (retry("更新對話", batch.size(), () -> applyConversationDeltas(remaining)) == null) {
+            return false;
+        }
+        deltas.values().forEach(delta -> unreadCounterService.incrementAll(delta.getUnreadIncrements()));
+
+        advanceFlushedThrough(batch);
+        messages.forEach(this::releaseInFlight);
+
+        flushTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        batchSizes.record(messages.size());
+        if (!duplicates.isEmpty()) {
+            duplicateCounter.increment(duplicates.size());
+        }
+        log.debug("批次寫入完成：{} 則訊息、{} 個對話", messages.size(), deltas.size());
+        return true;
+    }
+
+    /**
+     * 失敗時重試同一步驟，退避時間倍增（上限 MAX_RETRY_BACKOFF_MILLIS）
+     * @return 步驟的結果；關機中失敗而放棄時為 null
+     */
+    private <T> T retry(String step, int size, Supplier<T> action) throws InterruptedException {
+        long backoff = 100;
+        while (true) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                retryCounter.increment();
+                if (!running) {
+                    log.error("關機中{}失敗，{} 筆訊息保留在 Journal 待下次重播", step, size, e);
+                    return null;
+                }
+                log.error("{}失敗，{} ms 後重試（{} 筆）", step, backoff, size, e);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * insertMany（不依序，單筆失敗不影響其他筆）
+     *
+     * 唯一索引衝突時以 messageId 判斷：MongoDB 已有同一個 messageId 代表是本管線先前寫入的同一則訊息
+     * （前一次嘗試中途失敗、或重播當機前已寫入但對話尚未更新的訊息），仍要更新對話；
+     * 只有 clientMessageId 衝突（同一則訊息的另一個副本已寫入）才算重複。
+     * @return 重複而不更新對話的訊息索引
+     */
+    private Set<Integer> insertMessages(List<Message> messages) {
+        Set<Integer> conflicts = new HashSet<>();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class)
+                         .insert(messages)
+                         .execute();
+            return Set.of();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                    throw e;
+                }
+                conflicts.add(error.getIndex());
+            }
+        }
+
+        List<String> messageIds = conflicts.stream().map(i -> messages.get(i).getMessageId()).toList();
+        Query stored = Query.query(Criteria.where("messageId").in(messageIds));
+        stored.fields().include("messageId");
+        Set<String> storedIds = new HashSet<>();
+        mongoTemplate.find(stored, Message.class).forEach(message -> storedIds.add(message.getMessageId()));
+
+        Set<Integer> duplicates = new HashSet<>();
+        for (int i : conflicts) {
+            if (!storedIds.contains(messages.get(i).getMessageId())) {
+                duplicates.add(i);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * bulkWrite upsert 對話；失敗時只保留失敗的項目在 remaining 中待重試（成功的不會重複累加）
+     * 兩個節點同時建立同一個新對話時，後到的 upsert 會因唯一索引失敗，重試時即更新既有的對話。
+     * 非 BulkOperationException（例如逾時）無法得知哪些已套用，整批重試，未讀數可能多計（由計數器校正修正 Redis）。
+     */
+    private Boolean applyConversationDeltas(List<ConversationDelta> remaining) {
+        if (remaining.isEmpty()) {
+            return true;
+        }
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        for (ConversationDelta delta : remaining) {
+            operations.upsert(Query.query(Criteria.where("conversationId").is(delta.getConversationId())),
+                              delta.toUpdate());
+        }
+        try {
+            operations.execute();
+        } catch (BulkOperationException e) {
+            List<ConversationDelta> failed = new ArrayList<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failed.add(remaining.get(error.getIndex()));
+            }
+            remaining.clear();
+            remaining.addAll(failed);
+            throw e;
+        }
+        remaining.clear();
+        return true;
+    }
+
+    /**
+     * 佇列依序號排列、批次依序寫入且失敗時不跳過，因此本批最大序號之前的訊息都已寫入
+     */
+    private void advanceFlushedThrough(List<PendingMessage> batch) {
+        long maxSeq = flushedThrough;
+        for (PendingMessage pending : batch) {
+            if (pending.seq() <= flushedThrough) {
+                log.warn("序號 {} 不在低水位 {} 之後，不回收 Journal", pending.seq(), flushedThrough);
+                return;
+            }
+            maxSeq = Math.max(maxSeq, pending.seq());
+        }
+        flushedThrough = maxSeq;
+        journal.markFlushed(flushedThrough);
+    }
+
+    private void releaseInFlight(Message message) {
+        inFlightByMessageId.remove(message.getMessageId(), message);
+        if (message.getClientMessageId() != null) {
+            inFlightByClientMessageId.remove(message.getClientMessageId(), message);
+        }
+    }
+
+    private record PendingMessage(long seq, Message message) {
+    }
+}
@@ -0,0 +1,166 @@
+package com.chathub.service.presence;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * UUID → 連續整數 ID 的緊湊對照表
+ *
+ * 開放定址（線性探測），UUID 直接存成兩個 long，不建立 UUID / Integer / Node 物件：
+ * 每個槽位 24 bytes，負載上限 0.75（一百萬筆約 50 MB，同樣內容的 HashMap 約 90 MB）。
+ * 只新增不刪除（ID 一經分配就不會改變）；讀取使用 StampedLock 樂觀讀，不必加鎖。
+ */
+public final class DenseIdTable {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int MIN_CAPACITY = 1 << 10;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table;
+    private int size;
+
+    public DenseIdTable() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize 預期筆數（預先配置，避免擴充）
+     */
+    public DenseIdTable(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    /**
+     * 查詢 ID
+     * @return ID，查無時回傳 NOT_FOUND
+     */
+    public int get(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        int id = table.find(msb, lsb);
+        if (lock.validate(stamp)) {
+            return id;
+        }
+        stamp = lock.readLock();
+        try {
+            return table.find(msb, lsb);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 寫入 ID（已存在時覆蓋）
+     */
+    public void put(UUID uuid, int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID 不可為負數：" + id);
+        }
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            if ((size + 1L) * 4 > current.capacity() * 3L) {
+                current = current.resize(current.capacity() * 2);
+                table = current;
+            }
+            if (current.insert(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), id)) {
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 陣列佔用的記憶體（bytes，不含物件標頭）
+     */
+    public long footprintBytes() {
+        return (long) table.capacity() * Table.STRIDE * Long.BYTES;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, (long) expectedSize * 4 / 3 + 1);
+        if (needed > 1 << 28) {
+            throw new IllegalArgumentException("預期筆數過大：" + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    /**
+     * 槽位陣列：每個槽位連續三個 long（msb、lsb、ID + 1；0 代表空槽位），一次查詢通常只碰到一條 cache line
+     */
+    private static final class Table {
+
+        private static final int STRIDE = 3;
+
+        private final long[] slots;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.slots = new long[capacity * STRIDE];
+            this.mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        private int find(long msb, long lsb) {
+            for (int i = slot(msb, lsb); ; i = (i + 1) & mask) {
+                int base = i * STRIDE;
+                long value = slots[base + 2];
+                if (value == 0) {
+                    return NOT_FOUND;
+                }
+                if (slots[base] == msb && slots[base + 1] == lsb) {
+                    return (int) value - 1;
+                }
+            }
+        }
+
+        /**
+         * @return true 如果是新的 UUID
+         */
+        private boolean insert(long msb, long lsb, int id) {
+            for (int i = slot(msb, lsb); ; i = (i + 1) & mask) {
+                int base = i * STRIDE;
+                if (slots[base + 2] == 0) {
+                    slots[base] = msb;
+                    slots[base + 1] = lsb;
+                    slots[base + 2] = id + 1L;
+                    return true;
+                }
+                if (slots[base] == msb && slots[base + 1] == lsb) {
+                    slots[base + 2] = id + 1L;
+                    return false;
+                }
+            }
+        }
+
+        private Table resize(int capacity) {
+            Table resized = new Table(capacity);
+            for (int base = 0; base < slots.length; base += STRIDE) {
+                if (slots[base + 2] != 0) {
+                    resized.insert(slots[base], slots[base + 1], (int) slots[base + 2] - 1);
+                }
+            }
+            return resized;
+        }
+
+        private int slot(long msb, long lsb) {
+            long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.chathub.service.presence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 以連續整數 ID 為索引的位元集合，存放在堆外記憶體（direct buffer）
+ *
+ * 位元排列與 Redis bitmap 相同（第 n 個位元在第 n / 8 個 byte 的最高位起算），
+ * 因此 Redis GET 取回的 bytes 可以直接 OR 進來，本機的集合也可以直接 SET 回 Redis。
+ * 一百萬個使用者只佔 125 KB，而且不經過 GC 掃描。
+ *
+ * 寫入（set、or）互斥；讀取（get）不加鎖，擴充時換成新的 buffer。
+ */
+public final class OnlineBitmap {
+
+    private volatile ByteBuffer bits;
+
+    /**
+     * @param capacityBits 預先配置的位元數（超過時自動擴充）
+     */
+    public OnlineBitmap(int capacityBits) {
+        this.bits = ByteBuffer.allocateDirect(bytesFor(capacityBits));
+    }
+
+    /**
+     * ID 對應的位元是否為 1
+     */
+    public boolean get(int id) {
+        ByteBuffer current = bits;
+        int index = id >>> 3;
+        return id >= 0 && index < current.capacity() && (current.get(index) & mask(id)) != 0;
+    }
+
+    /**
+     * 設定 ID 對應的位元
+     */
+    public synchronized void set(int id, boolean value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID 不可為負數：" + id);
+        }
+        int index = id >>> 3;
+        if (!value && index >= bits.capacity()) {
+            return;
+        }
+        ensureCapacity(index + 1);
+        byte current = bits.get(index);
+        bits.put(index, (byte) (value ? current | mask(id) : current & ~mask(id)));
+    }
+
+    /**
+     * 合併另一份 Redis bitmap（OR）
+     * @param redisBitmap Redis GET 取回的 bytes
+     */
+    public synchronized void or(byte[] redisBitmap) {
+        ensureCapacity(redisBitmap.length);
+        ByteBuffer current = bits;
+        ByteBuffer source = ByteBuffer.wrap(redisBitmap);
+        int i = 0;
+        for (; i + Long.BYTES <= redisBitmap.length; i += Long.BYTES) {
+            current.putLong(i, current.getLong(i) | source.getLong(i));
+        }
+        for (; i < redisBitmap.length; i++) {
+            current.put(i, (byte) (current.get(i) | redisBitmap[i]));
+        }
+    }
+
+    /**
+     * 複製成 Redis bitmap 格式（去掉結尾全為 0 的 bytes）
+     */
+    public synchronized byte[] toByteArray() {
+        ByteBuffer current = bits;
+        int length = current.capacity();
+        while (length > 0 && current.get(length - 1) == 0) {
+            length--;
+        }
+        byte[] bytes = new byte[length];
+        current.get(0, bytes);
+        return bytes;
+    }
+
+    /**
+     * 為 1 的位元數
+     */
+    public int cardinality() {
+        ByteBuffer current = bits;
+        int count = 0;
+        int i = 0;
+        for (; i + Long.BYTES <= current.capacity(); i += Long.BYTES) {
+            count += Long.bitCount(current.getLong(i));
+        }
+        for (; i < current.capacity(); i++) {
+            count += Integer.bitCount(current.get(i) & 0xFF);
+        }
+        return count;
+    }
+
+    /**
+     * 配置的堆外記憶體（bytes）
+     */
+    public int sizeInBytes() {
+        return bits.capacity();
+    }
+
+    private void ensureCapacity(int bytes) {
+        ByteBuffer current = bits;
+        if (bytes <= current.capacity()) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(alignToLong(bytes), current.capacity() * 2));
+        grown.put(0, current, 0, current.capacity());
+        bits = grown;
+    }
+
+    private static int bytesFor(int capacityBits) {
+        int bytes = (Math.max(capacityBits, 0) + 7) >>> 3;
+        return Math.max(Long.BYTES, alignToLong(bytes));
+    }
+
+    private static int alignToLong(int bytes) {
+        return (bytes + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private static int mask(int id) {
+        return 0x80 >>> (id & 7);
+    }
+}
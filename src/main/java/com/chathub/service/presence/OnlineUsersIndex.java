@@ -0,0 +1,412 @@
+package com.chathub.service.presence;
+
+import com.chathub.config.NodeProperties;
+import com.chathub.config.PresenceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 全叢集在線使用者 bitmap（以 UserIdInterner 的整數 ID 為位元位置）
+ *
+ * 每個節點維護自己持有連線的使用者：
+ * - 本機：堆外 OnlineBitmap，第一個連線 / 最後一個連線時設定位元
+ * - Redis：presence:{online}:node:{nodeId} bitmap，每次 SETBIT 同時遞增序號 presence:{online}:seq:{nodeId}
+ *   並寫一筆變更到 presence:{online}:log:{nodeId}（Stream，保留 bitmap-log-length 筆）；
+ *   路由心跳時比對整份 bitmap，不一致才覆寫並寫一筆重設記錄。節點清單 presence:online:nodes（ZSET，score 為到期時間）
+ *
+ * 其他節點各保留一份副本：第一次看到該節點時讀整份 bitmap 與當時的序號，
+ * 之後每 bitmap-sync-interval 以一次 XREAD 讀取所有節點的新變更套用到副本。
+ * 平時的流量與上線 / 離線次數成正比，不再是每秒每個節點讀一次所有節點的 bitmap（N² 份）；
+ * 序號不連續（變更記錄已被裁掉）或收到重設記錄時才重讀該節點的整份 bitmap。
+ * 「這 5000 個好友誰在線」變成 5000 次位元檢查，不需要任何 Redis 往返（新使用者第一次轉換 ID 除外）。
+ * 節點掛掉後，bitmap、變更記錄與節點清單和路由一樣在 route-ttl 後過期。
+ *
+ * 所有節點的 key 使用同一個 hash tag，讓一次 XREAD 可以讀取多個節點的變更記錄。
+ *
+ * 指標：chathub.presence.bitmap.reads{kind=change|snapshot}（套用的變更筆數 / 讀取整份 bitmap 的次數）
+ */
+@Slf4j
+@Service
+public class OnlineUsersIndex {
+
+    static final String NODES_KEY = "presence:online:nodes";
+    private static final String BITMAP_KEY_PREFIX = "presence:{online}:node:";
+    private static final String LOG_KEY_PREFIX = "presence:{online}:log:";
+    private static final String SEQUENCE_KEY_PREFIX = "presence:{online}:seq:";
+    private static final int INITIAL_CAPACITY_BITS = 1 << 16;
+
+    private static final String FIELD_SEQUENCE = "q";
+    private static final String FIELD_ID = "i";
+    private static final String FIELD_ONLINE = "o";
+    private static final String FIELD_RESET = "r";
+
+    /**
+     * 設定位元並寫一筆變更記錄
+     * KEYS: bitmap、變更記錄、序號；ARGV: ID、0 / 1、TTL（毫秒）、變更記錄長度
+     * @return 這筆變更的序號
+     */
+    static final RedisScript<Long> CHANGE_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('SETBIT', KEYS[1], ARGV[1], ARGV[2]) " +
+        "local seq = redis.call('INCR', KEYS[3]) " +
+        "redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[4], '*', " +
+        "'" + FIELD_SEQUENCE + "', seq, '" + FIELD_ID + "', ARGV[1], '" + FIELD_ONLINE + "', ARGV[2]) " +
+        "for i = 1, 3 do redis.call('PEXPIRE', KEYS[i], ARGV[3]) end " +
+        "return seq",
+        Long.class
+    );
+
+    /**
+     * 比對整份 bitmap（忽略結尾全為 0 的 bytes），不一致時覆寫並寫一筆重設記錄；一律續約
+     * KEYS: bitmap、變更記錄、序號；ARGV: 本機 bitmap、TTL（毫秒）、變更記錄長度
+     * @return 1 表示有覆寫
+     */
+    private static final byte[] REPAIR_SCRIPT = bytes(
+        "local current = redis.call('GET', KEYS[1]) or '' " +
+        "local n = #current " +
+        "while n > 0 and string.byte(current, n) == 0 do n = n - 1 end " +
+        "local repaired = 0 " +
+        "if string.sub(current, 1, n) ~= ARGV[1] then " +
+        "  redis.call('SET', KEYS[1], ARGV[1]) " +
+        "  local seq = redis.call('INCR', KEYS[3]) " +
+        "  redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[3], '*', " +
+        "'" + FIELD_SEQUENCE + "', seq, '" + FIELD_RESET + "', 1) " +
+        "  repaired = 1 " +
+        "end " +
+        "for i = 1, 3 do redis.call('PEXPIRE', KEYS[i], ARGV[2]) end " +
+        "return repaired"
+    );
+
+    /**
+     * 讀取整份 bitmap 與對應的序號、最後一筆變更記錄 ID
+     * KEYS: bitmap、變更記錄、序號
+     * @return [bitmap, 序號, 變更記錄 ID]
+     */
+    private static final byte[] SNAPSHOT_SCRIPT = bytes(
+        "local last = redis.call('XREVRANGE', KEYS[2], '+', '-', 'COUNT', 1) " +
+        "return {redis.call('GET', KEYS[1]) or '', redis.call('GET', KEYS[3]) or '0', " +
+        "last[1] and last[1][1] or '0-0'}"
+    );
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserIdInterner interner;
+    private final NodeProperties nodeProperties;
+    private final PresenceProperties properties;
+    private final Counter changeReads;
+    private final Counter snapshotReads;
+
+    private final OnlineBitmap local = new OnlineBitmap(INITIAL_CAPACITY_BITS);
+    private volatile OnlineBitmap remote = new OnlineBitmap(INITIAL_CAPACITY_BITS);
+    private volatile long lastSyncMillis;
+
+    /**
+     * 其他節點的副本（只在 sync 內寫入）
+     */
+    private final Map<String, Replica> replicas = new ConcurrentHashMap<>();
+
+    /**
+     * 副本有增減或重讀，需要重新合併（合併前失敗時留到下一輪）
+     */
+    private boolean mergePending;
+
+    public OnlineUsersIndex(StringRedisTemplate redisTemplate, UserIdInterner interner,
+                            NodeProperties nodeProperties, PresenceProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.interner = interner;
+        this.nodeProperties = nodeProperties;
+        this.properties = properties;
+        this.changeReads = readCounter(meterRegistry, "change");
+        this.snapshotReads = readCounter(meterRegistry, "snapshot");
+
+        Gauge.builder("chathub.presence.bitmap.staleness", this, OnlineUsersIndex::stalenessSeconds)
+             .baseUnit("seconds")
+             .description("Seconds since other nodes' online bitmap changes were last read successfully")
+             .register(meterRegistry);
+        Gauge.builder("chathub.presence.bitmap.bytes", this, OnlineUsersIndex::sizeInBytes)
+             .baseUnit("bytes")
+             .description("Off-heap memory held by the online bitmaps")
+             .register(meterRegistry);
+    }
+
+    /**
+     * 使用者在本節點建立第一個連線
+     */
+    public void add(UUID userId) {
+        if (!properties.isBitmapEnabled()) {
+            return;
+        }
+        try {
+            int id = interner.intern(userId);
+            local.set(id, true);
+            writeBit(id, true);
+        } catch (Exception e) {
+            log.error("Failed to add user {} to the online bitmap", userId, e);
+        }
+    }
+
+    /**
+     * 使用者在本節點的最後一個連線關閉
+     */
+    public void remove(UUID userId) {
+        if (!properties.isBitmapEnabled()) {
+            return;
+        }
+        int id = interner.lookup(userId);
+        if (id == DenseIdTable.NOT_FOUND) {
+            return;
+        }
+        local.set(id, false);
+        try {
+            writeBit(id, false);
+        } catch (Exception e) {
+            log.error("Failed to remove user {} from the online bitmap", userId, e);
+        }
+    }
+
+    /**
+     * 比對並修正本節點的 bitmap、續約（路由心跳時呼叫；修正遺失的 SETBIT、Redis 重啟後重建）
+     * 只有不一致時才整份覆寫，其他節點收到重設記錄後重讀
+     */
+    public void publish() {
+        if (!properties.isBitmapEnabled()) {
+            return;
+        }
+        String nodeId = nodeProperties.getId();
+        byte[] node = bytes(nodeId);
+        byte[] nodesKey = bytes(NODES_KEY);
+        byte[] bitmap = local.toByteArray();
+        long ttlMillis = nodeProperties.getRouteTtl().toMillis();
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.scriptingCommands().eval(REPAIR_SCRIPT, ReturnType.INTEGER, 3,
+                                                    bytes(BITMAP_KEY_PREFIX + nodeId), bytes(LOG_KEY_PREFIX + nodeId),
+                                                    bytes(SEQUENCE_KEY_PREFIX + nodeId), bitmap,
+                                                    bytes(String.valueOf(ttlMillis)),
+                                                    bytes(String.valueOf(properties.getBitmapLogLength())));
+                connection.zSetCommands().zAdd(nodesKey, now + ttlMillis, node);
+                connection.zSetCommands().zRemRangeByScore(nodesKey, Double.NEGATIVE_INFINITY, now);
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Failed to publish online bitmap of node {}", nodeId, e);
+        }
+    }
+
+    /**
+     * 更新其他存活節點的副本：新節點讀整份 bitmap，其餘只套用新的變更記錄
+     */
+    @Scheduled(fixedDelayString = "#{@presenceProperties.bitmapSyncInterval.toMillis()}")
+    public void sync() {
+        if (!properties.isBitmapEnabled()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Set<String> nodes = redisTemplate.opsForZSet().rangeByScore(NODES_KEY, now, Double.POSITIVE_INFINITY);
+            Set<String> others = nodes == null ? new HashSet<>() : new HashSet<>(nodes);
+            others.remove(nodeProperties.getId());
+
+            if (replicas.keySet().retainAll(others)) {
+                mergePending = true;
+            }
+            for (String node : others) {
+                if (!replicas.containsKey(node)) {
+                    replicas.put(node, snapshot(node));
+                }
+            }
+            for (String node : applyChanges()) {
+                replicas.put(node, snapshot(node));
+            }
+            if (mergePending) {
+                remote = merge();
+                mergePending = false;
+            }
+            lastSyncMillis = now;
+        } catch (Exception e) {
+            log.warn("Failed to read online bitmap changes (last success {} s ago)", stalenessSeconds(), e);
+        }
+    }
+
+    /**
+     * 是否可以由 bitmap 回答（啟用且最近讀取成功）
+     */
+    public boolean isReady() {
+        return properties.isBitmapEnabled()
+            && System.currentTimeMillis() - lastSyncMillis <= properties.getBitmapMaxStaleness().toMillis();
+    }
+
+    /**
+     * 批次查詢在線的使用者：轉換為整數 ID 後逐一檢查本機與副本的位元
+     */
+    public Set<UUID> onlineAmong(Collection<UUID> userIds) {
+        int[] ids = interner.internAll(userIds);
+        OnlineBitmap others = remote;
+        Set<UUID> online = new HashSet<>();
+        int i = 0;
+        for (UUID userId : userIds) {
+            if (local.get(ids[i]) || others.get(ids[i])) {
+                online.add(userId);
+            }
+            i++;
+        }
+        return online;
+    }
+
+    private void writeBit(int id, boolean online) {
+        String nodeId = nodeProperties.getId();
+        redisTemplate.execute(CHANGE_SCRIPT,
+                              List.of(BITMAP_KEY_PREFIX + nodeId, LOG_KEY_PREFIX + nodeId, SEQUENCE_KEY_PREFIX + nodeId),
+                              String.valueOf(id), online ? "1" : "0",
+                              String.valueOf(nodeProperties.getRouteTtl().toMillis()),
+                              String.valueOf(properties.getBitmapLogLength()));
+    }
+
+    /**
+     * 讀整份 bitmap，之後從當時最後一筆變更記錄接著讀
+     */
+    private Replica snapshot(String node) {
+        List<Object> result = redisTemplate.execute((RedisCallback<List<Object>>) connection ->
+            connection.scriptingCommands().eval(SNAPSHOT_SCRIPT, ReturnType.MULTI, 3, bytes(BITMAP_KEY_PREFIX + node),
+                                                bytes(LOG_KEY_PREFIX + node), bytes(SEQUENCE_KEY_PREFIX + node)));
+        if (result == null || result.size() != 3) {
+            throw new IllegalStateException("讀取節點 " + node + " 的在線 bitmap 失敗：" + result);
+        }
+        byte[] bitmap = (byte[]) result.get(0);
+        Replica replica = new Replica(new OnlineBitmap(Math.max(INITIAL_CAPACITY_BITS, bitmap.length * Byte.SIZE)));
+        replica.bits.or(bitmap);
+        replica.sequence = Long.parseLong(string((byte[]) result.get(1)));
+        replica.lastId = string((byte[]) result.get(2));
+        snapshotReads.increment();
+        mergePending = true;
+        return replica;
+    }
+
+    /**
+     * 一次 XREAD 讀取所有副本的新變更並套用（同時更新合併後的副本）
+     * @return 序號不連續或收到重設記錄、需要重讀整份 bitmap 的節點
+     */
+    private Set<String> applyChanges() {
+        if (replicas.isEmpty()) {
+            return Set.of();
+        }
+        // 每個元素都是 StreamOffset<byte[]>，陣列本身無法以泛型建立
+        @SuppressWarnings("unchecked")
+        StreamOffset<byte[]>[] offsets = replicas.entrySet().stream()
+            .map(entry -> StreamOffset.create(bytes(LOG_KEY_PREFIX + entry.getKey()),
+                                              ReadOffset.from(entry.getValue().lastId)))
+            .toArray(StreamOffset[]::new);
+        StreamReadOptions options = StreamReadOptions.empty().count(properties.getBitmapLogLength());
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+            connection.streamCommands().xRead(options, offsets));
+
+        Set<String> resync = new HashSet<>();
+        for (ByteRecord record : records != null ? records : List.<ByteRecord>of()) {
+            String node = string(record.getStream()).substring(LOG_KEY_PREFIX.length());
+            Replica replica = replicas.get(node);
+            if (replica == null || resync.contains(node)) {
+                continue;
+            }
+            Map<String, String> fields = fields(record);
+            long sequence = Long.parseLong(fields.get(FIELD_SEQUENCE));
+            if (sequence != replica.sequence + 1 || fields.containsKey(FIELD_RESET)) {
+                resync.add(node);
+                continue;
+            }
+            int id = Integer.parseInt(fields.get(FIELD_ID));
+            boolean online = "1".equals(fields.get(FIELD_ONLINE));
+            replica.bits.set(id, online);
+            replica.sequence = sequence;
+            replica.lastId = record.getId().getValue();
+            remote.set(id, online || onlineOnAnyReplica(id));
+            changeReads.increment();
+        }
+        return resync;
+    }
+
+    private boolean onlineOnAnyReplica(int id) {
+        for (Replica replica : replicas.values()) {
+            if (replica.bits.get(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private OnlineBitmap merge() {
+        OnlineBitmap merged = new OnlineBitmap(remote.sizeInBytes() * Byte.SIZE);
+        for (Replica replica : replicas.values()) {
+            merged.or(replica.bits.toByteArray());
+        }
+        return merged;
+    }
+
+    private int sizeInBytes() {
+        int bytes = local.sizeInBytes() + remote.sizeInBytes();
+        for (Replica replica : replicas.values()) {
+            bytes += replica.bits.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private double stalenessSeconds() {
+        return lastSyncMillis == 0 ? Double.NaN : (System.currentTimeMillis() - lastSyncMillis) / 1000.0;
+    }
+
+    private static Map<String, String> fields(ByteRecord record) {
+        Map<String, String> fields = new HashMap<>();
+        record.getValue().forEach((name, value) -> fields.put(string(name), string(value)));
+        return fields;
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String kind) {
+        return Counter.builder("chathub.presence.bitmap.reads")
+                      .tag("kind", kind)
+                      .description("Online bitmap changes applied and full bitmaps read from other nodes")
+                      .register(meterRegistry);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 其他節點的 bitmap 副本與已套用到的變更位置
+     */
+    private static final class Replica {
+        private final OnlineBitmap bits;
+        private long sequence;
+        private String lastId;
+
+        private Replica(OnlineBitmap bits) {
+            this.bits = bits;
+        }
+    }
+}
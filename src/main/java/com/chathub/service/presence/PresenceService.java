@@ -0,0 +1,280 @@
+package com.chathub.service.presence;
+
+import com.chathub.config.NodeProperties;
+import com.chathub.config.PresenceProperties;
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.repository.FriendshipRepository;
+import com.chathub.service.MessagePublisher;
+import com.chathub.service.PresenceRoutingService;
+import com.chathub.service.WebSocketSessionManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 上線狀態
+ *
+ * 上線與否以路由表為準（PresenceRoutingService）：使用者在任一節點有 WebSocket 連線就有路由，
+ * 節點心跳批次續約本機所有使用者的路由，不需要每個 PING 寫一次 Redis；連線全部關閉或節點掛掉後路由消失 / 過期。
+ * 查詢多個使用者（好友列表）時由在線 bitmap 回答（OnlineUsersIndex），bitmap 過舊時以 Pipeline 查詢路由表。
+ *
+ * 狀態改變時推送 PRESENCE 給在線的好友（本機好友直接推送，其他節點以 publishToNodes 發布）：
+ * - 上線：下一次 flush 送出
+ * - 離線：延後 offlineGrace 才送出，期間重新連線則兩者都略過（網路切換、重新整理頁面不會閃爍）；
+ *   送出前確認使用者在其他節點也沒有連線
+ * 推送都在排程執行緒進行，不佔用連線建立 / 關閉的執行緒。
+ *
+ * 閒置連線：每個收到的 frame（客戶端每 30 秒送一次 PING）都會更新連線的最後活動時間，
+ * 超過 idleTimeout 沒有任何 frame 的連線（例如半開的 TCP 連線）會被關閉，觸發正常的離線流程。
+ *
+ * 指標：chathub.presence.events{outcome=announced|suppressed}、chathub.presence.idle.closed
+ */
+@Slf4j
+@Service
+public class PresenceService {
+
+    public static final String LAST_ACTIVITY_ATTRIBUTE = "lastActivity";
+
+    private final PresenceRoutingService routingService;
+    private final OnlineUsersIndex onlineUsersIndex;
+    private final WebSocketSessionManager sessionManager;
+    private final FriendshipRepository friendshipRepository;
+    private final MessagePublisher publisher;
+    private final NodeProperties nodeProperties;
+    private final PresenceProperties properties;
+    private final ObjectMapper objectMapper;
+    private final LongSupplier clock;
+    private final Map<UUID, PendingChange> pending = new ConcurrentHashMap<>();
+
+    private final Counter announcedCounter;
+    private final Counter suppressedCounter;
+    private final Counter idleClosedCounter;
+
+    @Autowired
+    public PresenceService(PresenceRoutingService routingService, OnlineUsersIndex onlineUsersIndex,
+                           WebSocketSessionManager sessionManager, FriendshipRepository friendshipRepository, MessagePublisher publisher,
+                           NodeProperties nodeProperties, PresenceProperties properties, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
+        this(routingService, onlineUsersIndex, sessionManager, friendshipRepository, publisher, nodeProperties, properties,
+             objectMapper, meterRegistry, System::currentTimeMillis);
+    }
+
+    PresenceService(PresenceRoutingService routingService, OnlineUsersIndex onlineUsersIndex,
+                    WebSocketSessionManager sessionManager, FriendshipRepository friendshipRepository, MessagePublisher publisher,
+                    NodeProperties nodeProperties, PresenceProperties properties, ObjectMapper objectMapper,
+                    MeterRegistry meterRegistry, LongSupplier clock) {
+        this.routingService = routingService;
+        this.onlineUsersIndex = onlineUsersIndex;
+        this.sessionManager = sessionManager;
+        this.friendshipRepository = friendshipRepository;
+        this.publisher = publisher;
+        this.nodeProperties = nodeProperties;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+
+        this.announcedCounter = eventCounter(meterRegistry, "announced");
+        this.suppressedCounter = eventCounter(meterRegistry, "suppressed");
+        this.idleClosedCounter = Counter.builder("chathub.presence.idle.closed")
+                                        .description("WebSocket sessions closed after missing heartbeats")
+                                        .register(meterRegistry);
+    }
+
+    /**
+     * 使用者是否在線（任一節點有連線）
+     */
+    public boolean isOnline(UUID userId) {
+        return !onlineAmong(List.of(userId)).isEmpty();
+    }
+
+    /**
+     * 批次查詢在線的使用者（bitmap 位元檢查；bitmap 過舊時查詢路由表，一次往返）
+     * @return 在線的使用者（查詢失敗時視為都不在線）
+     */
+    public Set<UUID> onlineAmong(Collection<UUID> userIds) {
+        try {
+            if (onlineUsersIndex.isReady()) {
+                return onlineUsersIndex.onlineAmong(userIds);
+            }
+            return routingService.findNodes(userIds).keySet();
+        } catch (Exception e) {
+            log.warn("Presence lookup failed for {} users", userIds.size(), e);
+            return Set.of();
+        }
+    }
+
+    /**
+     * 使用者在本節點建立第一個連線
+     */
+    public void userConnected(UUID userId) {
+        boolean[] suppressed = new boolean[1];
+        pending.compute(userId, (id, change) -> {
+            if (change != null && !change.online()) {
+                // 寬限時間內重新連線：好友沒看到離線，也不必再通知上線
+                suppressed[0] = true;
+                return null;
+            }
+            return new PendingChange(true, clock.getAsLong());
+        });
+        if (suppressed[0]) {
+            suppressedCounter.increment(2);
+        }
+    }
+
+    /**
+     * 使用者在本節點的最後一個連線關閉
+     */
+    public void userDisconnected(UUID userId) {
+        boolean[] suppressed = new boolean[1];
+        pending.compute(userId, (id, change) -> {
+            if (change != null && change.online()) {
+                // 上線還沒送出就離線：兩者都不必通知
+                suppressed[0] = true;
+                return null;
+            }
+            return new PendingChange(false, clock.getAsLong() + properties.getOfflineGrace().toMillis());
+        });
+        if (suppressed[0]) {
+            suppressedCounter.increment(2);
+        }
+    }
+
+    /**
+     * 記錄連線的最後活動時間（每個收到的 frame 呼叫一次）
+     */
+    public void touch(WebSocketSession session) {
+        session.getAttributes().put(LAST_ACTIVITY_ATTRIBUTE, clock.getAsLong());
+    }
+
+    /**
+     * 送出到期的上線 / 離線通知
+     */
+    @Scheduled(fixedDelayString = "#{@presenceProperties.flushInterval.toMillis()}")
+    public void flush() {
+        long now = clock.getAsLong();
+        for (UUID userId : pending.keySet()) {
+            PendingChange[] due = new PendingChange[1];
+            pending.computeIfPresent(userId, (id, change) -> {
+                if (change.dueAt() <= now) {
+                    due[0] = change;
+                    return null;
+                }
+                return change;
+            });
+            if (due[0] == null) {
+                continue;
+            }
+            if (!due[0].online() && stillOnline(userId)) {
+                // 其他節點（或本節點新的連線）仍在線
+                suppressedCounter.increment();
+                continue;
+            }
+            announce(userId, due[0].online());
+        }
+    }
+
+    /**
+     * 關閉超過 idleTimeout 沒有任何 frame 的連線
+     */
+    @Scheduled(fixedDelayString = "#{@presenceProperties.idleCheckInterval.toMillis()}")
+    public void closeIdleSessions() {
+        long idleTimeout = properties.getIdleTimeout().toMillis();
+        if (idleTimeout <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        for (UUID userId : sessionManager.getOnlineUserIds()) {
+            for (WebSocketSession session : sessionManager.getSessions(userId)) {
+                if (session.getAttributes().get(LAST_ACTIVITY_ATTRIBUTE) instanceof Long lastActivity
+                    && now - lastActivity > idleTimeout && session.isOpen()) {
+                    try {
+                        idleClosedCounter.increment();
+                        log.info("Closing idle session {} of user {} (no frames for {} ms)",
+                                 session.getId(), userId, now - lastActivity);
+                        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                    } catch (Exception e) {
+                        log.warn("Failed to close idle session {} of user {}", session.getId(), userId, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 待送出的狀態數量
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private boolean stillOnline(UUID userId) {
+        return sessionManager.isUserOnline(userId) || isOnline(userId);
+    }
+
+    /**
+     * 推送 PRESENCE 給在線的好友：一次查詢好友 ID、以 bitmap 篩出在線好友後一次 Pipeline 查詢其路由，
+     * frame 只序列化一次
+     */
+    private void announce(UUID userId, boolean online) {
+        try {
+            List<UUID> friendIds = friendshipRepository.findFriendIdsByUserId(userId);
+            Collection<UUID> candidates = onlineUsersIndex.isReady()
+                ? onlineUsersIndex.onlineAmong(friendIds) : friendIds;
+            Map<UUID, Set<String>> routes = routingService.findNodes(candidates);
+            announcedCounter.increment();
+            if (routes.isEmpty()) {
+                return;
+            }
+
+            EncodedFrame frame = EncodedFrame.encode(objectMapper, WebSocketMessage.of(
+                MessageType.PRESENCE, new WebSocketPayload.Presence(userId, online)));
+            String localNode = nodeProperties.getId();
+            routes.forEach((friendId, nodes) -> {
+                Set<String> remoteNodes = new HashSet<>(nodes);
+                if (remoteNodes.remove(localNode)) {
+                    sessionManager.sendToUser(friendId, frame);
+                }
+                if (!remoteNodes.isEmpty()) {
+                    publisher.publishToNodes(friendId.toString(), remoteNodes, frame);
+                }
+            });
+            log.debug("User {} is {}, notified {} online friends", userId, online ? "online" : "offline",
+                      routes.size());
+        } catch (Exception e) {
+            log.error("Failed to announce presence of user {}", userId, e);
+        }
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("chathub.presence.events")
+                      .tag("outcome", outcome)
+                      .description("Presence changes by coalescing outcome")
+                      .register(meterRegistry);
+    }
+
+    /**
+     * 待送出的狀態改變
+     * @param online 上線 / 離線
+     * @param dueAt  送出時間（epoch millis）
+     */
+    private record PendingChange(boolean online, long dueAt) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.chathub.service.presence;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 使用者 ID 轉換為連續整數（bitmap 的位元位置）
+ *
+ * 對照表存在 Redis（user:dense-id，UUID → 整數，由 user:dense-id:seq 遞增分配），
+ * 所有節點看到同一組整數，各節點的 bitmap 才能直接合併；
+ * 本機以 DenseIdTable 快取，之後的查詢不需要往返 Redis。整數一經分配就不會改變。
+ */
+@Slf4j
+@Service
+public class UserIdInterner {
+
+    static final String IDS_KEY = "user:dense-id";
+    static final String SEQUENCE_KEY = "user:dense-id:seq";
+
+    /**
+     * 查詢或分配整數 ID（一次往返處理一批）
+     * KEYS：對照表、序號；ARGV：UUID 字串
+     */
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> INTERN_SCRIPT = new DefaultRedisScript<>(
+        "local ids = {} " +
+        "for i, uuid in ipairs(ARGV) do " +
+        "  local id = redis.call('HGET', KEYS[1], uuid) " +
+        "  if not id then " +
+        "    id = redis.call('INCR', KEYS[2]) - 1 " +
+        "    redis.call('HSET', KEYS[1], uuid, id) " +
+        "  end " +
+        "  ids[i] = tonumber(id) " +
+        "end " +
+        "return ids",
+        List.class
+    );
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final DenseIdTable table = new DenseIdTable();
+
+    public UserIdInterner(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        Gauge.builder("chathub.presence.interned", table, DenseIdTable::size)
+             .description("User ids interned to dense integers on this node")
+             .register(meterRegistry);
+    }
+
+    /**
+     * 取得使用者的整數 ID（本機沒有時向 Redis 查詢或分配）
+     */
+    public int intern(UUID userId) {
+        int id = table.get(userId);
+        return id != DenseIdTable.NOT_FOUND ? id : internAll(List.of(userId))[0];
+    }
+
+    /**
+     * 批次取得整數 ID，本機沒有的一次向 Redis 查詢或分配
+     * @return 依 userIds 的走訪順序排列
+     */
+    public int[] internAll(Collection<UUID> userIds) {
+        int[] ids = new int[userIds.size()];
+        List<Integer> missingIndexes = new ArrayList<>();
+        List<UUID> missing = new ArrayList<>();
+        int i = 0;
+        for (UUID userId : userIds) {
+            ids[i] = table.get(userId);
+            if (ids[i] == DenseIdTable.NOT_FOUND) {
+                missingIndexes.add(i);
+                missing.add(userId);
+            }
+            i++;
+        }
+
+        for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+            List<UUID> batch = missing.subList(from, Math.min(from + BATCH_SIZE, missing.size()));
+            List<?> assigned = redisTemplate.execute(INTERN_SCRIPT, List.of(IDS_KEY, SEQUENCE_KEY),
+                                                     batch.stream().map(UUID::toString).toArray());
+            if (assigned == null || assigned.size() != batch.size()) {
+                throw new IllegalStateException("分配使用者整數 ID 失敗");
+            }
+            for (int j = 0; j < batch.size(); j++) {
+                int id = ((Number) assigned.get(j)).intValue();
+                table.put(batch.get(j), id);
+                ids[missingIndexes.get(from + j)] = id;
+            }
+        }
+        if (!missing.isEmpty()) {
+            log.debug("Interned {} user ids ({} cached on this node)", missing.size(), table.size());
+        }
+        return ids;
+    }
+
+    /**
+     * 只查本機快取
+     * @return 整數 ID，未快取時回傳 DenseIdTable.NOT_FOUND
+     */
+    public int lookup(UUID userId) {
+        return table.get(userId);
+    }
+}
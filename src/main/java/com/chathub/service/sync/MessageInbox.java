@@ -0,0 +1,144 @@
+package com.chathub.service.sync;
+
+import com.chathub.config.SyncProperties;
+import com.chathub.dto.WebSocketPayload.NewMessage;
+import com.chathub.entity.Message;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 重連同步收件匣（Redis Stream，只保留最近的訊息）
+ *
+ * Key：
+ * - inbox:user:{userId}：一對一訊息，寫入接收者與發送者的收件匣（發送者的其他裝置重連時也要補送）
+ * - inbox:conversation:{conversationId}：群組訊息，每則只寫入一次（不依成員複製）
+ * 寫入時以 MINID 修剪超過保留時間的訊息，並設定過期時間，閒置的收件匣會自動刪除。
+ * 重連時游標在保留時間內的對話直接從這裡補送，不查詢 MongoDB。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageInbox {
+
+    private static final String USER_PREFIX = "inbox:user:";
+    private static final String CONVERSATION_PREFIX = "inbox:conversation:";
+
+    /**
+     * 寫入一則訊息並修剪過期訊息（一次往返）
+     * ARGV：最小保留的 Stream ID（毫秒）、過期時間（毫秒）、對話、訊息 ID、發送者、發送者名稱、內容、時間（毫秒）
+     * 反應式路徑以 ReactiveStringRedisTemplate 執行同一支腳本
+     */
+    public static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('XADD', KEYS[1], 'MINID', '~', ARGV[1], '*', " +
+        "'c', ARGV[3], 'm', ARGV[4], 's', ARGV[5], 'u', ARGV[6], 'b', ARGV[7], 't', ARGV[8]) " +
+        "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+        "return 1",
+        Long.class
+    );
+
+    private final StringRedisTemplate redisTemplate;
+    private final SyncProperties properties;
+
+    public static String userKey(UUID userId) {
+        return USER_PREFIX + userId;
+    }
+
+    public static String conversationKey(String conversationId) {
+        return CONVERSATION_PREFIX + conversationId;
+    }
+
+    /**
+     * 訊息要寫入的收件匣：一對一訊息為接收者與發送者（自己傳給自己時只有一個），群組訊息為對話的收件匣
+     * 每個 key 各執行一次 APPEND_SCRIPT（不同使用者的 key 可能位於不同 slot）
+     */
+    public static List<String> keys(Message message) {
+        if (message.getRecipientId() == null) {
+            return List.of(conversationKey(message.getConversationId()));
+        }
+        return message.getRecipientId().equals(message.getSenderId())
+            ? List.of(userKey(message.getRecipientId()))
+            : List.of(userKey(message.getRecipientId()), userKey(message.getSenderId()));
+    }
+
+    /**
+     * APPEND_SCRIPT 的參數
+     */
+    public static List<String> appendArgs(Message message, SyncProperties properties) {
+        long retention = properties.getInboxRetention().toMillis();
+        return List.of(
+            String.valueOf(System.currentTimeMillis() - retention),
+            String.valueOf(retention),
+            message.getConversationId(),
+            message.getMessageId(),
+            message.getSenderId().toString(),
+            message.getSenderUsername() != null ? message.getSenderUsername() : "",
+            message.getContent(),
+            String.valueOf(message.getTimestamp().toEpochMilli())
+        );
+    }
+
+    /**
+     * 寫入收件匣；失敗不影響發送（重連時該對話改從 MongoDB 補送的機會較高，但仍以游標時間判斷）
+     */
+    public void append(Message message) {
+        Object[] args = appendArgs(message, properties).toArray();
+        for (String key : keys(message)) {
+            try {
+                redisTemplate.execute(APPEND_SCRIPT, List.of(key), args);
+            } catch (Exception e) {
+                log.warn("寫入同步收件匣失敗：{} → {}", message.getMessageId(), key, e);
+            }
+        }
+    }
+
+    /**
+     * 收件匣可以涵蓋的最早游標時間：游標不早於此時間時，之後的訊息一定還在收件匣中
+     */
+    public Instant coveredSince() {
+        return Instant.now().minus(properties.getInboxRetention()).plus(properties.getClockSkew());
+    }
+
+    /**
+     * 讀取收件匣中 from（含）之後寫入的訊息，依寫入順序排列
+     * @param from  null 表示從頭讀取
+     * @param limit 最多讀取的筆數
+     */
+    public List<NewMessage> read(String key, Instant from, int limit) {
+        String start = from != null
+            ? Math.max(0, from.minus(properties.getClockSkew()).toEpochMilli()) + "-0"
+            : "-";
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(
+            key, Range.rightUnbounded(Range.Bound.inclusive(start)), Limit.limit().count(limit));
+        if (records == null) {
+            return List.of();
+        }
+
+        List<NewMessage> messages = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> fields = record.getValue();
+            String username = (String) fields.get("u");
+            messages.add(new NewMessage(
+                (String) fields.get("m"),
+                (String) fields.get("c"),
+                UUID.fromString((String) fields.get("s")),
+                username == null || username.isEmpty() ? null : username,
+                (String) fields.get("b"),
+                Instant.ofEpochMilli(Long.parseLong((String) fields.get("t")))
+            ));
+        }
+        return messages;
+    }
+}
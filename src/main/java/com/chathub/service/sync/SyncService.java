@@ -0,0 +1,263 @@
+package com.chathub.service.sync;
+
+import com.chathub.config.SyncProperties;
+import com.chathub.dto.CursorPage;
+import com.chathub.dto.WebSocketPayload.NewMessage;
+import com.chathub.dto.WebSocketPayload.SyncBatch;
+import com.chathub.dto.WebSocketPayload.SyncCursor;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import com.chathub.service.MessageService;
+import com.chathub.service.PageCursor;
+import com.chathub.service.cache.GroupMembershipCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 重連同步（SYNC → SYNC_BATCH）
+ *
+ * 客戶端重連後送出每個對話最後看到的訊息（游標），伺服器只補送游標之後的訊息：
+ * - 游標在收件匣保留時間內：從 Redis 收件匣補送（一對一對話整個使用者只讀一次，群組每個對話讀一次）
+ * - 游標較舊、收件匣讀取失敗或不完整：從 MongoDB 以 after 游標分頁補送
+ * - 收件匣中有、但客戶端沒有列出的一對一對話（離線期間的新對話）：整段補送
+ *
+ * 每個對話依 batchSize 分成多個 SYNC_BATCH，最後送出 complete=true 的結束 frame。
+ * 補送與即時推送可能重疊，客戶端依 messageId 去重。
+ * 對話超過 maxMessagesPerConversation 時該對話標記 hasMore（客戶端改以 REST after 游標分頁）；
+ * frame 數超過 maxFramesPerSync 時結束 frame 標記 hasMore，客戶端以更新後的游標再送一次 SYNC。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SyncService {
+
+    /**
+     * 與 MongoDB 分頁相同的排序：時間，同一時間依 messageId
+     */
+    private static final Comparator<NewMessage> ORDER = Comparator.comparing(NewMessage::timestamp)
+                                                                  .thenComparing(NewMessage::messageId);
+
+    private final MessageInbox inbox;
+    private final MessageService messageService;
+    private final GroupMembershipCache membershipCache;
+    private final SyncProperties properties;
+
+    /**
+     * 依游標補送訊息
+     * @param sender 送出一個 SYNC_BATCH（依序呼叫，最後一次為結束 frame）
+     * @return 補送的訊息數
+     */
+    public int sync(UUID userId, List<SyncCursor> cursors, Consumer<SyncBatch> sender) {
+        Instant coveredSince = inbox.coveredSince();
+        List<NewMessage> userInbox = readUserInbox(userId);
+        // 保留一個 frame 給結束 frame
+        Emitter emitter = new Emitter(sender, properties.getMaxFramesPerSync() - 1, properties.getBatchSize());
+
+        Set<String> listed = new HashSet<>();
+        for (SyncCursor cursor : cursors) {
+            String conversationId = cursor.conversationId();
+            if (!listed.add(conversationId)) {
+                continue;
+            }
+            if (!canAccess(userId, conversationId)) {
+                log.debug("User {} cannot sync conversation {}", userId, conversationId);
+                continue;
+            }
+            if (!emitter.hasRoom()) {
+                emitter.truncated = true;
+                break;
+            }
+            emitter.emit(conversationId, delta(cursor, userInbox, coveredSince));
+        }
+
+        // 客戶端還不知道的一對一對話
+        if (userInbox != null && !emitter.truncated) {
+            Map<String, List<NewMessage>> unlisted = new LinkedHashMap<>();
+            for (NewMessage message : userInbox) {
+                if (!listed.contains(message.conversationId())) {
+                    unlisted.computeIfAbsent(message.conversationId(), id -> new ArrayList<>()).add(message);
+                }
+            }
+            for (Map.Entry<String, List<NewMessage>> entry : unlisted.entrySet()) {
+                if (!emitter.hasRoom()) {
+                    emitter.truncated = true;
+                    break;
+                }
+                emitter.emit(entry.getKey(), limit(entry.getValue()));
+            }
+        }
+
+        sender.accept(new SyncBatch(null, List.of(), emitter.truncated, true));
+        log.debug("Synced {} messages in {} frames for user {}", emitter.messages, emitter.frames + 1, userId);
+        return emitter.messages;
+    }
+
+    /**
+     * 一對一對話必須是參與者之一；群組必須是成員
+     */
+    private boolean canAccess(UUID userId, String conversationId) {
+        if (Conversation.isGroup(conversationId)) {
+            return membershipCache.isMember(conversationId, userId);
+        }
+        String user = userId.toString();
+        return conversationId.startsWith(user + "_") || conversationId.endsWith("_" + user);
+    }
+
+    private Delta delta(SyncCursor syncCursor, List<NewMessage> userInbox, Instant coveredSince) {
+        // MongoDB 與收件匣的時間都是毫秒精度
+        PageCursor cursor = new PageCursor(syncCursor.timestamp().truncatedTo(ChronoUnit.MILLIS),
+                                           syncCursor.messageId());
+        String conversationId = syncCursor.conversationId();
+
+        if (!cursor.timestamp().isBefore(coveredSince)) {
+            List<NewMessage> entries = Conversation.isGroup(conversationId)
+                ? readInbox(MessageInbox.conversationKey(conversationId), cursor.timestamp())
+                : userInbox;
+            if (entries != null) {
+                List<NewMessage> messages = new ArrayList<>();
+                for (NewMessage message : entries) {
+                    if (message.conversationId().equals(conversationId) && isAfter(message, cursor)) {
+                        messages.add(message);
+                    }
+                }
+                return limit(messages);
+            }
+        }
+        return fromMongo(conversationId, cursor);
+    }
+
+    private List<NewMessage> readUserInbox(UUID userId) {
+        return readInbox(MessageInbox.userKey(userId), null);
+    }
+
+    /**
+     * @return null 表示收件匣無法使用（讀取失敗或超過筆數上限），改從 MongoDB 補送
+     */
+    private List<NewMessage> readInbox(String key, Instant from) {
+        try {
+            List<NewMessage> entries = inbox.read(key, from, properties.getMaxInboxEntries());
+            if (entries.size() >= properties.getMaxInboxEntries()) {
+                log.warn("Sync inbox {} exceeds {} entries, falling back to MongoDB", key,
+                         properties.getMaxInboxEntries());
+                return null;
+            }
+            return entries;
+        } catch (Exception e) {
+            log.warn("Failed to read sync inbox {}, falling back to MongoDB", key, e);
+            return null;
+        }
+    }
+
+    private static boolean isAfter(NewMessage message, PageCursor cursor) {
+        int compare = message.timestamp().compareTo(cursor.timestamp());
+        return compare > 0 || compare == 0 && message.messageId().compareTo(cursor.id()) > 0;
+    }
+
+    private Delta limit(List<NewMessage> messages) {
+        messages.sort(ORDER);
+        int max = properties.getMaxMessagesPerConversation();
+        return messages.size() > max
+            ? new Delta(messages.subList(0, max), true)
+            : new Delta(messages, false);
+    }
+
+    /**
+     * 以 after 游標分頁，每頁一次查詢（結果由新到舊，轉為由舊到新）
+     */
+    private Delta fromMongo(String conversationId, PageCursor cursor) {
+        int max = properties.getMaxMessagesPerConversation();
+        List<NewMessage> messages = new ArrayList<>();
+        String after = cursor.encode();
+        while (true) {
+            CursorPage<Message> page = messageService.getConversationMessages(
+                conversationId, null, after, Math.min(properties.getBatchSize(), max - messages.size()), false);
+            List<Message> content = new ArrayList<>(page.getContent());
+            Collections.reverse(content);
+            for (Message message : content) {
+                messages.add(toNewMessage(message));
+            }
+            if (!page.isHasNext()) {
+                return new Delta(messages, false);
+            }
+            if (messages.size() >= max) {
+                return new Delta(messages, true);
+            }
+            after = page.getNextCursor();
+        }
+    }
+
+    private static NewMessage toNewMessage(Message message) {
+        return new NewMessage(
+            message.getMessageId(),
+            message.getConversationId(),
+            message.getSenderId(),
+            message.getSenderUsername(),
+            message.getContent(),
+            message.getTimestamp()
+        );
+    }
+
+    /**
+     * 一個對話要補送的訊息（由舊到新）
+     * @param hasMore 超過每個對話的上限，還有更多訊息
+     */
+    private record Delta(List<NewMessage> messages, boolean hasMore) {
+    }
+
+    /**
+     * 依 batchSize 切成 frame 送出，並計算 frame 預算
+     */
+    private static final class Emitter {
+
+        private final Consumer<SyncBatch> sender;
+        private final int maxFrames;
+        private final int batchSize;
+        private int frames;
+        private int messages;
+        private boolean truncated;
+
+        private Emitter(Consumer<SyncBatch> sender, int maxFrames, int batchSize) {
+            this.sender = sender;
+            this.maxFrames = maxFrames;
+            this.batchSize = batchSize;
+        }
+
+        boolean hasRoom() {
+            return frames < maxFrames;
+        }
+
+        /**
+         * 沒有新訊息的對話不送 frame；frame 預算不足時截斷並標記 hasMore
+         */
+        void emit(String conversationId, Delta delta) {
+            List<NewMessage> pending = delta.messages();
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, pending.size());
+                boolean last = to == pending.size();
+                boolean outOfFrames = frames + 1 >= maxFrames && !last;
+                sender.accept(new SyncBatch(conversationId, pending.subList(from, to),
+                                            last ? delta.hasMore() : outOfFrames, false));
+                frames++;
+                messages += to - from;
+                if (outOfFrames) {
+                    truncated = true;
+                    return;
+                }
+            }
+        }
+    }
+}
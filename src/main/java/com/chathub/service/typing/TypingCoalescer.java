@@ -0,0 +1,178 @@
+package com.chathub.service.typing;
+
+import com.chathub.config.TypingProperties;
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.service.MessagePublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 「正在輸入」通知合併器
+ *
+ * 每個（發送者, 接收者）只保留一份輸入狀態，只有狀態真正改變時才發布：
+ * - 開始輸入：未輸入 → 輸入中 立即送出；已在輸入中則略過（每半個 ttl 重送一次續命）
+ * - 停止輸入：延後 coalesceWindow 才送出，期間又開始輸入則兩者都略過
+ * - 過期：超過 ttl 沒有再收到開始輸入（例如斷線），由伺服器自動送出停止輸入
+ *
+ * 發布走 ephemeral 頻道（見 MessagePublisher.publishEphemeral），不會佔用訊息頻道。
+ *
+ * 指標：chathub.typing.events{outcome=forwarded|suppressed|expired}
+ */
+@Slf4j
+@Service
+public class TypingCoalescer {
+
+    private final MessagePublisher publisher;
+    private final ObjectMapper objectMapper;
+    private final LongSupplier clock;
+    private final long windowMillis;
+    private final long ttlMillis;
+    private final Map<TypingKey, TypingState> states = new ConcurrentHashMap<>();
+
+    private final Counter forwardedCounter;
+    private final Counter suppressedCounter;
+    private final Counter expiredCounter;
+
+    @Autowired
+    public TypingCoalescer(MessagePublisher publisher, ObjectMapper objectMapper,
+                           TypingProperties properties, MeterRegistry meterRegistry) {
+        this(publisher, objectMapper, properties, meterRegistry, System::currentTimeMillis);
+    }
+
+    TypingCoalescer(MessagePublisher publisher, ObjectMapper objectMapper,
+                    TypingProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.publisher = publisher;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.windowMillis = properties.getCoalesceWindow().toMillis();
+        this.ttlMillis = properties.getTtl().toMillis();
+
+        this.forwardedCounter = typingCounter(meterRegistry, "forwarded");
+        this.suppressedCounter = typingCounter(meterRegistry, "suppressed");
+        this.expiredCounter = typingCounter(meterRegistry, "expired");
+    }
+
+    /**
+     * 收到客戶端的開始 / 停止輸入
+     */
+    public void onTyping(UUID senderId, UUID recipientId, boolean isTyping) {
+        long now = clock.getAsLong();
+        boolean[] forward = new boolean[1];
+        int[] suppressed = new int[1];
+
+        states.compute(new TypingKey(senderId, recipientId), (key, state) -> {
+            if (!isTyping) {
+                if (state == null || state.stopDueAt != 0) {
+                    // 對方沒看到輸入中，或停止已經在等待送出
+                    suppressed[0]++;
+                } else {
+                    state.stopDueAt = now + windowMillis;
+                }
+                return state;
+            }
+            if (state == null) {
+                forward[0] = true;
+                return new TypingState(now, now + ttlMillis);
+            }
+            if (state.stopDueAt != 0) {
+                // 視窗內又開始輸入：等待中的停止不必送出
+                state.stopDueAt = 0;
+                suppressed[0]++;
+            }
+            state.expiresAt = now + ttlMillis;
+            if (now - state.forwardedAt >= ttlMillis / 2) {
+                state.forwardedAt = now;
+                forward[0] = true;
+            } else {
+                suppressed[0]++;
+            }
+            return state;
+        });
+
+        if (suppressed[0] > 0) {
+            suppressedCounter.increment(suppressed[0]);
+        }
+        if (forward[0]) {
+            forwardedCounter.increment();
+            forward(senderId, recipientId, true);
+        }
+    }
+
+    /**
+     * 送出到期的停止輸入（合併視窗結束或伺服器端過期）
+     */
+    @Scheduled(fixedDelayString = "#{@typingProperties.coalesceWindow.toMillis()}")
+    public void flush() {
+        long now = clock.getAsLong();
+        for (TypingKey key : states.keySet()) {
+            Counter[] outcome = new Counter[1];
+            states.computeIfPresent(key, (k, state) -> {
+                if (state.stopDueAt != 0 && now >= state.stopDueAt) {
+                    outcome[0] = forwardedCounter;
+                } else if (now >= state.expiresAt) {
+                    outcome[0] = expiredCounter;
+                }
+                return outcome[0] == null ? state : null;
+            });
+            if (outcome[0] != null) {
+                outcome[0].increment();
+                forward(key.senderId(), key.recipientId(), false);
+            }
+        }
+    }
+
+    /**
+     * 目前有輸入狀態的（發送者, 接收者）數量
+     */
+    public int size() {
+        return states.size();
+    }
+
+    private void forward(UUID senderId, UUID recipientId, boolean isTyping) {
+        try {
+            WebSocketMessage message = WebSocketMessage.of(
+                MessageType.USER_TYPING, new WebSocketPayload.UserTyping(senderId, isTyping, null));
+            publisher.publishEphemeral(recipientId.toString(), EncodedFrame.encode(objectMapper, message));
+        } catch (Exception e) {
+            log.error("Failed to forward typing {} from {} to {}", isTyping ? "start" : "stop",
+                      senderId, recipientId, e);
+        }
+    }
+
+    private static Counter typingCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("chathub.typing.events")
+                      .tag("outcome", outcome)
+                      .description("Typing indicator events by coalescing outcome")
+                      .register(meterRegistry);
+    }
+
+    private record TypingKey(UUID senderId, UUID recipientId) {
+    }
+
+    /**
+     * 輸入狀態（只在 ConcurrentHashMap.compute 內讀寫）
+     */
+    private static final class TypingState {
+        private long forwardedAt;
+        private long expiresAt;
+        private long stopDueAt;
+
+        private TypingState(long forwardedAt, long expiresAt) {
+            this.forwardedAt = forwardedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.chathub.benchmark;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.entity.Message;
+import com.chathub.handler.codec.EncodedFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同時發送：平台執行緒池 vs 虛擬執行緒
+ *
+ * 每次操作模擬 senders 個使用者同時送出一則訊息：序列化 NEW_MESSAGE，
+ * 再阻塞 blockingMillis 模擬 MongoDB / Redis 往返。平台執行緒池大小同 Tomcat 預設（200）。
+ * JMH 的分數是一整批送完的時間；每輪結束時另外印出單則訊息延遲的 p50 / p99。
+ *
+ * 執行（virtual 需要 Java 21）：
+ * mvn -B -Pjava21,benchmark test-compile exec:exec -Dbenchmark=ConcurrentSendBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class ConcurrentSendBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"10000"})
+    public int senders;
+
+    @Param({"5"})
+    public int blockingMillis;
+
+    private ObjectMapper objectMapper;
+    private Executor executor;
+    private WebSocketMessage[] messages;
+    private final List<long[]> latencies = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        executor = "virtual".equals(threads)
+            ? new VirtualThreadTaskExecutor("sender-")
+            : Executors.newFixedThreadPool(PLATFORM_THREADS);
+
+        messages = new WebSocketMessage[senders];
+        for (int i = 0; i < senders; i++) {
+            UUID senderId = UUID.randomUUID();
+            UUID recipientId = UUID.randomUUID();
+            messages[i] = WebSocketMessage.newMessage(
+                UUID.randomUUID().toString(),
+                Message.generateConversationId(senderId, recipientId),
+                senderId,
+                "user-" + i,
+                "明天下午三點在會議室 B 討論新版本的上線計畫，記得帶筆電。",
+                Instant.now());
+        }
+    }
+
+    @Benchmark
+    public void sendBurst() throws InterruptedException {
+        long[] burstLatencies = new long[senders];
+        CountDownLatch done = new CountDownLatch(senders);
+        for (int i = 0; i < senders; i++) {
+            int index = i;
+            long submittedAt = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    EncodedFrame.encode(objectMapper, messages[index]);
+                    Thread.sleep(blockingMillis);
+                } catch (Exception e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    burstLatencies[index] = System.nanoTime() - submittedAt;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        latencies.add(burstLatencies);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportLatency() {
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        latencies.clear();
+        if (all.length > 0) {
+            System.out.printf("%n[%s] per-send latency p50=%.1f ms p99=%.1f ms (%d sends)%n", threads,
+                              all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6, all.length);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConcurrentSendBenchmark.class.getSimpleName()).build()).run();
+    }
+}
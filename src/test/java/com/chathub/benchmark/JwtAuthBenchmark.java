@@ -0,0 +1,110 @@
+package com.chathub.benchmark;
+
+import com.chathub.config.JwtProperties;
+import com.chathub.security.JwtTokenProvider;
+import com.chathub.security.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每個 REST 請求 / WebSocket 握手的 JWT 驗證成本
+ *
+ * - rebuildTwice：舊做法，validateToken 與 getClaimsFromToken 各自重建金鑰與 parser、各驗一次 HMAC
+ * - parseOnce   ：共用 parser，只解析一次（快取大小設為 0，每次都重新驗證）
+ * - cached      ：verify()，最近驗證過的 Token 由快取回傳
+ * tokens 是輪流使用的不同 Token 數（模擬同時在線、重複呼叫 API 的使用者）。
+ *
+ * 執行：mvn -B -Pbenchmark test-compile exec:exec -Dbenchmark=JwtAuthBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String SECRET = "BenchmarkSecretKeyForJWTTokenGenerationMustBeLongEnough1234567890";
+
+    @Param({"10000"})
+    public int tokens;
+
+    private JwtProperties properties;
+    private JwtTokenProvider uncachedProvider;
+    private JwtTokenProvider cachedProvider;
+    private String[] accessTokens;
+
+    @Setup
+    public void setUp() {
+        properties = new JwtProperties();
+        properties.setSecret(SECRET);
+        properties.setAccessTokenExpiration(3_600_000L);
+
+        properties.setVerifiedCacheSize(0);
+        uncachedProvider = new JwtTokenProvider(properties, new SimpleMeterRegistry());
+        properties.setVerifiedCacheSize(tokens * 2L);
+        cachedProvider = new JwtTokenProvider(properties, new SimpleMeterRegistry());
+
+        accessTokens = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            accessTokens[i] = cachedProvider.generateAccessToken(UUID.randomUUID(), "user-" + i);
+            cachedProvider.verify(accessTokens[i]);
+        }
+    }
+
+    @Benchmark
+    public String rebuildTwice() {
+        String token = nextToken();
+        Jwts.parserBuilder()
+            .setSigningKey(Keys.hmacShaKeyFor(properties.getSecret().getBytes(StandardCharsets.UTF_8)))
+            .build()
+            .parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder()
+                            .setSigningKey(Keys.hmacShaKeyFor(properties.getSecret().getBytes(StandardCharsets.UTF_8)))
+                            .build()
+                            .parseClaimsJws(token)
+                            .getBody();
+        return claims.getSubject();
+    }
+
+    @Benchmark
+    public VerifiedToken parseOnce() {
+        return uncachedProvider.verify(nextToken());
+    }
+
+    @Benchmark
+    public VerifiedToken cached() {
+        return cachedProvider.verify(nextToken());
+    }
+
+    private String nextToken() {
+        return accessTokens[ThreadLocalRandom.current().nextInt(tokens)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtAuthBenchmark.class.getSimpleName()).build()).run();
+    }
+}
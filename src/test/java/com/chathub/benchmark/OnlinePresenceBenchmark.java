@@ -0,0 +1,155 @@
+package com.chathub.benchmark;
+
+import com.chathub.service.presence.DenseIdTable;
+import com.chathub.service.presence.OnlineBitmap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 「這些好友誰在線」的記憶體與延遲：registered 個註冊使用者、online 個在線、每次查詢 friends 個好友
+ *
+ * - keyLookup ：舊做法的 CPU 下限，每個好友組一個 user:online:{uuid} 字串查 HashSet（實際還要加上每個好友一次 Redis 往返）
+ * - bitmap    ：OnlineUsersIndex 的做法，UUID 經 DenseIdTable 轉成整數後檢查堆外 bitmap 的位元
+ * - preinterned：已經是整數 ID 時的位元檢查成本
+ * 設定時印出各結構的記憶體用量（HashSet 以 GC 後的堆積差估算）。
+ *
+ * 執行：mvn -B -Pbenchmark test-compile exec:exec -Dbenchmark=OnlinePresenceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class OnlinePresenceBenchmark {
+
+    private static final int FRIEND_LISTS = 64;
+
+    @Param({"1000000"})
+    public int registered;
+
+    @Param({"200000"})
+    public int online;
+
+    @Param({"5000"})
+    public int friends;
+
+    private DenseIdTable idTable;
+    private OnlineBitmap bitmap;
+    private Set<String> onlineKeys;
+    private UUID[][] friendLists;
+    private int[][] friendIdLists;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        UUID[] users = new UUID[registered];
+        for (int i = 0; i < registered; i++) {
+            users[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        long before = usedHeap();
+        idTable = new DenseIdTable();
+        for (int i = 0; i < registered; i++) {
+            idTable.put(users[i], i);
+        }
+        long idTableHeap = usedHeap() - before;
+
+        bitmap = new OnlineBitmap(registered);
+        before = usedHeap();
+        onlineKeys = new HashSet<>();
+        while (onlineKeys.size() < online) {
+            int id = random.nextInt(registered);
+            if (onlineKeys.add("user:online:" + users[id])) {
+                bitmap.set(id, true);
+            }
+        }
+        long keySetHeap = usedHeap() - before;
+
+        friendLists = new UUID[FRIEND_LISTS][friends];
+        friendIdLists = new int[FRIEND_LISTS][friends];
+        for (int list = 0; list < FRIEND_LISTS; list++) {
+            for (int f = 0; f < friends; f++) {
+                int id = random.nextInt(registered);
+                friendLists[list][f] = users[id];
+                friendIdLists[list][f] = id;
+            }
+        }
+
+        System.out.printf("%nDenseIdTable: %d users, %.1f MB arrays (%.1f MB heap measured)%n",
+                          idTable.size(), idTable.footprintBytes() / 1e6, idTableHeap / 1e6);
+        System.out.printf("OnlineBitmap: %d online, %.1f KB off-heap%n", bitmap.cardinality(),
+                          bitmap.sizeInBytes() / 1e3);
+        System.out.printf("HashSet<String> of online keys: %.1f MB heap measured%n", keySetHeap / 1e6);
+        System.out.printf("Redis round trips per query: per-friend EXISTS=%d, pipelined HGETALL=%d, bitmap=0%n",
+                          friends, (friends + 999) / 1000);
+    }
+
+    @Benchmark
+    public int keyLookup() {
+        int count = 0;
+        for (UUID friend : nextFriends()) {
+            if (onlineKeys.contains("user:online:" + friend)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int bitmap() {
+        int count = 0;
+        for (UUID friend : nextFriends()) {
+            if (bitmap.get(idTable.get(friend))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int preinterned() {
+        int count = 0;
+        for (int id : friendIdLists[ThreadLocalRandom.current().nextInt(FRIEND_LISTS)]) {
+            if (bitmap.get(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private UUID[] nextFriends() {
+        return friendLists[ThreadLocalRandom.current().nextInt(FRIEND_LISTS)];
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OnlinePresenceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
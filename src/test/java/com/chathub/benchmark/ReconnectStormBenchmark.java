@@ -0,0 +1,176 @@
+package com.chathub.benchmark;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload.NewMessage;
+import com.chathub.dto.WebSocketPayload.SyncBatch;
+import com.chathub.entity.Message;
+import com.chathub.handler.codec.EncodedFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 部署後大量重連：收件匣同步 vs REST 逐對話重新拉取
+ *
+ * 每次操作模擬 reconnects 個使用者同時重連，每人有 conversations 個對話、每個對話離線期間有 delta 則新訊息：
+ * - inbox：SYNC 一次讀取個人收件匣（一次 Redis 往返 redisMillis），依對話編碼 SYNC_BATCH
+ * - rest ：每個對話一次 MongoDB 分頁查詢（mongoMillis），受連線池大小 mongoPoolSize 限制
+ * 兩者的序列化成本相同，差別在 I/O 次數與連線池排隊。處理執行緒池大小同 Tomcat 預設（200）。
+ * JMH 的分數是整批重連完成的時間；每輪結束時另外印出單一使用者同步延遲的 p50 / p99。
+ *
+ * 執行：
+ * mvn -B -Pbenchmark test-compile exec:exec -Dbenchmark=ReconnectStormBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReconnectStormBenchmark {
+
+    private static final int REQUEST_THREADS = 200;
+
+    @Param({"inbox", "rest"})
+    public String mode;
+
+    @Param({"5000"})
+    public int reconnects;
+
+    @Param({"20"})
+    public int conversations;
+
+    @Param({"5"})
+    public int delta;
+
+    @Param({"1"})
+    public int redisMillis;
+
+    @Param({"5"})
+    public int mongoMillis;
+
+    @Param({"100"})
+    public int mongoPoolSize;
+
+    private ObjectMapper objectMapper;
+    private ExecutorService executor;
+    private Semaphore mongoPool;
+    private List<List<NewMessage>> pendingByConversation;
+    private final List<long[]> latencies = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        executor = Executors.newFixedThreadPool(REQUEST_THREADS);
+        mongoPool = new Semaphore(mongoPoolSize);
+
+        // 每個使用者的資料形狀相同，共用同一組訊息即可
+        UUID userId = UUID.randomUUID();
+        pendingByConversation = new ArrayList<>(conversations);
+        for (int c = 0; c < conversations; c++) {
+            UUID peerId = UUID.randomUUID();
+            String conversationId = Message.generateConversationId(userId, peerId);
+            List<NewMessage> pending = new ArrayList<>(delta);
+            for (int m = 0; m < delta; m++) {
+                pending.add(new NewMessage(UUID.randomUUID().toString(), conversationId, peerId, "user-" + c,
+                                           "明天下午三點在會議室 B 討論新版本的上線計畫，記得帶筆電。", Instant.now()));
+            }
+            pendingByConversation.add(pending);
+        }
+    }
+
+    @Benchmark
+    public void reconnectStorm() throws InterruptedException {
+        long[] stormLatencies = new long[reconnects];
+        CountDownLatch done = new CountDownLatch(reconnects);
+        boolean inbox = "inbox".equals(mode);
+        for (int i = 0; i < reconnects; i++) {
+            int index = i;
+            long submittedAt = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    if (inbox) {
+                        syncFromInbox();
+                    } else {
+                        refetchOverRest();
+                    }
+                } catch (Exception e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    stormLatencies[index] = System.nanoTime() - submittedAt;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        latencies.add(stormLatencies);
+    }
+
+    private void syncFromInbox() throws Exception {
+        Thread.sleep(redisMillis);
+        for (List<NewMessage> pending : pendingByConversation) {
+            EncodedFrame.encode(objectMapper, WebSocketMessage.of(
+                MessageType.SYNC_BATCH, new SyncBatch(pending.get(0).conversationId(), pending, false, false)));
+        }
+        EncodedFrame.encode(objectMapper, WebSocketMessage.of(
+            MessageType.SYNC_BATCH, new SyncBatch(null, List.of(), false, true)));
+    }
+
+    private void refetchOverRest() throws Exception {
+        for (List<NewMessage> pending : pendingByConversation) {
+            mongoPool.acquire();
+            try {
+                Thread.sleep(mongoMillis);
+            } finally {
+                mongoPool.release();
+            }
+            objectMapper.writeValueAsBytes(pending);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportLatency() {
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        latencies.clear();
+        if (all.length > 0) {
+            System.out.printf("%n[%s] per-user sync latency p50=%.1f ms p99=%.1f ms (%d reconnects)%n", mode,
+                              all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6, all.length);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReconnectStormBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.chathub.benchmark;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.entity.Message;
+import com.chathub.handler.codec.BinaryWireCodec;
+import com.chathub.handler.codec.JsonWireCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NEW_MESSAGE 路徑：JSON 與 chathub.v1+binary 編解碼比較
+ *
+ * 執行：mvn -B -Pbenchmark test-compile exec:exec -Dbenchmark=WireCodecBenchmark
+ * 搭配 -prof gc（-Djmh.args="-prof gc"）可比較每次操作的配置量（gc.alloc.rate.norm）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireCodecBenchmark {
+
+    private JsonWireCodec jsonCodec;
+    private BinaryWireCodec binaryCodec;
+
+    private WebSocketMessage newMessage;
+    private String jsonFrame;
+    private byte[] binaryFrame;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        jsonCodec = new JsonWireCodec(objectMapper.getFactory());
+        binaryCodec = new BinaryWireCodec(jsonCodec);
+
+        UUID senderId = UUID.randomUUID();
+        UUID recipientId = UUID.randomUUID();
+        newMessage = WebSocketMessage.newMessage(
+            UUID.randomUUID().toString(),
+            Message.generateConversationId(senderId, recipientId),
+            senderId,
+            "alice",
+            "明天下午三點在會議室 B 討論新版本的上線計畫，記得帶筆電。",
+            Instant.now());
+
+        jsonFrame = jsonCodec.encode(newMessage).getPayload();
+        binaryFrame = binaryCodec.encodeToBytes(newMessage);
+    }
+
+    @Benchmark
+    public String encodeJson() throws Exception {
+        return jsonCodec.encode(newMessage).getPayload();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binaryCodec.encodeToBytes(newMessage);
+    }
+
+    @Benchmark
+    public WebSocketMessage decodeJson() throws Exception {
+        return jsonCodec.decode(jsonFrame);
+    }
+
+    @Benchmark
+    public WebSocketMessage decodeBinary() {
+        return binaryCodec.decode(ByteBuffer.wrap(binaryFrame));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WireCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,61 @@
+package com.chathub.config;
+
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MongoIndexAdvisor 查詢計畫解析測試
+ */
+@DisplayName("索引檢查測試")
+class MongoIndexAdvisorTest {
+
+    @Test
+    @DisplayName("使用索引且由索引排序的計畫應該通過")
+    void shouldAcceptIndexScan() {
+        // Given
+        Document explain = explain(stage("LIMIT", stage("FETCH", stage("IXSCAN", null))));
+
+        // Then
+        assertThat(MongoIndexAdvisor.findProblems(explain)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("全表掃描與記憶體排序應該被找出")
+    void shouldReportCollectionScanAndInMemorySort() {
+        // Given
+        Document explain = explain(stage("SORT", stage("COLLSCAN", null)));
+
+        // Then
+        assertThat(MongoIndexAdvisor.findProblems(explain))
+            .containsExactly("SORT（記憶體排序）", "COLLSCAN");
+    }
+
+    @Test
+    @DisplayName("應該檢查 OR 的每個分支與 SBE 格式的計畫")
+    void shouldWalkInputStagesAndSbePlans() {
+        // Given：7.0+ 的計畫包在 queryPlan 內
+        Document or = new Document("stage", "OR")
+            .append("inputStages", List.of(stage("IXSCAN", null), stage("COLLSCAN", null)));
+        Document explain = explain(new Document("queryPlan", stage("FETCH", or)));
+
+        // Then
+        assertThat(MongoIndexAdvisor.findProblems(explain)).containsExactly("COLLSCAN");
+    }
+
+    private static Document explain(Document winningPlan) {
+        return new Document("queryPlanner", new Document("winningPlan", winningPlan));
+    }
+
+    private static Document stage(String name, Document input) {
+        Document stage = new Document("stage", name);
+        if (input != null) {
+            stage.append("inputStage", input);
+        }
+        return stage;
+    }
+}
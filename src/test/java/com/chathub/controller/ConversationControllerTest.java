@@ -6,6 +6,7 @@ import com.chathub.repository.MessageRepository;
 import com.chathub.repository.UserRepository;
 import com.chathub.security.JwtTokenProvider;
 import com.chathub.service.MessageService;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,6 +15,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.UUID;
@@ -230,4 +232,56 @@ public class ConversationControllerTest {
 
         System.out.println("✅ 分頁查詢測試通過！");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCursorPagination() throws Exception {
+        // 建立更多訊息（共 25 則）
+        for (int i = 6; i <= 25; i++) {
+            messageService.saveMessage(
+                testUser1.getUserId(),
+                testUser2.getUserId(),
+                "訊息 " + i,
+                "client-msg-" + i
+            );
+        }
+
+        String conversationId = com.chathub.entity.Message.generateConversationId(
+            testUser1.getUserId(),
+            testUser2.getUserId()
+        );
+
+        // 第一頁：最新的 10 則，不回傳總數
+        MvcResult first = mockMvc.perform(get("/api/v1/conversations/{conversationId}/messages", conversationId)
+                                              .header("Authorization", "Bearer " + user1Token)
+                                              .param("size", "10"))
+                                 .andExpect(status().isOk())
+                                 .andExpect(jsonPath("$.data.content", hasSize(10)))
+                                 .andExpect(jsonPath("$.data.hasNext").value(true))
+                                 .andExpect(jsonPath("$.data.totalElements").doesNotExist())
+                                 .andReturn();
+        String cursor = JsonPath.read(first.getResponse().getContentAsString(), "$.data.nextCursor");
+
+        // 依游標往前翻，直到沒有下一頁
+        int total = 10;
+        while (cursor != null) {
+            MvcResult next = mockMvc.perform(get("/api/v1/conversations/{conversationId}/messages", conversationId)
+                                                 .header("Authorization", "Bearer " + user1Token)
+                                                 .param("size", "10")
+                                                 .param("before", cursor))
+                                    .andExpect(status().isOk())
+                                    .andReturn();
+            String body = next.getResponse().getContentAsString();
+            total += JsonPath.<Integer>read(body, "$.data.size");
+            cursor = JsonPath.read(body, "$.data.nextCursor");
+        }
+        assert total == 25 : "游標分頁應該剛好取得 25 則訊息";
+
+        // 無效游標應該回傳 400
+        mockMvc.perform(get("/api/v1/conversations/{conversationId}/messages", conversationId)
+                            .header("Authorization", "Bearer " + user1Token)
+                            .param("before", "not-a-cursor"))
+               .andExpect(status().isBadRequest());
+
+        System.out.println("✅ 游標分頁測試通過！");
+    }
+}
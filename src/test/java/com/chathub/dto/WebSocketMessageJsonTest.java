@@ -0,0 +1,81 @@
+package com.chathub.dto;
+
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * WebSocketMessageJson 單元測試
+ * 使用未註冊任何模組的 ObjectMapper（與 RedisConfig 提供的 Bean 相同），確認不依賴資料綁定
+ */
+@DisplayName("WebSocket 訊息 JSON 串流編解碼測試")
+class WebSocketMessageJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("解析時欄位順序不限，未知欄位應該被略過")
+    void shouldDecodeTypedPayloadRegardlessOfFieldOrder() throws Exception {
+        // Given：payload 在 type 之前，且帶有未知欄位
+        UUID recipientId = UUID.randomUUID();
+        String json = "{\"payload\":{\"content\":\"hi\",\"extra\":{\"nested\":[1,2]},"
+            + "\"recipientId\":\"" + recipientId + "\",\"clientMessageId\":\"c-1\"},"
+            + "\"type\":\"SEND_MESSAGE\",\"timestamp\":1700000000000}";
+
+        // When
+        WebSocketMessage message = objectMapper.readValue(json, WebSocketMessage.class);
+
+        // Then
+        assertThat(message.getType()).isEqualTo(MessageType.SEND_MESSAGE);
+        assertThat(message.getPayload()).isEqualTo(new WebSocketPayload.SendMessage(recipientId, "hi", "c-1"));
+        assertThat(message.getTimestamp()).isEqualTo(Instant.ofEpochMilli(1_700_000_000_000L));
+    }
+
+    @Test
+    @DisplayName("序列化格式應該與先前 Map payload 的 JSON 相同")
+    void shouldKeepWireFormat() throws Exception {
+        // Given
+        UUID senderId = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        WebSocketMessage message = WebSocketMessage.of(
+            MessageType.NEW_MESSAGE,
+            new WebSocketPayload.NewMessage("m-1", "c-1", senderId, "alice", "hi",
+                                            Instant.parse("2025-01-02T03:04:05.123Z")));
+
+        // When
+        String json = objectMapper.writeValueAsString(message);
+
+        // Then
+        assertThat(json).isEqualTo("{\"type\":\"NEW_MESSAGE\",\"payload\":{\"messageId\":\"m-1\","
+            + "\"conversationId\":\"c-1\",\"senderId\":\"" + senderId + "\",\"senderUsername\":\"alice\","
+            + "\"content\":\"hi\",\"timestamp\":\"2025-01-02T03:04:05.123Z\"}}");
+        assertThat(objectMapper.readValue(json, WebSocketMessage.class)).isEqualTo(message);
+    }
+
+    @Test
+    @DisplayName("欄位不合法時應該在解碼階段拒絕")
+    void shouldValidateAtDecodeTime() {
+        // Given
+        String badUuid = "{\"type\":\"TYPING_START\",\"payload\":{\"recipientId\":\"not-a-uuid\"}}";
+        String blankContent = "{\"type\":\"SEND_MESSAGE\",\"payload\":{\"recipientId\":\""
+            + UUID.randomUUID() + "\",\"content\":\"  \"}}";
+        String missingPayload = "{\"type\":\"MESSAGE_READ\"}";
+        String unknownType = "{\"type\":\"HACK\",\"payload\":{}}";
+
+        // When / Then
+        assertThatThrownBy(() -> objectMapper.readValue(badUuid, WebSocketMessage.class))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("recipientId");
+        assertThatThrownBy(() -> objectMapper.readValue(blankContent, WebSocketMessage.class))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("content");
+        assertThatThrownBy(() -> objectMapper.readValue(missingPayload, WebSocketMessage.class))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("payload");
+        assertThatThrownBy(() -> objectMapper.readValue(unknownType, WebSocketMessage.class))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("HACK");
+    }
+}
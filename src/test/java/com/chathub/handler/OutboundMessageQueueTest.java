@@ -0,0 +1,170 @@
+package com.chathub.handler;
+
+import com.chathub.config.OutboundProperties;
+import com.chathub.config.OutboundProperties.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * OutboundMessageQueue 單元測試
+ * 送出執行緒池以手動執行的 Executor 取代，模擬「客戶端很慢、佇列來不及送」的情況
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WebSocket 送出佇列測試")
+class OutboundMessageQueueTest {
+
+    @Mock
+    private WebSocketSession webSocketSession;
+
+    private final List<Runnable> pendingTasks = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("NEW_MESSAGE 應該優先於 USER_TYPING 送出")
+    void shouldSendPriorityMessagesBeforeTyping() throws Exception {
+        // Given
+        OutboundMessageQueue queue = createQueue(8, OverflowPolicy.COALESCE);
+
+        // When
+        queue.sendMessage(typing(UUID.randomUUID(), true));
+        queue.sendMessage(newMessage("m1"));
+        runPendingTasks();
+
+        // Then
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(webSocketSession, times(2)).sendMessage(captor.capture());
+        assertThat(captor.getAllValues().get(0).getPayload()).contains("NEW_MESSAGE");
+        assertThat(captor.getAllValues().get(1).getPayload()).contains("USER_TYPING");
+    }
+
+    @Test
+    @DisplayName("COALESCE：同一發送者的輸入狀態只保留最新一筆")
+    void shouldCoalesceTypingFromSameSender() throws Exception {
+        // Given
+        OutboundMessageQueue queue = createQueue(8, OverflowPolicy.COALESCE);
+        UUID sender = UUID.randomUUID();
+
+        // When
+        queue.sendMessage(typing(sender, true));
+        queue.sendMessage(typing(sender, false));
+        queue.sendMessage(typing(sender, true));
+
+        // Then
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(droppedCount("USER_TYPING", "coalesced")).isEqualTo(2.0);
+
+        runPendingTasks();
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(webSocketSession).sendMessage(captor.capture());
+        assertThat(captor.getValue().getPayload()).contains("\"isTyping\":true");
+    }
+
+    @Test
+    @DisplayName("DROP_TYPING_FIRST：佇列滿時先丟棄輸入狀態，保留聊天訊息")
+    void shouldDropTypingBeforeChatMessages() throws Exception {
+        // Given
+        OutboundMessageQueue queue = createQueue(2, OverflowPolicy.DROP_TYPING_FIRST);
+
+        // When
+        queue.sendMessage(typing(UUID.randomUUID(), true));
+        queue.sendMessage(newMessage("m1"));
+        queue.sendMessage(newMessage("m2"));
+
+        // Then
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(droppedCount("USER_TYPING", "overflow")).isEqualTo(1.0);
+        verify(webSocketSession, never()).close(any());
+        assertThat(depth("priority")).isEqualTo(2.0);
+        assertThat(depth("ephemeral")).isZero();
+    }
+
+    @Test
+    @DisplayName("佇列滿且沒有可丟棄的輸入狀態時，應該斷線")
+    void shouldDisconnectWhenQueueFullOfChatMessages() throws Exception {
+        // Given
+        OutboundMessageQueue queue = createQueue(2, OverflowPolicy.DROP_TYPING_FIRST);
+
+        // When
+        queue.sendMessage(newMessage("m1"));
+        queue.sendMessage(newMessage("m2"));
+        queue.sendMessage(newMessage("m3"));
+
+        // Then
+        verify(webSocketSession).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(droppedCount("NEW_MESSAGE", "disconnect")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("送出失敗時，應該清空佇列並關閉連線")
+    void shouldDiscardQueueWhenSendFails() throws Exception {
+        // Given
+        OutboundMessageQueue queue = createQueue(8, OverflowPolicy.COALESCE);
+        doThrow(new RuntimeException("Broken pipe")).when(webSocketSession).sendMessage(any());
+
+        // When
+        queue.sendMessage(newMessage("m1"));
+        queue.sendMessage(newMessage("m2"));
+        runPendingTasks();
+
+        // Then
+        assertThat(queue.size()).isZero();
+        verify(webSocketSession).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(depth("priority")).isZero();
+    }
+
+    private OutboundMessageQueue createQueue(int capacity, OverflowPolicy policy) {
+        OutboundProperties properties = new OutboundProperties();
+        properties.setCapacity(capacity);
+        properties.setOverflowPolicy(policy);
+        OutboundDispatcher dispatcher = new OutboundDispatcher(properties, meterRegistry, pendingTasks::add);
+        return dispatcher.wrap(webSocketSession);
+    }
+
+    private void runPendingTasks() {
+        while (!pendingTasks.isEmpty()) {
+            pendingTasks.remove(0).run();
+        }
+    }
+
+    private double droppedCount(String type, String reason) {
+        return meterRegistry.get("chathub.websocket.outbound.dropped")
+                            .tag("type", type)
+                            .tag("reason", reason)
+                            .counter()
+                            .count();
+    }
+
+    private double depth(String lane) {
+        return meterRegistry.get("chathub.websocket.outbound.queue.depth").tag("lane", lane).gauge().value();
+    }
+
+    private static TextMessage newMessage(String messageId) {
+        return new TextMessage("{\"type\":\"NEW_MESSAGE\",\"payload\":{\"messageId\":\"" + messageId + "\"}}");
+    }
+
+    private static TextMessage typing(UUID sender, boolean isTyping) {
+        return new TextMessage("{\"type\":\"USER_TYPING\",\"payload\":{\"userId\":\"" + sender
+            + "\",\"isTyping\":" + isTyping + "}}");
+    }
+}
@@ -0,0 +1,171 @@
+package com.chathub.handler.codec;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * BinaryWireCodec 單元測試
+ */
+@DisplayName("二進位協定編解碼測試")
+class BinaryWireCodecTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final JsonWireCodec jsonCodec = new JsonWireCodec(objectMapper.getFactory());
+    private final BinaryWireCodec binaryCodec = new BinaryWireCodec(jsonCodec);
+
+    @Test
+    @DisplayName("NEW_MESSAGE 編碼後解碼應該得到相同的 payload，且比 JSON 小")
+    void shouldRoundTripNewMessage() throws Exception {
+        // Given
+        UUID senderId = UUID.randomUUID();
+        UUID recipientId = UUID.randomUUID();
+        WebSocketMessage message = WebSocketMessage.newMessage(
+            UUID.randomUUID().toString(),
+            Message.generateConversationId(senderId, recipientId),
+            senderId,
+            "alice",
+            "你好，binary！",
+            Instant.parse("2025-01-02T03:04:05.123456789Z"));
+
+        // When
+        byte[] bytes = binaryCodec.encodeToBytes(message);
+        WebSocketMessage decoded = binaryCodec.decode(ByteBuffer.wrap(bytes));
+
+        // Then
+        assertThat(decoded.getType()).isEqualTo(MessageType.NEW_MESSAGE);
+        assertThat(decoded.getPayload()).isEqualTo(message.getPayload());
+        assertThat(decoded.getTimestamp()).isEqualTo(message.getTimestamp());
+        assertThat(bytes.length).isLessThan(jsonCodec.encode(message).getPayloadLength() / 2);
+    }
+
+    @Test
+    @DisplayName("群組 SEND_MESSAGE（conversationId 取代 recipientId）在 JSON 與二進位都應該能往返")
+    void shouldRoundTripGroupSendMessage() throws Exception {
+        // Given
+        WebSocketMessage message = new WebSocketMessage(
+            MessageType.SEND_MESSAGE,
+            new WebSocketPayload.SendMessage(null, "大家好", "c-1", Conversation.newGroupId()),
+            Instant.parse("2025-01-02T03:04:05Z"));
+
+        // When
+        WebSocketMessage fromBinary = binaryCodec.decode(ByteBuffer.wrap(binaryCodec.encodeToBytes(message)));
+        WebSocketMessage fromJson = jsonCodec.decode(jsonCodec.encode(message));
+
+        // Then
+        assertThat(fromBinary).isEqualTo(message);
+        assertThat(fromJson).isEqualTo(message);
+        assertThatThrownBy(() -> new WebSocketPayload.SendMessage(UUID.randomUUID(), "hi", null, "group-1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("擇一");
+    }
+
+    @Test
+    @DisplayName("SYNC 與 SYNC_BATCH（巢狀 NEW_MESSAGE 清單）在 JSON 與二進位都應該能往返")
+    void shouldRoundTripSyncFrames() throws Exception {
+        // Given
+        UUID senderId = UUID.randomUUID();
+        String conversationId = Message.generateConversationId(senderId, UUID.randomUUID());
+        WebSocketMessage sync = WebSocketMessage.of(MessageType.SYNC, new WebSocketPayload.Sync(List.of(
+            new WebSocketPayload.SyncCursor(conversationId, UUID.randomUUID().toString(),
+                                            Instant.parse("2025-01-02T03:04:05.123Z")),
+            new WebSocketPayload.SyncCursor(Conversation.newGroupId(), UUID.randomUUID().toString(),
+                                            Instant.parse("2025-01-02T03:04:06Z")))));
+        WebSocketMessage batch = new WebSocketMessage(MessageType.SYNC_BATCH, new WebSocketPayload.SyncBatch(
+            conversationId,
+            List.of(new WebSocketPayload.NewMessage(UUID.randomUUID().toString(), conversationId, senderId, "alice",
+                                                    "離線時的訊息", Instant.parse("2025-01-02T03:04:07.5Z")),
+                    new WebSocketPayload.NewMessage(UUID.randomUUID().toString(), conversationId, senderId, null,
+                                                    "第二則", Instant.parse("2025-01-02T03:04:08Z"))),
+            true, false), Instant.parse("2025-01-02T03:04:09Z"));
+        WebSocketMessage end = WebSocketMessage.of(MessageType.SYNC_BATCH,
+                                                   new WebSocketPayload.SyncBatch(null, List.of(), false, true));
+
+        // When / Then
+        for (WebSocketMessage message : List.of(sync, batch, end)) {
+            assertThat(binaryCodec.decode(ByteBuffer.wrap(binaryCodec.encodeToBytes(message)))).isEqualTo(message);
+            assertThat(jsonCodec.decode(jsonCodec.encode(message))).isEqualTo(message);
+        }
+    }
+
+    @Test
+    @DisplayName("Redis 轉送的 JSON（含序列化兩次的字串）應該轉成二進位 frame")
+    void shouldAdaptDoubleEncodedJson() throws Exception {
+        // Given
+        UUID userId = UUID.randomUUID();
+        WebSocketMessage typing = WebSocketMessage.of(
+            MessageType.USER_TYPING, new WebSocketPayload.UserTyping(userId, true, null));
+        String json = objectMapper.writeValueAsString(objectMapper.writeValueAsString(typing));
+
+        // When
+        var adapted = binaryCodec.adapt(new TextMessage(json));
+
+        // Then
+        assertThat(adapted).isInstanceOf(BinaryMessage.class);
+        WebSocketMessage decoded = binaryCodec.decode((BinaryMessage) adapted);
+        assertThat(decoded.getType()).isEqualTo(MessageType.USER_TYPING);
+        assertThat(decoded.getPayload()).isEqualTo(new WebSocketPayload.UserTyping(userId, true, null));
+    }
+
+    @Test
+    @DisplayName("Redis 收到的 EncodedFrame 應該只讀出類型，且各連線共用同一份編碼結果")
+    void shouldShareEncodedFrameAcrossSessions() throws Exception {
+        // Given
+        UUID userId = UUID.randomUUID();
+        WebSocketMessage typing = WebSocketMessage.of(
+            MessageType.USER_TYPING, new WebSocketPayload.UserTyping(userId, false, "bob"));
+        byte[] published = EncodedFrame.encode(objectMapper, typing).json();
+
+        // When
+        EncodedFrame frame = EncodedFrame.wrap(published);
+        var first = (BinaryMessage) binaryCodec.adapt(frame);
+        var second = (BinaryMessage) binaryCodec.adapt(frame);
+
+        // Then
+        assertThat(frame.type()).isEqualTo(MessageType.USER_TYPING);
+        assertThat(frame.typingSender()).isEqualTo(userId.toString());
+        assertThat(jsonCodec.adapt(frame)).isSameAs(frame.textMessage());
+        assertThat(first).isNotSameAs(second);
+        assertThat(binaryCodec.decode(first).getPayload()).isEqualTo(typing.getPayload());
+        assertThat(binaryCodec.decode(second).getPayload()).isEqualTo(typing.getPayload());
+    }
+
+    @Test
+    @DisplayName("payload 與類型不符、截斷的 frame、不合法的欄位應該被拒絕")
+    void shouldRejectMismatchedPayloadsAndInvalidFrames() {
+        // Given
+        WebSocketMessage mismatched = WebSocketMessage.builder()
+                                                      .type(MessageType.PONG)
+                                                      .payload(new WebSocketPayload.Typing(UUID.randomUUID()))
+                                                      .build();
+        byte[] valid = binaryCodec.encodeToBytes(WebSocketMessage.pong());
+        ByteBuffer truncated = ByteBuffer.wrap(valid, 0, valid.length - 3);
+        // SEND_MESSAGE 只有 recipientId，缺少必填的 content
+        ByteBuffer missingContent = ByteBuffer.wrap(new byte[3 + 16]);
+        missingContent.put(BinaryWireCodec.VERSION).put((byte) 0).put((byte) 0b001).position(0);
+
+        // When / Then
+        assertThatThrownBy(() -> binaryCodec.encodeToBytes(mismatched))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> binaryCodec.decode(truncated))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> binaryCodec.decode(missingContent))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("content");
+    }
+}
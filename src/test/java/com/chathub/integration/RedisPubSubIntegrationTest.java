@@ -3,6 +3,7 @@ package com.chathub.integration;
 import com.chathub.service.RedisMessagePublisher;
 import com.chathub.service.RedisMessageSubscriber;
 import com.chathub.service.WebSocketSessionManager;
+import com.chathub.service.cache.GroupMembershipCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -58,8 +59,8 @@ class RedisPubSubIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
-    @MockitoBean
-    private WebSocketSessionManager sessionManager;
+    @Autowired
+    private GroupMembershipCache membershipCache;
 
     @MockitoBean
     private WebSocketSession webSocketSession;
@@ -75,11 +76,12 @@ class RedisPubSubIntegrationTest {
         );
 
         // 設定 WebSocket Session Mock
-        when(sessionManager.getSession(userId.toString())).thenReturn(webSocketSession);
+        WebSocketSessionManager sessionManager = new WebSocketSessionManager(4);
+        sessionManager.addSession(userId, webSocketSession);
         when(webSocketSession.isOpen()).thenReturn(true);
 
         // 建立訂閱者
-        RedisMessageSubscriber subscriber = new RedisMessageSubscriber(sessionManager, objectMapper);
+        RedisMessageSubscriber subscriber = new RedisMessageSubscriber(sessionManager, membershipCache, objectMapper);
 
         // 建立監聽容器
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
@@ -129,12 +131,13 @@ class RedisPubSubIntegrationTest {
         WebSocketSession session1 = mock(WebSocketSession.class);
         WebSocketSession session2 = mock(WebSocketSession.class);
 
-        when(sessionManager.getSession(user1.toString())).thenReturn(session1);
-        when(sessionManager.getSession(user2.toString())).thenReturn(session2);
+        WebSocketSessionManager sessionManager = new WebSocketSessionManager(4);
+        sessionManager.addSession(user1, session1);
+        sessionManager.addSession(user2, session2);
         when(session1.isOpen()).thenReturn(true);
         when(session2.isOpen()).thenReturn(true);
 
-        RedisMessageSubscriber subscriber = new RedisMessageSubscriber(sessionManager, objectMapper);
+        RedisMessageSubscriber subscriber = new RedisMessageSubscriber(sessionManager, membershipCache, objectMapper);
 
         // 建立兩個監聽容器（模擬兩個 Pod）
         RedisMessageListenerContainer container1 = createContainer(subscriber, "user:" + user1);
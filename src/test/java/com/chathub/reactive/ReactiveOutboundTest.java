@@ -0,0 +1,86 @@
+package com.chathub.reactive;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.handler.codec.EncodedFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ReactiveOutbound 單元測試
+ */
+@DisplayName("反應式送出佇列測試")
+class ReactiveOutboundTest {
+
+    // Reactor 佇列容量會進位到 2 的次方（最小 8）
+    private static final int CAPACITY = 8;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<String> dropped = new ArrayList<>();
+
+    @Test
+    @DisplayName("佇列滿時丟棄正在輸入，已排入的訊息仍依序送出")
+    void shouldDropTypingWhenFull() throws Exception {
+        // Given：容量 8 的佇列已排滿
+        ReactiveOutbound outbound = new ReactiveOutbound(CAPACITY, (type, reason) -> dropped.add(type + ":" + reason));
+        List<EncodedFrame> queued = fill(outbound);
+
+        // When
+        outbound.offer(typing());
+        outbound.complete();
+
+        // Then
+        assertThat(dropped).containsExactly("USER_TYPING:overflow");
+        StepVerifier.create(outbound.frames())
+                    .expectNextSequence(queued)
+                    .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("佇列滿時其他訊息讓連線失敗，由客戶端重連補資料")
+    void shouldFailSessionWhenMessageOverflows() throws Exception {
+        // Given
+        ReactiveOutbound outbound = new ReactiveOutbound(CAPACITY, (type, reason) -> dropped.add(type + ":" + reason));
+        List<EncodedFrame> queued = fill(outbound);
+
+        // When
+        outbound.offer(newMessage("overflow"));
+
+        // Then
+        assertThat(dropped).containsExactly("NEW_MESSAGE:disconnect");
+        StepVerifier.create(outbound.frames())
+                    .expectNextSequence(queued)
+                    .verifyError(IllegalStateException.class);
+    }
+
+    private List<EncodedFrame> fill(ReactiveOutbound outbound) throws Exception {
+        List<EncodedFrame> queued = new ArrayList<>();
+        for (int i = 0; i < CAPACITY; i++) {
+            EncodedFrame frame = newMessage(String.valueOf(i));
+            outbound.offer(frame);
+            queued.add(frame);
+        }
+        return queued;
+    }
+
+    private EncodedFrame newMessage(String messageId) throws Exception {
+        return EncodedFrame.encode(objectMapper, WebSocketMessage.of(
+            MessageType.NEW_MESSAGE,
+            new WebSocketPayload.NewMessage(messageId, "a_b", UUID.randomUUID(), "alice", "hi", Instant.now())));
+    }
+
+    private EncodedFrame typing() throws Exception {
+        return EncodedFrame.encode(objectMapper, WebSocketMessage.of(
+            MessageType.USER_TYPING, new WebSocketPayload.UserTyping(UUID.randomUUID(), true, "alice")));
+    }
+}
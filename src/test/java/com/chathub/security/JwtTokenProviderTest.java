@@ -0,0 +1,88 @@
+package com.chathub.security;
+
+import com.chathub.config.JwtProperties;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * JwtTokenProvider 單元測試
+ */
+@DisplayName("JWT 驗證與快取測試")
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "TestSecretKeyForJWTTokenGenerationMustBeLongEnough1234567890ABCDEFGH";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JwtTokenProvider tokenProvider;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties properties = new JwtProperties();
+        properties.setSecret(SECRET);
+        properties.setAccessTokenExpiration(3_600_000L);
+        tokenProvider = new JwtTokenProvider(properties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("驗證一次即取得所有欄位，同一個 Token 再次驗證直接由快取回傳同一個物件")
+    void shouldVerifyOnceAndServeFromCache() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        String token = tokenProvider.generateAccessToken(userId, "alice");
+
+        // When
+        VerifiedToken first = tokenProvider.verify(token);
+        VerifiedToken second = tokenProvider.verify(token);
+
+        // Then
+        assertThat(first.userId()).isEqualTo(userId);
+        assertThat(first.username()).isEqualTo("alice");
+        assertThat(first.isAccessToken()).isTrue();
+        assertThat(first.jti()).isNotBlank();
+        assertThat(second).isSameAs(first);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "verifiedToken").tag("result", "hit")
+                                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("簽章錯誤或已過期的 Token 應該拒絕，且不寫入快取")
+    void shouldRejectTamperedAndExpiredTokens() {
+        // Given：其他金鑰簽的 Token 與已過期的 Token
+        String foreign = Jwts.builder()
+                             .setSubject(UUID.randomUUID().toString())
+                             .claim("type", "access")
+                             .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                             .signWith(Keys.hmacShaKeyFor(
+                                 (SECRET + "-other").getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS512)
+                             .compact();
+        String expired = Jwts.builder()
+                             .setSubject(UUID.randomUUID().toString())
+                             .claim("type", "access")
+                             .setExpiration(new Date(System.currentTimeMillis() - 1_000))
+                             .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)),
+                                       SignatureAlgorithm.HS512)
+                             .compact();
+
+        // When / Then
+        assertThatThrownBy(() -> tokenProvider.verify(foreign)).isInstanceOf(SignatureException.class);
+        assertThatThrownBy(() -> tokenProvider.verify(expired)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(tokenProvider.validateToken(foreign)).isFalse();
+        assertThat(tokenProvider.validateToken(expired)).isFalse();
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "verifiedToken").tag("result", "hit")
+                                .functionCounter().count()).isZero();
+    }
+}
@@ -3,6 +3,7 @@ package com.chathub.service;
 import com.chathub.entity.Conversation;
 import com.chathub.entity.Message;
 import com.chathub.repository.ConversationRepository;
+import com.chathub.repository.MessageRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +12,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,9 +36,13 @@ public class ConversationServiceTest {
     @Autowired
     private ConversationRepository conversationRepository;
 
+    @Autowired
+    private MessageRepository messageRepository;
+
     @AfterEach
     public void cleanup() {
         conversationRepository.deleteAll();
+        messageRepository.deleteAll();
     }
 
     @Test
@@ -120,6 +132,55 @@ public class ConversationServiceTest {
         System.out.println("✅ 更新對話測試通過！");
     }
 
+    @Test
+    public void testUpdateConversation_ConcurrentSenders() throws Exception {
+        // 64 個執行緒同時對同一個（尚未存在的）對話送訊息
+        UUID senderId = UUID.randomUUID();
+        UUID recipientId = UUID.randomUUID();
+        String conversationId = Message.generateConversationId(senderId, recipientId);
+        int senders = 64;
+        int messagesPerSender = 5;
+
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < senders; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < messagesPerSender; j++) {
+                    conversationService.updateConversation(Message.builder()
+                                                                  .messageId(UUID.randomUUID().toString())
+                                                                  .conversationId(conversationId)
+                                                                  .senderId(senderId)
+                                                                  .senderUsername("alice")
+                                                                  .recipientId(recipientId)
+                                                                  .content("並發訊息")
+                                                                  .timestamp(Instant.now())
+                                                                  .isRead(false)
+                                                                  .createdAt(Instant.now())
+                                                                  .build());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // 驗證沒有遺失任何一次未讀數累加，且只建立一個對話
+        Conversation conv = conversationRepository
+            .findByConversationId(conversationId)
+            .orElseThrow();
+        assertEquals(senders * messagesPerSender, conv.getUnreadCounts().get(recipientId.toString()));
+        assertEquals(0, conv.getUnreadCounts().get(senderId.toString()));
+        assertEquals(2, conv.getParticipants().size());
+        assertEquals(1, conversationRepository.count());
+
+        System.out.println("✅ 並發更新對話測試通過！");
+    }
+
     @Test
     public void testResetUnreadCount() {
         // 建立對話並設定未讀數
@@ -159,6 +220,36 @@ public class ConversationServiceTest {
         System.out.println("✅ 重置未讀數測試通過！");
     }
 
+    @Test
+    public void testAdvanceReadMarker_DoesNotGoNegative() {
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        String conversationId = Message.generateConversationId(user1, user2);
+        conversationService.updateConversation(Message.builder()
+                                                      .messageId(UUID.randomUUID().toString())
+                                                      .conversationId(conversationId)
+                                                      .senderId(user1)
+                                                      .senderUsername("user1")
+                                                      .recipientId(user2)
+                                                      .content("測試訊息")
+                                                      .timestamp(Instant.now())
+                                                      .isRead(false)
+                                                      .createdAt(Instant.now())
+                                                      .build());
+
+        // 已讀到最新（先歸零）之後，才處理到較早的部分已讀回報
+        conversationService.resetUnreadCount(conversationId, user2);
+        conversationService.advanceReadMarker(conversationId, user2, Conversation.ReadMarker.builder()
+                                                                                          .timestamp(Instant.now())
+                                                                                          .readAt(Instant.now())
+                                                                                          .build(), 1);
+
+        Conversation conversation = conversationRepository.findByConversationId(conversationId).orElseThrow();
+        assertEquals(0, conversation.getUnreadCounts().get(user2.toString()), "未讀數不應低於 0");
+
+        System.out.println("✅ 已讀扣除不低於 0 測試通過！");
+    }
+
     @Test
     public void testGetUserConversations() {
         UUID userId = UUID.randomUUID();
@@ -242,4 +333,60 @@ public class ConversationServiceTest {
 
         System.out.println("✅ 查詢總未讀數測試通過！");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetTotalUnreadCount_IncludesGroups() {
+        UUID userId = UUID.randomUUID();
+        UUID friendId = UUID.randomUUID();
+        String groupId = Conversation.newGroupId();
+        conversationRepository.save(Conversation.builder()
+                                                .conversationId(groupId)
+                                                .type(Conversation.Type.GROUP)
+                                                .name("team")
+                                                .ownerId(friendId)
+                                                .participants(List.of(friendId, userId))
+                                                .createdAt(Instant.now())
+                                                .updatedAt(Instant.now())
+                                                .build());
+
+        // 群組中他人送出 3 則、自己送出 1 則（群組訊息不累加計數器）
+        Instant base = Instant.now().minusSeconds(60);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            Message msg = Message.builder()
+                                 .messageId(UUID.randomUUID().toString())
+                                 .conversationId(groupId)
+                                 .senderId(i == 4 ? userId : friendId)
+                                 .senderUsername(i == 4 ? "me" : "friend")
+                                 .content("群組訊息 " + i)
+                                 .timestamp(base.plusSeconds(i))
+                                 .isRead(false)
+                                 .createdAt(Instant.now())
+                                 .build();
+            messages.add(messageRepository.save(msg));
+            conversationService.updateConversation(msg);
+        }
+
+        // 從未讀過：他人送出的 3 則都是未讀
+        assertEquals(3, conversationService.getTotalUnreadCount(userId), "群組未讀數應該計入總未讀數");
+        assertEquals(3, conversationService.getGroupUnreadCount(groupId, userId));
+        assertEquals(1, conversationService.getGroupUnreadCount(groupId, friendId), "只計算他人送出的訊息");
+
+        // 讀到第 2 則：剩第 3 則未讀
+        conversationService.advanceReadMarker(groupId, userId, Conversation.ReadMarker.builder()
+                                                                                      .messageId(messages.get(1).getMessageId())
+                                                                                      .timestamp(messages.get(1).getTimestamp())
+                                                                                      .readAt(Instant.now())
+                                                                                      .build(), 0);
+        assertEquals(1, conversationService.getTotalUnreadCount(userId));
+
+        // 讀到最新：最後一則不晚於已讀位置，不再查詢訊息
+        conversationService.advanceReadMarker(groupId, userId, Conversation.ReadMarker.builder()
+                                                                                      .timestamp(Instant.now())
+                                                                                      .readAt(Instant.now())
+                                                                                      .build(), 0);
+        assertEquals(0, conversationService.getTotalUnreadCount(userId));
+
+        System.out.println("✅ 群組未讀數測試通過！");
+    }
+}
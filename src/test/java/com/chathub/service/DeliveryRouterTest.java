@@ -0,0 +1,107 @@
+package com.chathub.service;
+
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketMessage.MessageType;
+import com.chathub.dto.WebSocketPayload;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.service.cache.UserRouteCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * DeliveryRouter 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("本機投遞路由測試")
+class DeliveryRouterTest {
+
+    @Mock
+    private WebSocketSessionManager sessionManager;
+
+    @Mock
+    private UserRouteCache routeCache;
+
+    @Mock
+    private MessagePublisher publisher;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID userId = UUID.randomUUID();
+    private final WebSocketMessage message = WebSocketMessage.of(
+        MessageType.MESSAGE_READ_RECEIPT, new WebSocketPayload.ReadReceipt("c-1", "m-1", UUID.randomUUID(), null));
+    private DeliveryRouter router;
+
+    @BeforeEach
+    void setUp() {
+        router = new DeliveryRouter(sessionManager, routeCache, publisher, objectMapper, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("收件者只連在本節點：直接推送給本機連線，不經過 Redis")
+    void shouldDeliverLocallyWithoutPublishing() throws Exception {
+        // Given
+        when(sessionManager.isUserOnline(userId)).thenReturn(true);
+        when(routeCache.remoteNodes(userId)).thenReturn(Set.of());
+        when(sessionManager.sendToUser(eq(userId), any(EncodedFrame.class))).thenReturn(2);
+
+        // When
+        router.deliverToUser(userId, message);
+
+        // Then
+        verify(sessionManager).sendToUser(eq(userId), any(EncodedFrame.class));
+        verifyNoInteractions(publisher);
+        assertThat(meterRegistry.counter("chathub.delivery.routed", "path", "local").count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chathub.delivery.local.ratio").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("收件者在其他節點也有裝置：本機直接推送，只發布到其他節點，兩邊共用同一個 frame")
+    void shouldPublishOnlyToOtherNodes() throws Exception {
+        // Given
+        when(sessionManager.isUserOnline(userId)).thenReturn(true);
+        when(routeCache.remoteNodes(userId)).thenReturn(Set.of("pod-2"));
+
+        // When
+        router.deliverToUser(userId, message);
+
+        // Then
+        verify(sessionManager).sendToUser(eq(userId), any(EncodedFrame.class));
+        verify(publisher).publishToNodes(eq(userId.toString()), eq(Set.of("pod-2")), any(EncodedFrame.class));
+        verify(publisher, never()).publishToUser(anyString(), any(EncodedFrame.class));
+        assertThat(meterRegistry.counter("chathub.delivery.routed", "path", "mixed").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("收件者不在本節點，或路由查詢失敗：照舊交給 Redis 發布，本機不先推送")
+    void shouldFallBackToBusForRemoteOrUnknownRecipients() throws Exception {
+        // Given：第一次不在本機，第二次在本機但路由查詢失敗
+        when(sessionManager.isUserOnline(userId)).thenReturn(false, true);
+        when(routeCache.remoteNodes(userId)).thenThrow(new IllegalStateException("redis down"));
+
+        // When
+        router.deliverToUser(userId, message);
+        router.deliverToUser(userId, message);
+
+        // Then
+        verify(publisher, times(2)).publishToUser(eq(userId.toString()), any(EncodedFrame.class));
+        verify(sessionManager, never()).sendToUser(any(), any());
+        assertThat(meterRegistry.counter("chathub.delivery.routed", "path", "remote").count()).isEqualTo(2);
+        assertThat(meterRegistry.get("chathub.delivery.local.ratio").gauge().value()).isZero();
+    }
+}
@@ -0,0 +1,176 @@
+package com.chathub.service;
+
+import com.chathub.config.GroupProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.User;
+import com.chathub.repository.UserRepository;
+import com.chathub.service.cache.GroupMembershipCache;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * GroupService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("群組服務測試")
+class GroupServiceTest {
+
+    private static final String GROUP_ID = "group-1";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private GroupMembershipCache membershipCache;
+
+    private final UUID ownerId = UUID.randomUUID();
+    private final UUID memberId = UUID.randomUUID();
+    private GroupService groupService;
+
+    @BeforeEach
+    void setUp() {
+        GroupProperties properties = new GroupProperties();
+        properties.setMaxMembers(10);
+        groupService = new GroupService(mongoTemplate, userRepository, membershipCache, properties);
+    }
+
+    @Test
+    @DisplayName("建立群組：建立者自動成為成員，重複的成員只算一次")
+    void shouldCreateGroupWithOwner() {
+        // Given
+        UUID other = UUID.randomUUID();
+        allUsersExist();
+        when(mongoTemplate.insert(any(Conversation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        Conversation group = groupService.createGroup(ownerId, "team", List.of(memberId, other, ownerId, memberId));
+
+        // Then
+        assertThat(Conversation.isGroup(group.getConversationId())).isTrue();
+        assertThat(group.getType()).isEqualTo(Conversation.Type.GROUP);
+        assertThat(group.getOwnerId()).isEqualTo(ownerId);
+        assertThat(group.getParticipants()).containsExactly(ownerId, memberId, other);
+    }
+
+    @Test
+    @DisplayName("建立群組：超過人數上限或有不存在的使用者時拒絕，不寫入")
+    void shouldRejectInvalidGroup() {
+        // Given
+        List<UUID> tooMany = Stream.generate(UUID::randomUUID).limit(10).toList();
+        when(userRepository.findAllById(anyCollection())).thenReturn(List.of(new User()));
+
+        // Then
+        assertThatThrownBy(() -> groupService.createGroup(ownerId, "big", tooMany))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> groupService.createGroup(ownerId, "ghost", List.of(memberId)))
+            .isInstanceOf(IllegalArgumentException.class);
+        verify(mongoTemplate, never()).insert(any(Conversation.class));
+    }
+
+    @Test
+    @DisplayName("加入成員：人數上限在同一個 update 的條件中檢查，成功後通知快取失效")
+    void shouldAddMembersWithAtomicLimit() {
+        // Given
+        allUsersExist();
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Conversation.class)))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // When
+        groupService.addMembers(GROUP_ID, ownerId, List.of(memberId, UUID.randomUUID(), memberId));
+
+        // Then：加入 2 人、上限 10 → 第 8 個位置（索引 8）必須是空的，且操作者必須是成員
+        Document query = capturedQuery();
+        assertThat(query.get("participants." + 8)).isEqualTo(new Document("$exists", false));
+        assertThat(query.get("participants")).isEqualTo(ownerId);
+        assertThat(query.get("type")).isEqualTo(Conversation.Type.GROUP);
+        verify(membershipCache).invalidate(GROUP_ID);
+    }
+
+    @Test
+    @DisplayName("加入成員：群組已滿（條件不符）時拒絕，不通知快取失效")
+    void shouldRejectAddWhenGroupIsFull() {
+        // Given
+        allUsersExist();
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Conversation.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // Then
+        assertThatThrownBy(() -> groupService.addMembers(GROUP_ID, ownerId, List.of(memberId)))
+            .isInstanceOf(IllegalArgumentException.class);
+        verify(membershipCache, never()).invalidate(any());
+    }
+
+    @Test
+    @DisplayName("移除成員：建立者移除他人時條件包含 ownerId，成員自行退出則不需要；兩者都清除已讀位置")
+    void shouldRemoveMemberAsOwnerOrSelf() {
+        // Given
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Conversation.class)))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // When
+        groupService.removeMember(GROUP_ID, ownerId, memberId);
+        groupService.removeMember(GROUP_ID, memberId, memberId);
+
+        // Then
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(queries.capture(), updates.capture(), eq(Conversation.class));
+        assertThat(queries.getAllValues().get(0).getQueryObject().get("ownerId")).isEqualTo(ownerId);
+        assertThat(queries.getAllValues().get(1).getQueryObject()).doesNotContainKey("ownerId");
+        assertThat(updates.getAllValues())
+            .allSatisfy(update -> assertThat(update.getUpdateObject().get("$unset", Document.class))
+                .containsKey("readMarkers." + memberId));
+        verify(membershipCache, times(2)).invalidate(GROUP_ID);
+    }
+
+    @Test
+    @DisplayName("移除成員：非建立者移除他人（條件不符）時拒絕")
+    void shouldRejectRemovalByNonOwner() {
+        // Given
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Conversation.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // Then
+        assertThatThrownBy(() -> groupService.removeMember(GROUP_ID, memberId, ownerId))
+            .isInstanceOf(IllegalArgumentException.class);
+        verify(membershipCache, never()).invalidate(any());
+    }
+
+    private void allUsersExist() {
+        when(userRepository.findAllById(anyCollection()))
+            .thenAnswer(invocation -> invocation.<Collection<UUID>>getArgument(0).stream()
+                                                .map(id -> new User())
+                                                .toList());
+    }
+
+    private Document capturedQuery() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(Conversation.class));
+        return query.getValue().getQueryObject();
+    }
+}
@@ -184,6 +184,54 @@ public class MessageServiceTest {
         System.out.println("✅ 標記已讀測試通過！");
     }
 
+    @Test
+    public void testMarkAsRead_UpToMessage() throws InterruptedException {
+        // 發送 3 則未讀訊息（間隔數毫秒，確保時間戳記不同）
+        Message[] sent = new Message[3];
+        for (int i = 0; i < 3; i++) {
+            sent[i] = messageService.saveMessage(
+                testSender.getUserId(),
+                testRecipient.getUserId(),
+                "未讀訊息 " + i,
+                "client-upto-" + i
+            );
+            Thread.sleep(5);
+        }
+
+        String conversationId = sent[0].getConversationId();
+
+        // 只讀到第 2 則
+        long marked = messageService.markAsRead(conversationId, testRecipient.getUserId(), sent[1].getMessageId());
+        assertEquals(2, marked, "應該標記 2 則訊息為已讀");
+        assertEquals(1, messageService.getConversationUnreadCount(conversationId, testRecipient.getUserId()),
+                     "應該剩下 1 則未讀");
+
+        // 較舊的已讀回報不應讓已讀位置倒退
+        messageService.markAsRead(conversationId, testRecipient.getUserId(), sent[0].getMessageId());
+        assertEquals(1, messageService.getConversationUnreadCount(conversationId, testRecipient.getUserId()),
+                     "已讀位置不應倒退");
+
+        System.out.println("✅ 部分已讀測試通過！");
+    }
+
+    @Test
+    public void testMarkAsRead_RejectsMessageOutsideConversation() {
+        Message sent = messageService.saveMessage(testSender.getUserId(), testRecipient.getUserId(),
+                                                  "未讀訊息", "client-outside-0");
+        String conversationId = sent.getConversationId();
+
+        // 不存在或屬於其他對話的訊息不可當成已讀位置，也不可把整個對話標為已讀
+        assertThrows(IllegalArgumentException.class,
+                     () -> messageService.markAsRead(conversationId, testRecipient.getUserId(), "no-such-message"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> messageService.markAsRead("other_conversation", testRecipient.getUserId(),
+                                                     sent.getMessageId()));
+        assertEquals(1, messageService.getConversationUnreadCount(conversationId, testRecipient.getUserId()),
+                     "已讀位置不應改變");
+
+        System.out.println("✅ 拒絕其他對話的已讀位置測試通過！");
+    }
+
     @Test
     public void testGetUnreadCount() {
         // testRecipient 收到來自不同使用者的訊息
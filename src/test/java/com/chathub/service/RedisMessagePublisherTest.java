@@ -1,6 +1,10 @@
 package com.chathub.service;
 
+import com.chathub.config.NodeProperties;
+import com.chathub.dto.WebSocketMessage;
+import com.chathub.dto.WebSocketPayload;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,7 +14,9 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.RedisTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -26,15 +32,21 @@ import static org.mockito.Mockito.*;
 class RedisMessagePublisherTest {
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private RedisTemplate<String, byte[]> redisTemplate;
+
+    @Mock
+    private PresenceRoutingService routingService;
 
     private ObjectMapper objectMapper;
+    private NodeProperties nodeProperties;
     private RedisMessagePublisher publisher;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
-        publisher = new RedisMessagePublisher(redisTemplate, objectMapper);
+        nodeProperties = new NodeProperties();
+        publisher = new RedisMessagePublisher(redisTemplate, objectMapper, routingService, nodeProperties,
+                                              new SimpleMeterRegistry());
     }
 
     @Test
@@ -49,12 +61,65 @@ class RedisMessagePublisherTest {
 
         // Then
         ArgumentCaptor<String> channelCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> messageCaptor = ArgumentCaptor.forClass(byte[].class);
 
         verify(redisTemplate).convertAndSend(channelCaptor.capture(), messageCaptor.capture());
 
         assertThat(channelCaptor.getValue()).isEqualTo("user:" + userId.toString());
-        assertThat(messageCaptor.getValue()).contains("Hello World");
+        assertThat(new String(messageCaptor.getValue(), StandardCharsets.UTF_8)).contains("Hello World");
+    }
+
+    @Test
+    @DisplayName("有路由資料時，應該只發布到持有連線的節點頻道")
+    void shouldPublishOnlyToRoutedNodes() throws Exception {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(routingService.findNodes(userId.toString())).thenReturn(Set.of("pod-1", "pod-2"));
+
+        // When
+        publisher.publishToUser(userId, Map.of("content", "Routed"));
+
+        // Then
+        ArgumentCaptor<String> channelCaptor = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(2)).convertAndSend(channelCaptor.capture(), any(byte[].class));
+
+        assertThat(channelCaptor.getAllValues()).containsExactlyInAnyOrder(
+            "node:pod-1:user:" + userId,
+            "node:pod-2:user:" + userId
+        );
+    }
+
+    @Test
+    @DisplayName("沒有節點訂閱（PUBLISH 回傳 0）時，應該計入 undelivered 指標")
+    void shouldCountUndeliveredWhenNoSubscriberReceives() throws Exception {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RedisMessagePublisher meteredPublisher =
+            new RedisMessagePublisher(redisTemplate, objectMapper, routingService, nodeProperties, meterRegistry);
+        UUID userId = UUID.randomUUID();
+        when(routingService.findNodes(userId.toString())).thenReturn(Set.of("pod-restarting"));
+        when(redisTemplate.convertAndSend(anyString(), any(byte[].class))).thenReturn(0L);
+
+        // When
+        meteredPublisher.publishToUser(userId, Map.of("content", "Lost"));
+
+        // Then
+        assertThat(meterRegistry.counter("chathub.bus.published", "bus", "pubsub").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("chathub.bus.undelivered", "bus", "pubsub").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("路由查詢失敗時，應該退回廣播到使用者頻道")
+    void shouldFallBackToBroadcastWhenRouteLookupFails() throws Exception {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(routingService.findNodes(userId.toString())).thenThrow(new RuntimeException("Redis down"));
+
+        // When
+        publisher.publishToUser(userId, Map.of("content", "Fallback"));
+
+        // Then
+        verify(redisTemplate).convertAndSend(eq("user:" + userId), any(byte[].class));
     }
 
     @Test
@@ -70,7 +135,7 @@ class RedisMessagePublisherTest {
         // Then
         ArgumentCaptor<String> channelCaptor = ArgumentCaptor.forClass(String.class);
 
-        verify(redisTemplate).convertAndSend(channelCaptor.capture(), anyString());
+        verify(redisTemplate).convertAndSend(channelCaptor.capture(), any(byte[].class));
 
         assertThat(channelCaptor.getValue()).isEqualTo("user:test-user-123");
     }
@@ -90,12 +155,31 @@ class RedisMessagePublisherTest {
 
         // Then
         ArgumentCaptor<String> channelCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> messageCaptor = ArgumentCaptor.forClass(byte[].class);
 
         verify(redisTemplate).convertAndSend(channelCaptor.capture(), messageCaptor.capture());
 
         assertThat(channelCaptor.getValue()).isEqualTo("conversation:conv-abc-123");
-        assertThat(messageCaptor.getValue()).contains("msg-123");
+        assertThat(new String(messageCaptor.getValue(), StandardCharsets.UTF_8)).contains("msg-123");
+    }
+
+    @Test
+    @DisplayName("WebSocketMessage 應該只序列化一次，以 JSON 物件 bytes 發布（不是 JSON 字串）")
+    void shouldPublishWebSocketMessageAsRawJsonBytes() throws Exception {
+        // Given
+        UUID userId = UUID.randomUUID();
+        WebSocketMessage message = WebSocketMessage.of(
+            WebSocketMessage.MessageType.PONG, new WebSocketPayload.Pong("pong"));
+
+        // When
+        publisher.publishToUser(userId, message);
+
+        // Then
+        ArgumentCaptor<byte[]> messageCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(redisTemplate).convertAndSend(eq("user:" + userId), messageCaptor.capture());
+
+        String json = new String(messageCaptor.getValue(), StandardCharsets.UTF_8);
+        assertThat(json).startsWith("{").contains("\"type\":\"PONG\"");
     }
 
     @Test
@@ -103,11 +187,13 @@ class RedisMessagePublisherTest {
     void shouldHandleJsonSerializationError() {
         // Given
         ObjectMapper faultyMapper = mock(ObjectMapper.class);
-        RedisMessagePublisher faultyPublisher = new RedisMessagePublisher(redisTemplate, faultyMapper);
+        RedisMessagePublisher faultyPublisher =
+            new RedisMessagePublisher(redisTemplate, faultyMapper, routingService, nodeProperties,
+                                      new SimpleMeterRegistry());
 
         // 模擬序列化錯誤
         try {
-            when(faultyMapper.writeValueAsString(any())).thenThrow(new RuntimeException("JSON Error"));
+            when(faultyMapper.writeValueAsBytes(any())).thenThrow(new RuntimeException("JSON Error"));
         } catch (Exception e) {
             // ignore
         }
@@ -117,6 +203,6 @@ class RedisMessagePublisherTest {
         faultyPublisher.publishToUser(userId, Map.of("test", "data"));
 
         // 驗證 Redis 沒有被呼叫
-        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+        verify(redisTemplate, never()).convertAndSend(anyString(), any(byte[].class));
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.chathub.service;
 
+import com.chathub.service.cache.GroupMembershipCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -13,6 +14,7 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -25,22 +27,24 @@ import static org.mockito.Mockito.*;
 @DisplayName("Redis 訊息訂閱者測試")
 class RedisMessageSubscriberTest {
 
-    @Mock
-    private WebSocketSessionManager sessionManager;
-
     @Mock
     private WebSocketSession webSocketSession;
 
     @Mock
     private Message redisMessage;
 
+    @Mock
+    private GroupMembershipCache membershipCache;
+
     private ObjectMapper objectMapper;
+    private WebSocketSessionManager sessionManager;
     private RedisMessageSubscriber subscriber;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
-        subscriber = new RedisMessageSubscriber(sessionManager, objectMapper);
+        sessionManager = new WebSocketSessionManager(4);
+        subscriber = new RedisMessageSubscriber(sessionManager, membershipCache, objectMapper);
     }
 
     @Test
@@ -54,7 +58,7 @@ class RedisMessageSubscriberTest {
 
         when(redisMessage.getChannel()).thenReturn(channel.getBytes());
         when(redisMessage.getBody()).thenReturn(jsonMessage.getBytes());
-        when(sessionManager.getSession(userId.toString())).thenReturn(webSocketSession);
+        sessionManager.addSession(userId, webSocketSession);
         when(webSocketSession.isOpen()).thenReturn(true);
 
         // When
@@ -78,7 +82,6 @@ class RedisMessageSubscriberTest {
 
         when(redisMessage.getChannel()).thenReturn(channel.getBytes());
         when(redisMessage.getBody()).thenReturn(jsonMessage.getBytes());
-        when(sessionManager.getSession(userId.toString())).thenReturn(null);
 
         // When
         subscriber.onMessage(redisMessage, null);
@@ -97,7 +100,7 @@ class RedisMessageSubscriberTest {
 
         when(redisMessage.getChannel()).thenReturn(channel.getBytes());
         when(redisMessage.getBody()).thenReturn(jsonMessage.getBytes());
-        when(sessionManager.getSession(userId.toString())).thenReturn(webSocketSession);
+        sessionManager.addSession(userId, webSocketSession);
         when(webSocketSession.isOpen()).thenReturn(false);
 
         // When
@@ -112,19 +115,78 @@ class RedisMessageSubscriberTest {
     void shouldLogWarningWhenChannelFormatInvalid() throws Exception {
         // Given
         String invalidChannel = "invalid-channel-format";
-        String jsonMessage = "{\"content\":\"Test\"}";
 
         when(redisMessage.getChannel()).thenReturn(invalidChannel.getBytes());
-        when(redisMessage.getBody()).thenReturn(jsonMessage.getBytes());
 
         // When
         subscriber.onMessage(redisMessage, null);
 
         // Then
-        verify(sessionManager, never()).getSession(anyString());
         verify(webSocketSession, never()).sendMessage(any());
     }
 
+    @Test
+    @DisplayName("使用者有多個裝置時，應該推送給所有開啟中的連線")
+    void shouldFanOutToAllOpenSessionsOfUser() throws Exception {
+        // Given
+        UUID userId = UUID.randomUUID();
+        String channel = "user:" + userId.toString();
+        String jsonMessage = "{\"content\":\"Multi device\"}";
+
+        WebSocketSession phoneSession = mock(WebSocketSession.class);
+        WebSocketSession closedSession = mock(WebSocketSession.class);
+
+        when(redisMessage.getChannel()).thenReturn(channel.getBytes());
+        when(redisMessage.getBody()).thenReturn(jsonMessage.getBytes());
+        when(webSocketSession.isOpen()).thenReturn(true);
+        when(phoneSession.isOpen()).thenReturn(true);
+        when(closedSession.isOpen()).thenReturn(false);
+        sessionManager.addSession(userId, webSocketSession);
+        sessionManager.addSession(userId, phoneSession);
+        sessionManager.addSession(userId, closedSession);
+
+        // When
+        subscriber.onMessage(redisMessage, null);
+
+        // Then
+        verify(webSocketSession).sendMessage(any(TextMessage.class));
+        verify(phoneSession).sendMessage(any(TextMessage.class));
+        verify(closedSession, never()).sendMessage(any());
+    }
+
+    @Test
+    @DisplayName("群組訊息應該只展開給本節點在線的成員，所有連線共用同一個 frame")
+    void shouldExpandGroupMessageToLocalMembers() throws Exception {
+        // Given：3 位成員中只有 2 位在本節點，另有一位非成員在線
+        UUID member = UUID.randomUUID();
+        UUID otherMember = UUID.randomUUID();
+        UUID nonMember = UUID.randomUUID();
+        String conversationId = "group-" + UUID.randomUUID();
+        WebSocketSession otherSession = mock(WebSocketSession.class);
+        WebSocketSession nonMemberSession = mock(WebSocketSession.class);
+
+        when(redisMessage.getChannel()).thenReturn(("conversation:" + conversationId).getBytes());
+        when(redisMessage.getBody()).thenReturn("{\"content\":\"Hello group\"}".getBytes());
+        when(membershipCache.members(conversationId)).thenReturn(Set.of(member, otherMember, UUID.randomUUID()));
+        when(webSocketSession.isOpen()).thenReturn(true);
+        when(otherSession.isOpen()).thenReturn(true);
+        sessionManager.addSession(member, webSocketSession);
+        sessionManager.addSession(otherMember, otherSession);
+        sessionManager.addSession(nonMember, nonMemberSession);
+
+        // When
+        subscriber.onMessage(redisMessage, null);
+
+        // Then
+        ArgumentCaptor<TextMessage> first = ArgumentCaptor.forClass(TextMessage.class);
+        ArgumentCaptor<TextMessage> second = ArgumentCaptor.forClass(TextMessage.class);
+        verify(webSocketSession).sendMessage(first.capture());
+        verify(otherSession).sendMessage(second.capture());
+        verify(nonMemberSession, never()).sendMessage(any());
+        assertThat(first.getValue().getPayload()).contains("Hello group");
+        assertThat(second.getValue()).isSameAs(first.getValue());
+    }
+
     @Test
     @DisplayName("當處理訊息發生異常時，應該捕獲並記錄")
     void shouldHandleExceptionWhenProcessingMessage() throws Exception {
@@ -135,7 +197,7 @@ class RedisMessageSubscriberTest {
 
         when(redisMessage.getChannel()).thenReturn(channel.getBytes());
         when(redisMessage.getBody()).thenReturn(jsonMessage.getBytes());
-        when(sessionManager.getSession(userId.toString())).thenReturn(webSocketSession);
+        sessionManager.addSession(userId, webSocketSession);
         when(webSocketSession.isOpen()).thenReturn(true);
 
         // 模擬 WebSocket 發送失敗
@@ -0,0 +1,120 @@
+package com.chathub.service;
+
+import com.chathub.config.BusProperties;
+import com.chathub.config.NodeProperties;
+import com.chathub.handler.codec.EncodedFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * RedisStreamPublisher 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Redis Streams 訊息發布者測試")
+class RedisStreamPublisherTest {
+
+    @Mock
+    private RedisTemplate<String, byte[]> redisTemplate;
+
+    @Mock
+    private PresenceRoutingService routingService;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStreamCommands streamCommands;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RedisStreamPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new RedisStreamPublisher(redisTemplate, new ObjectMapper(), routingService, new NodeProperties(),
+                                             new BusProperties(), meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeCallbacks() {
+        when(connection.streamCommands()).thenReturn(streamCommands);
+        when(streamCommands.xAdd(any(MapRecord.class), any(XAddOptions.class))).thenReturn(RecordId.of("1-0"));
+        when(redisTemplate.execute(any(RedisCallback.class)))
+            .thenAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+    }
+
+    @Test
+    @DisplayName("有路由資料時，應該寫入各節點的 Stream，並帶上原本的頻道名稱")
+    void shouldAppendToRoutedNodeStreams() {
+        // Given
+        executeCallbacks();
+        UUID userId = UUID.randomUUID();
+        when(routingService.findNodes(userId.toString())).thenReturn(Set.of("pod-1"));
+
+        // When
+        publisher.publishToUser(userId, Map.of("content", "Durable"));
+
+        // Then
+        ArgumentCaptor<ByteRecord> recordCaptor = ArgumentCaptor.forClass(ByteRecord.class);
+        verify(streamCommands).xAdd(recordCaptor.capture(), any(XAddOptions.class));
+        ByteRecord record = recordCaptor.getValue();
+        assertThat(new String(record.getStream(), StandardCharsets.UTF_8)).isEqualTo("bus:node:pod-1");
+        assertThat(field(record, "ch")).isEqualTo("node:pod-1:user:" + userId);
+        assertThat(field(record, "b")).contains("Durable");
+        assertThat(meterRegistry.counter("chathub.bus.published", "bus", "streams").count()).isEqualTo(1);
+        verify(redisTemplate, never()).convertAndSend(any(), any());
+    }
+
+    @Test
+    @DisplayName("群組訊息寫入 broadcast Stream；正在輸入仍走 ephemeral Pub/Sub 頻道")
+    void shouldAppendGroupToBroadcastAndKeepTypingOnPubSub() {
+        // Given
+        executeCallbacks();
+        UUID userId = UUID.randomUUID();
+        when(routingService.findNodes(userId.toString())).thenReturn(Set.of("pod-1"));
+
+        // When
+        publisher.publishToConversation("group-abc", Map.of("content", "Hi all"));
+        publisher.publishEphemeral(userId.toString(), EncodedFrame.wrap("{}".getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        ArgumentCaptor<ByteRecord> recordCaptor = ArgumentCaptor.forClass(ByteRecord.class);
+        verify(streamCommands).xAdd(recordCaptor.capture(), any(XAddOptions.class));
+        assertThat(new String(recordCaptor.getValue().getStream(), StandardCharsets.UTF_8)).isEqualTo("bus:broadcast");
+        assertThat(field(recordCaptor.getValue(), "ch")).isEqualTo("conversation:group-abc");
+        verify(redisTemplate).convertAndSend(eq("ephemeral:node:pod-1:user:" + userId), any(byte[].class));
+    }
+
+    private static String field(ByteRecord record, String name) {
+        return record.getValue().entrySet().stream()
+                     .filter(entry -> Arrays.equals(entry.getKey(), name.getBytes(StandardCharsets.UTF_8)))
+                     .map(entry -> new String(entry.getValue(), StandardCharsets.UTF_8))
+                     .findFirst()
+                     .orElseThrow();
+    }
+}
@@ -0,0 +1,233 @@
+package com.chathub.service;
+
+import com.chathub.config.BusProperties;
+import com.chathub.config.NodeProperties;
+import com.chathub.handler.codec.EncodedFrame;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.mockito.stubbing.OngoingStubbing;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * RedisStreamSubscriber 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("Redis Streams 訊息訂閱者測試")
+class RedisStreamSubscriberTest {
+
+    private static final String DEAD_NODE = "pod-dead";
+
+    @Mock
+    private RedisConnectionFactory connectionFactory;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStreamCommands streamCommands;
+
+    @Mock
+    private RedisKeyCommands keyCommands;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private RedisMessageSubscriber messageSubscriber;
+
+    @Mock
+    private MessagePublisher publisher;
+
+    private final NodeProperties nodeProperties = new NodeProperties();
+    private RedisStreamSubscriber subscriber;
+
+    @BeforeEach
+    void setUp() {
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        when(connection.streamCommands()).thenReturn(streamCommands);
+        when(connection.keyCommands()).thenReturn(keyCommands);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        BusProperties busProperties = new BusProperties();
+        busProperties.setReadTimeout(Duration.ofMillis(100));
+        subscriber = new RedisStreamSubscriber(connectionFactory, stringRedisTemplate, messageSubscriber, publisher,
+                                               nodeProperties, busProperties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscriber.stop();
+    }
+
+    @Test
+    @DisplayName("接手死亡節點時應該重新發布未確認的訊息，並清除其 Stream 與 broadcast consumer group")
+    void shouldRepublishAndCleanUpDeadNode() {
+        // Given
+        when(zSetOperations.score(RedisStreamPublisher.NODES_KEY, DEAD_NODE)).thenReturn(0.0);
+        stubPending(RecordId.of("1-0"));
+        whenReadGroup().thenReturn(List.of());
+
+        // When
+        subscriber.reclaim(DEAD_NODE, System.currentTimeMillis());
+
+        // Then
+        verify(publisher).publishToUser(eq("user-1"), any(EncodedFrame.class));
+        verify(streamCommands).xAck(eq(bytes(RedisStreamPublisher.nodeStream(DEAD_NODE))),
+                                    eq(RedisStreamPublisher.group(DEAD_NODE)), eq(RecordId.of("1-0")));
+        verify(keyCommands).del(bytes(RedisStreamPublisher.nodeStream(DEAD_NODE)));
+        verify(streamCommands).xGroupDestroy(bytes(RedisStreamPublisher.BROADCAST_STREAM),
+                                             RedisStreamPublisher.group(DEAD_NODE));
+        verify(zSetOperations).remove(RedisStreamPublisher.NODES_KEY, DEAD_NODE);
+    }
+
+    @Test
+    @DisplayName("節點在接手途中恢復心跳時，應該停止認領且不清除其 Stream 與 consumer group")
+    void shouldKeepStreamWhenHeartbeatReturns() {
+        // Given：開始時已逾時，認領第一批後心跳恢復
+        long deadline = System.currentTimeMillis();
+        when(zSetOperations.score(RedisStreamPublisher.NODES_KEY, DEAD_NODE))
+            .thenReturn(0.0, 0.0, (double) deadline + 1);
+        stubPending(RecordId.of("1-0"));
+
+        // When
+        subscriber.reclaim(DEAD_NODE, deadline);
+
+        // Then
+        verify(publisher).publishToUser(eq("user-1"), any(EncodedFrame.class));
+        verify(streamCommands, times(1)).xPending(any(byte[].class), anyString(), any(Range.class), anyLong());
+        verify(keyCommands, never()).del(any(byte[].class));
+        verify(streamCommands, never()).xGroupDestroy(any(byte[].class), anyString());
+        verify(zSetOperations, never()).remove(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("心跳未逾時的節點不應該被接手")
+    void shouldSkipNodeWithFreshHeartbeat() {
+        // Given
+        long deadline = System.currentTimeMillis();
+        when(zSetOperations.score(RedisStreamPublisher.NODES_KEY, DEAD_NODE)).thenReturn((double) deadline + 1);
+
+        // When
+        subscriber.reclaim(DEAD_NODE, deadline);
+
+        // Then
+        verifyNoInteractions(connectionFactory, publisher);
+        verify(zSetOperations, never()).remove(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("讀取時收到 NOGROUP 應該重建 consumer group 並繼續推送")
+    void shouldRecreateGroupsOnNoGroup() {
+        // Given：第一次讀取時 consumer group 已被其他節點清除
+        String channel = RedisChannels.nodeUser(nodeProperties.getId(), "user-1");
+        whenReadNodeAndBroadcast()
+            .thenThrow(new RedisSystemException("NOGROUP No such key",
+                                                new IllegalStateException("NOGROUP No such key or consumer group")))
+            .thenReturn(List.of(record(RedisStreamPublisher.nodeStream(nodeProperties.getId()), "2-0", channel)))
+            .thenAnswer(invocation -> {
+                Thread.sleep(10);
+                return List.of();
+            });
+
+        // When
+        subscriber.start();
+
+        // Then：啟動時與收到 NOGROUP 後各建立一次兩個 group
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(
+            () -> verify(messageSubscriber).deliver(eq(channel), any(EncodedFrame.class)));
+        verify(streamCommands, times(2)).xGroupCreate(eq(bytes(RedisStreamPublisher.nodeStream(nodeProperties.getId()))),
+                                                      anyString(), eq(ReadOffset.from("0")), anyBoolean());
+        verify(streamCommands, times(2)).xGroupCreate(eq(bytes(RedisStreamPublisher.BROADCAST_STREAM)),
+                                                      anyString(), eq(ReadOffset.latest()), anyBoolean());
+        verify(zSetOperations, times(2)).add(eq(RedisStreamPublisher.NODES_KEY), eq(nodeProperties.getId()),
+                                             anyDouble());
+    }
+
+    /**
+     * 死亡節點有一筆未確認的訊息，XCLAIM 後回傳；之後 XPENDING 為空
+     */
+    private void stubPending(RecordId id) {
+        byte[] stream = bytes(RedisStreamPublisher.nodeStream(DEAD_NODE));
+        String group = RedisStreamPublisher.group(DEAD_NODE);
+        PendingMessage pending = new PendingMessage(id, Consumer.from(group, DEAD_NODE), Duration.ofMinutes(5), 1);
+        when(streamCommands.xPending(eq(stream), eq(group), any(Range.class), anyLong()))
+            .thenReturn(new PendingMessages(group, List.of(pending)), new PendingMessages(group, List.of()));
+        when(streamCommands.xClaim(eq(stream), eq(group), eq(nodeProperties.getId()), any(XClaimOptions.class)))
+            .thenReturn(List.of(record(RedisStreamPublisher.nodeStream(DEAD_NODE), id.getValue(),
+                                       RedisChannels.nodeUser(DEAD_NODE, "user-1"))));
+    }
+
+    /**
+     * 讀取單一 Stream（接手死亡節點）
+     * xReadGroup 只有泛型 varargs 版本；比對的 StreamOffset 不會造成 heap pollution
+     */
+    @SuppressWarnings("unchecked")
+    private OngoingStubbing<List<ByteRecord>> whenReadGroup() {
+        return when(streamCommands.xReadGroup(any(Consumer.class), any(StreamReadOptions.class),
+                                              ArgumentMatchers.<StreamOffset<byte[]>>any()));
+    }
+
+    /**
+     * 同時讀取本節點與 broadcast Stream（讀取迴圈）
+     * xReadGroup 只有泛型 varargs 版本；比對的 StreamOffset 不會造成 heap pollution
+     */
+    @SuppressWarnings("unchecked")
+    private OngoingStubbing<List<ByteRecord>> whenReadNodeAndBroadcast() {
+        return when(streamCommands.xReadGroup(any(Consumer.class), any(StreamReadOptions.class),
+                                              ArgumentMatchers.<StreamOffset<byte[]>>any(),
+                                              ArgumentMatchers.<StreamOffset<byte[]>>any()));
+    }
+
+    private static ByteRecord record(String stream, String id, String channel) {
+        return StreamRecords.newRecord()
+                            .in(bytes(stream))
+                            .withId(RecordId.of(id))
+                            .ofBytes(Map.of(RedisStreamPublisher.FIELD_CHANNEL, bytes(channel),
+                                            RedisStreamPublisher.FIELD_BODY, bytes("{\"type\":\"message\"}")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
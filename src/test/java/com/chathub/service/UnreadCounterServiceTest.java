@@ -0,0 +1,164 @@
+package com.chathub.service;
+
+import com.chathub.entity.Message;
+import com.chathub.repository.ConversationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UnreadCounterService 測試（Redis 計數器與 MongoDB 加總）
+ */
+@SpringBootTest
+public class UnreadCounterServiceTest {
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private final List<UUID> users = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() {
+        conversationRepository.deleteAll();
+        users.forEach(userId -> redisTemplate.delete(UnreadCounterService.key(userId)));
+    }
+
+    @Test
+    public void testSend_IncrementsCounter() {
+        UUID senderId = newUser();
+        UUID recipientId = newUser();
+
+        // 第一次查詢從 MongoDB 加總並建立計數器
+        assertEquals(0, unreadCounterService.getTotal(recipientId));
+
+        // 發送兩則訊息，計數器直接累加
+        conversationService.updateConversation(message(senderId, recipientId, "第一則"));
+        conversationService.updateConversation(message(senderId, recipientId, "第二則"));
+
+        assertEquals(2, unreadCounterService.snapshot(recipientId)[0], "計數器應該累加");
+        assertEquals(2, unreadCounterService.getTotal(recipientId));
+        assertEquals(0, unreadCounterService.getTotal(senderId), "發送者沒有未讀");
+
+        System.out.println("✅ 發送訊息累加未讀數測試通過！");
+    }
+
+    @Test
+    public void testRead_DecrementsCounter() {
+        UUID senderId = newUser();
+        UUID recipientId = newUser();
+        unreadCounterService.getTotal(recipientId);
+        Message message = message(senderId, recipientId, "測試訊息");
+        conversationService.updateConversation(message);
+        conversationService.updateConversation(message(senderId, recipientId, "測試訊息 2"));
+
+        // 已讀後從計數器扣除
+        conversationService.resetUnreadCount(message.getConversationId(), recipientId);
+
+        assertEquals(0, unreadCounterService.getTotal(recipientId), "已讀後未讀數應該歸零");
+
+        // 扣除不會低於 0
+        unreadCounterService.decrement(recipientId, 5);
+        assertEquals(0, unreadCounterService.getTotal(recipientId));
+
+        System.out.println("✅ 已讀扣除未讀數測試通過！");
+    }
+
+    @Test
+    public void testReconcile_CorrectsDrift() {
+        UUID senderId = newUser();
+        UUID recipientId = newUser();
+        unreadCounterService.getTotal(recipientId);
+        conversationService.updateConversation(message(senderId, recipientId, "測試訊息"));
+
+        // 只改 Redis、不改 MongoDB，模擬誤差
+        unreadCounterService.increment(recipientId, 5);
+        assertEquals(6, unreadCounterService.getTotal(recipientId));
+
+        assertTrue(unreadCounterService.reconcile(recipientId), "應該修正計數器");
+        assertEquals(1, unreadCounterService.getTotal(recipientId));
+        assertFalse(unreadCounterService.reconcile(recipientId), "已經正確時不需要修正");
+
+        System.out.println("✅ 校正未讀數測試通過！");
+    }
+
+    @Test
+    public void testReconcile_KeepsConcurrentIncrement() {
+        UUID senderId = newUser();
+        UUID recipientId = newUser();
+        unreadCounterService.getTotal(recipientId);
+        unreadCounterService.increment(recipientId, 5);
+
+        // 校正記下版本、從 MongoDB 加總（0）之後，另一則訊息送達
+        long[] snapshot = unreadCounterService.snapshot(recipientId);
+        long expected = unreadCounterService.recompute(recipientId);
+        conversationService.updateConversation(message(senderId, recipientId, "校正中送達"));
+
+        // 版本已變，過時的加總不應該蓋掉剛才的累加
+        assertFalse(unreadCounterService.compareAndSet(recipientId, snapshot[1], expected));
+        assertEquals(6, unreadCounterService.getTotal(recipientId));
+
+        // 下一輪校正才修正
+        assertTrue(unreadCounterService.reconcile(recipientId));
+        assertEquals(1, unreadCounterService.getTotal(recipientId));
+
+        System.out.println("✅ 校正期間併發累加測試通過！");
+    }
+
+    @Test
+    public void testGetTotal_DoesNotStoreStaleTotal() {
+        UUID senderId = newUser();
+        UUID recipientId = newUser();
+        conversationService.updateConversation(message(senderId, recipientId, "第一則"));
+
+        // 計數器不存在：查詢記下版本、從 MongoDB 加總（1）之後，另一則訊息送達
+        long[] snapshot = unreadCounterService.snapshot(recipientId);
+        assertEquals(-1, snapshot[0], "加總完成前沒有未讀數");
+        long stale = unreadCounterService.recompute(recipientId);
+        conversationService.updateConversation(message(senderId, recipientId, "加總中送達"));
+
+        // 過時的加總不寫入，下次查詢重新加總
+        assertFalse(unreadCounterService.compareAndSet(recipientId, snapshot[1], stale));
+        assertEquals(2, unreadCounterService.getTotal(recipientId));
+        assertEquals(2, unreadCounterService.snapshot(recipientId)[0], "重新加總後應該寫入計數器");
+
+        System.out.println("✅ 查詢期間併發累加測試通過！");
+    }
+
+    private UUID newUser() {
+        UUID userId = UUID.randomUUID();
+        users.add(userId);
+        return userId;
+    }
+
+    private static Message message(UUID senderId, UUID recipientId, String content) {
+        return Message.builder()
+                      .messageId(UUID.randomUUID().toString())
+                      .conversationId(Message.generateConversationId(senderId, recipientId))
+                      .senderId(senderId)
+                      .senderUsername("alice")
+                      .recipientId(recipientId)
+                      .content(content)
+                      .timestamp(Instant.now())
+                      .isRead(false)
+                      .createdAt(Instant.now())
+                      .build();
+    }
+}
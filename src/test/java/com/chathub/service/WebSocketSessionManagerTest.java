@@ -0,0 +1,117 @@
+package com.chathub.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * WebSocketSessionManager 單元測試
+ */
+@DisplayName("WebSocket 連線管理器測試")
+class WebSocketSessionManagerTest {
+
+    private WebSocketSessionManager sessionManager;
+
+    @BeforeEach
+    void setUp() {
+        sessionManager = new WebSocketSessionManager(16);
+    }
+
+    @Test
+    @DisplayName("同一使用者的第二個裝置不應該覆蓋第一個連線")
+    void shouldKeepAllDevicesOfSameUser() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        WebSocketSession browser = mock(WebSocketSession.class);
+        WebSocketSession phone = mock(WebSocketSession.class);
+
+        // When
+        boolean firstAdded = sessionManager.addSession(userId, browser);
+        boolean secondAdded = sessionManager.addSession(userId, phone);
+
+        // Then
+        assertThat(firstAdded).isTrue();
+        assertThat(secondAdded).isFalse();
+        assertThat(sessionManager.getSessions(userId)).containsExactlyInAnyOrder(browser, phone);
+        assertThat(sessionManager.getActiveSessionCount()).isEqualTo(2);
+        assertThat(sessionManager.getOnlineUserCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("移除最後一個裝置時，使用者應該從管理器中移除")
+    void shouldReportLastSessionRemoved() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        WebSocketSession browser = mock(WebSocketSession.class);
+        WebSocketSession phone = mock(WebSocketSession.class);
+        sessionManager.addSession(userId, browser);
+        sessionManager.addSession(userId, phone);
+
+        // When & Then
+        assertThat(sessionManager.removeSession(userId, browser)).isFalse();
+        assertThat(sessionManager.getSessions(userId)).containsExactly(phone);
+
+        assertThat(sessionManager.removeSession(userId, phone)).isTrue();
+        assertThat(sessionManager.getSessions(userId)).isEmpty();
+        assertThat(sessionManager.getActiveSessionCount()).isZero();
+        assertThat(sessionManager.getOnlineUserCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("併發連線與斷線後，各分片計數應該正確")
+    void shouldKeepShardCountersConsistentUnderConcurrency() throws Exception {
+        // Given
+        int users = 2_000;
+        UUID[] userIds = new UUID[users];
+        WebSocketSession[] sessions = new WebSocketSession[users];
+        for (int i = 0; i < users; i++) {
+            userIds[i] = UUID.randomUUID();
+            sessions[i] = mock(WebSocketSession.class);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch connected = new CountDownLatch(users);
+
+        // When - 全部連線
+        for (int i = 0; i < users; i++) {
+            int index = i;
+            executor.execute(() -> {
+                sessionManager.addSession(userIds[index], sessions[index]);
+                connected.countDown();
+            });
+        }
+        assertThat(connected.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Then
+        assertThat(sessionManager.getActiveSessionCount()).isEqualTo(users);
+        assertThat(Arrays.stream(sessionManager.getShardSessionCounts()).sum()).isEqualTo(users);
+
+        // When - 一半斷線
+        CountDownLatch disconnected = new CountDownLatch(users / 2);
+        for (int i = 0; i < users / 2; i++) {
+            int index = i;
+            executor.execute(() -> {
+                sessionManager.removeSession(userIds[index], sessions[index]);
+                disconnected.countDown();
+            });
+        }
+        assertThat(disconnected.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        // Then
+        assertThat(sessionManager.getActiveSessionCount()).isEqualTo(users / 2);
+        assertThat(sessionManager.getOnlineUserCount()).isEqualTo(users / 2);
+        assertThat(sessionManager.getShardSessionCounts()).hasSize(16);
+    }
+}
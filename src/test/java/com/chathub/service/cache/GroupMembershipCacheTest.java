@@ -0,0 +1,109 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.GroupProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.repository.ConversationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * GroupMembershipCache 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("群組成員快取測試")
+class GroupMembershipCacheTest {
+
+    private static final String GROUP_ID = Conversation.GROUP_PREFIX + "1";
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private GroupMembershipCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new GroupMembershipCache(conversationRepository, redisTemplate, new GroupProperties(),
+                                         new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("成員名單只查詢一次 MongoDB；一對一對話不查詢")
+    void shouldLoadMembersOnce() {
+        // Given
+        when(conversationRepository.findByConversationId(GROUP_ID)).thenReturn(Optional.of(group(alice)));
+
+        // When
+        boolean member = cache.isMember(GROUP_ID, alice);
+        boolean stranger = cache.isMember(GROUP_ID, bob);
+
+        // Then
+        assertThat(member).isTrue();
+        assertThat(stranger).isFalse();
+        assertThat(cache.members(alice + "_" + bob)).isEmpty();
+        verify(conversationRepository, times(1)).findByConversationId(anyString());
+    }
+
+    @Test
+    @DisplayName("成員異動後刪除本機快取並通知其他節點，下次查詢取得新名單")
+    void shouldReloadAfterLocalInvalidation() {
+        // Given
+        when(conversationRepository.findByConversationId(GROUP_ID))
+            .thenReturn(Optional.of(group(alice)))
+            .thenReturn(Optional.of(group(alice, bob)));
+        assertThat(cache.isMember(GROUP_ID, bob)).isFalse();
+
+        // When
+        cache.invalidate(GROUP_ID);
+
+        // Then
+        assertThat(cache.isMember(GROUP_ID, bob)).isTrue();
+        verify(redisTemplate).convertAndSend(GroupMembershipCache.INVALIDATION_CHANNEL, GROUP_ID);
+    }
+
+    @Test
+    @DisplayName("收到其他節點的失效通知後重新載入")
+    void shouldReloadAfterRemoteInvalidation() {
+        // Given
+        when(conversationRepository.findByConversationId(GROUP_ID))
+            .thenReturn(Optional.of(group(alice, bob)))
+            .thenReturn(Optional.of(group(alice)));
+        assertThat(cache.isMember(GROUP_ID, bob)).isTrue();
+
+        // When
+        cache.onMessage(new DefaultMessage(GroupMembershipCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                                           GROUP_ID.getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then
+        assertThat(cache.isMember(GROUP_ID, bob)).isFalse();
+        verifyNoInteractions(redisTemplate);
+    }
+
+    private static Conversation group(UUID... members) {
+        return Conversation.builder()
+                           .conversationId(GROUP_ID)
+                           .type(Conversation.Type.GROUP)
+                           .participants(List.of(members))
+                           .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.JwtProperties;
+import com.chathub.config.TokenRevocationProperties;
+import com.chathub.service.RedisService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * TokenRevocationCache 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Token 黑名單近端快取測試")
+class TokenRevocationCacheTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    @Mock
+    private RedisService redisService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TokenRevocationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setAccessTokenExpiration(3_600_000L);
+        cache = new TokenRevocationCache(redisTemplate, redisService, jwtProperties,
+                                         new TokenRevocationProperties(), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("第一次補讀前查詢 Redis；讀完撤銷 Stream 後由記憶體回答，不再查詢 Redis")
+    void shouldAnswerFromMemoryAfterInitialSync() {
+        // Given
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        MapRecord<String, Object, Object> record = StreamRecords.newRecord()
+            .in(TokenRevocationCache.STREAM_KEY)
+            .withId(RecordId.of(System.currentTimeMillis() - 1_000, 0))
+            .ofMap(Map.<Object, Object>of("j", "jti-revoked", "e", String.valueOf(expiresAt)));
+        givenStreamRecords(List.of(record));
+        when(redisService.isTokenBlacklisted("jti-before-sync")).thenReturn(false);
+
+        // When
+        boolean beforeSync = cache.isRevoked("jti-before-sync");
+        cache.sync();
+
+        // Then
+        assertThat(beforeSync).isFalse();
+        assertThat(cache.isRevoked("jti-revoked")).isTrue();
+        assertThat(cache.isRevoked("jti-active")).isFalse();
+        verify(redisService, times(1)).isTokenBlacklisted(anyString());
+        assertThat(meterRegistry.counter("chathub.auth.revocation.checks", "source", "memory").count()).isEqualTo(2);
+        // 啟動時讀到的撤銷不計入傳播延遲
+        assertThat(meterRegistry.timer("chathub.auth.revocation.propagation").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Pub/Sub 撤銷通知立即生效並記錄傳播延遲；已到期的 Token 不保留")
+    void shouldApplyPublishedRevocations() {
+        // Given：已完成一次補讀
+        givenStreamRecords(List.of());
+        cache.sync();
+        long now = System.currentTimeMillis();
+
+        // When
+        cache.onMessage(message((now - 20) + "-0 jti-new " + (now + 60_000)), null);
+        cache.onMessage(message((now - 20) + "-1 jti-old " + (now - 1_000)), null);
+
+        // Then
+        assertThat(cache.isRevoked("jti-new")).isTrue();
+        assertThat(cache.isRevoked("jti-old")).isFalse();
+        assertThat(meterRegistry.timer("chathub.auth.revocation.propagation").count()).isEqualTo(1);
+        verifyNoInteractions(redisService);
+    }
+
+    @Test
+    @DisplayName("登出撤銷：寫入黑名單與撤銷 Stream，本節點立即生效")
+    void shouldRevokeLocallyAndBroadcast() {
+        // Given
+        givenStreamRecords(List.of());
+        cache.sync();
+
+        // When
+        cache.revoke("jti-logout", Instant.now().plusSeconds(600));
+
+        // Then
+        verify(redisService).addTokenToBlacklist(eq("jti-logout"), longThat(seconds -> seconds > 590));
+        verify(redisTemplate).execute(eq(TokenRevocationCache.REVOKE_SCRIPT),
+                                      eq(List.of(TokenRevocationCache.STREAM_KEY)), any(Object[].class));
+        assertThat(cache.isRevoked("jti-logout")).isTrue();
+    }
+
+    /**
+     * 撤銷 Stream 補讀回傳的記錄
+     * StreamOperations.read 只有泛型 varargs 版本；比對單一 StreamOffset，不會造成 heap pollution
+     */
+    @SuppressWarnings("unchecked")
+    private void givenStreamRecords(List<MapRecord<String, Object, Object>> records) {
+        when(redisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(streamOperations.read(any(StreamReadOptions.class), ArgumentMatchers.<StreamOffset<String>>any()))
+            .thenReturn(records);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(TokenRevocationCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                                  body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,116 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.UserProfileCacheProperties;
+import com.chathub.entity.User;
+import com.chathub.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserProfileCache 單元測試（只啟用 L1）
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("使用者資料快取測試")
+class UserProfileCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserProfileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UserProfileCache(userRepository, redisTemplate, new ObjectMapper(),
+                                     new UserProfileCacheProperties(), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("第二次查詢應該命中快取，不再查詢資料庫")
+    void shouldHitCacheOnSecondLookup() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user(userId, "alice")));
+
+        // When
+        cache.get(userId);
+        Optional<UserProfile> profile = cache.get(userId);
+
+        // Then
+        assertThat(profile).map(UserProfile::username).contains("alice");
+        verify(userRepository, times(1)).findById(userId);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("以 JWT 預熱後，發訊息不需要查詢資料庫")
+    void shouldServeWarmedProfileWithoutRepository() {
+        // Given
+        UUID userId = UUID.randomUUID();
+
+        // When
+        cache.warm(userId, "bob");
+
+        // Then
+        assertThat(cache.get(userId)).map(UserProfile::username).contains("bob");
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("失效後應該重新讀取，並通知其他節點")
+    void shouldReloadAfterInvalidation() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        cache.warm(userId, "old-name");
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user(userId, "new-name")));
+
+        // When
+        cache.invalidate(userId);
+
+        // Then
+        assertThat(cache.get(userId)).map(UserProfile::username).contains("new-name");
+        verify(redisTemplate).convertAndSend(eq(UserProfileCache.INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    @DisplayName("收到其他節點的失效通知時，應該刪除本機快取")
+    void shouldInvalidateOnRemoteNotification() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        cache.warm(userId, "old-name");
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user(userId, "new-name")));
+
+        // When
+        cache.onMessage(new DefaultMessage(UserProfileCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                                           userId.toString().getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then
+        assertThat(cache.get(userId)).map(UserProfile::username).contains("new-name");
+    }
+
+    private static User user(UUID userId, String username) {
+        return User.builder().userId(userId).username(username).passwordHash("hash").build();
+    }
+}
@@ -0,0 +1,76 @@
+package com.chathub.service.cache;
+
+import com.chathub.config.NodeProperties;
+import com.chathub.service.PresenceRoutingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserRouteCache 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("使用者路由快取測試")
+class UserRouteCacheTest {
+
+    @Mock
+    private PresenceRoutingService routingService;
+
+    private final UUID userId = UUID.randomUUID();
+    private UserRouteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        NodeProperties nodeProperties = new NodeProperties();
+        nodeProperties.setId("pod-1");
+        cache = new UserRouteCache(routingService, nodeProperties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("其他節點的路由只查詢一次 Redis，且不含本節點")
+    void shouldAnswerRepeatedLookupsLocally() {
+        // Given
+        when(routingService.findNodes(userId.toString())).thenReturn(Set.of("pod-1", "pod-2"));
+
+        // When
+        cache.remoteNodes(userId);
+        Set<String> nodes = cache.remoteNodes(userId);
+
+        // Then
+        assertThat(nodes).containsExactly("pod-2");
+        verify(routingService, times(1)).findNodes(userId.toString());
+    }
+
+    @Test
+    @DisplayName("收到路由變更通知後重新查詢；查詢失敗的結果不快取")
+    void shouldReloadAfterInvalidation() {
+        // Given
+        when(routingService.findNodes(userId.toString()))
+            .thenReturn(Set.of("pod-1"))
+            .thenThrow(new IllegalStateException("redis down"))
+            .thenReturn(Set.of("pod-1", "pod-3"));
+        assertThat(cache.remoteNodes(userId)).isEmpty();
+
+        // When：使用者在 pod-3 建立連線
+        cache.onMessage(new DefaultMessage(UserRouteCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                                           userId.toString().getBytes(StandardCharsets.UTF_8)), null);
+
+        // Then
+        assertThatThrownBy(() -> cache.remoteNodes(userId)).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.remoteNodes(userId)).containsExactly("pod-3");
+        verify(routingService, times(3)).findNodes(userId.toString());
+    }
+}
@@ -0,0 +1,110 @@
+package com.chathub.service.dedup;
+
+import com.chathub.config.IdempotencyProperties;
+import com.chathub.entity.Message;
+import com.chathub.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * ClientMessageDeduplicator 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("clientMessageId 去重測試")
+class ClientMessageDeduplicatorTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private ClientMessageDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setExpectedInsertions(1_000);
+        deduplicator = new ClientMessageDeduplicator(messageRepository, redisTemplate, properties,
+                                                     new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Bloom Filter 判斷沒看過時，findDuplicate 不查詢 MongoDB")
+    void shouldSkipLookupForUnseenId() {
+        // When
+        Optional<Message> existing = deduplicator.findDuplicate("client-1");
+
+        // Then
+        assertThat(existing).isEmpty();
+        verify(messageRepository, never()).findByClientMessageId(anyString());
+    }
+
+    @Test
+    @DisplayName("Redis 佔用成功（叢集內近期沒人送過）時，findPersisted 不查詢 MongoDB")
+    void shouldSkipLookupWhenClaimed() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("dedup:client:client-1"), anyString(), any(Duration.class)))
+            .thenReturn(true);
+
+        // When
+        Optional<Message> existing = deduplicator.findPersisted("client-1");
+
+        // Then
+        assertThat(existing).isEmpty();
+        verify(messageRepository, never()).findByClientMessageId(anyString());
+    }
+
+    @Test
+    @DisplayName("已被其他節點佔用的 ID，findPersisted 應查到先前那一筆")
+    void shouldFindMessagePersistedByAnotherNode() {
+        // Given：其他節點（或重啟前）已接受過這個 clientMessageId
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("dedup:client:client-1"), anyString(), any(Duration.class)))
+            .thenReturn(false);
+        Message previous = Message.builder().messageId("message-1").clientMessageId("client-1").build();
+        when(messageRepository.findByClientMessageId("client-1")).thenReturn(Optional.of(previous));
+
+        // When
+        Optional<Message> existing = deduplicator.findPersisted("client-1");
+
+        // Then
+        assertThat(existing).contains(previous);
+        verify(messageRepository).findByClientMessageId("client-1");
+    }
+
+    @Test
+    @DisplayName("Redis 失敗時，findPersisted 退回查詢 MongoDB")
+    void shouldFallBackToMongoWhenRedisFails() {
+        // Given
+        when(redisTemplate.opsForValue()).thenThrow(new IllegalStateException("redis down"));
+        when(messageRepository.findByClientMessageId("client-1")).thenReturn(Optional.empty());
+
+        // When
+        Optional<Message> existing = deduplicator.findPersisted("client-1");
+
+        // Then
+        assertThat(existing).isEmpty();
+        verify(messageRepository).findByClientMessageId("client-1");
+    }
+}
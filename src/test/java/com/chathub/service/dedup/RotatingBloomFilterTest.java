@@ -0,0 +1,107 @@
+package com.chathub.service.dedup;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RotatingBloomFilter 單元測試
+ */
+@DisplayName("輪替式 Bloom Filter 測試")
+class RotatingBloomFilterTest {
+
+    @Test
+    @DisplayName("寫入過的 key 一定查得到（沒有 false negative）")
+    void shouldNeverReportFalseNegatives() {
+        // Given
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.01, 2, Duration.ofMinutes(10));
+        String[] keys = new String[10_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID().toString();
+            filter.put(keys[i]);
+        }
+
+        // Then
+        for (String key : keys) {
+            assertThat(filter.mightContain(key)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("誤判率應該接近設定值")
+    void shouldKeepFalsePositiveRateNearTarget() {
+        // Given
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.01, 1, Duration.ofMinutes(10));
+        for (int i = 0; i < 9_999; i++) {
+            filter.put(UUID.randomUUID().toString());
+        }
+
+        // When
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        // Then：允許統計誤差，但不應超過目標的兩倍
+        assertThat((double) falsePositives / probes).isLessThan(0.02);
+    }
+
+    @Test
+    @DisplayName("超過世代數的舊資料應該被淘汰")
+    void shouldForgetKeysAfterAllGenerationsRotate() {
+        // Given
+        MutableClock clock = new MutableClock();
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000, 0.01, 2, Duration.ofMinutes(10), clock);
+        filter.put("old-key");
+
+        // When：經過一次輪替，舊 key 仍在上一代
+        clock.advance(Duration.ofMinutes(11));
+        filter.put("key-2");
+
+        // Then
+        assertThat(filter.mightContain("old-key")).isTrue();
+
+        // When：再輪替一次，舊 key 所在的世代被丟棄
+        clock.advance(Duration.ofMinutes(11));
+        filter.put("key-3");
+
+        // Then
+        assertThat(filter.mightContain("old-key")).isFalse();
+        assertThat(filter.mightContain("key-2")).isTrue();
+        assertThat(filter.mightContain("key-3")).isTrue();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
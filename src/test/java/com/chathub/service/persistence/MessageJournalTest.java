@@ -0,0 +1,172 @@
+package com.chathub.service.persistence;
+
+import com.chathub.entity.Message;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MessageJournal 單元測試
+ * 使用暫存目錄驗證寫入、重播與檔案回收
+ */
+@DisplayName("訊息 Journal 測試")
+class MessageJournalTest {
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    @DisplayName("重新開啟時應該依序重播尚未回收的訊息")
+    void shouldReplayUnflushedMessagesInOrder() throws Exception {
+        // Given
+        MessageJournal journal = new MessageJournal(journalDir, 1024 * 1024, true);
+        journal.open();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(journal.append(message("content-" + i)));
+        }
+        for (CompletableFuture<Long> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        journal.close();
+
+        // When
+        MessageJournal reopened = new MessageJournal(journalDir, 1024 * 1024, true);
+        List<MessageJournal.Entry> entries = reopened.open();
+
+        // Then
+        assertThat(entries).hasSize(10);
+        assertThat(entries).extracting(MessageJournal.Entry::seq).isSorted();
+        assertThat(entries.get(0).message().getContent()).isEqualTo("content-0");
+        assertThat(entries.get(9).message().getContent()).isEqualTo("content-9");
+
+        // 新寫入的序號應該接續在重播紀錄之後
+        assertThat(reopened.append(message("next")).get(5, TimeUnit.SECONDS)).isEqualTo(11L);
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("已寫入 MongoDB 的檔案應該被回收")
+    void shouldDeleteFlushedSegments() throws Exception {
+        // Given：檔案上限很小，每筆訊息都會換新檔
+        MessageJournal journal = new MessageJournal(journalDir, 1, false);
+        journal.open();
+        long lastSeq = 0;
+        for (int i = 0; i < 5; i++) {
+            lastSeq = journal.append(message("content-" + i)).get(5, TimeUnit.SECONDS);
+        }
+        assertThat(journal.segmentCount()).isEqualTo(6);
+
+        // When
+        journal.markFlushed(lastSeq);
+
+        // Then
+        assertThat(journal.segmentCount()).isEqualTo(1);
+        journal.close();
+
+        MessageJournal reopened = new MessageJournal(journalDir, 1, false);
+        assertThat(reopened.open()).isEmpty();
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("同一個檔案中已寫入 MongoDB 的紀錄不重播，新序號接續在檢查點之後")
+    void shouldNotReplayEntriesBeforeCheckpoint() throws Exception {
+        // Given：三筆在同一個檔案，前兩筆已寫入
+        MessageJournal journal = new MessageJournal(journalDir, 1024 * 1024, true);
+        journal.open();
+        for (int i = 0; i < 3; i++) {
+            journal.append(message("content-" + i)).get(5, TimeUnit.SECONDS);
+        }
+        journal.markFlushed(2);
+        journal.close();
+
+        // When
+        MessageJournal reopened = new MessageJournal(journalDir, 1024 * 1024, true);
+        List<MessageJournal.Entry> entries = reopened.open();
+
+        // Then
+        assertThat(entries).extracting(entry -> entry.message().getContent()).containsExactly("content-2");
+        assertThat(reopened.append(message("next")).get(5, TimeUnit.SECONDS)).isEqualTo(4L);
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("當機時寫到一半的紀錄應該被略過")
+    void shouldSkipTruncatedTail() throws Exception {
+        // Given
+        MessageJournal journal = new MessageJournal(journalDir, 1024 * 1024, true);
+        journal.open();
+        journal.append(message("complete")).get(5, TimeUnit.SECONDS);
+        journal.close();
+
+        try (var files = Files.list(journalDir)) {
+            Path segment = files.findFirst().orElseThrow();
+            Files.writeString(segment, "{\"seq\":2,\"message\":{\"content\":\"trunc",
+                              StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+
+        // When
+        MessageJournal reopened = new MessageJournal(journalDir, 1024 * 1024, true);
+        List<MessageJournal.Entry> entries = reopened.open();
+
+        // Then
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).message().getContent()).isEqualTo("complete");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("不完整的紀錄只略過該行，之後的紀錄照常重播")
+    void shouldReplayEntriesAfterCorruptLine() throws Exception {
+        // Given：第二筆之前夾了一行寫到一半的紀錄
+        MessageJournal journal = new MessageJournal(journalDir, 1024 * 1024, true);
+        journal.open();
+        journal.append(message("first")).get(5, TimeUnit.SECONDS);
+        journal.close();
+        try (var files = Files.list(journalDir)) {
+            Path segment = files.findFirst().orElseThrow();
+            Files.writeString(segment, "{\"seq\":2,\"message\":{\"content\":\"trunc\n",
+                              StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+        journal = new MessageJournal(journalDir, 1024 * 1024, true);
+        journal.open();
+        journal.append(message("after")).get(5, TimeUnit.SECONDS);
+        journal.close();
+
+        // When
+        MessageJournal reopened = new MessageJournal(journalDir, 1024 * 1024, true);
+        List<MessageJournal.Entry> entries = reopened.open();
+
+        // Then
+        assertThat(entries).extracting(entry -> entry.message().getContent()).containsExactly("first", "after");
+        reopened.close();
+    }
+
+    private static Message message(String content) {
+        UUID senderId = UUID.randomUUID();
+        UUID recipientId = UUID.randomUUID();
+        return Message.builder()
+                      .messageId(UUID.randomUUID().toString())
+                      .conversationId(Message.generateConversationId(senderId, recipientId))
+                      .senderId(senderId)
+                      .recipientId(recipientId)
+                      .content(content)
+                      .timestamp(Instant.now())
+                      .isRead(false)
+                      .build();
+    }
+}
@@ -0,0 +1,307 @@
+package com.chathub.service.persistence;
+
+import com.chathub.config.PersistenceProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import com.chathub.service.UnreadCounterService;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * MessagePersistencePipeline 單元測試
+ * MongoDB 以 Mock 取代，Journal 使用暫存目錄
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("訊息寫入管線測試")
+class MessagePersistencePipelineTest {
+
+    @TempDir
+    Path journalDir;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations messageOps;
+
+    @Mock
+    private BulkOperations conversationOps;
+
+    @Mock
+    private UnreadCounterService unreadCounterService;
+
+    /**
+     * 每次 insertMany 的內容（依呼叫順序）
+     */
+    private final List<List<Message>> insertedBatches = Collections.synchronizedList(new ArrayList<>());
+    private final List<Message> pendingInsert = new ArrayList<>();
+    private volatile Predicate<List<Message>> failWhen = batch -> false;
+
+    private PersistenceProperties properties;
+    private MessagePersistencePipeline pipeline;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new PersistenceProperties();
+        properties.setEnabled(true);
+        properties.setJournalDir(journalDir.toString());
+        properties.setFsync(false);
+        properties.setMaxBatchDelay(Duration.ofMillis(50));
+
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Message.class))).thenReturn(messageOps);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Conversation.class)))
+            .thenReturn(conversationOps);
+        when(messageOps.insert(anyList())).thenAnswer(invocation -> {
+            pendingInsert.clear();
+            pendingInsert.addAll((List<Message>) invocation.getArgument(0));
+            return messageOps;
+        });
+        when(messageOps.execute()).thenAnswer(invocation -> {
+            List<Message> batch = List.copyOf(pendingInsert);
+            if (failWhen.test(batch)) {
+                throw new IllegalStateException("MongoDB unavailable");
+            }
+            insertedBatches.add(batch);
+            return null;
+        });
+        when(conversationOps.upsert(any(Query.class), any(Update.class))).thenReturn(conversationOps);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null && pipeline.isRunning()) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("訊息應該湊批寫入，每批不超過 batch-size，寫入後回收 Journal")
+    void shouldWriteInBatches() throws Exception {
+        // Given
+        properties.setBatchSize(10);
+        properties.setJournalSegmentBytes(1);
+        pipeline = start();
+
+        // When
+        for (int i = 0; i < 25; i++) {
+            pipeline.submit(message("content-" + i));
+        }
+
+        // Then
+        await().atMost(5, TimeUnit.SECONDS).until(() -> inserted().size() == 25);
+        assertThat(insertedBatches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(10));
+        assertThat(inserted()).extracting(Message::getContent)
+                              .containsExactly(Stream.iterate(0, i -> i + 1).limit(25)
+                                                     .map(i -> "content-" + i).toArray(String[]::new));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> segmentFiles() == 1);
+    }
+
+    @Test
+    @DisplayName("並行送出時寫入順序與 Journal 序號一致，重新開啟不會重播已寫入的訊息")
+    void shouldWriteConcurrentSubmitsInJournalOrder() throws Exception {
+        // Given
+        properties.setBatchSize(7);
+        properties.setJournalSegmentBytes(1);
+        pipeline = start();
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        CountDownLatch ready = new CountDownLatch(1);
+
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(senders.submit(() -> {
+                ready.await();
+                for (int i = 0; i < 25; i++) {
+                    pipeline.submit(message("t" + thread + "-" + i));
+                }
+                return null;
+            }));
+        }
+        ready.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        senders.shutdown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> inserted().size() == 200);
+        pipeline.stop();
+
+        // Then：寫入順序即 Journal 順序（每個發送端自己的訊息依序），且 Journal 全部回收
+        List<Message> inserted = inserted();
+        for (int t = 0; t < 8; t++) {
+            String prefix = "t" + t + "-";
+            assertThat(inserted).extracting(Message::getContent)
+                                .filteredOn(content -> content.startsWith(prefix))
+                                .containsExactly(Stream.iterate(0, i -> i + 1).limit(25)
+                                                       .map(i -> prefix + i).toArray(String[]::new));
+        }
+        MessageJournal reopened = new MessageJournal(journalDir, 1, false);
+        assertThat(reopened.open()).isEmpty();
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("寫入失敗時整批重試，成功前不回收 Journal")
+    void shouldRetryFailedBatch() throws Exception {
+        // Given
+        properties.setBatchSize(100);
+        properties.setJournalSegmentBytes(1);
+        AtomicInteger attempts = new AtomicInteger();
+        failWhen = batch -> attempts.incrementAndGet() <= 2;
+        pipeline = start();
+
+        // When
+        pipeline.submit(message("retry-1"));
+        pipeline.submit(message("retry-2"));
+
+        // Then
+        await().atMost(5, TimeUnit.SECONDS).until(() -> inserted().size() == 2);
+        assertThat(attempts.get()).isGreaterThanOrEqualTo(3);
+        assertThat(inserted()).extracting(Message::getContent).containsExactly("retry-1", "retry-2");
+        await().atMost(5, TimeUnit.SECONDS).until(() -> segmentFiles() == 1);
+    }
+
+    @Test
+    @DisplayName("關機中某批寫入失敗時停止後續批次，失敗的訊息留在 Journal 待重播")
+    void shouldStopDrainingAfterFailedFlushOnShutdown() throws Exception {
+        // Given：含 poison 的批次一直失敗
+        properties.setBatchSize(1);
+        properties.setJournalSegmentBytes(1);
+        failWhen = batch -> batch.stream().anyMatch(m -> m.getContent().equals("poison"));
+        pipeline = start();
+        pipeline.submit(message("poison"));
+        pipeline.submit(message("after"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> mockingDetails(messageOps).getInvocations().stream()
+                                                                              .anyMatch(i -> i.getMethod().getName()
+                                                                                              .equals("execute")));
+
+        // When
+        pipeline.stop();
+
+        // Then：後面的批次沒有寫入，兩筆訊息都能重播
+        assertThat(inserted()).isEmpty();
+        MessageJournal reopened = new MessageJournal(journalDir, 1, false);
+        assertThat(reopened.open()).extracting(entry -> entry.message().getContent())
+                                   .containsExactly("poison", "after");
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("對話更新失敗時只重試對話更新，訊息只寫入一次、未讀數只累加一次")
+    void shouldRetryConversationUpdateWithoutRewritingMessages() throws Exception {
+        // Given
+        properties.setBatchSize(1);
+        when(conversationOps.execute()).thenThrow(new IllegalStateException("MongoDB timeout")).thenReturn(null);
+        pipeline = start();
+
+        // When
+        pipeline.submit(message("once"));
+
+        // Then
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> verify(unreadCounterService).incrementAll(anyMap()));
+        verify(conversationOps, times(2)).execute();
+        verify(messageOps, times(1)).execute();
+        assertThat(inserted()).extracting(Message::getContent).containsExactly("once");
+    }
+
+    @Test
+    @DisplayName("messageId 已存在（先前寫入、對話尚未更新）仍更新對話；只有 clientMessageId 衝突才算重複")
+    void shouldApplyConversationForPreviouslyInsertedMessages() throws Exception {
+        // Given：兩筆都唯一索引衝突，但只有第一筆的 messageId 已在 MongoDB
+        properties.setBatchSize(2);
+        properties.setMaxBatchDelay(Duration.ofSeconds(1));
+        Message written = message("written-before-crash");
+        Message copy = message("copy-of-another-message");
+        BulkOperationException conflict = mock(BulkOperationException.class);
+        when(conflict.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "dup", new BsonDocument(), 0),
+                                                      new BulkWriteError(11000, "dup", new BsonDocument(), 1)));
+        when(messageOps.execute()).thenThrow(conflict);
+        when(mongoTemplate.find(any(Query.class), eq(Message.class))).thenReturn(List.of(written));
+        pipeline = start();
+
+        // When
+        pipeline.submit(written);
+        pipeline.submit(copy);
+
+        // Then
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> verify(unreadCounterService).incrementAll(anyMap()));
+        verify(conversationOps, times(1)).upsert(any(Query.class), any(Update.class));
+    }
+
+    private MessagePersistencePipeline start() {
+        MessagePersistencePipeline started = new MessagePersistencePipeline(mongoTemplate, unreadCounterService,
+                                                                            properties, new SimpleMeterRegistry());
+        started.start();
+        return started;
+    }
+
+    private List<Message> inserted() {
+        synchronized (insertedBatches) {
+            return insertedBatches.stream().flatMap(List::stream).toList();
+        }
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal")).count();
+        }
+    }
+
+    private static Message message(String content) {
+        UUID senderId = UUID.randomUUID();
+        UUID recipientId = UUID.randomUUID();
+        return Message.builder()
+                      .messageId(UUID.randomUUID().toString())
+                      .clientMessageId(UUID.randomUUID().toString())
+                      .conversationId(Message.generateConversationId(senderId, recipientId))
+                      .senderId(senderId)
+                      .recipientId(recipientId)
+                      .content(content)
+                      .timestamp(Instant.now())
+                      .isRead(false)
+                      .build();
+    }
+}
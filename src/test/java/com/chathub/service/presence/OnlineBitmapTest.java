@@ -0,0 +1,57 @@
+package com.chathub.service.presence;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * OnlineBitmap 單元測試
+ */
+@DisplayName("在線 bitmap 測試")
+class OnlineBitmapTest {
+
+    @Test
+    @DisplayName("位元排列與 Redis SETBIT 相同，超過容量時自動擴充")
+    void shouldUseRedisBitOrderAndGrow() {
+        // Given
+        OnlineBitmap bitmap = new OnlineBitmap(8);
+
+        // When：Redis 的 SETBIT key 0 1 與 SETBIT key 9 1 產生 0x80 0x40
+        bitmap.set(0, true);
+        bitmap.set(9, true);
+        bitmap.set(1_000_000, true);
+        bitmap.set(1_000_000, false);
+
+        // Then
+        byte[] bytes = bitmap.toByteArray();
+        assertThat(bytes).containsExactly((byte) 0x80, (byte) 0x40);
+        assertThat(bitmap.get(0)).isTrue();
+        assertThat(bitmap.get(9)).isTrue();
+        assertThat(bitmap.get(1)).isFalse();
+        assertThat(bitmap.get(1_000_000)).isFalse();
+        assertThat(bitmap.get(50_000_000)).isFalse();
+        assertThat(bitmap.sizeInBytes()).isGreaterThanOrEqualTo(1_000_000 / 8);
+    }
+
+    @Test
+    @DisplayName("合併其他節點的 Redis bitmap（長度不同、非 8 的倍數）")
+    void shouldMergeRedisBitmaps() {
+        // Given
+        OnlineBitmap merged = new OnlineBitmap(64);
+        merged.set(3, true);
+        byte[] otherNode = new byte[19];
+        otherNode[0] = (byte) 0x01;   // ID 7
+        otherNode[18] = (byte) 0x80;  // ID 144
+
+        // When
+        merged.or(otherNode);
+
+        // Then
+        assertThat(merged.get(3)).isTrue();
+        assertThat(merged.get(7)).isTrue();
+        assertThat(merged.get(144)).isTrue();
+        assertThat(merged.get(145)).isFalse();
+        assertThat(merged.cardinality()).isEqualTo(3);
+    }
+}
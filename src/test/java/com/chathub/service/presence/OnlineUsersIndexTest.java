@@ -0,0 +1,175 @@
+package com.chathub.service.presence;
+
+import com.chathub.config.NodeProperties;
+import com.chathub.config.PresenceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * OnlineUsersIndex 單元測試（其他節點副本的同步）
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("在線 bitmap 副本同步測試")
+class OnlineUsersIndexTest {
+
+    private static final String OTHER_NODE = "pod-2";
+    private static final String LOG_KEY = "presence:{online}:log:" + OTHER_NODE;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisScriptingCommands scriptingCommands;
+
+    @Mock
+    private RedisStreamCommands streamCommands;
+
+    @Mock
+    private UserIdInterner interner;
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private OnlineUsersIndex index;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.execute(ArgumentMatchers.<RedisCallback<Object>>any()))
+            .thenAnswer(invocation -> invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection));
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+        when(connection.streamCommands()).thenReturn(streamCommands);
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenReturn(Set.of("pod-1", OTHER_NODE));
+        when(interner.internAll(any())).thenAnswer(invocation -> {
+            Collection<UUID> userIds = invocation.getArgument(0);
+            return userIds.stream().mapToInt(userId -> userId.equals(alice) ? 3 : 9).toArray();
+        });
+
+        NodeProperties nodeProperties = new NodeProperties();
+        nodeProperties.setId("pod-1");
+        index = new OnlineUsersIndex(redisTemplate, interner, nodeProperties, new PresenceProperties(),
+                                     new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("第一次看到節點時讀整份 bitmap，之後只套用新的變更")
+    void shouldApplyChangesAfterSnapshot() {
+        // Given：pod-2 上有 alice（ID 3），序號 5
+        givenSnapshot(new byte[]{0x10}, 5, "1-0");
+        givenChanges();
+        index.sync();
+        assertThat(index.onlineAmong(List.of(alice, bob))).containsExactly(alice);
+
+        // When：bob 上線、alice 離線
+        givenChanges(change("2-0", 6, 9, true), change("3-0", 7, 3, false));
+        index.sync();
+
+        // Then
+        assertThat(index.onlineAmong(List.of(alice, bob))).containsExactly(bob);
+        verify(scriptingCommands, times(1)).eval(any(byte[].class), eq(ReturnType.MULTI), eq(3),
+                                                 any(byte[].class), any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    @DisplayName("序號不連續（變更記錄已被裁掉）時重讀整份 bitmap")
+    void shouldResnapshotOnSequenceGap() {
+        // Given
+        givenSnapshot(new byte[]{0x10}, 5, "1-0");
+        givenChanges();
+        index.sync();
+
+        // When：落後太多，下一筆已是序號 9
+        givenSnapshot(new byte[]{0x00, 0x40}, 9, "4-0");
+        givenChanges(change("4-0", 9, 9, true));
+        index.sync();
+
+        // Then
+        assertThat(index.onlineAmong(List.of(alice, bob))).containsExactly(bob);
+        verify(scriptingCommands, times(2)).eval(any(byte[].class), eq(ReturnType.MULTI), eq(3),
+                                                 any(byte[].class), any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    @DisplayName("節點過期後移除它的使用者，不再讀取它的變更")
+    void shouldDropExpiredNode() {
+        // Given
+        givenSnapshot(new byte[]{0x10}, 5, "1-0");
+        givenChanges();
+        index.sync();
+
+        // When
+        when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenReturn(Set.of("pod-1"));
+        index.sync();
+
+        // Then
+        assertThat(index.onlineAmong(List.of(alice, bob))).isEmpty();
+        assertThat(index.isReady()).isTrue();
+        verify(connection, times(1)).streamCommands();
+    }
+
+    private void givenSnapshot(byte[] bitmap, long sequence, String lastId) {
+        when(scriptingCommands.eval(any(byte[].class), eq(ReturnType.MULTI), eq(3),
+                                    any(byte[].class), any(byte[].class), any(byte[].class)))
+            .thenReturn(List.of(bitmap, bytes(String.valueOf(sequence)), bytes(lastId)));
+    }
+
+    /**
+     * 下一次 XREAD 回傳的變更記錄
+     * xRead 只有泛型 varargs 版本；比對單一 StreamOffset，不會造成 heap pollution
+     */
+    @SuppressWarnings("unchecked")
+    private void givenChanges(ByteRecord... records) {
+        when(streamCommands.xRead(any(StreamReadOptions.class), ArgumentMatchers.<StreamOffset<byte[]>>any()))
+            .thenReturn(List.of(records));
+    }
+
+    private static ByteRecord change(String id, long sequence, int userId, boolean online) {
+        return StreamRecords.newRecord()
+                            .in(bytes(LOG_KEY))
+                            .withId(RecordId.of(id))
+                            .ofBytes(Map.of(bytes("q"), bytes(String.valueOf(sequence)),
+                                            bytes("i"), bytes(String.valueOf(userId)),
+                                            bytes("o"), bytes(online ? "1" : "0")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,164 @@
+package com.chathub.service.presence;
+
+import com.chathub.config.NodeProperties;
+import com.chathub.config.PresenceProperties;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.repository.FriendshipRepository;
+import com.chathub.service.MessagePublisher;
+import com.chathub.service.PresenceRoutingService;
+import com.chathub.service.WebSocketSessionManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * PresenceService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("上線狀態測試")
+class PresenceServiceTest {
+
+    @Mock
+    private PresenceRoutingService routingService;
+
+    @Mock
+    private OnlineUsersIndex onlineUsersIndex;
+
+    @Mock
+    private WebSocketSessionManager sessionManager;
+
+    @Mock
+    private FriendshipRepository friendshipRepository;
+
+    @Mock
+    private MessagePublisher publisher;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID userId = UUID.randomUUID();
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        NodeProperties nodeProperties = new NodeProperties();
+        nodeProperties.setId("node-a");
+        PresenceProperties properties = new PresenceProperties();
+        properties.setOfflineGrace(Duration.ofSeconds(5));
+        properties.setIdleTimeout(Duration.ofSeconds(90));
+        presenceService = new PresenceService(routingService, onlineUsersIndex, sessionManager, friendshipRepository,
+                                              publisher, nodeProperties, properties, new ObjectMapper(),
+                                              meterRegistry, now::get);
+    }
+
+    @Test
+    @DisplayName("寬限時間內重新連線：離線與上線都不通知好友")
+    void shouldSuppressReconnectWithinGrace() {
+        // Given
+        presenceService.userDisconnected(userId);
+        now.addAndGet(2_000);
+        presenceService.flush();
+
+        // When
+        presenceService.userConnected(userId);
+        now.addAndGet(10_000);
+        presenceService.flush();
+
+        // Then
+        verifyNoInteractions(friendshipRepository, publisher);
+        assertThat(presenceService.pendingCount()).isZero();
+        assertThat(count("suppressed")).isEqualTo(2);
+        assertThat(count("announced")).isZero();
+    }
+
+    @Test
+    @DisplayName("寬限時間後仍離線：本機好友直接推送、其他節點的好友只發布到其所在節點，frame 只序列化一次")
+    void shouldAnnounceOfflineToLocalAndRemoteFriends() {
+        // Given
+        UUID localFriend = UUID.randomUUID();
+        UUID remoteFriend = UUID.randomUUID();
+        UUID offlineFriend = UUID.randomUUID();
+        List<UUID> friends = List.of(localFriend, remoteFriend, offlineFriend);
+        when(friendshipRepository.findFriendIdsByUserId(userId)).thenReturn(friends);
+        when(routingService.findNodes(List.of(userId))).thenReturn(Map.of());
+        Map<UUID, Set<String>> routes = new HashMap<>();
+        routes.put(localFriend, Set.of("node-a"));
+        routes.put(remoteFriend, Set.of("node-b", "node-c"));
+        when(routingService.findNodes(friends)).thenReturn(routes);
+
+        // When
+        presenceService.userDisconnected(userId);
+        now.addAndGet(4_999);
+        presenceService.flush();
+        verifyNoInteractions(friendshipRepository);
+        now.addAndGet(1);
+        presenceService.flush();
+
+        // Then
+        ArgumentCaptor<EncodedFrame> local = ArgumentCaptor.forClass(EncodedFrame.class);
+        ArgumentCaptor<EncodedFrame> remote = ArgumentCaptor.forClass(EncodedFrame.class);
+        verify(sessionManager).sendToUser(eq(localFriend), local.capture());
+        verify(publisher).publishToNodes(eq(remoteFriend.toString()), eq(Set.of("node-b", "node-c")),
+                                         remote.capture());
+        verify(publisher, never()).publishToNodes(eq(localFriend.toString()), any(), any());
+        assertThat(local.getValue()).isSameAs(remote.getValue());
+        String json = new String(local.getValue().json(), StandardCharsets.UTF_8);
+        assertThat(json).contains("\"PRESENCE\"").contains(userId.toString()).contains("\"online\":false");
+        assertThat(count("announced")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("其他節點仍有連線時不通知離線；超過閒置時間沒有 frame 的連線被關閉")
+    void shouldSkipOfflineWhenStillRoutedAndCloseIdleSessions() throws Exception {
+        // Given
+        when(routingService.findNodes(anyCollection())).thenReturn(Map.of(userId, Set.of("node-b")));
+        WebSocketSession active = mock(WebSocketSession.class);
+        WebSocketSession idle = mock(WebSocketSession.class);
+        when(active.getAttributes()).thenReturn(new HashMap<>());
+        when(idle.getAttributes()).thenReturn(new HashMap<>());
+        when(idle.isOpen()).thenReturn(true);
+        when(sessionManager.getOnlineUserIds()).thenReturn(List.of(userId));
+        when(sessionManager.getSessions(userId)).thenReturn(List.of(active, idle));
+
+        // When
+        presenceService.userDisconnected(userId);
+        presenceService.touch(idle);
+        now.addAndGet(91_000);
+        presenceService.touch(active);
+        presenceService.flush();
+        presenceService.closeIdleSessions();
+
+        // Then
+        verifyNoInteractions(friendshipRepository, publisher);
+        assertThat(count("suppressed")).isEqualTo(1);
+        verify(idle).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(active, never()).close(any());
+        assertThat(presenceService.isOnline(userId)).isTrue();
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.counter("chathub.presence.events", "outcome", outcome).count();
+    }
+}
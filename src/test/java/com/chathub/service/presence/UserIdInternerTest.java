@@ -0,0 +1,90 @@
+package com.chathub.service.presence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserIdInterner / DenseIdTable 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("使用者整數 ID 轉換測試")
+class UserIdInternerTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private UserIdInterner interner;
+
+    @BeforeEach
+    void setUp() {
+        interner = new UserIdInterner(redisTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("本機沒有的 ID 一次向 Redis 分配，之後由本機回答")
+    void shouldInternMissingIdsInOneRoundTrip() {
+        // Given
+        UUID known = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(redisTemplate.execute(eq(UserIdInterner.INTERN_SCRIPT),
+                                   eq(List.of(UserIdInterner.IDS_KEY, UserIdInterner.SEQUENCE_KEY)),
+                                   eq(known.toString())))
+            .thenReturn(List.of(7L));
+        when(redisTemplate.execute(eq(UserIdInterner.INTERN_SCRIPT),
+                                   eq(List.of(UserIdInterner.IDS_KEY, UserIdInterner.SEQUENCE_KEY)),
+                                   eq(first.toString()), eq(second.toString())))
+            .thenReturn(List.of(8L, 9L));
+        interner.intern(known);
+
+        // When
+        int[] ids = interner.internAll(List.of(first, known, second));
+        int[] again = interner.internAll(List.of(second, first, known));
+
+        // Then
+        assertThat(ids).containsExactly(8, 7, 9);
+        assertThat(again).containsExactly(9, 8, 7);
+        assertThat(interner.lookup(UUID.randomUUID())).isEqualTo(DenseIdTable.NOT_FOUND);
+        verify(redisTemplate, times(2)).execute(eq(UserIdInterner.INTERN_SCRIPT), anyList(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("對照表擴充後所有 ID 仍然正確")
+    void shouldKeepIdsAcrossResize() {
+        // Given
+        DenseIdTable table = new DenseIdTable();
+        List<UUID> users = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            users.add(UUID.randomUUID());
+        }
+
+        // When
+        for (int i = 0; i < users.size(); i++) {
+            table.put(users.get(i), i);
+        }
+        table.put(users.get(0), 42);
+
+        // Then
+        assertThat(table.size()).isEqualTo(10_000);
+        assertThat(table.get(users.get(0))).isEqualTo(42);
+        for (int i = 1; i < users.size(); i++) {
+            assertThat(table.get(users.get(i))).isEqualTo(i);
+        }
+        assertThat(table.get(UUID.randomUUID())).isEqualTo(DenseIdTable.NOT_FOUND);
+        assertThat(table.footprintBytes()).isEqualTo(16_384L * 24);
+    }
+}
@@ -0,0 +1,81 @@
+package com.chathub.service.sync;
+
+import com.chathub.config.SyncProperties;
+import com.chathub.entity.Conversation;
+import com.chathub.entity.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * MessageInbox 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("重連同步收件匣測試")
+class MessageInboxTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private final UUID senderId = UUID.randomUUID();
+    private final UUID recipientId = UUID.randomUUID();
+    private MessageInbox inbox;
+
+    @BeforeEach
+    void setUp() {
+        inbox = new MessageInbox(redisTemplate, new SyncProperties());
+    }
+
+    @Test
+    @DisplayName("一對一訊息應該同時寫入接收者與發送者的收件匣，發送者的其他裝置才能補送")
+    void shouldAppendToRecipientAndSenderInbox() {
+        // Given
+        Message message = message(Message.generateConversationId(senderId, recipientId), recipientId);
+
+        // When
+        inbox.append(message);
+
+        // Then
+        verify(redisTemplate).execute(eq(MessageInbox.APPEND_SCRIPT), eq(List.of(MessageInbox.userKey(recipientId))),
+                                      any(Object[].class));
+        verify(redisTemplate).execute(eq(MessageInbox.APPEND_SCRIPT), eq(List.of(MessageInbox.userKey(senderId))),
+                                      any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("群組訊息只寫入對話的收件匣；傳給自己的訊息只寫入一次")
+    void shouldAppendGroupMessageOnce() {
+        // Given
+        String groupId = Conversation.GROUP_PREFIX + UUID.randomUUID();
+
+        // Then
+        assertThat(MessageInbox.keys(message(groupId, null)))
+            .containsExactly(MessageInbox.conversationKey(groupId));
+        assertThat(MessageInbox.keys(message(Message.generateConversationId(senderId, senderId), senderId)))
+            .containsExactly(MessageInbox.userKey(senderId));
+    }
+
+    private Message message(String conversationId, UUID recipient) {
+        return Message.builder()
+                      .messageId(UUID.randomUUID().toString())
+                      .conversationId(conversationId)
+                      .senderId(senderId)
+                      .recipientId(recipient)
+                      .content("hello")
+                      .timestamp(Instant.now())
+                      .build();
+    }
+}
@@ -0,0 +1,148 @@
+package com.chathub.service.sync;
+
+import com.chathub.config.SyncProperties;
+import com.chathub.dto.CursorPage;
+import com.chathub.dto.WebSocketPayload.NewMessage;
+import com.chathub.dto.WebSocketPayload.SyncBatch;
+import com.chathub.dto.WebSocketPayload.SyncCursor;
+import com.chathub.entity.Message;
+import com.chathub.service.MessageService;
+import com.chathub.service.PageCursor;
+import com.chathub.service.cache.GroupMembershipCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * SyncService 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("重連同步測試")
+class SyncServiceTest {
+
+    @Mock
+    private MessageInbox inbox;
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private GroupMembershipCache membershipCache;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID peerId = UUID.randomUUID();
+    private final String conversationId = Message.generateConversationId(userId, peerId);
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private final List<SyncBatch> sent = new ArrayList<>();
+    private SyncService syncService;
+
+    @BeforeEach
+    void setUp() {
+        SyncProperties properties = new SyncProperties();
+        properties.setBatchSize(2);
+        properties.setMaxMessagesPerConversation(3);
+        syncService = new SyncService(inbox, messageService, membershipCache, properties);
+        when(inbox.coveredSince()).thenReturn(now.minus(Duration.ofMinutes(10)));
+    }
+
+    @Test
+    @DisplayName("游標在收件匣保留時間內：只補送游標之後的訊息，不查詢 MongoDB；未列出的一對一對話整段補送")
+    void shouldSyncRecentCursorFromInbox() {
+        // Given：收件匣中有游標本身、之後的兩則，以及另一個客戶端還不知道的對話
+        NewMessage seen = message(conversationId, now.minusSeconds(30));
+        NewMessage first = message(conversationId, now.minusSeconds(20));
+        NewMessage second = message(conversationId, now.minusSeconds(10));
+        String newConversationId = Message.generateConversationId(userId, UUID.randomUUID());
+        NewMessage unlisted = message(newConversationId, now.minusSeconds(5));
+        when(inbox.read(eq(MessageInbox.userKey(userId)), isNull(), anyInt()))
+            .thenReturn(List.of(seen, second, first, unlisted));
+
+        // When
+        int synced = syncService.sync(userId, List.of(cursor(seen)), sent::add);
+
+        // Then
+        assertThat(synced).isEqualTo(3);
+        assertThat(sent).hasSize(3);
+        assertThat(sent.get(0).conversationId()).isEqualTo(conversationId);
+        assertThat(sent.get(0).messages()).containsExactly(first, second);
+        assertThat(sent.get(1).messages()).containsExactly(unlisted);
+        assertThat(sent.get(2).complete()).isTrue();
+        assertThat(sent.get(2).hasMore()).isFalse();
+        verifyNoInteractions(messageService);
+    }
+
+    @Test
+    @DisplayName("游標早於收件匣保留時間：改從 MongoDB 分頁補送，超過每個對話的上限時標記 hasMore")
+    void shouldFallBackToMongoForStaleCursor() {
+        // Given：游標是一小時前，MongoDB 每頁回傳由新到舊
+        NewMessage seen = message(conversationId, now.minus(Duration.ofHours(1)));
+        Message m1 = entity(now.minusSeconds(50));
+        Message m2 = entity(now.minusSeconds(40));
+        Message m3 = entity(now.minusSeconds(30));
+        when(inbox.read(eq(MessageInbox.userKey(userId)), isNull(), anyInt())).thenReturn(List.of());
+        when(messageService.getConversationMessages(eq(conversationId), isNull(), any(), anyInt(), anyBoolean()))
+            .thenReturn(page(List.of(m2, m1), true, new PageCursor(m2.getTimestamp(), m2.getMessageId()).encode()))
+            .thenReturn(page(List.of(m3), true, new PageCursor(m3.getTimestamp(), m3.getMessageId()).encode()));
+
+        // When
+        int synced = syncService.sync(userId, List.of(cursor(seen)), sent::add);
+
+        // Then：3 則（上限）分成兩個 frame，最後一個標記 hasMore
+        assertThat(synced).isEqualTo(3);
+        assertThat(sent.get(0).messages()).extracting(NewMessage::messageId)
+                                          .containsExactly(m1.getMessageId(), m2.getMessageId());
+        assertThat(sent.get(1).messages()).extracting(NewMessage::messageId).containsExactly(m3.getMessageId());
+        assertThat(sent.get(1).hasMore()).isTrue();
+        assertThat(sent.get(2).complete()).isTrue();
+        verify(messageService).getConversationMessages(conversationId, null,
+                                                       new PageCursor(seen.timestamp(), seen.messageId()).encode(),
+                                                       2, false);
+    }
+
+    private NewMessage message(String conversation, Instant timestamp) {
+        return new NewMessage(UUID.randomUUID().toString(), conversation, peerId, "peer", "hi", timestamp);
+    }
+
+    private Message entity(Instant timestamp) {
+        return Message.builder()
+                      .messageId(UUID.randomUUID().toString())
+                      .conversationId(conversationId)
+                      .senderId(peerId)
+                      .senderUsername("peer")
+                      .recipientId(userId)
+                      .content("hi")
+                      .timestamp(timestamp)
+                      .build();
+    }
+
+    private static SyncCursor cursor(NewMessage message) {
+        return new SyncCursor(message.conversationId(), message.messageId(), message.timestamp());
+    }
+
+    private static CursorPage<Message> page(List<Message> content, boolean hasNext, String nextCursor) {
+        return CursorPage.<Message>builder()
+                         .content(content)
+                         .size(content.size())
+                         .hasNext(hasNext)
+                         .nextCursor(nextCursor)
+                         .build();
+    }
+}
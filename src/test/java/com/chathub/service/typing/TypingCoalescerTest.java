@@ -0,0 +1,122 @@
+package com.chathub.service.typing;
+
+import com.chathub.config.TypingProperties;
+import com.chathub.handler.codec.EncodedFrame;
+import com.chathub.service.RedisMessagePublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * TypingCoalescer 單元測試
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("正在輸入通知合併測試")
+class TypingCoalescerTest {
+
+    @Mock
+    private RedisMessagePublisher publisher;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID senderId = UUID.randomUUID();
+    private final UUID recipientId = UUID.randomUUID();
+    private TypingCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        TypingProperties properties = new TypingProperties();
+        properties.setCoalesceWindow(Duration.ofMillis(500));
+        properties.setTtl(Duration.ofSeconds(6));
+        coalescer = new TypingCoalescer(publisher, new ObjectMapper(), properties, meterRegistry, now::get);
+    }
+
+    @Test
+    @DisplayName("重複的開始輸入只送出一次，視窗內的停止 / 開始互相抵銷")
+    void shouldSuppressRedundantTransitions() {
+        // Given / When：開始、開始、停止、（視窗內）開始、開始
+        coalescer.onTyping(senderId, recipientId, true);
+        now.addAndGet(100);
+        coalescer.onTyping(senderId, recipientId, true);
+        coalescer.onTyping(senderId, recipientId, false);
+        now.addAndGet(200);
+        coalescer.flush();
+        coalescer.onTyping(senderId, recipientId, true);
+        coalescer.onTyping(senderId, recipientId, true);
+        now.addAndGet(1000);
+        coalescer.flush();
+
+        // Then：只送出第一次的開始
+        verify(publisher, times(1)).publishEphemeral(eq(recipientId.toString()), any(EncodedFrame.class));
+        assertThat(count("forwarded")).isEqualTo(1);
+        assertThat(count("suppressed")).isEqualTo(4);
+        assertThat(coalescer.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("停止輸入應該在合併視窗結束後才送出，之後的停止直接略過")
+    void shouldForwardStopAfterWindow() {
+        // Given
+        coalescer.onTyping(senderId, recipientId, true);
+        coalescer.onTyping(senderId, recipientId, false);
+
+        // When
+        now.addAndGet(499);
+        coalescer.flush();
+        verify(publisher, times(1)).publishEphemeral(any(), any());
+        now.addAndGet(1);
+        coalescer.flush();
+        coalescer.onTyping(senderId, recipientId, false);
+
+        // Then
+        ArgumentCaptor<EncodedFrame> captor = ArgumentCaptor.forClass(EncodedFrame.class);
+        verify(publisher, times(2)).publishEphemeral(eq(recipientId.toString()), captor.capture());
+        assertThat(new String(captor.getValue().json(), StandardCharsets.UTF_8)).contains("\"isTyping\":false");
+        assertThat(count("forwarded")).isEqualTo(2);
+        assertThat(count("suppressed")).isEqualTo(1);
+        assertThat(coalescer.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("沒有再收到開始輸入時應該自動過期；持續輸入則每半個 ttl 續送一次")
+    void shouldExpireAndRefresh() {
+        // Given：持續輸入 3 秒後續送一次開始
+        coalescer.onTyping(senderId, recipientId, true);
+        now.addAndGet(3000);
+        coalescer.onTyping(senderId, recipientId, true);
+
+        // When：之後不再收到任何事件（例如斷線）
+        now.addAndGet(5999);
+        coalescer.flush();
+        now.addAndGet(1);
+        coalescer.flush();
+
+        // Then
+        ArgumentCaptor<EncodedFrame> captor = ArgumentCaptor.forClass(EncodedFrame.class);
+        verify(publisher, times(3)).publishEphemeral(eq(recipientId.toString()), captor.capture());
+        assertThat(new String(captor.getValue().json(), StandardCharsets.UTF_8)).contains("\"isTyping\":false");
+        assertThat(count("forwarded")).isEqualTo(2);
+        assertThat(count("expired")).isEqualTo(1);
+        assertThat(coalescer.size()).isZero();
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.counter("chathub.typing.events", "outcome", outcome).count();
+    }
+}